@@ -0,0 +1,192 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import sun.security.action.GetPropertyAction;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A package-private adapter of target method handles for asynchronous proxy methods - proxy methods declared
+ * to return {@link CompletableFuture} for target methods that return something else. The adapted handle
+ * submits the invocation of the target to the {@link #getExecutor() executor} and returns a future that is
+ * completed with the target's result or exceptionally with any exception thrown by the target (checked or not).<p>
+ * The executor is chosen once: either by {@link #setExecutor} before the first asynchronous invocation or, when
+ * that is not called, on first use. In the latter case it is an instance of the public {@link Executor} class
+ * named by the "si.pele.friendly.AsyncInvoker.executor" system property (instantiated via it's public no-arg
+ * constructor) or, when the property is not set, the default executor. The default executor starts a new virtual
+ * thread for each invocation on JDKs that support virtual threads and uses a cached pool of daemon threads
+ * otherwise.
+ */
+final class AsyncInvoker {
+
+    private AsyncInvoker() {
+    }
+
+    private static volatile Executor executor;
+
+    /**
+     * @return the executor that asynchronous proxy methods submit target invocations to (choosing it on first use)
+     */
+    static Executor getExecutor() {
+        Executor e = executor;
+        return e == null ? initExecutor() : e;
+    }
+
+    /**
+     * @return the executor that asynchronous proxy methods submit target invocations to if it has already been
+     *         chosen or the default executor otherwise (without choosing it)
+     */
+    static Executor peekExecutor() {
+        Executor e = executor;
+        return e == null ? DefaultExecutorHolder.DEFAULT_EXECUTOR : e;
+    }
+
+    private static synchronized Executor initExecutor() {
+        Executor e = executor;
+        if (e == null)
+            executor = e = configuredExecutor();
+        return e;
+    }
+
+    /**
+     * Sets the executor that asynchronous proxy methods submit target invocations to.
+     *
+     * @throws IllegalStateException if the executor has already been set or used
+     */
+    static synchronized void setExecutor(Executor executor) throws IllegalStateException {
+        if (executor == null)
+            throw new NullPointerException("executor");
+        if (AsyncInvoker.executor != null)
+            throw new IllegalStateException("Async executor already set or in use: " + AsyncInvoker.executor);
+        AsyncInvoker.executor = executor;
+    }
+
+    /**
+     * @return true if given proxy method is an asynchronous proxy method for given target method
+     */
+    static boolean isAsync(Method method, Method targetMethod) {
+        return method.getReturnType() == CompletableFuture.class &&
+               targetMethod.getReturnType() != CompletableFuture.class;
+    }
+
+    /**
+     * Adapts given target method handle of type (P...)R to a method handle of type (P...)CompletableFuture
+     * that submits the invocation of the target to the executor.
+     */
+    static MethodHandle async(MethodHandle target) {
+        MethodType type = target.type();
+        int n = type.parameterCount();
+        MethodHandle spreadTarget = target.asType(MethodType.genericMethodType(n)).asSpreader(Object[].class, n);
+        return SUBMIT.bindTo(spreadTarget)
+            .asCollector(Object[].class, n)
+            .asType(type.changeReturnType(CompletableFuture.class));
+    }
+
+    private static CompletableFuture<Object> submit(MethodHandle spreadTarget, Object[] args) {
+        Invocation invocation = new Invocation(spreadTarget, args);
+        try {
+            getExecutor().execute(invocation);
+        }
+        catch (RejectedExecutionException e) {
+            invocation.future.completeExceptionally(e);
+        }
+        return invocation.future;
+    }
+
+    private static final class Invocation implements Runnable {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        private final MethodHandle spreadTarget;
+        private final Object[] args;
+
+        Invocation(MethodHandle spreadTarget, Object[] args) {
+            this.spreadTarget = spreadTarget;
+            this.args = args;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete((Object) spreadTarget.invokeExact(args));
+            }
+            catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static Executor configuredExecutor() {
+        String className = AccessController.doPrivileged(
+            new GetPropertyAction("si.pele.friendly.AsyncInvoker.executor")
+        );
+        if (className == null)
+            return DefaultExecutorHolder.DEFAULT_EXECUTOR;
+        try {
+            Class<? extends Executor> executorClass =
+                Class.forName(className, true, ClassLoader.getSystemClassLoader()).asSubclass(Executor.class);
+            return executorClass.getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException(
+                "Can't instantiate si.pele.friendly.AsyncInvoker.executor: " + className, e
+            );
+        }
+    }
+
+    private static final class DefaultExecutorHolder {
+        static final Executor DEFAULT_EXECUTOR = defaultExecutor();
+    }
+
+    private static Executor defaultExecutor() {
+        try {
+            MethodHandle newVirtualThreadPerTaskExecutor = MethodHandles.publicLookup().findStatic(
+                Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class)
+            );
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invokeExact();
+        }
+        catch (NoSuchMethodException | IllegalAccessException | UnsupportedOperationException e) {
+            // no virtual threads (or a preview feature not enabled)
+        }
+        catch (Throwable t) {
+            throw MHThrows.unchecked(t);
+        }
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "FriendlyAsync-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private static final MethodHandle SUBMIT;
+
+    static {
+        try {
+            SUBMIT = MethodHandles.lookup().findStatic(
+                AsyncInvoker.class, "submit",
+                MethodType.methodType(CompletableFuture.class, MethodHandle.class, Object[].class)
+            );
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+}
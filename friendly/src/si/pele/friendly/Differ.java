@@ -0,0 +1,128 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.reflect.Field;
+
+/**
+ * A dirty-checker of instances of a class obtained via {@link Friendly#differ}. It captures {@link Snapshot}s of
+ * the values of instance fields and later compares the live fields of an instance with a snapshot, returning
+ * a bitmask of changed fields (bit {@code i} corresponds to the {@code i}-th field of {@link #getFields()}).
+ * The methods are implemented by a generated subclass as straight-line code invoking constant getter method handles,
+ * so that no values are boxed and no fields are iterated reflectively.<p>
+ * Values of primitive fields are packed into the bits of a {@code long[]} (for example a snapshot of an {@code int},
+ * two {@code short} and two {@code boolean} fields takes a single {@code long}) and compared bitwise, so floating
+ * point fields are compared by their raw bits (a NaN is unchanged if it is the same NaN). Values of reference fields
+ * are captured by reference and compared with {@link java.util.Objects#equals}, so mutations of the referenced
+ * objects themselves are not detected.<p>
+ * The checked fields are those the class that obtained the differ has read access to, which includes all instance
+ * fields declared by a class annotated with @{@link Friend} listing it.
+ *
+ * @param <T> the type of checked instances
+ */
+public abstract class Differ<T> {
+
+    /**
+     * The captured values of the fields of an instance. Snapshots can only be used with the differ that captured them.
+     */
+    public static final class Snapshot {
+        final Differ<?> differ;
+        final long[] bits;
+        final Object[] refs;
+
+        Snapshot(Differ<?> differ, long[] bits, Object[] refs) {
+            this.differ = differ;
+            this.bits = bits;
+            this.refs = refs;
+        }
+    }
+
+    private Class<T> type;
+    private Field[] fields;
+    private int bitsLength, refsLength;
+
+    /**
+     * Constructor for generated subclasses only.
+     */
+    protected Differ() {
+    }
+
+    final void init(Class<T> type, Field[] fields, int bitsLength, int refsLength) {
+        this.type = type;
+        this.fields = fields;
+        this.bitsLength = bitsLength;
+        this.refsLength = refsLength;
+    }
+
+    /**
+     * @return the class of checked instances
+     */
+    public final Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the checked fields in the order of their bits in the masks returned by {@link #diff}
+     */
+    public final Field[] getFields() {
+        return fields.clone();
+    }
+
+    /**
+     * Captures the current values of the fields of given instance.
+     *
+     * @param object the instance
+     * @return new snapshot
+     */
+    public final Snapshot snapshot(T object) {
+        Snapshot snapshot = new Snapshot(this, new long[bitsLength], new Object[refsLength]);
+        capture(object, snapshot.bits, snapshot.refs);
+        return snapshot;
+    }
+
+    /**
+     * Captures the current values of the fields of given instance into an existing snapshot (for example after the
+     * changes of the instance have been flushed) without allocating.
+     *
+     * @param object   the instance
+     * @param snapshot the snapshot to overwrite
+     * @throws IllegalArgumentException if the snapshot was not captured by this differ
+     */
+    public final void update(T object, Snapshot snapshot) throws IllegalArgumentException {
+        checkSnapshot(snapshot);
+        capture(object, snapshot.bits, snapshot.refs);
+    }
+
+    /**
+     * Compares the current values of the fields of given instance with given snapshot.
+     *
+     * @param object   the instance
+     * @param snapshot the snapshot
+     * @return a bitmask of changed fields (0 if no field has changed)
+     * @throws IllegalArgumentException if the snapshot was not captured by this differ
+     */
+    public final long diff(T object, Snapshot snapshot) throws IllegalArgumentException {
+        checkSnapshot(snapshot);
+        return compare(object, snapshot.bits, snapshot.refs);
+    }
+
+    private void checkSnapshot(Snapshot snapshot) {
+        if (snapshot.differ != this)
+            throw new IllegalArgumentException("Snapshot was not captured by this differ");
+    }
+
+    /**
+     * Captures the values of the fields of given instance into given arrays. Implemented by generated code.
+     */
+    protected abstract void capture(T object, long[] bits, Object[] refs);
+
+    /**
+     * Compares the values of the fields of given instance with given arrays. Implemented by generated code.
+     *
+     * @return a bitmask of changed fields
+     */
+    protected abstract long compare(T object, long[] bits, Object[] refs);
+}
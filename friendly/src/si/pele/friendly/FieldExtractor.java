@@ -0,0 +1,294 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A bulk accessor of a primitive instance field obtained via {@link Friendly#extractor}. It gathers the values of
+ * the field from arrays or lists of objects into primitive arrays and scatters the values from primitive arrays back
+ * into the field of the objects. The range methods are implemented by a generated subclass as tight counted loops
+ * that invoke constant method handles, so that JIT can inline the field accesses and unroll the loops.<p>
+ * Gathering is supported into primitive arrays of element types that the field's type can be converted to by a
+ * widening primitive conversion (or identity conversion). Scattering is supported from primitive arrays of element
+ * types that can be converted to the field's type by a widening primitive conversion (or identity conversion) unless
+ * the field is final. Unsupported methods throw {@link UnsupportedOperationException}.
+ *
+ * @param <T> the type of objects declaring the field
+ */
+public abstract class FieldExtractor<T> {
+
+    /**
+     * Minimum number of elements processed by a single fork-join task in the parallel methods. Can be
+     * configured by "si.pele.friendly.FieldExtractor.parallelThreshold" system property.
+     */
+    static final int PARALLEL_THRESHOLD = Integer.getInteger(
+        "si.pele.friendly.FieldExtractor.parallelThreshold", 1 << 14
+    );
+
+    private Field field;
+
+    /**
+     * Constructor for generated subclasses only.
+     */
+    protected FieldExtractor() {
+    }
+
+    final void init(Field field) {
+        this.field = field;
+    }
+
+    /**
+     * @return the field extracted by this extractor
+     */
+    public final Field getField() {
+        return field;
+    }
+
+    // range kernels - overridden by generated subclass
+
+    public void gather(T[] src, int srcPos, int[] dst, int dstPos, int length) {
+        throw unsupported("gather", int.class);
+    }
+
+    public void gather(T[] src, int srcPos, long[] dst, int dstPos, int length) {
+        throw unsupported("gather", long.class);
+    }
+
+    public void gather(T[] src, int srcPos, double[] dst, int dstPos, int length) {
+        throw unsupported("gather", double.class);
+    }
+
+    public void scatter(int[] src, int srcPos, T[] dst, int dstPos, int length) {
+        throw unsupported("scatter", int.class);
+    }
+
+    public void scatter(long[] src, int srcPos, T[] dst, int dstPos, int length) {
+        throw unsupported("scatter", long.class);
+    }
+
+    public void scatter(double[] src, int srcPos, T[] dst, int dstPos, int length) {
+        throw unsupported("scatter", double.class);
+    }
+
+    // list kernels - overridden by generated subclass
+
+    /**
+     * Gathers the field values of the elements of given list in iteration order into given array.
+     *
+     * @throws IndexOutOfBoundsException if the array is shorter than the list (before any element is accessed)
+     */
+    public void gather(List<? extends T> src, int[] dst) {
+        throw unsupported("gather", int.class);
+    }
+
+    /**
+     * Gathers the field values of the elements of given list in iteration order into given array.
+     *
+     * @throws IndexOutOfBoundsException if the array is shorter than the list (before any element is accessed)
+     */
+    public void gather(List<? extends T> src, long[] dst) {
+        throw unsupported("gather", long.class);
+    }
+
+    /**
+     * Gathers the field values of the elements of given list in iteration order into given array.
+     *
+     * @throws IndexOutOfBoundsException if the array is shorter than the list (before any element is accessed)
+     */
+    public void gather(List<? extends T> src, double[] dst) {
+        throw unsupported("gather", double.class);
+    }
+
+    /**
+     * Scatters the values of given array into the field of the elements of given list in iteration order.
+     *
+     * @throws IndexOutOfBoundsException if the array is shorter than the list (before any element is accessed)
+     */
+    public void scatter(int[] src, List<? extends T> dst) {
+        throw unsupported("scatter", int.class);
+    }
+
+    /**
+     * Scatters the values of given array into the field of the elements of given list in iteration order.
+     *
+     * @throws IndexOutOfBoundsException if the array is shorter than the list (before any element is accessed)
+     */
+    public void scatter(long[] src, List<? extends T> dst) {
+        throw unsupported("scatter", long.class);
+    }
+
+    /**
+     * Scatters the values of given array into the field of the elements of given list in iteration order.
+     *
+     * @throws IndexOutOfBoundsException if the array is shorter than the list (before any element is accessed)
+     */
+    public void scatter(double[] src, List<? extends T> dst) {
+        throw unsupported("scatter", double.class);
+    }
+
+    // whole-array conveniences
+
+    public final int[] gatherInts(T[] src) {
+        int[] dst = new int[src.length];
+        gather(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    public final long[] gatherLongs(T[] src) {
+        long[] dst = new long[src.length];
+        gather(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    public final double[] gatherDoubles(T[] src) {
+        double[] dst = new double[src.length];
+        gather(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    // parallel variants
+
+    /**
+     * Gathers the field values of all elements of {@code src} into {@code dst} splitting the work into
+     * tasks executed by given fork-join pool.
+     */
+    public final void gather(T[] src, int[] dst, ForkJoinPool pool) {
+        checkRange(src.length, 0, dst.length, 0, src.length);
+        pool.invoke(new RangeTask(GATHER_INT, src, dst, 0, src.length));
+    }
+
+    /**
+     * Gathers the field values of all elements of {@code src} into {@code dst} splitting the work into
+     * tasks executed by given fork-join pool.
+     */
+    public final void gather(T[] src, long[] dst, ForkJoinPool pool) {
+        checkRange(src.length, 0, dst.length, 0, src.length);
+        pool.invoke(new RangeTask(GATHER_LONG, src, dst, 0, src.length));
+    }
+
+    /**
+     * Gathers the field values of all elements of {@code src} into {@code dst} splitting the work into
+     * tasks executed by given fork-join pool.
+     */
+    public final void gather(T[] src, double[] dst, ForkJoinPool pool) {
+        checkRange(src.length, 0, dst.length, 0, src.length);
+        pool.invoke(new RangeTask(GATHER_DOUBLE, src, dst, 0, src.length));
+    }
+
+    /**
+     * Scatters all values of {@code src} into the field of elements of {@code dst} splitting the work into
+     * tasks executed by given fork-join pool.
+     */
+    public final void scatter(int[] src, T[] dst, ForkJoinPool pool) {
+        checkRange(src.length, 0, dst.length, 0, src.length);
+        pool.invoke(new RangeTask(SCATTER_INT, dst, src, 0, src.length));
+    }
+
+    /**
+     * Scatters all values of {@code src} into the field of elements of {@code dst} splitting the work into
+     * tasks executed by given fork-join pool.
+     */
+    public final void scatter(long[] src, T[] dst, ForkJoinPool pool) {
+        checkRange(src.length, 0, dst.length, 0, src.length);
+        pool.invoke(new RangeTask(SCATTER_LONG, dst, src, 0, src.length));
+    }
+
+    /**
+     * Scatters all values of {@code src} into the field of elements of {@code dst} splitting the work into
+     * tasks executed by given fork-join pool.
+     */
+    public final void scatter(double[] src, T[] dst, ForkJoinPool pool) {
+        checkRange(src.length, 0, dst.length, 0, src.length);
+        pool.invoke(new RangeTask(SCATTER_DOUBLE, dst, src, 0, src.length));
+    }
+
+    private static final int GATHER_INT = 0, GATHER_LONG = 1, GATHER_DOUBLE = 2,
+        SCATTER_INT = 3, SCATTER_LONG = 4, SCATTER_DOUBLE = 5;
+
+    /**
+     * A task that recursively splits the range of indexes in halves until it is small enough
+     * and then invokes the range kernel selected by {@code kind}.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private final class RangeTask extends RecursiveAction {
+        private final int kind;
+        private final T[] objects;
+        private final Object values;
+        private final int from, length;
+
+        RangeTask(int kind, T[] objects, Object values, int from, int length) {
+            this.kind = kind;
+            this.objects = objects;
+            this.values = values;
+            this.from = from;
+            this.length = length;
+        }
+
+        @Override
+        protected void compute() {
+            if (length > PARALLEL_THRESHOLD) {
+                int half = length >>> 1;
+                invokeAll(
+                    new RangeTask(kind, objects, values, from, half),
+                    new RangeTask(kind, objects, values, from + half, length - half)
+                );
+            }
+            else {
+                switch (kind) {
+                    case GATHER_INT:
+                        gather(objects, from, (int[]) values, from, length);
+                        break;
+                    case GATHER_LONG:
+                        gather(objects, from, (long[]) values, from, length);
+                        break;
+                    case GATHER_DOUBLE:
+                        gather(objects, from, (double[]) values, from, length);
+                        break;
+                    case SCATTER_INT:
+                        scatter((int[]) values, from, objects, from, length);
+                        break;
+                    case SCATTER_LONG:
+                        scatter((long[]) values, from, objects, from, length);
+                        break;
+                    case SCATTER_DOUBLE:
+                        scatter((double[]) values, from, objects, from, length);
+                        break;
+                    default:
+                        throw new AssertionError();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the range arguments of range kernels (and the lengths of list kernels) the same way as
+     * {@link System#arraycopy} does. Invoked by generated kernels before the loop.
+     *
+     * @throws IndexOutOfBoundsException if any of the ranges is out of bounds
+     */
+    public static void checkRange(int srcLength, int srcPos, int dstLength, int dstPos, int length)
+        throws IndexOutOfBoundsException {
+        if (length < 0 ||
+            srcPos < 0 || srcPos > srcLength - length ||
+            dstPos < 0 || dstPos > dstLength - length)
+            throw new IndexOutOfBoundsException(
+                "srcLength: " + srcLength + ", srcPos: " + srcPos +
+                ", dstLength: " + dstLength + ", dstPos: " + dstPos +
+                ", length: " + length
+            );
+    }
+
+    private UnsupportedOperationException unsupported(String operation, Class<?> elementType) {
+        return new UnsupportedOperationException(
+            "Can't " + operation + " field: " + field + " " + (operation.equals("gather") ? "into" : "from") +
+            " " + elementType + "[]"
+        );
+    }
+}
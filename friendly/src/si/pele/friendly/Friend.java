@@ -14,10 +14,15 @@ import java.lang.annotation.Target;
  * Annotation, that when attached to a field, method or constructor, declares
  * a set of "friend" classes - classes that are allowed access to the otherwise prohibited
  * field, method or constructor using method handles or proxies obtained via {@link Friendly}
- * static methods.
+ * static methods. When attached to a class, friend classes are allowed to create instances of
+ * the class without running it's constructors and to populate the instance fields declared by the class
+ * using an {@link Instantiator} obtained via {@link Friendly#instantiator} and to read (but not write) all instance
+ * fields declared by the class using a {@link Differ} obtained via {@link Friendly#differ},
+ * a {@link PropertyTable} obtained via {@link Friendly#properties} or a {@link Walker} obtained via
+ * {@link Friendly#walker}, even when they are not accessible otherwise.
  */
 @Retention(RetentionPolicy.RUNTIME)
-@Target({ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.METHOD})
+@Target({ElementType.TYPE, ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.METHOD})
 public @interface Friend {
     Class<?>[] value();
 }
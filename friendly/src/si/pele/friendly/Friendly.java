@@ -11,24 +11,43 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.ToIntFunction;
 
 /**
  * A {@link MethodHandles.Lookup} facade that uses @{@link Friend} annotation
  * to govern access to method handles for otherwise prohibited constructors ({@link #constructor}),
- * methods ({@link #method}) or fields ({@link #getter}, {@link #setter}).<p>
+ * methods ({@link #method}), fields ({@link #getter}, {@link #setter}) or paths of fields
+ * ({@link #path}, {@link #pathSetter}), bulk accessors of fields ({@link #extractor}), comparators and hashers
+ * of fields ({@link #comparator}, {@link #hasher}), constructor-bypassing instantiators ({@link #instantiator}),
+ * dirty-checkers of fields ({@link #differ}) and indexed accessors of fields by name ({@link #properties}).<p>
  * It also provides a factory for proxies that invoke otherwise prohibited target methods
- * ({@link #proxy})...
+ * ({@link #proxy}) or bound to a particular target object ({@link #boundProxy}) and a way to prepare method handles
+ * ahead of their first invocation ({@link #prewarm})...<p>
+ * How the returned method handles reach members is determined by a pluggable access backend chosen by a system
+ * property (see {@link #getAccessBackend}).<p>
+ * When JDK Flight Recorder is available, each public lookup method, each {@link FriendlyAccessException} and each
+ * generated class is reported as a JFR event (si.pele.friendly.Lookup, si.pele.friendly.AccessDenied and
+ * si.pele.friendly.ClassGeneration respectively) while a recording enables them.
  */
 public class Friendly {
     // an all-mighty lookup
-    private static final MethodHandles.Lookup lookup = AccessController.doPrivileged(
+    static final MethodHandles.Lookup lookup = AccessController.doPrivileged(
         new GetStaticFieldAction<MethodHandles.Lookup>(MethodHandles.Lookup.class, "IMPL_LOOKUP")
     );
 
@@ -52,20 +71,22 @@ public class Friendly {
     public static MethodHandle method(Class<?> declaringClass, String methodName, Class<?>... parameterTypes)
         throws IllegalArgumentException, FriendlyAccessException {
         Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
         try {
-            return lookup.in(cc)
-                .unreflect(
-                    accessible(
-                        AccessController.doPrivileged(
-                            new GetDeclaredMethodAction(declaringClass, methodName, parameterTypes)
-                        ),
-                        cc
-                    )
-                );
+            Method method = AccessController.doPrivileged(
+                new GetDeclaredMethodAction(declaringClass, methodName, parameterTypes)
+            );
+            return FriendlyAccessBackend.INSTANCE.method(
+                method,
+                lookup.in(cc).unreflect(accessible(method, cc))
+            );
         }
         catch (IllegalAccessException e) {
             throw new FriendlyAccessException(e);
         }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "method", cc, declaringClass, methodName);
+        }
     }
 
     /**
@@ -87,20 +108,22 @@ public class Friendly {
     public static MethodHandle constructor(Class<?> declaringClass, Class<?>... parameterTypes)
         throws IllegalArgumentException, FriendlyAccessException {
         Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
         try {
-            return lookup.in(cc)
-                .unreflectConstructor(
-                    accessible(
-                        AccessController.doPrivileged(
-                            new GetDeclaredConstructorAction(declaringClass, parameterTypes)
-                        ),
-                        cc
-                    )
-                );
+            Constructor<?> constructor = AccessController.doPrivileged(
+                new GetDeclaredConstructorAction(declaringClass, parameterTypes)
+            );
+            return FriendlyAccessBackend.INSTANCE.constructor(
+                constructor,
+                lookup.in(cc).unreflectConstructor(accessible(constructor, cc))
+            );
         }
         catch (IllegalAccessException e) {
             throw new FriendlyAccessException(e);
         }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "constructor", cc, declaringClass, "<init>");
+        }
     }
 
     /**
@@ -120,20 +143,20 @@ public class Friendly {
     public static MethodHandle getter(Class<?> declaringClass, String fieldName)
         throws IllegalArgumentException, FriendlyAccessException {
         Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
         try {
-            return lookup.in(cc)
-                .unreflectGetter(
-                    accessible(
-                        AccessController.doPrivileged(
-                            new GetDeclaredFieldAction(declaringClass, fieldName)
-                        ),
-                        cc
-                    )
-                );
+            Field field = AccessController.doPrivileged(new GetDeclaredFieldAction(declaringClass, fieldName));
+            return FriendlyAccessBackend.INSTANCE.getter(
+                field,
+                lookup.in(cc).unreflectGetter(accessible(field, cc))
+            );
         }
         catch (IllegalAccessException e) {
             throw new FriendlyAccessException(e);
         }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "getter", cc, declaringClass, fieldName);
+        }
     }
 
     /**
@@ -153,20 +176,423 @@ public class Friendly {
     public static MethodHandle setter(Class<?> declaringClass, String fieldName)
         throws IllegalArgumentException, FriendlyAccessException {
         Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
         try {
-            return lookup.in(cc)
-                .unreflectSetter(
-                    accessible(
-                        AccessController.doPrivileged(
-                            new GetDeclaredFieldAction(declaringClass, fieldName)
-                        ),
-                        cc
-                    )
-                );
+            Field field = AccessController.doPrivileged(new GetDeclaredFieldAction(declaringClass, fieldName));
+            return FriendlyAccessBackend.INSTANCE.setter(
+                field,
+                lookup.in(cc).unreflectSetter(accessible(field, cc))
+            );
         }
         catch (IllegalAccessException e) {
             throw new FriendlyAccessException(e);
         }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "setter", cc, declaringClass, fieldName);
+        }
+    }
+
+    /**
+     * Looks up a {@link MethodHandle} giving read access to a value at the end of a path of instance fields.
+     * The {@code path} is a dot-separated list of field names, for example {@code "customer.address.zip"}. The first
+     * field is looked up in the {@code rootClass}, each following field is looked up in the declared type of the
+     * preceding field. Access to each field along the path is checked the same way as when requesting a single
+     * getter via {@link #getter}. The type of the method handle will have a single parameter of the
+     * {@code rootClass} type and a return type of the last field's value type. The returned method handle is a
+     * composition of the getters along the path (via {@link MethodHandles#filterReturnValue}), so when it is
+     * invoked from a constant, the whole traversal can be inlined by JIT. If any intermediate field along the
+     * path holds null, a {@link NullPointerException} is thrown, the same as with normal field access expressions.
+     *
+     * @param rootClass the class in which the first field in the path is declared
+     * @param path      a dot-separated list of field names
+     * @return a method handle which can read the value at the end of the path
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found,
+     *                                  if any field along the path is static or if any intermediate field is of
+     *                                  primitive type
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to any of the fields
+     */
+    public static MethodHandle path(Class<?> rootClass, String path)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            return pathGetter(cc, rootClass, path, false);
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "path", cc, rootClass, path);
+        }
+    }
+
+    /**
+     * Looks up a {@link MethodHandle} giving read access to a value at the end of a path of instance fields
+     * the same way as {@link #path(Class, String)} with optional null-short-circuit semantics. When
+     * {@code nullSafe} is true and any intermediate field along the path holds null, the invocation of returned
+     * method handle short-circuits and returns the default value of the last field's type (null, zero or false)
+     * instead of throwing {@link NullPointerException}. The root object passed to the method handle must not be null
+     * in either case.
+     *
+     * @param rootClass the class in which the first field in the path is declared
+     * @param path      a dot-separated list of field names
+     * @param nullSafe  whether to short-circuit on null intermediate values
+     * @return a method handle which can read the value at the end of the path
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found,
+     *                                  if any field along the path is static or if any intermediate field is of
+     *                                  primitive type
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to any of the fields
+     */
+    public static MethodHandle path(Class<?> rootClass, String path, boolean nullSafe)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            return pathGetter(cc, rootClass, path, nullSafe);
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "path", cc, rootClass, path);
+        }
+    }
+
+    /**
+     * Looks up a {@link MethodHandle} giving write access to a field at the end of a path of instance fields.
+     * The fields along the path are resolved and checked the same way as in {@link #path(Class, String)}, the last
+     * field is checked the same way as when requesting a single setter via {@link #setter} and must not be final.
+     * The type of the method handle will have a void return type and two parameters: the root object of the
+     * {@code rootClass} type and the value of the last field's type to be stored. If any intermediate field along
+     * the path holds null, a {@link NullPointerException} is thrown.
+     *
+     * @param rootClass the class in which the first field in the path is declared
+     * @param path      a dot-separated list of field names
+     * @return a method handle which can write the value of the field at the end of the path
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found,
+     *                                  if any field along the path is static, if any intermediate field is of
+     *                                  primitive type or if the last field is final
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to any of the fields
+     */
+    public static MethodHandle pathSetter(Class<?> rootClass, String path)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            return pathSetter(cc, rootClass, path, false);
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "pathSetter", cc, rootClass, path);
+        }
+    }
+
+    /**
+     * Looks up a {@link MethodHandle} giving write access to a field at the end of a path of instance fields
+     * the same way as {@link #pathSetter(Class, String)} with optional null-short-circuit semantics. When
+     * {@code nullSafe} is true and any intermediate field along the path holds null, the invocation of returned
+     * method handle does nothing instead of throwing {@link NullPointerException}.
+     *
+     * @param rootClass the class in which the first field in the path is declared
+     * @param path      a dot-separated list of field names
+     * @param nullSafe  whether to short-circuit on null intermediate values
+     * @return a method handle which can write the value of the field at the end of the path
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found,
+     *                                  if any field along the path is static, if any intermediate field is of
+     *                                  primitive type or if the last field is final
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to any of the fields
+     */
+    public static MethodHandle pathSetter(Class<?> rootClass, String path, boolean nullSafe)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            return pathSetter(cc, rootClass, path, nullSafe);
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "pathSetter", cc, rootClass, path);
+        }
+    }
+
+    /**
+     * Returns a {@link FieldExtractor} giving bulk read and write access to a primitive instance field of objects
+     * in arrays or lists. The extractor's range kernels are generated as tight counted loops that invoke
+     * the field's getter or setter per element, so that JIT can inline the field accesses and unroll the loops.
+     * Large arrays can optionally be processed in parallel by a {@link java.util.concurrent.ForkJoinPool}.
+     * Unless the field is annotated with the @{@link Friend} annotation specifying the caller class in it's list,
+     * normal Java access checking is performed immediately on behalf of the caller class. Extractors are generated
+     * once per field and shared among callers that have access to the field.
+     *
+     * @param declaringClass the class in which the field is declared
+     * @param fieldName      the name of the field
+     * @param <T>            the type of objects declaring the field
+     * @return an extractor of the field's values
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found or
+     *                                  if the field is static or not of a numeric primitive type
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to the field
+     */
+    public static <T> FieldExtractor<T> extractor(Class<T> declaringClass, String fieldName)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            Field field = checkedField(declaringClass, fieldName, cc);
+            ConcurrentMap<String, FieldExtractor<?>> extractors = EXTRACTORS_CV.get(declaringClass);
+            @SuppressWarnings("unchecked")
+            FieldExtractor<T> extractor = (FieldExtractor<T>) extractors.get(fieldName);
+            if (extractor == null) {
+                @SuppressWarnings("unchecked")
+                FieldExtractor<T> newExtractor = (FieldExtractor<T>) FriendlyExtractorFactory.newExtractor(field);
+                extractor = newExtractor;
+                @SuppressWarnings("unchecked")
+                FieldExtractor<T> oldExtractor = (FieldExtractor<T>) extractors.putIfAbsent(fieldName, extractor);
+                if (oldExtractor != null)
+                    extractor = oldExtractor;
+            }
+            return extractor;
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "extractor", cc, declaringClass, fieldName);
+        }
+    }
+
+    /**
+     * Returns a {@link Comparator} comparing objects by the values of given instance fields lexicographically - by
+     * the first field, then by the second field if the first ones are equal, and so on. Primitive fields are compared
+     * as by the static {@code compare} method of their wrapper class (for example {@link Double#compare}), reference
+     * fields must be of a type implementing {@link Comparable} and are compared by their natural ordering with nulls
+     * ordered before non-null values. The comparator is generated as straight-line code that invokes the fields'
+     * getters without boxing, so that JIT can inline the field accesses into sorting loops.
+     * Unless a field is annotated with the @{@link Friend} annotation specifying the caller class in it's list,
+     * normal Java access checking is performed immediately on behalf of the caller class. Comparators are generated
+     * once per list of fields and shared among callers that have access to the fields.
+     *
+     * @param declaringClass the class in which the fields are declared
+     * @param fieldNames     the names of the fields in the order of significance
+     * @param <T>            the type of compared objects
+     * @return a comparator comparing the fields
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found or
+     *                                  if no fields are given or any field is static or of a reference type that
+     *                                  doesn't implement {@link Comparable}
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to any of the fields
+     */
+    public static <T> Comparator<T> comparator(Class<T> declaringClass, String... fieldNames)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        String key = fieldsKey(fieldNames);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            Field[] fields = checkedFields(declaringClass, fieldNames, cc);
+            ConcurrentMap<String, Comparator<?>> comparators = COMPARATORS_CV.get(declaringClass);
+            @SuppressWarnings("unchecked")
+            Comparator<T> comparator = (Comparator<T>) comparators.get(key);
+            if (comparator == null) {
+                @SuppressWarnings("unchecked")
+                Comparator<T> newComparator = (Comparator<T>) FriendlyComparatorFactory.newComparator(fields);
+                comparator = newComparator;
+                @SuppressWarnings("unchecked")
+                Comparator<T> oldComparator = (Comparator<T>) comparators.putIfAbsent(key, comparator);
+                if (oldComparator != null)
+                    comparator = oldComparator;
+            }
+            return comparator;
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "comparator", cc, declaringClass, key);
+        }
+    }
+
+    /**
+     * Returns a {@link ToIntFunction} computing a hash code of an object from the values of given instance fields.
+     * The hash code is equal to {@link java.util.Objects#hash} of the boxed values of the fields, but the hasher is
+     * generated as straight-line code that invokes the fields' getters without boxing, so that JIT can inline
+     * the field accesses into hashing loops. Unless a field is annotated with the @{@link Friend} annotation
+     * specifying the caller class in it's list, normal Java access checking is performed immediately on behalf of
+     * the caller class. Hashers are generated once per list of fields and shared among callers that have access to
+     * the fields.
+     *
+     * @param declaringClass the class in which the fields are declared
+     * @param fieldNames     the names of the fields
+     * @param <T>            the type of hashed objects
+     * @return a hasher of the fields
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found or
+     *                                  if no fields are given or any field is static
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to any of the fields
+     */
+    public static <T> ToIntFunction<T> hasher(Class<T> declaringClass, String... fieldNames)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        String key = fieldsKey(fieldNames);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            Field[] fields = checkedFields(declaringClass, fieldNames, cc);
+            ConcurrentMap<String, ToIntFunction<?>> hashers = HASHERS_CV.get(declaringClass);
+            @SuppressWarnings("unchecked")
+            ToIntFunction<T> hasher = (ToIntFunction<T>) hashers.get(key);
+            if (hasher == null) {
+                @SuppressWarnings("unchecked")
+                ToIntFunction<T> newHasher = (ToIntFunction<T>) FriendlyComparatorFactory.newHasher(fields);
+                hasher = newHasher;
+                @SuppressWarnings("unchecked")
+                ToIntFunction<T> oldHasher = (ToIntFunction<T>) hashers.putIfAbsent(key, hasher);
+                if (oldHasher != null)
+                    hasher = oldHasher;
+            }
+            return hasher;
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "hasher", cc, declaringClass, key);
+        }
+    }
+
+    /**
+     * Returns an {@link Instantiator} that creates instances of given class without running any of it's constructors
+     * and populates their instance fields (including final ones) from given values. The class must be annotated with
+     * the @{@link Friend} annotation specifying the caller class in it's list. The populated fields are the instance
+     * fields declared by the class itself and the instance fields declared by it's superclasses that are annotated
+     * with the @{@link Friend} annotation specifying the caller class or are declared by a superclass annotated so.
+     * Instantiators are generated once per class and caller class.
+     *
+     * @param clazz the class to instantiate
+     * @param <T>   the type of instances
+     * @return an instantiator of the class
+     * @throws IllegalArgumentException if the class is abstract, an interface, an enum, an array or a primitive type
+     * @throws FriendlyAccessException  if the class is not annotated with the @{@link Friend} annotation specifying
+     *                                  the caller class in it's list
+     */
+    public static <T> Instantiator<T> instantiator(Class<T> clazz)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            if (!isFriend(clazz, cc))
+                throw new FriendlyAccessException(
+                    "Class: " + cc.getName() + " has no access to instantiate: " + clazz.getName()
+                );
+            @SuppressWarnings("unchecked")
+            Instantiator<T> instantiator = (Instantiator<T>) INSTANTIATOR_CV.get(clazz).get(cc);
+            return instantiator;
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "instantiator", cc, clazz, null);
+        }
+    }
+
+    /**
+     * Returns a {@link Differ} that captures snapshots of the instance fields of given class and compares instances
+     * with them, returning a bitmask of changed fields. The checked fields are the instance fields declared by the
+     * class and it's superclasses that the caller class has access to: either by normal Java access rules or by
+     * the @{@link Friend} annotation specifying the caller class in it's list (on the field or on the class declaring
+     * it). Differs are generated once per class and caller class.
+     *
+     * @param clazz the class of checked instances
+     * @param <T>   the type of checked instances
+     * @return a differ of the class
+     * @throws IllegalArgumentException if the caller class has access to more than 64 instance fields of the class
+     */
+    public static <T> Differ<T> differ(Class<T> clazz) throws IllegalArgumentException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            @SuppressWarnings("unchecked")
+            Differ<T> differ = (Differ<T>) DIFFER_CV.get(clazz).get(cc);
+            return differ;
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "differ", cc, clazz, null);
+        }
+    }
+
+    /**
+     * Returns a {@link Walker} that estimates the retained size of object graphs and compares and hashes them deeply,
+     * traversing instances of given classes (exact runtime classes) through their instance fields declared by the
+     * class and it's superclasses that the caller class has access to: either by normal Java access rules or by
+     * the @{@link Friend} annotation specifying the caller class in it's list (on the field or on the class declaring
+     * it). Arrays of reference types are traversed through their elements and other objects are leaves (see
+     * {@link Walker} for details). Visitors of the classes are generated once per class and caller class.
+     *
+     * @param classes the classes whose instances are traversed
+     * @return a walker of the classes
+     * @throws IllegalArgumentException if any of given classes is an interface, an array or a primitive type
+     */
+    public static Walker walker(Class<?>... classes) throws IllegalArgumentException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            classes = classes.clone();
+            Walker.Visitor[] visitors = new Walker.Visitor[classes.length];
+            for (int i = 0; i < classes.length; i++) {
+                Class<?> clazz = classes[i];
+                if (clazz.isInterface() || clazz.isArray() || clazz.isPrimitive())
+                    throw new IllegalArgumentException("Can't walk instances of: " + clazz.getName());
+                visitors[i] = WALKER_VISITOR_CV.get(clazz).get(cc);
+            }
+            return new Walker(classes, visitors);
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "walker", cc, null, null);
+        }
+    }
+
+    /**
+     * Returns a {@link PropertyTable} giving indexed read and write access to the instance fields of given class,
+     * with names resolved to indexes through a perfect hash. The fields are the instance fields declared by the class
+     * and it's superclasses that the caller class has read access to: either by normal Java access rules or by
+     * the @{@link Friend} annotation specifying the caller class in it's list (on the field or on the class declaring
+     * it). A field hidden by a field with the same name declared by a subclass is not included. Only the non-final
+     * fields that the caller class has write access to (by normal Java access rules or by the @{@link Friend}
+     * annotation on the field - not on the class) can be set. Property tables are generated once per class and
+     * caller class.
+     *
+     * @param clazz the class whose fields are accessed
+     * @param <T>   the type of objects whose fields are accessed
+     * @return a property table of the class
+     */
+    public static <T> PropertyTable<T> properties(Class<T> clazz) {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            @SuppressWarnings("unchecked")
+            PropertyTable<T> properties = (PropertyTable<T>) PROPERTIES_CV.get(clazz).get(cc);
+            return properties;
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "properties", cc, clazz, null);
+        }
+    }
+
+    /**
+     * Returns a dispatcher implementing given dispatcher interface that invokes instance methods of given class
+     * selected by name. The dispatcher interface must have a single abstract method (the dispatch method) taking
+     * the name of the method to invoke and the target object (of a type assignable from given class) followed by
+     * the arguments ({@code R dispatch(String name, T target, P... args)}). The handler methods are the instance
+     * methods declared by the class that the caller class has access to (either by normal Java access rules or by
+     * the @{@link Friend} annotation specifying the caller class in it's list on the method) with
+     * parameter types {@code P...}, return type {@code R} and no checked exceptions that the dispatch method does
+     * not declare. When called, the dispatch method selects the handler method by name with a {@code switch} on the
+     * hash code of the name (as a {@code switch} on a string is compiled) and invokes it with the target and the
+     * arguments through it's method handle, without boxing the arguments. If there's no handler method with the name,
+     * {@link IllegalArgumentException} is thrown. Dispatchers are generated once per class, dispatcher interface and
+     * caller class.
+     *
+     * @param clazz               the class declaring the handler methods
+     * @param dispatcherInterface the interface declaring the dispatch method
+     * @param <T>                 the type of targets
+     * @param <D>                 the type of dispatcher interface
+     * @return a dispatcher implementing the dispatcher interface
+     * @throws IllegalArgumentException if the dispatcher interface doesn't declare a single dispatch method as
+     *                                  described above or if the class doesn't declare any handler methods
+     */
+    public static <T, D> D dispatcher(Class<T> clazz, Class<D> dispatcherInterface)
+        throws IllegalArgumentException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            return dispatcherInterface.cast(DISPATCHER_CV.get(clazz).get(dispatcherInterface).get(cc));
+        }
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "dispatcher", cc, clazz, dispatcherInterface.getName());
+        }
     }
 
     /**
@@ -190,92 +616,287 @@ public class Friendly {
      * by the corresponding proxy interface method. When called, any exceptions thrown by the target method are
      * passed unchanged.
      * </li>
+     * <li>As an exception to the above two rules, if the proxy method is declared to return
+     * {@link java.util.concurrent.CompletableFuture} and the target method returns anything else (including void),
+     * the proxy method is asynchronous. When called, it submits the invocation of the target method to the
+     * {@link #getAsyncExecutor() async executor} and returns a future that is completed with the target's result or
+     * exceptionally with any exception (checked or not) thrown by the target method.
+     * </li>
+     * <li>If the proxy method is annotated with @{@link TargetClasses} annotation, the type of the first parameter
+     * is taken as a common supertype of the receivers instead and each class listed in the annotation must be
+     * a subtype of it, declaring a target method that satisfies the above rules. When called, the proxy method
+     * dispatches to the target method declared by the nearest listed superclass of the receiver's runtime class
+     * through a polymorphic inline cache. If there's no such class, {@link IllegalArgumentException} is thrown.
+     * </li>
+     * <li>If the proxy method is annotated with @{@link NonVirtual} annotation, no target method may be abstract.
+     * When called, the proxy method invokes the implementation declared by the target method's declaring class
+     * (or by the nearest listed superclass of the receiver's runtime class) even when the receiver's runtime class
+     * overrides it.
+     * </li>
+     * <li>If the type of the first parameter is an array of a reference type, the proxy method is a batch method with
+     * the component type taken as the target method's declaring class (or the common supertype of the receivers).
+     * The return type of a batch method must be either an array type with the target method's return type as it's
+     * component type ({@code T[] m(R[] rs, P...)}) or void. A void batch method either takes an array with
+     * the target method's (non-void) return type as it's component type as the second parameter followed by the
+     * target method parameters ({@code void m(R[] rs, T[] out, P...)}) or forwards to a void target method
+     * ({@code void m(R[] rs, P...)}) - the former if such non-void target method exists. When called, the batch
+     * method invokes the target method for each receiver in a counted loop, passing the remaining parameters
+     * unchanged, and stores the results into a new array that is returned or into the given output array, which
+     * must be at least as long as the receivers array (otherwise {@link IllegalArgumentException} is thrown before
+     * invoking any target method).
+     * </li>
+     * <li>If the proxy method is annotated with @{@link TargetSignature} annotation, the target method is the method
+     * with the proxy method's name and the annotation's descriptor declared by the class with the annotation's name
+     * (resolved by the proxy interface's class loader), which need not be accessible to the proxy interface. The
+     * proxy method is not a batch method then and may declare any supertype of the target class (such as
+     * {@link Object}) as it's first parameter type, any supertypes of the target method's parameter types as
+     * the remaining parameter types and any supertype of the target method's return type as it's return type.
+     * The receiver and arguments are cast to the target method's types when the proxy method is called (and the
+     * result to the proxy method's return type), which JIT folds for the types it has profiled.
+     * The annotation can't be combined with @{@link TargetClasses}.
+     * </li>
+     * <li>If the proxy method is annotated with @{@link Memoize} annotation, it must not be void. When called, the
+     * proxy method returns the result cached for the receiver and arguments if there is one and invokes the target
+     * method and caches it's result otherwise. The cache of each such method is shared by all callers and can
+     * be obtained via {@link FriendlyMetrics#memoizingCache}.
+     * </li>
      * </ul>
+     * Instead of an interface, an abstract class with a non-private no-arg constructor can be given. The proxy
+     * object is then an instance of a generated final subclass (constructed by the no-arg constructor) that
+     * implements the abstract methods of the class (declared or inherited and not implemented) as proxy methods by
+     * the same rules. Calls to such proxy methods are dispatched through the vtable, which is cheaper than the itable
+     * lookup of interface calls at call sites that see multiple proxy classes. The caller must have access to the
+     * no-arg constructor: either by the @{@link Friend} annotation on the constructor specifying the caller class
+     * in it's list or by the normal Java access rules for invoking it from a subclass (a public or protected
+     * constructor of a class accessible to the caller or a package-private constructor of a class in the caller's
+     * package).<p>
      * It follows from the above rules, that proxy objects created by this method can only be used to invoke target
      * instance methods. This restriction can be lifted in future versions of the rules (for example, to invoke
      * target static methods, a kind of {@code @StaticTarget(TargetClass.class)} annotation on proxy methods could
      * be used).<p>
      * Access checks are performed when calling this method to obtain the proxy instance. Each target method is checked
      * the same way as when requesting a single method handle via {@link #method} for example. The reference to the
-     * returned proxy object should be treated as a valuable asset and not passed to other code lightly.
+     * returned proxy object should be treated as a valuable asset and not passed to other code lightly.<p>
+     * Proxy classes are not registered in the interface's class loader. A proxy class (together with the
+     * method handles it invokes) can be unloaded as soon as it's singleton instance is no longer reachable, even
+     * when the interface stays loaded. A subsequent call to this method then generates a new proxy class, so callers
+     * should keep the proxy object for as long as they use it (in a static final field for example).
+     * {@link FriendlyMetrics} reports the number and the metaspace footprint of generated classes.
      *
-     * @param intf the proxy interface that is to be implemented by proxy class
+     * @param intf the proxy interface (or abstract class) that is to be implemented by proxy class
      * @param <I>  the type of proxy interface
      * @return the singleton object of a generated class implementing specified proxy interface
      * @throws IllegalArgumentException if any of the rules described above are broken
+     * @throws FriendlyAccessException  if access to any target method deduced from the proxy methods (or to the
+     *                                  no-arg constructor of the abstract class) is not granted to the caller
+     *                                  requesting the proxy instance
+     */
+    public static <I> I proxy(Class<I> intf) throws IllegalArgumentException, FriendlyAccessException {
+        return proxy(intf, Reflection.getCallerClass(2), false);
+    }
+
+    /**
+     * A friendly proxy factory method that optionally prewarms the returned proxy. Equivalent to
+     * {@link #proxy(Class)} followed (when {@code prewarm} is true) by {@link #prewarm prewarming} the method handles
+     * invoked by the proxy methods, so that the first calls of the proxy methods don't pay for linking them.
+     * The method handles are prewarmed only once per proxy interface, when the first proxy is requested with
+     * {@code prewarm} set to true.
+     *
+     * @param intf    the proxy interface (or abstract class) that is to be implemented by proxy class
+     * @param prewarm whether to prewarm the proxy before returning it
+     * @param <I>     the type of proxy interface
+     * @return the singleton object of a generated class implementing specified proxy interface
+     * @throws IllegalArgumentException if any of the rules described in {@link #proxy(Class)} are broken
      * @throws FriendlyAccessException  if access to any target method deduced from the proxy methods is not
      *                                  granted to the caller requesting the proxy instance
      */
-    public static <I> I proxy(Class<I> intf) throws IllegalArgumentException, FriendlyAccessException {
-        Class<?> cc = Reflection.getCallerClass(2);
-        @SuppressWarnings("unchecked")
-        FriendlyProxyFactory<? extends I> proxyFactory = (FriendlyProxyFactory<? extends I>) PROXY_FACTORY_CV.get(intf);
+    public static <I> I proxy(Class<I> intf, boolean prewarm) throws IllegalArgumentException, FriendlyAccessException {
+        return proxy(intf, Reflection.getCallerClass(2), prewarm);
+    }
 
-        // obtain proxy class - possibly uninitialized yet
-        Class<? extends I> proxyClass = proxyFactory.getProxyClass();
+    private static <I> I proxy(Class<I> intf, Class<?> cc, boolean prewarm)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
+        try {
+            @SuppressWarnings("unchecked")
+            FriendlyProxyFactory<? extends I> proxyFactory = (FriendlyProxyFactory<? extends I>) PROXY_FACTORY_CV.get(intf);
 
-        // validate access to target methods
-        for (Method m : proxyFactory.getTargetMethods()) {
-            if (!checkAccess(m, cc))
-                throw new FriendlyAccessException("Class: " + cc.getName() + " has no access to method: " + m);
-        }
+            // validate access to target methods
+            for (Method m : proxyFactory.getTargetMethods()) {
+                if (!checkAccess(m, cc))
+                    throw new FriendlyAccessException("Class: " + cc.getName() + " has no access to method: " + m);
+            }
 
-        // establish thread-local context for eventual proxy class initialization
-        PROXY_CLASS_BEING_INITIALIZED.set(proxyClass);
-        // obtain sole proxy instance
-        // this will force class initialization if not yet initialized
-        try {
+            // validate access to the no-arg constructor invoked by the proxy class of an abstract class
+            if (!intf.isInterface()) {
+                Constructor<?> constructor = AccessController.doPrivileged(new GetDeclaredConstructorAction(intf));
+                if (!isConstructible(constructor, cc))
+                    throw new FriendlyAccessException(
+                        "Class: " + cc.getName() + " has no access to constructor: " + constructor
+                    );
+            }
+
+            if (prewarm)
+                proxyFactory.prewarm();
+
+            // obtain the proxy instance of the (possibly newly generated) proxy class
             @SuppressWarnings({"unchecked", "UnnecessaryLocalVariable"})
-            I proxy = (I) PROXY_INSTANCE_CV.get(proxyClass);
+            I proxy = (I) PROXY_INSTANCE_CV.get(proxyFactory.getProxyClass());
             return proxy;
         }
         finally {
-            // clear thread-local context
-            PROXY_CLASS_BEING_INITIALIZED.remove();
+            FriendlyEvents.INSTANCE.endLookup(event, "proxy", cc, intf, null);
         }
     }
 
-    // public MethodHandle lookup methods that can only be accessed from friendly proxies' static initializer(s)
-
     /**
-     * This method is public only as an implementation detail. Normal usage will always throw
-     * {@link FriendlyAccessException}.<p>
-     * A front-end for {@link MethodHandles.Lookup#findVirtual} method that adapts the {@code methodTypeDescriptor}
-     * parameter from string representation to a {@link MethodType} before passing it to the lookup method.
-     * The transformation uses the caller's class loader to perform the lookup of the types specified in the
-     * string {@code methodTypeDescriptor}. This method allows access to arbitrary methods but only if invoked
-     * from the static initializer of a proxy class generated by the {@link #proxy} method.
+     * A friendly bound proxy factory method. Returns a new proxy object implementing given interface and bound to
+     * given {@code target} object. Method calls on the returned object are forwarded to target methods deduced
+     * from proxy interface methods using the same rules as described in {@link #proxy} with the exception that
+     * proxy interface methods omit the target parameter. Target methods are looked-up in the runtime class of the
+     * {@code target} object and it's superclasses - the nearest superclass declaring a method with matching
+     * name and parameter types is taken as the target method's declaring class. When called, the {@code target}
+     * object is used as a receiver of the forwarded call.<p>
+     * Bound proxy classes are generated once per combination of the proxy interface and the runtime class of
+     * the {@code target} object and can be unloaded (like {@link #proxy} classes) when none of their instances is
+     * reachable any more. Their instances hold the {@code target} object in a single private final field,
+     * so the footprint of each instance is one object header plus one reference.<p>
+     * Access checks are performed when calling this method to obtain the proxy instance. Each target method must be
+     * annotated with the @{@link Friend} annotation specifying the caller class in it's list - unlike with
+     * {@link #method}, normal Java access rules don't grant access to a target method, so even a public method
+     * without @{@link Friend} is rejected. The outcome of access checks is cached per caller class, so repeated calls
+     * from the same caller class are cheap.
      *
-     * @param refc                 the class or interface from which the method is accessed
-     * @param name                 the name of the method
-     * @param methodTypeDescriptor the type of the method, with the receiver argument omitted, expressed as a descriptor
-     *                             as defined by the {@link MethodType#toMethodDescriptorString()}
-     * @return the desired method handle
-     * @throws IllegalArgumentException (wrapping {@link NoSuchMethodException}) if the method does not exist
-     * @throws FriendlyAccessException  if not called from static initializer of a proxy class or
-     *                                  (wrapping {@link IllegalAccessException}) if the method is static or
-     *                                  if the method's variable arity modifier bit is set and asVarargsCollector fails
-     */
-    public static MethodHandle findVirtual(Class<?> refc, String name, String methodTypeDescriptor)
-        throws IllegalArgumentException, FriendlyAccessException {
+     * @param intf   the proxy interface that is to be implemented by bound proxy class
+     * @param target the object to bind the proxy to
+     * @param <I>    the type of proxy interface
+     * @return new instance of a generated class implementing specified proxy interface bound to given target
+     * @throws NullPointerException     if {@code target} is null
+     * @throws IllegalArgumentException if any of the rules described above are broken
+     * @throws FriendlyAccessException  if access to any target method deduced from the proxy methods is not
+     *                                  granted to the caller requesting the proxy instance
+     */
+    public static <I> I boundProxy(Class<I> intf, Object target)
+        throws NullPointerException, IllegalArgumentException, FriendlyAccessException {
         Class<?> cc = Reflection.getCallerClass(2);
-        checkProxyClassBeingInitialized(cc);
-        ClassLoader ccl = cc.getClassLoader();
+        Object event = FriendlyEvents.INSTANCE.beginLookup();
         try {
-            MethodType methodType = MethodType.fromMethodDescriptorString(methodTypeDescriptor, ccl);
-            return lookup.findVirtual(refc, name, methodType);
-        }
-        catch (NoSuchMethodException e) {
-            throw new IllegalArgumentException(e.getMessage(), e);
+            @SuppressWarnings("unchecked")
+            FriendlyBoundProxyFactory<? extends I> proxyFactory =
+                (FriendlyBoundProxyFactory<? extends I>) BOUND_PROXY_FACTORY_CV.get(intf).get(target.getClass());
+
+            // validate access to target methods
+            if (!proxyFactory.isAccessGranted(cc)) {
+                for (Method m : proxyFactory.getTargetMethods()) {
+                    if (!checkAccess(m, cc))
+                        throw new FriendlyAccessException("Class: " + cc.getName() + " has no access to method: " + m);
+                }
+            }
+
+            return proxyFactory.newInstance(target);
         }
-        catch (IllegalAccessException e) {
-            throw new FriendlyAccessException(e);
+        finally {
+            FriendlyEvents.INSTANCE.endLookup(event, "boundProxy", cc, intf, null);
         }
     }
 
-    private static void checkProxyClassBeingInitialized(Class<?> cc) throws FriendlyAccessException {
-        if (cc != PROXY_CLASS_BEING_INITIALIZED.get())
-            throw new FriendlyAccessException("Not called from friendly proxy class initializer");
+    /**
+     * Returns the {@link Executor} that asynchronous proxy methods (see {@link #proxy} and {@link #boundProxy})
+     * submit target method invocations to. Unless set by {@link #setAsyncExecutor}, the executor is chosen by this
+     * method or the first asynchronous invocation: an instance of the public {@link Executor} class with a public
+     * no-arg constructor named by the "si.pele.friendly.AsyncInvoker.executor" system property or, when the property
+     * is not set, the default executor which starts a new virtual thread for each invocation on JDKs that support
+     * virtual threads and uses a cached pool of daemon threads otherwise. Once chosen, the executor can't be changed.
+     * Calling {@link #prewarmAsync} does not choose the executor.
+     *
+     * @return the executor of asynchronous proxy methods
+     * @throws IllegalStateException if the class named by the system property can't be instantiated
+     */
+    public static Executor getAsyncExecutor() throws IllegalStateException {
+        return AsyncInvoker.getExecutor();
+    }
+
+    /**
+     * Sets the {@link Executor} that asynchronous proxy methods submit target method invocations to. The executor is
+     * a global setting of the JVM, so it can only be set once and only before it is chosen by the first call to
+     * {@link #getAsyncExecutor} or the first asynchronous invocation (typically at application startup), but it can
+     * still be set after calling {@link #prewarmAsync}. As an alternative, the executor class can be named by the
+     * "si.pele.friendly.AsyncInvoker.executor" system property. If the executor rejects an invocation, the returned
+     * future is completed exceptionally with the {@link java.util.concurrent.RejectedExecutionException}.
+     *
+     * @param executor the executor of asynchronous proxy methods
+     * @throws NullPointerException  if given executor is null
+     * @throws IllegalStateException if the executor has already been set or chosen
+     */
+    public static void setAsyncExecutor(Executor executor) throws NullPointerException, IllegalStateException {
+        AsyncInvoker.setExecutor(executor);
+    }
+
+    /**
+     * Returns the name of the strategy that method handles returned from {@link #getter}, {@link #setter},
+     * {@link #method}, {@link #constructor}, {@link #path}, {@link #pathSetter} and target methods of
+     * {@link #proxy proxies} use to reach members. It is chosen by the "si.pele.friendly.FriendlyAccessBackend.name"
+     * system property (read once, when this class is initialized) which can be set to one of:
+     * <ul>
+     * <li>"lookup" (the default) - direct method handles</li>
+     * <li>"varhandle" - fields are accessed through {@code VarHandle}s (JDK 9+)</li>
+     * <li>"unsafe" - fields are accessed with {@code sun.misc.Unsafe} at raw field offsets</li>
+     * <li>"bytecode" - fields, methods and constructors are accessed by generated accessor classes</li>
+     * </ul>
+     * Which one is the fastest depends on the JVM, it's JIT and the access pattern, so the choice is left to
+     * the deployment. Backends only differ in how members are reached - access checks, the types of returned method
+     * handles and their semantics are the same. A backend that the running JVM does not support falls back to
+     * "lookup" while an unknown name is an error.
+     *
+     * @return the name of the active access backend
+     */
+    public static String getAccessBackend() {
+        return FriendlyAccessBackend.INSTANCE.name();
+    }
+
+    /**
+     * Prewarms given method handles, so that their first invocations don't pay for the lazy preparation that
+     * the JDK performs on first use. The LambdaForms of the handles (and of the handles they delegate to) are
+     * compiled to bytecode, the linker of an {@code invokeExact} call site of each handle's type is spun and each
+     * handle is customized as if it had been invoked many times. Prewarming relies on JDK internals and is
+     * a best-effort optimization: the parts that the running JDK does not support are silently skipped.
+     * Handles obtained from any source (not just this class) can be prewarmed and prewarming a handle more than
+     * once is harmless.
+     *
+     * @param handles the method handles to prewarm
+     * @see #prewarmAsync
+     */
+    public static void prewarm(MethodHandle... handles) {
+        FriendlyPrewarmer.prewarm(handles.clone());
+    }
+
+    /**
+     * Prewarms given method handles like {@link #prewarm} does, but on the {@link #getAsyncExecutor() async
+     * executor}, so that the caller (a thread initializing an application for example) can proceed meanwhile.
+     * If the async executor has not been chosen yet, the default executor is used without choosing it, so that
+     * the async executor can still be {@link #setAsyncExecutor set} afterwards.
+     *
+     * @param handles the method handles to prewarm
+     * @return a future that is completed when the handles are prewarmed
+     */
+    public static CompletableFuture<Void> prewarmAsync(MethodHandle... handles) {
+        final MethodHandle[] handlesCopy = handles.clone();
+        return CompletableFuture.runAsync(
+            new Runnable() {
+                @Override
+                public void run() {
+                    FriendlyPrewarmer.prewarm(handlesCopy);
+                }
+            },
+            AsyncInvoker.peekExecutor()
+        );
+    }
+
+    /**
+     * @return the cached proxy factory for given interface
+     */
+    static FriendlyProxyFactory<?> proxyFactory(Class<?> intf) {
+        return PROXY_FACTORY_CV.get(intf);
     }
 
     private static final ClassValue<FriendlyProxyFactory<?>> PROXY_FACTORY_CV = new ClassValue<FriendlyProxyFactory<?>>() {
@@ -285,22 +906,385 @@ public class Friendly {
         }
     };
 
-    private static final ClassValue<?> PROXY_INSTANCE_CV = new ProxyInstanceClassValue();
+    private static final ClassValue<ClassValue<FriendlyBoundProxyFactory<?>>> BOUND_PROXY_FACTORY_CV =
+        new ClassValue<ClassValue<FriendlyBoundProxyFactory<?>>>() {
+            @Override
+            protected ClassValue<FriendlyBoundProxyFactory<?>> computeValue(final Class<?> intf) {
+                return new ClassValue<FriendlyBoundProxyFactory<?>>() {
+                    @Override
+                    protected FriendlyBoundProxyFactory<?> computeValue(Class<?> receiverClass) {
+                        return new FriendlyBoundProxyFactory<>(intf, receiverClass);
+                    }
+                };
+            }
+        };
+
+    private static final ClassValue<ClassValue<Instantiator<?>>> INSTANTIATOR_CV =
+        new ClassValue<ClassValue<Instantiator<?>>>() {
+            @Override
+            protected ClassValue<Instantiator<?>> computeValue(final Class<?> clazz) {
+                return new ClassValue<Instantiator<?>>() {
+                    @Override
+                    protected Instantiator<?> computeValue(final Class<?> callerClass) {
+                        Field[] fields = FriendlyInstantiatorFactory.instanceFields(
+                            clazz,
+                            new FriendlyInstantiatorFactory.FieldFilter() {
+                                @Override
+                                public boolean accept(Field field) {
+                                    return isFriend(field.getDeclaringClass(), callerClass) ||
+                                           isFriend(field, callerClass);
+                                }
+                            }
+                        );
+                        return FriendlyInstantiatorFactory.newInstantiator(clazz, fields);
+                    }
+                };
+            }
+        };
+
+    private static final ClassValue<ClassValue<Differ<?>>> DIFFER_CV =
+        new ClassValue<ClassValue<Differ<?>>>() {
+            @Override
+            protected ClassValue<Differ<?>> computeValue(final Class<?> clazz) {
+                return new ClassValue<Differ<?>>() {
+                    @Override
+                    protected Differ<?> computeValue(final Class<?> callerClass) {
+                        Field[] fields = FriendlyInstantiatorFactory.instanceFields(
+                            clazz,
+                            new FriendlyInstantiatorFactory.FieldFilter() {
+                                @Override
+                                public boolean accept(Field field) {
+                                    return isFriend(field.getDeclaringClass(), callerClass) ||
+                                           isReadable(field, callerClass);
+                                }
+                            }
+                        );
+                        return FriendlyDifferFactory.newDiffer(clazz, fields);
+                    }
+                };
+            }
+        };
+
+    private static final ClassValue<ClassValue<Walker.Visitor>> WALKER_VISITOR_CV =
+        new ClassValue<ClassValue<Walker.Visitor>>() {
+            @Override
+            protected ClassValue<Walker.Visitor> computeValue(final Class<?> clazz) {
+                return new ClassValue<Walker.Visitor>() {
+                    @Override
+                    protected Walker.Visitor computeValue(final Class<?> callerClass) {
+                        Field[] fields = FriendlyInstantiatorFactory.instanceFields(
+                            clazz,
+                            new FriendlyInstantiatorFactory.FieldFilter() {
+                                @Override
+                                public boolean accept(Field field) {
+                                    return isFriend(field.getDeclaringClass(), callerClass) ||
+                                           isReadable(field, callerClass);
+                                }
+                            }
+                        );
+                        return FriendlyWalkerFactory.newVisitor(clazz, fields);
+                    }
+                };
+            }
+        };
+
+    private static final ClassValue<ClassValue<PropertyTable<?>>> PROPERTIES_CV =
+        new ClassValue<ClassValue<PropertyTable<?>>>() {
+            @Override
+            protected ClassValue<PropertyTable<?>> computeValue(final Class<?> clazz) {
+                return new ClassValue<PropertyTable<?>>() {
+                    @Override
+                    protected PropertyTable<?> computeValue(final Class<?> callerClass) {
+                        Field[] fields = FriendlyInstantiatorFactory.instanceFields(
+                            clazz,
+                            new FriendlyInstantiatorFactory.FieldFilter() {
+                                @Override
+                                public boolean accept(Field field) {
+                                    return isFriend(field.getDeclaringClass(), callerClass) ||
+                                           isReadable(field, callerClass);
+                                }
+                            }
+                        );
+                        fields = FriendlyPropertyTableFactory.visibleFields(fields);
+                        boolean[] writable = new boolean[fields.length];
+                        for (int i = 0; i < fields.length; i++) {
+                            writable[i] = !Modifier.isFinal(fields[i].getModifiers()) &&
+                                          isWritable(fields[i], callerClass);
+                        }
+                        return FriendlyPropertyTableFactory.newPropertyTable(clazz, fields, writable);
+                    }
+                };
+            }
+        };
 
-    private static class ProxyInstanceClassValue extends ClassValue<Object> {
+    private static final ClassValue<ConcurrentMap<String, Comparator<?>>> COMPARATORS_CV =
+        new ClassValue<ConcurrentMap<String, Comparator<?>>>() {
+            @Override
+            protected ConcurrentMap<String, Comparator<?>> computeValue(Class<?> declaringClass) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private static final ClassValue<ConcurrentMap<String, ToIntFunction<?>>> HASHERS_CV =
+        new ClassValue<ConcurrentMap<String, ToIntFunction<?>>>() {
+            @Override
+            protected ConcurrentMap<String, ToIntFunction<?>> computeValue(Class<?> declaringClass) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private static final ClassValue<ConcurrentMap<String, FieldExtractor<?>>> EXTRACTORS_CV =
+        new ClassValue<ConcurrentMap<String, FieldExtractor<?>>>() {
+            @Override
+            protected ConcurrentMap<String, FieldExtractor<?>> computeValue(Class<?> declaringClass) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private static final ClassValue<ClassValue<ClassValue<Object>>> DISPATCHER_CV =
+        new ClassValue<ClassValue<ClassValue<Object>>>() {
+            @Override
+            protected ClassValue<ClassValue<Object>> computeValue(final Class<?> clazz) {
+                return new ClassValue<ClassValue<Object>>() {
+                    @Override
+                    protected ClassValue<Object> computeValue(final Class<?> dispatcherInterface) {
+                        final Method dispatchMethod =
+                            FriendlyDispatcherFactory.dispatchMethod(clazz, dispatcherInterface);
+                        return new ClassValue<Object>() {
+                            @Override
+                            protected Object computeValue(Class<?> callerClass) {
+                                Method[] methods = AccessController.doPrivileged(new GetDeclaredMethodsAction(clazz));
+                                List<Method> handlerMethods = new ArrayList<>();
+                                for (Method method : methods) {
+                                    if (FriendlyDispatcherFactory.isHandler(method, dispatchMethod) &&
+                                        isInvokable(method, callerClass))
+                                        handlerMethods.add(method);
+                                }
+                                return FriendlyDispatcherFactory.newDispatcher(
+                                    clazz, dispatchMethod, handlerMethods.toArray(new Method[handlerMethods.size()])
+                                );
+                            }
+                        };
+                    }
+                };
+            }
+        };
+
+    // the proxy instance is cached by the proxy class itself, so that it doesn't keep the class reachable
+    private static final ClassValue<Object> PROXY_INSTANCE_CV = new ClassValue<Object>() {
         @Override
         protected Object computeValue(Class<?> proxyClass) {
-            MethodHandle mh = getter(proxyClass, FriendlyProxyFactory.PROXY_INSTANCE_FIELD_NAME);
+            return FriendlyClassSpinner.newInstance(proxyClass);
+        }
+    };
+
+    // path accessors
+
+    private static MethodHandle pathGetter(Class<?> cc, Class<?> rootClass, String path, boolean nullSafe)
+        throws IllegalArgumentException, FriendlyAccessException {
+        MethodHandle[] getters = pathGetters(cc, rootClass, path, false);
+        return composeGetters(getters, getters.length, nullSafe);
+    }
+
+    private static MethodHandle pathSetter(Class<?> cc, Class<?> rootClass, String path, boolean nullSafe)
+        throws IllegalArgumentException, FriendlyAccessException {
+        MethodHandle[] handles = pathGetters(cc, rootClass, path, true);
+        int n = handles.length;
+        // the last handle is a setter of type (P, V)void
+        MethodHandle setter = handles[n - 1];
+        if (n == 1)
+            return setter;
+        if (nullSafe) {
+            setter = MethodHandles.guardWithTest(
+                isNull(setter.type().parameterType(0)),
+                MethodHandles.dropArguments(NOOP, 0, setter.type().parameterList()),
+                setter
+            );
+        }
+        return MethodHandles.filterArguments(setter, 0, composeGetters(handles, n - 1, nullSafe));
+    }
+
+    /**
+     * Resolves the fields along the {@code path} and returns an array of their getters
+     * (with the last one being a setter if {@code lastSetter} is true).
+     */
+    private static MethodHandle[] pathGetters(Class<?> cc, Class<?> rootClass, String path, boolean lastSetter)
+        throws IllegalArgumentException, FriendlyAccessException {
+        String[] fieldNames = path.split("\\.", -1);
+        MethodHandle[] handles = new MethodHandle[fieldNames.length];
+        Class<?> c = rootClass;
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (c.isPrimitive())
+                throw new IllegalArgumentException(
+                    "Can't dereference a value of primitive type " + c + " in path: " + path
+                );
+            if (fieldNames[i].isEmpty())
+                throw new IllegalArgumentException("Empty field name in path: " + path);
+            Field field = AccessController.doPrivileged(new GetDeclaredFieldAction(c, fieldNames[i]));
+            if (Modifier.isStatic(field.getModifiers()))
+                throw new IllegalArgumentException("Static field: " + field + " in path: " + path);
+            if (lastSetter && i == fieldNames.length - 1 && Modifier.isFinal(field.getModifiers()))
+                throw new IllegalArgumentException("Final field: " + field + " at the end of path: " + path);
             try {
-                return proxyClass.cast(mh.invoke());
+                handles[i] = (lastSetter && i == fieldNames.length - 1)
+                             ? FriendlyAccessBackend.INSTANCE.setter(
+                                 field, lookup.in(cc).unreflectSetter(accessible(field, cc))
+                             )
+                             : FriendlyAccessBackend.INSTANCE.getter(
+                                 field, lookup.in(cc).unreflectGetter(accessible(field, cc))
+                             );
             }
-            catch (Throwable t) {
-                throw MHThrows.unchecked(t);
+            catch (IllegalAccessException e) {
+                throw new FriendlyAccessException(e);
             }
+            c = field.getType();
         }
+        return handles;
     }
 
-    private static final ThreadLocal<Class<?>> PROXY_CLASS_BEING_INITIALIZED = new ThreadLocal<>();
+    /**
+     * Composes first {@code count} getters into a single getter optionally short-circuiting on null intermediate
+     * values.
+     */
+    private static MethodHandle composeGetters(MethodHandle[] getters, int count, boolean nullSafe) {
+        MethodHandle mh = getters[count - 1];
+        for (int i = count - 2; i >= 0; i--) {
+            if (nullSafe) {
+                Class<?> valueType = mh.type().parameterType(0);
+                mh = MethodHandles.guardWithTest(
+                    isNull(valueType),
+                    MethodHandles.dropArguments(defaultValue(mh.type().returnType()), 0, valueType),
+                    mh
+                );
+            }
+            mh = MethodHandles.filterReturnValue(getters[i], mh);
+        }
+        return mh;
+    }
+
+    /**
+     * @return a method handle of type (type)boolean that tests it's argument for null
+     */
+    private static MethodHandle isNull(Class<?> type) {
+        return IS_NULL.asType(MethodType.methodType(boolean.class, type));
+    }
+
+    /**
+     * @return a method handle of type ()type returning the default value of given type
+     */
+    private static MethodHandle defaultValue(Class<?> type) {
+        return MethodHandles.constant(
+            type,
+            type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null
+        );
+    }
+
+    private static boolean isNull(Object obj) {
+        return obj == null;
+    }
+
+    private static void noop() {
+    }
+
+    private static final MethodHandle IS_NULL;
+    private static final MethodHandle NOOP;
+
+    static {
+        try {
+            IS_NULL = lookup.findStatic(Friendly.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+            NOOP = lookup.findStatic(Friendly.class, "noop", MethodType.methodType(void.class));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Looks up a declared field and checks that the {@code callerClass} has read access to it either
+     * via @{@link Friend} annotation or via normal Java access checking.
+     *
+     * @return the field
+     * @throws IllegalArgumentException (wrapping {@link NoSuchFieldException}) if a matching field is not found
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if caller class does not have access
+     *                                  to the field
+     */
+    static Field checkedField(Class<?> declaringClass, String fieldName, Class<?> callerClass)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Field field = AccessController.doPrivileged(new GetDeclaredFieldAction(declaringClass, fieldName));
+        try {
+            lookup.in(callerClass).unreflectGetter(accessible(field, callerClass));
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+        return field;
+    }
+
+    /**
+     * @return true if {@code callerClass} has read access to given field
+     */
+    private static boolean isReadable(Field field, Class<?> callerClass) {
+        try {
+            lookup.in(callerClass).unreflectGetter(accessible(field, callerClass));
+            return true;
+        }
+        catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if {@code callerClass} has write access to given field (by @{@link Friend} annotation on the field
+     *         or by normal Java access rules)
+     */
+    private static boolean isWritable(Field field, Class<?> callerClass) {
+        try {
+            lookup.in(callerClass).unreflectSetter(accessible(field, callerClass));
+            return true;
+        }
+        catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if {@code callerClass} has access to given method (by @{@link Friend} annotation on the method
+     *         or by normal Java access rules)
+     */
+    private static boolean isInvokable(Method method, Class<?> callerClass) {
+        try {
+            lookup.in(callerClass).unreflect(accessible(method, callerClass));
+            return true;
+        }
+        catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves the fields declared by {@code declaringClass} with given names and checks that
+     * {@code callerClass} has access to all of them.
+     */
+    private static Field[] checkedFields(Class<?> declaringClass, String[] fieldNames, Class<?> callerClass)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Field[] fields = new Field[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            fields[i] = checkedField(declaringClass, fieldNames[i], callerClass);
+        }
+        return fields;
+    }
+
+    /**
+     * @return the key identifying a list of field names in a cache
+     */
+    private static String fieldsKey(String[] fieldNames) {
+        StringBuilder sb = new StringBuilder();
+        for (String fieldName : fieldNames) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(fieldName);
+        }
+        return sb.toString();
+    }
 
     /**
      * Modifies the "accessible" flag of given {@code accessibleObject} according to permissions
@@ -328,28 +1312,46 @@ public class Friendly {
     /**
      * @return true if {@code callerClass} is allowed to access the {@code accessibleObject}
      */
-    private static boolean checkAccess(AccessibleObject accessibleObject, Class<?> callerClass) {
+    static boolean checkAccess(AccessibleObject accessibleObject, Class<?> callerClass) {
         // check for @Friend access
-        Friend friendAnn = accessibleObject.getAnnotation(Friend.class);
-        if (friendAnn != null && contains(friendAnn.value(), callerClass))
+        if (isFriend(accessibleObject, callerClass))
             return true;
 
-        // special case callers
-        if (Friendly.class == callerClass || ProxyInstanceClassValue.class == callerClass)
+        // special case caller
+        return Friendly.class == callerClass;
+    }
+
+    /**
+     * @return true if {@code callerClass} has access to given constructor invoked from a subclass (by @{@link Friend}
+     *         annotation on the constructor or by normal Java access rules)
+     */
+    private static boolean isConstructible(Constructor<?> constructor, Class<?> callerClass) {
+        if (checkAccess(constructor, callerClass))
             return true;
+        Class<?> clazz = constructor.getDeclaringClass();
+        int mod = constructor.getModifiers();
+        if (Modifier.isPrivate(mod))
+            return false;
+        boolean samePackage = isSamePackage(clazz, callerClass);
+        if (Modifier.isPublic(mod) || Modifier.isProtected(mod))
+            return samePackage || Modifier.isPublic(clazz.getModifiers());
+        return samePackage;
+    }
 
-        // special case for Proxy.defineClass0 method called from FriendlyProxyFactory
-        if (accessibleObject instanceof Method) {
-            Method m = (Method) accessibleObject;
-            return (
-                callerClass == FriendlyProxyFactory.class &&
-                m.getDeclaringClass() == Proxy.class &&
-                m.getName().equals("defineClass0")
-            );
-        }
+    private static boolean isSamePackage(Class<?> c1, Class<?> c2) {
+        if (c1.getClassLoader() != c2.getClassLoader())
+            return false;
+        String n1 = c1.getName(), n2 = c2.getName();
+        int i1 = n1.lastIndexOf('.'), i2 = n2.lastIndexOf('.');
+        return i1 == i2 && n1.regionMatches(0, n2, 0, Math.max(i1, 0));
+    }
 
-        // no access
-        return false;
+    /**
+     * @return true if given element is annotated with the @{@link Friend} annotation listing {@code callerClass}
+     */
+    private static boolean isFriend(AnnotatedElement element, Class<?> callerClass) {
+        Friend friendAnn = element.getAnnotation(Friend.class);
+        return friendAnn != null && contains(friendAnn.value(), callerClass);
     }
 
     private static <E> boolean contains(E[] array, E element) {
@@ -395,6 +1397,19 @@ public class Friendly {
         }
     }
 
+    static class GetDeclaredMethodsAction implements PrivilegedAction<Method[]> {
+        private final Class<?> clazz;
+
+        GetDeclaredMethodsAction(Class<?> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        public Method[] run() {
+            return clazz.getDeclaredMethods();
+        }
+    }
+
     static class GetDeclaredConstructorAction implements PrivilegedAction<Constructor<?>> {
         private final Class<?> clazz;
         private final Class<?>[] parameterTypes;
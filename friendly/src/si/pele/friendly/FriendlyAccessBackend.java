@@ -0,0 +1,124 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import sun.security.action.GetPropertyAction;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+
+/**
+ * A package-private strategy of reaching members behind {@link Friendly}'s {@link Friendly#getter getter},
+ * {@link Friendly#setter setter}, {@link Friendly#method method}, {@link Friendly#constructor constructor},
+ * {@link Friendly#path path} and {@link Friendly#proxy proxy} methods. Access checks are not a concern of a backend:
+ * {@link Friendly} first obtains a direct method handle for the member from the all-mighty
+ * {@link Friendly#lookup} on behalf of the caller (which performs the checks) and only then passes the member and
+ * that handle to the backend, which may return an equivalent handle of the same type (and arity) that reaches
+ * the member in a different way. This base class is the default "lookup" backend which returns the given handles.
+ * The other backends are:
+ * <ul>
+ * <li>"varhandle" - fields are accessed through {@code VarHandle}s (JDK 9+) ({@link FriendlyVarHandleBackend})</li>
+ * <li>"unsafe" - fields are accessed with {@link sun.misc.Unsafe} at raw offsets ({@link FriendlyUnsafeBackend})</li>
+ * <li>"bytecode" - fields, methods and constructors are accessed by generated accessor classes
+ * ({@link FriendlyBytecodeBackend})</li>
+ * </ul>
+ * The backend is chosen by the "si.pele.friendly.FriendlyAccessBackend.name" system property. An unknown name
+ * fails the initialization of {@link Friendly}, while a backend that the running JVM does not support falls back
+ * to the "lookup" backend. The name of the active backend is available via {@link Friendly#getAccessBackend()}.
+ */
+class FriendlyAccessBackend {
+
+    static final FriendlyAccessBackend INSTANCE = load();
+
+    private static FriendlyAccessBackend load() {
+        String name = AccessController.doPrivileged(
+            new GetPropertyAction("si.pele.friendly.FriendlyAccessBackend.name", "lookup")
+        );
+        try {
+            switch (name) {
+                case "lookup":
+                    return new FriendlyAccessBackend();
+                case "varhandle":
+                    return new FriendlyVarHandleBackend();
+                case "unsafe":
+                    return new FriendlyUnsafeBackend();
+                case "bytecode":
+                    return new FriendlyBytecodeBackend();
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown si.pele.friendly.FriendlyAccessBackend.name: " + name +
+                        " (expected one of: lookup, varhandle, unsafe, bytecode)"
+                    );
+            }
+        }
+        catch (UnsupportedOperationException e) {
+            // not supported by the running JVM - fall back to the default
+            return new FriendlyAccessBackend();
+        }
+    }
+
+    FriendlyAccessBackend() {
+    }
+
+    /**
+     * @return the name of this backend (the value of the system property that selects it)
+     */
+    String name() {
+        return "lookup";
+    }
+
+    /**
+     * @param field  the field
+     * @param getter a direct getter of the field obtained from {@link Friendly#lookup}
+     * @return a getter of the field of the same type as given getter
+     */
+    MethodHandle getter(Field field, MethodHandle getter) {
+        return getter;
+    }
+
+    /**
+     * @param field  the field
+     * @param setter a direct setter of the field obtained from {@link Friendly#lookup}
+     * @return a setter of the field of the same type as given setter
+     */
+    MethodHandle setter(Field field, MethodHandle setter) {
+        return setter;
+    }
+
+    /**
+     * @param method  the method
+     * @param invoker a direct (virtual for instance methods) method handle of the method obtained from
+     *                {@link Friendly#lookup}
+     * @return a method handle invoking the method of the same type and arity as given invoker
+     */
+    MethodHandle method(Method method, MethodHandle invoker) {
+        return invoker;
+    }
+
+    /**
+     * @param constructor the constructor
+     * @param invoker     a direct method handle of the constructor obtained from {@link Friendly#lookup}
+     * @return a method handle invoking the constructor of the same type and arity as given invoker
+     */
+    MethodHandle constructor(Constructor<?> constructor, MethodHandle invoker) {
+        return invoker;
+    }
+
+    /**
+     * @return given handle adapted to the type and variable arity of given {@code template} handle
+     */
+    static MethodHandle like(MethodHandle handle, MethodHandle template) {
+        handle = handle.asType(template.type());
+        if (template.isVarargsCollector()) {
+            Class<?>[] parameterTypes = template.type().parameterArray();
+            handle = handle.asVarargsCollector(parameterTypes[parameterTypes.length - 1]);
+        }
+        return handle;
+    }
+}
@@ -7,14 +7,18 @@ package si.pele.friendly;
 
 /**
  * An unchecked wrapper for {@link IllegalAccessException} thrown from access checks of reflective operations.
+ * Construction of each instance is reported as a si.pele.friendly.AccessDenied JFR event when JDK Flight
+ * Recorder is recording.
  */
 public class FriendlyAccessException extends RuntimeException {
     public FriendlyAccessException(IllegalAccessException iae) {
         super(iae.getMessage(), iae);
+        FriendlyEvents.INSTANCE.accessDenied(this);
     }
 
     public FriendlyAccessException(String message) {
         super(message, null);
+        FriendlyEvents.INSTANCE.accessDenied(this);
     }
 
     @Override
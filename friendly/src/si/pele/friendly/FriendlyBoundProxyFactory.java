@@ -0,0 +1,303 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.FieldVisitor;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import static si.pele.friendly.FriendlyProxyFactory.MethodHandle_Type;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+
+/**
+ * A package-private factory for friendly bound proxy classes. Each bound proxy class is generated to implement the
+ * given interface for receivers of the given runtime class and is defined as a VM-anonymous class hosted by the
+ * interface (see {@link FriendlyClassSpinner}). Instances of bound proxy class hold the receiver in a single private
+ * final instance field, so the footprint of each instance is one object header plus one reference. Interface methods
+ * omit the receiver parameter. The factory object caches the outcome of access checks per caller class and holds the
+ * generated class only weakly, so that the class (and with it the receiver class it's method handles refer to) can be
+ * unloaded when no bound proxy instance is reachable any more. A new class is generated when the previous one has
+ * been unloaded. Both are used by public API {@link Friendly#boundProxy(Class, Object)} method.
+ */
+final class FriendlyBoundProxyFactory<I> {
+
+    private final Class<I> intf;
+    private final Method[] methods;
+    private final Method[] targetMethods;
+    private final MethodHandle[] handles;
+    private volatile WeakReference<Class<?>> proxyClassRef = new WeakReference<>(null);
+    private final ClassValue<Boolean> accessGranted = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> callerClass) {
+            for (Method m : targetMethods) {
+                if (!Friendly.checkAccess(m, callerClass))
+                    return Boolean.FALSE;
+            }
+            return Boolean.TRUE;
+        }
+    };
+
+    /**
+     * Creates a factory object for bound proxy classes implementing given interface for given receiver class.
+     *
+     * @param intf          the interface to generate bound proxy class for
+     * @param receiverClass the runtime class of receivers
+     * @throws IllegalArgumentException if anything that would match proxy class methods with target methods is not
+     *                                  consistent as defined by {@link Friendly#boundProxy(Class, Object)} method.
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if any target method is static
+     */
+    FriendlyBoundProxyFactory(Class<I> intf, Class<?> receiverClass)
+        throws IllegalArgumentException, FriendlyAccessException {
+
+        if (!intf.isInterface())
+            throw new IllegalArgumentException(intf + " is not an interface.");
+
+        // take just abstract instance methods (ignore default/static JDK8 methods)
+        Method[] methods = FriendlyProxyFactory.abstractInstanceMethods(intf);
+
+        // deduce target methods from interface methods
+        targetMethods = new Method[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            Class<?>[] paramTypes = method.getParameterTypes();
+            targetMethods[i] = FriendlyProxyFactory.findTargetMethod(
+                method,
+                findDeclaringClass(receiverClass, method.getName(), paramTypes),
+                paramTypes,
+                method.getExceptionTypes()
+            );
+        }
+
+        // look up method handles for target methods with the receiver type adapted to java.lang.Object
+        handles = new MethodHandle[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            MethodHandle mh = FriendlyProxyFactory.findVirtual(targetMethods[i]);
+            handles[i] = mh.asType(mh.type().changeParameterType(0, Object.class));
+            if (AsyncInvoker.isAsync(methods[i], targetMethods[i]))
+                handles[i] = AsyncInvoker.async(handles[i]);
+        }
+
+        this.intf = intf;
+        this.methods = methods;
+    }
+
+    /**
+     * @return true if given caller class has access to all target methods
+     */
+    boolean isAccessGranted(Class<?> callerClass) {
+        return accessGranted.get(callerClass);
+    }
+
+    Method[] getTargetMethods() {
+        return targetMethods;
+    }
+
+    /**
+     * @return new bound proxy instance holding given receiver
+     */
+    @SuppressWarnings("unchecked")
+    I newInstance(Object receiver) {
+        try {
+            return (I) (Object) CONSTRUCTOR_CV.get(getProxyClass()).invokeExact(receiver);
+        }
+        catch (Throwable t) {
+            throw MHThrows.unchecked(t);
+        }
+    }
+
+    /**
+     * @return the generated bound proxy class - generating a new one if the previously generated class
+     *         has been unloaded
+     */
+    private Class<?> getProxyClass() {
+        Class<?> proxyClass = proxyClassRef.get();
+        if (proxyClass == null) {
+            synchronized (this) {
+                proxyClass = proxyClassRef.get();
+                if (proxyClass == null) {
+                    proxyClass = generateProxyClass();
+                    proxyClassRef = new WeakReference<Class<?>>(proxyClass);
+                }
+            }
+        }
+        return proxyClass;
+    }
+
+    private Class<?> generateProxyClass() {
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinBoundProxyClass(intf, methods, targetMethods, handles);
+        long t1 = System.nanoTime();
+
+        Class<?> proxyClass = FriendlyClassSpinner.defineClass(intf, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "bound proxy", intf, proxyClass, methods.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        return proxyClass;
+    }
+
+    /**
+     * The constructors of generated bound proxy classes adapted to {@code (Object)Object} type, cached by the
+     * generated classes themselves so that they don't keep the classes reachable.
+     */
+    private static final ClassValue<MethodHandle> CONSTRUCTOR_CV = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> proxyClass) {
+            try {
+                return Friendly.lookup.findConstructor(
+                    proxyClass,
+                    MethodType.methodType(void.class, Object.class)
+                ).asType(MethodType.methodType(Object.class, Object.class));
+            }
+            catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new Error(e);
+            }
+        }
+    };
+
+    /**
+     * @return the nearest superclass of {@code clazz} (including itself) that declares a method with given
+     *         name and parameter types or {@code clazz} if there's no such class
+     */
+    private static Class<?> findDeclaringClass(Class<?> clazz, final String name, final Class<?>[] paramTypes) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            final Class<?> cls = c;
+            boolean declared = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+                @Override
+                public Boolean run() {
+                    try {
+                        cls.getDeclaredMethod(name, paramTypes);
+                        return true;
+                    }
+                    catch (NoSuchMethodException e) {
+                        return false;
+                    }
+                }
+            });
+            if (declared)
+                return c;
+        }
+        return clazz;
+    }
+
+    // bound proxy class spinning
+
+    static final String RECEIVER_FIELD_NAME = "receiver";
+
+    private static final String boundProxyClassNamePrefix = "$FriendlyBoundProxy";
+    private static final Type Object_Type = Type.getType(Object.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method receiverConstructor =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void <init> (java.lang.Object)");
+
+    private static FriendlyClassSpinner.ClassFile spinBoundProxyClass(
+        Class<?> intf,
+        Method[] methods,
+        Method[] targetMethods,
+        MethodHandle[] handles
+    ) {
+
+        String intfName = intf.getName().replace('.', '/');
+        String proxyClassName = FriendlyClassSpinner.generatedClassName(intf, boundProxyClassNamePrefix);
+        Type proxyClass_Type = Type.getObjectType(proxyClassName);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+
+        // generate bound proxy class
+        {
+            cw.visit(
+                classFileVersion,
+                Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+                proxyClassName,
+                null,
+                "java/lang/Object",
+                new String[]{intfName}
+            );
+
+            // generate the sole private final instance field to hold the receiver
+            {
+                FieldVisitor fv = cw.visitField(
+                    Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL,
+                    RECEIVER_FIELD_NAME,
+                    Object_Type.getDescriptor(),
+                    null,
+                    null
+                );
+                fv.visitEnd();
+            }
+
+            // generate private constructor taking the receiver
+            {
+                GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PRIVATE, receiverConstructor, null, null, cw);
+                // invoke super (Object) constructor
+                init.loadThis();
+                init.invokeConstructor(Object_Type, FriendlyProxyFactory.noArgConstructor);
+                // assign the receiver to "receiver" field
+                init.loadThis();
+                init.loadArg(0);
+                init.putField(proxyClass_Type, RECEIVER_FIELD_NAME, Object_Type);
+                // return
+                init.returnValue();
+                // end of constructor
+                init.endMethod();
+            }
+
+            // generate proxy methods
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                jdk.internal.org.objectweb.asm.commons.Method m =
+                    jdk.internal.org.objectweb.asm.commons.Method.getMethod(method);
+                GeneratorAdapter gen = new GeneratorAdapter(
+                    Opcodes.ACC_PUBLIC,
+                    m,
+                    null,
+                    FriendlyProxyFactory.getTypes(method.getExceptionTypes()),
+                    cw
+                );
+                // push the i-th method handle constant on the stack
+                FriendlyClassSpinner.loadHandle(gen, i);
+                // push the receiver on the stack
+                gen.loadThis();
+                gen.getField(proxyClass_Type, RECEIVER_FIELD_NAME, Object_Type);
+                // push the method parameters on the stack
+                gen.loadArgs();
+                // invoke the MethodHandle.invokeExact method with (Object receiver, method parameters) signature
+                // and the return type of the proxy method
+                Method targetMethod = targetMethods[i];
+                jdk.internal.org.objectweb.asm.commons.Method invokerExactM =
+                    new jdk.internal.org.objectweb.asm.commons.Method(
+                        "invokeExact",
+                        MethodType.methodType(
+                            method.getReturnType(),
+                            targetMethod.getParameterTypes()
+                        ).insertParameterTypes(0, Object.class)
+                            .toMethodDescriptorString()
+                    );
+                gen.invokeVirtual(
+                    MethodHandle_Type,
+                    invokerExactM
+                );
+                // return the result
+                gen.returnValue();
+                // end of method
+                gen.endMethod();
+            }
+
+            cw.visitEnd();
+        }
+
+        return FriendlyClassSpinner.classFile(proxyClassName, cw, handles);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+
+/**
+ * A package-private {@link FriendlyAccessBackend} ("bytecode") that reaches members through generated accessor
+ * classes. An accessor class is generated per member, with the member's declaring class as the host class, so it
+ * has the same access as the declaring class itself. It has a single static method {@code access} of the type of
+ * the handle that the default backend would return, consisting of a plain {@code getfield}/{@code putfield}/
+ * {@code getstatic}/{@code putstatic}, {@code invokevirtual}/{@code invokeinterface}/{@code invokestatic} or
+ * {@code new}/{@code invokespecial} instruction, so the handle is a direct static method handle of ordinary
+ * bytecode that any JIT tier compiles like a normal accessor. Accessor handles are cached per member.<p>
+ * Setters of final fields, private instance methods and static interface methods can't be reached by such
+ * bytecode in a class file compatible with JDK 7 and are left to the default backend.
+ */
+final class FriendlyBytecodeBackend extends FriendlyAccessBackend {
+
+    @Override
+    String name() {
+        return "bytecode";
+    }
+
+    @Override
+    MethodHandle getter(Field field, MethodHandle getter) {
+        return like(GETTERS.accessor(field, getter.type()), getter);
+    }
+
+    @Override
+    MethodHandle setter(Field field, MethodHandle setter) {
+        if (Modifier.isFinal(field.getModifiers()))
+            return setter;
+        return like(SETTERS.accessor(field, setter.type()), setter);
+    }
+
+    @Override
+    MethodHandle method(Method method, MethodHandle invoker) {
+        int modifiers = method.getModifiers();
+        if (Modifier.isStatic(modifiers)
+            ? method.getDeclaringClass().isInterface()
+            : Modifier.isPrivate(modifiers))
+            return invoker;
+        return like(INVOKERS.accessor(method, invoker.type()), invoker);
+    }
+
+    @Override
+    MethodHandle constructor(Constructor<?> constructor, MethodHandle invoker) {
+        return like(INVOKERS.accessor(constructor, invoker.type()), invoker);
+    }
+
+    private static final AccessorCache GETTERS = new AccessorCache(false);
+    private static final AccessorCache SETTERS = new AccessorCache(true);
+    // methods and constructors
+    private static final AccessorCache INVOKERS = new AccessorCache(false);
+
+    /**
+     * Accessor handles of members cached per declaring class.
+     */
+    private static final class AccessorCache extends ClassValue<ConcurrentMap<Member, MethodHandle>> {
+        private final boolean setters;
+
+        AccessorCache(boolean setters) {
+            this.setters = setters;
+        }
+
+        @Override
+        protected ConcurrentMap<Member, MethodHandle> computeValue(Class<?> declaringClass) {
+            return new ConcurrentHashMap<>();
+        }
+
+        MethodHandle accessor(Member member, MethodType type) {
+            ConcurrentMap<Member, MethodHandle> accessors = get(member.getDeclaringClass());
+            MethodHandle accessor = accessors.get(member);
+            if (accessor == null) {
+                accessor = newAccessor(member, type, setters);
+                MethodHandle oldAccessor = accessors.putIfAbsent(member, accessor);
+                if (oldAccessor != null)
+                    accessor = oldAccessor;
+            }
+            return accessor;
+        }
+    }
+
+    /**
+     * @return a static method handle of given type of a newly generated accessor class for given member
+     */
+    private static MethodHandle newAccessor(Member member, MethodType type, boolean setter) {
+        Class<?> declaringClass = member.getDeclaringClass();
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinAccessorClass(member, type, setter);
+        long t1 = System.nanoTime();
+        Class<?> accessorClass = FriendlyClassSpinner.defineClass(declaringClass, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "accessor", declaringClass, accessorClass, 1,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        try {
+            return Friendly.lookup.findStatic(accessorClass, "access", type);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+
+    // accessor class spinning
+
+    private static final String accessorClassNamePrefix = "$FriendlyAccessor";
+
+    private static FriendlyClassSpinner.ClassFile spinAccessorClass(Member member, MethodType type, boolean setter) {
+        Class<?> declaringClass = member.getDeclaringClass();
+        String className = FriendlyClassSpinner.generatedClassName(declaringClass, accessorClassNamePrefix);
+        Type owner_Type = Type.getType(declaringClass);
+
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            "java/lang/Object",
+            null
+        );
+
+        GeneratorAdapter gen = new GeneratorAdapter(
+            Opcodes.ACC_STATIC,
+            new jdk.internal.org.objectweb.asm.commons.Method("access", type.toMethodDescriptorString()),
+            null, null, cw
+        );
+        boolean isStatic = Modifier.isStatic(member.getModifiers());
+        if (member instanceof Field) {
+            Field field = (Field) member;
+            Type field_Type = Type.getType(field.getType());
+            gen.loadArgs();
+            if (setter) {
+                if (isStatic) gen.putStatic(owner_Type, field.getName(), field_Type);
+                else gen.putField(owner_Type, field.getName(), field_Type);
+            }
+            else {
+                if (isStatic) gen.getStatic(owner_Type, field.getName(), field_Type);
+                else gen.getField(owner_Type, field.getName(), field_Type);
+            }
+        }
+        else if (member instanceof Method) {
+            jdk.internal.org.objectweb.asm.commons.Method asmMethod =
+                jdk.internal.org.objectweb.asm.commons.Method.getMethod((Method) member);
+            gen.loadArgs();
+            if (isStatic) gen.invokeStatic(owner_Type, asmMethod);
+            else if (declaringClass.isInterface()) gen.invokeInterface(owner_Type, asmMethod);
+            else gen.invokeVirtual(owner_Type, asmMethod);
+        }
+        else {
+            gen.newInstance(owner_Type);
+            gen.dup();
+            gen.loadArgs();
+            gen.invokeConstructor(
+                owner_Type, jdk.internal.org.objectweb.asm.commons.Method.getMethod((Constructor<?>) member)
+            );
+        }
+        gen.returnValue();
+        gen.endMethod();
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, new Object[0]);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+import sun.misc.Unsafe;
+import sun.security.action.GetPropertyAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.security.AccessController;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static si.pele.friendly.FriendlyProxyFactory.MethodHandle_Type;
+
+/**
+ * Package-private utilities shared by generators of classes (proxies, extractors, comparators, ...).
+ * Generated classes are defined as VM-anonymous classes via {@link Unsafe#defineAnonymousClass} with the
+ * interface or the base class they implement as the host class. Such classes are not registered in any class
+ * loader and can be unloaded as soon as they are not reachable any more, regardless of the host's class loader.
+ * Method handles invoked by generated code are not held in static fields but are patched into the constant pool
+ * of the generated class as it is defined: the code pushes them with {@code ldc} of a placeholder string constant
+ * (see {@link #loadHandle}) which the VM replaces with the method handle itself, so JIT treats them as true
+ * constants and can inline them. The generated code invokes method handles with receivers erased to {@link Object}
+ * or typed with the interface's parameter types, so that it does not need to name (possibly inaccessible) classes
+ * declaring the members.
+ */
+final class FriendlyClassSpinner {
+
+    private FriendlyClassSpinner() {
+    }
+
+    private static final AtomicLong nextUniqueNumber = new AtomicLong();
+
+    static final Unsafe UNSAFE = AccessController.doPrivileged(
+        new Friendly.GetStaticFieldAction<Unsafe>(Unsafe.class, "theUnsafe")
+    );
+
+    private static final String saveGeneratedFilesDir =
+        AccessController.doPrivileged(
+            new GetPropertyAction("si.pele.friendly.FriendlyProxyFactory.saveGeneratedFilesDir")
+        );
+
+    private static final String constantPlaceholderPrefix = "CONSTANT_PLACEHOLDER_";
+
+    static final class ClassFile {
+        final String className;
+        final byte[] classBytes;
+        final Object[] cpPatches;
+
+        ClassFile(String className, byte[] classBytes, Object[] cpPatches) {
+            this.className = className;
+            this.classBytes = classBytes;
+            this.cpPatches = cpPatches;
+        }
+    }
+
+    /**
+     * @return an unique internal name for a class generated with given host class - in the package of the host
+     *         class (VM-anonymous classes always live in the package of their host)
+     */
+    static String generatedClassName(Class<?> hostClass, String classNamePrefix) {
+        String hostName = hostClass.getName().replace('.', '/');
+        int lastSlash = hostName.lastIndexOf('/');
+        String pkgPath = lastSlash >= 0 ? hostName.substring(0, lastSlash + 1) : "";
+        return pkgPath + classNamePrefix + nextUniqueNumber.getAndIncrement();
+    }
+
+    /**
+     * @return a class writer that computes frames of generated methods without loading any classes
+     *         (generated code never merges different reference types)
+     */
+    static ClassWriter newClassWriter() {
+        return new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+    }
+
+    /**
+     * Pushes the i-th method handle constant on the stack. The constant is emitted as a placeholder string that is
+     * replaced with the i-th element of the {@code constants} passed to {@link #classFile} when the class is defined.
+     */
+    static void loadHandle(GeneratorAdapter gen, int i) {
+        gen.push(constantPlaceholderPrefix + i);
+        gen.checkCast(MethodHandle_Type);
+    }
+
+    /**
+     * Finishes given class writer and computes the constant pool patches that replace the placeholders emitted by
+     * {@link #loadHandle} with given {@code constants}.
+     */
+    static ClassFile classFile(String className, ClassWriter cw, Object[] constants) {
+        byte[] classBytes = cw.toByteArray();
+        // constant_pool_count is the u2 following the magic and version numbers
+        int cpCount = ((classBytes[8] & 0xFF) << 8) | (classBytes[9] & 0xFF);
+        Object[] cpPatches = new Object[cpCount];
+        for (int i = 0; i < constants.length; i++) {
+            // an already present constant keeps it's index, a constant that generated code
+            // doesn't reference is appended past the end of the written constant pool
+            int index = cw.newConst(constantPlaceholderPrefix + i);
+            if (index < cpCount)
+                cpPatches[index] = constants[i];
+        }
+        return new ClassFile(className, classBytes, cpPatches);
+    }
+
+    /**
+     * Defines given generated class file as a VM-anonymous class with given host class and optionally saves it into
+     * the directory specified by "si.pele.friendly.FriendlyProxyFactory.saveGeneratedFilesDir" system property.
+     */
+    static Class<?> defineClass(Class<?> hostClass, ClassFile classFile) {
+        if (saveGeneratedFilesDir != null) {
+            File dir = new File(saveGeneratedFilesDir);
+            File file = new File(dir, classFile.className + ".class");
+            try {
+                File parentDir = file.getParentFile();
+                if (!parentDir.isDirectory()) parentDir.mkdirs();
+                try (FileOutputStream fos = new FileOutputStream(file)) {
+                    fos.write(classFile.classBytes);
+                }
+            }
+            catch (IOException e) {
+                throw new Error("I/O exception saving generated file: " + file, e);
+            }
+        }
+
+        long metaspaceBefore = FriendlyMetrics.metaspaceUsed();
+        Class<?> generatedClass = UNSAFE.defineAnonymousClass(hostClass, classFile.classBytes, classFile.cpPatches);
+        FriendlyMetrics.classDefined(generatedClass, metaspaceBefore);
+        return generatedClass;
+    }
+
+    /**
+     * Invokes {@link MethodHandle#invokeExact} with given type. The method handle and the arguments must
+     * already be pushed on the stack.
+     */
+    static void invokeExact(GeneratorAdapter gen, MethodType type) {
+        gen.invokeVirtual(
+            MethodHandle_Type,
+            new jdk.internal.org.objectweb.asm.commons.Method("invokeExact", type.toMethodDescriptorString())
+        );
+    }
+
+    /**
+     * @return true if a value of primitive type {@code from} can be converted to primitive type {@code to}
+     *         by an identity or widening primitive conversion
+     */
+    static boolean isWidening(Class<?> from, Class<?> to) {
+        if (from == to)
+            return true;
+        if (from == boolean.class || to == boolean.class || to == char.class)
+            return false;
+        if (from == char.class)
+            return to == int.class || to == long.class || to == float.class || to == double.class;
+        int fromRank = WIDENING_ORDER.indexOf(Type.getType(from).getDescriptor().charAt(0));
+        int toRank = WIDENING_ORDER.indexOf(Type.getType(to).getDescriptor().charAt(0));
+        return fromRank >= 0 && toRank >= 0 && fromRank <= toRank;
+    }
+
+    private static final String WIDENING_ORDER = "BSIJFD";
+
+    /**
+     * @return a new instance of given generated class constructed by it's no-arg constructor
+     */
+    static Object newInstance(Class<?> generatedClass) {
+        try {
+            return Friendly.lookup.findConstructor(generatedClass, MethodType.methodType(void.class)).invoke();
+        }
+        catch (Throwable t) {
+            throw MHThrows.unchecked(t);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Label;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+import static si.pele.friendly.FriendlyClassSpinner.invokeExact;
+import static si.pele.friendly.FriendlyClassSpinner.loadHandle;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+import static si.pele.friendly.FriendlyProxyFactory.noArgConstructor;
+
+/**
+ * A package-private generator of {@link Comparator} and {@link ToIntFunction} implementations over instance fields.
+ * For a given list of fields it generates a class whose single method reads the fields by invoking their getter
+ * method handles (constants 0, 1, ...) and combines them in straight-line code without boxing primitive values.
+ */
+final class FriendlyComparatorFactory {
+
+    private FriendlyComparatorFactory() {
+    }
+
+    /**
+     * Generates a comparator comparing given fields lexicographically: primitive fields by the static
+     * {@code compare} method of their wrapper class, reference fields by their natural ordering with
+     * nulls ordered before non-null values.
+     *
+     * @throws IllegalArgumentException if there are no fields or any field is static or of a reference type that
+     *                                  does not implement {@link Comparable}
+     */
+    static Comparator<?> newComparator(Field[] fields) throws IllegalArgumentException {
+        for (Field field : fields) {
+            Class<?> fieldType = field.getType();
+            if (!fieldType.isPrimitive() && !Comparable.class.isAssignableFrom(fieldType))
+                throw new IllegalArgumentException("Can't compare field of non-comparable type: " + field);
+        }
+        MethodHandle[] handles = getters(fields);
+
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinComparatorClass(fields, handles);
+        long t1 = System.nanoTime();
+        Class<?> comparatorClass = FriendlyClassSpinner.defineClass(FriendlyComparatorFactory.class, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "comparator", fields[0].getDeclaringClass(), comparatorClass, handles.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        return (Comparator<?>) FriendlyClassSpinner.newInstance(comparatorClass);
+    }
+
+    /**
+     * Generates a hasher combining the hash codes of given fields in the same way as {@link Objects#hash}
+     * does for the boxed values of the fields, but without boxing.
+     *
+     * @throws IllegalArgumentException if there are no fields or any field is static
+     */
+    static ToIntFunction<?> newHasher(Field[] fields) throws IllegalArgumentException {
+        MethodHandle[] handles = getters(fields);
+
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinHasherClass(fields, handles);
+        long t1 = System.nanoTime();
+        Class<?> hasherClass = FriendlyClassSpinner.defineClass(FriendlyComparatorFactory.class, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "hasher", fields[0].getDeclaringClass(), hasherClass, handles.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        return (ToIntFunction<?>) FriendlyClassSpinner.newInstance(hasherClass);
+    }
+
+    /**
+     * @return getters of given fields of type (Object)F for primitive fields and (Object)Object for reference fields
+     */
+    private static MethodHandle[] getters(Field[] fields) throws IllegalArgumentException {
+        if (fields.length == 0)
+            throw new IllegalArgumentException("No fields");
+        MethodHandle[] handles = new MethodHandle[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if (Modifier.isStatic(fields[i].getModifiers()))
+                    throw new IllegalArgumentException("Can't access static field: " + fields[i]);
+                handles[i] = Friendly.lookup.unreflectGetter(fields[i]).asType(getterType(fields[i].getType()));
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+        return handles;
+    }
+
+    private static MethodType getterType(Class<?> fieldType) {
+        return MethodType.methodType(fieldType.isPrimitive() ? fieldType : Object.class, Object.class);
+    }
+
+    // comparator and hasher class spinning
+
+    private static final String comparatorClassNamePrefix = "$FriendlyComparator";
+    private static final String hasherClassNamePrefix = "$FriendlyHasher";
+    private static final Type Object_Type = Type.getType(Object.class);
+    private static final Type Comparable_Type = Type.getType(Comparable.class);
+    private static final Type Objects_Type = Type.getType(Objects.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method Comparator_compare =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int compare (java.lang.Object, java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method ToIntFunction_applyAsInt =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int applyAsInt (java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Comparable_compareTo =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int compareTo (java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Objects_hashCode =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int hashCode (java.lang.Object)");
+
+    private static FriendlyClassSpinner.ClassFile spinComparatorClass(Field[] fields, MethodHandle[] handles) {
+
+        String className = FriendlyClassSpinner.generatedClassName(
+            FriendlyComparatorFactory.class, comparatorClassNamePrefix
+        );
+        ClassWriter cw = newClassWriter(className, Comparator.class);
+
+        // int compare(Object a, Object b)
+        GeneratorAdapter gen = new GeneratorAdapter(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, Comparator_compare, null, null, cw
+        );
+        int c = gen.newLocal(Type.INT_TYPE);
+        for (int i = 0; i < fields.length; i++) {
+            Class<?> fieldType = fields[i].getType();
+            Label next = new Label();
+            if (fieldType.isPrimitive()) {
+                // c = W.compare(getter.invokeExact(a), getter.invokeExact(b))
+                Type field_Type = Type.getType(fieldType);
+                loadField(gen, i, handles[i], 0);
+                loadField(gen, i, handles[i], 1);
+                Class<?> wrapperType = MethodType.methodType(fieldType).wrap().returnType();
+                gen.invokeStatic(
+                    Type.getType(wrapperType),
+                    new jdk.internal.org.objectweb.asm.commons.Method(
+                        "compare", Type.getMethodDescriptor(Type.INT_TYPE, field_Type, field_Type)
+                    )
+                );
+                gen.storeLocal(c);
+            }
+            else {
+                Label xNonNull = new Label(), yNonNull = new Label();
+                int x = gen.newLocal(Object_Type), y = gen.newLocal(Object_Type);
+                loadField(gen, i, handles[i], 0);
+                gen.storeLocal(x);
+                loadField(gen, i, handles[i], 1);
+                gen.storeLocal(y);
+                // if (x == y) continue with next field
+                gen.loadLocal(x);
+                gen.loadLocal(y);
+                gen.ifCmp(Object_Type, GeneratorAdapter.EQ, next);
+                // nulls first
+                gen.loadLocal(x);
+                gen.ifNonNull(xNonNull);
+                gen.push(-1);
+                gen.returnValue();
+                gen.mark(xNonNull);
+                gen.loadLocal(y);
+                gen.ifNonNull(yNonNull);
+                gen.push(1);
+                gen.returnValue();
+                gen.mark(yNonNull);
+                // c = ((Comparable) x).compareTo(y)
+                gen.loadLocal(x);
+                gen.checkCast(Comparable_Type);
+                gen.loadLocal(y);
+                gen.invokeInterface(Comparable_Type, Comparable_compareTo);
+                gen.storeLocal(c);
+            }
+            // if (c != 0) return c
+            gen.loadLocal(c);
+            gen.ifZCmp(GeneratorAdapter.EQ, next);
+            gen.loadLocal(c);
+            gen.returnValue();
+            gen.mark(next);
+        }
+        gen.push(0);
+        gen.returnValue();
+        gen.endMethod();
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    private static FriendlyClassSpinner.ClassFile spinHasherClass(Field[] fields, MethodHandle[] handles) {
+
+        String className = FriendlyClassSpinner.generatedClassName(
+            FriendlyComparatorFactory.class, hasherClassNamePrefix
+        );
+        ClassWriter cw = newClassWriter(className, ToIntFunction.class);
+
+        // int applyAsInt(Object o)
+        GeneratorAdapter gen = new GeneratorAdapter(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, ToIntFunction_applyAsInt, null, null, cw
+        );
+        gen.push(1);
+        for (int i = 0; i < fields.length; i++) {
+            Class<?> fieldType = fields[i].getType();
+            // h = 31 * h + W.hashCode(getter.invokeExact(o))
+            gen.push(31);
+            gen.math(GeneratorAdapter.MUL, Type.INT_TYPE);
+            loadField(gen, i, handles[i], 0);
+            if (fieldType.isPrimitive()) {
+                Class<?> wrapperType = MethodType.methodType(fieldType).wrap().returnType();
+                gen.invokeStatic(
+                    Type.getType(wrapperType),
+                    new jdk.internal.org.objectweb.asm.commons.Method(
+                        "hashCode", Type.getMethodDescriptor(Type.INT_TYPE, Type.getType(fieldType))
+                    )
+                );
+            }
+            else {
+                gen.invokeStatic(Objects_Type, Objects_hashCode);
+            }
+            gen.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+        }
+        gen.returnValue();
+        gen.endMethod();
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    /**
+     * @return a class writer with visited header of a public final class implementing given interface
+     *         and a generated public no-arg constructor
+     */
+    private static ClassWriter newClassWriter(String className, Class<?> intf) {
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            Object_Type.getInternalName(),
+            new String[]{Type.getInternalName(intf)}
+        );
+
+        GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PUBLIC, noArgConstructor, null, null, cw);
+        init.loadThis();
+        init.invokeConstructor(Object_Type, noArgConstructor);
+        init.returnValue();
+        init.endMethod();
+
+        return cw;
+    }
+
+    /**
+     * Generates getter.invokeExact(arg) for the i-th field.
+     */
+    private static void loadField(GeneratorAdapter gen, int i, MethodHandle getter, int arg) {
+        loadHandle(gen, i);
+        gen.loadArg(arg);
+        invokeExact(gen, getter.type());
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Label;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import static si.pele.friendly.FriendlyClassSpinner.invokeExact;
+import static si.pele.friendly.FriendlyClassSpinner.loadHandle;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+import static si.pele.friendly.FriendlyProxyFactory.noArgConstructor;
+
+/**
+ * A package-private generator of {@link Differ} subclasses. For a given list of instance fields it lays out the
+ * primitive fields into the bits of {@code long} slots (first-fit by decreasing width) and generates a subclass
+ * that reads the fields by invoking their getter method handles (constants 0, 1, ...) in straight-line code.
+ * Capturing a slot ORs the shifted bits of it's fields together, comparing a slot XORs them with the captured slot
+ * and tests the bits of each field in the result.
+ */
+final class FriendlyDifferFactory {
+
+    private FriendlyDifferFactory() {
+    }
+
+    /**
+     * Generates a differ of given class checking given fields.
+     *
+     * @throws IllegalArgumentException if there are more than 64 fields
+     */
+    static <T> Differ<T> newDiffer(Class<T> clazz, Field[] fields) throws IllegalArgumentException {
+        if (fields.length > 64)
+            throw new IllegalArgumentException(
+                "Can't check more than 64 fields of " + clazz.getName() + ", got: " + fields.length
+            );
+
+        MethodHandle[] handles = new MethodHandle[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Class<?> fieldType = fields[i].getType();
+                handles[i] = Friendly.lookup.unreflectGetter(fields[i]).asType(
+                    MethodType.methodType(fieldType.isPrimitive() ? fieldType : Object.class, Object.class)
+                );
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+        Layout layout = new Layout(fields);
+
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinDifferClass(layout, handles);
+        long t1 = System.nanoTime();
+        Class<?> differClass = FriendlyClassSpinner.defineClass(Differ.class, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "differ", clazz, differClass, fields.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        @SuppressWarnings("unchecked")
+        Differ<T> differ = (Differ<T>) FriendlyClassSpinner.newInstance(differClass);
+        differ.init(clazz, fields, layout.slots.size(), layout.refs.size());
+        return differ;
+    }
+
+    /**
+     * The placement of a primitive field in a slot.
+     */
+    private static final class Placement {
+        final int index;  // the index of the field (and it's bit in the mask)
+        final Class<?> type;
+        final int width;  // the number of bits
+        int shift;
+
+        Placement(int index, Class<?> type) {
+            this.index = index;
+            this.type = type;
+            this.width = width(type);
+        }
+
+        long mask() {
+            return (width == 64 ? -1L : (1L << width) - 1L) << shift;
+        }
+    }
+
+    /**
+     * The layout of primitive fields into {@code long} slots and the order of reference fields.
+     */
+    private static final class Layout {
+        final List<List<Placement>> slots = new ArrayList<>();
+        final List<Integer> refs = new ArrayList<>();
+
+        Layout(Field[] fields) {
+            List<Placement> placements = new ArrayList<>();
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].getType().isPrimitive())
+                    placements.add(new Placement(i, fields[i].getType()));
+                else
+                    refs.add(i);
+            }
+            // first-fit decreasing
+            Placement[] sorted = placements.toArray(new Placement[placements.size()]);
+            Arrays.sort(sorted, new Comparator<Placement>() {
+                @Override
+                public int compare(Placement a, Placement b) {
+                    return a.width != b.width ? Integer.compare(b.width, a.width) : Integer.compare(a.index, b.index);
+                }
+            });
+            List<Integer> used = new ArrayList<>();
+            for (Placement p : sorted) {
+                int s = 0;
+                while (s < slots.size() && used.get(s) + p.width > 64)
+                    s++;
+                if (s == slots.size()) {
+                    slots.add(new ArrayList<Placement>());
+                    used.add(0);
+                }
+                p.shift = used.get(s);
+                used.set(s, p.shift + p.width);
+                slots.get(s).add(p);
+            }
+        }
+    }
+
+    private static int width(Class<?> type) {
+        if (type == boolean.class) return 1;
+        if (type == byte.class) return 8;
+        if (type == char.class || type == short.class) return 16;
+        if (type == int.class || type == float.class) return 32;
+        return 64; // long, double
+    }
+
+    // differ class spinning
+
+    private static final String differClassNamePrefix = "$FriendlyDiffer";
+    private static final Type Differ_Type = Type.getType(Differ.class);
+    private static final Type Object_Type = Type.getType(Object.class);
+    private static final Type Objects_Type = Type.getType(Objects.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method Differ_capture =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod(
+            "void capture (java.lang.Object, long[], java.lang.Object[])"
+        );
+    private static final jdk.internal.org.objectweb.asm.commons.Method Differ_compare =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod(
+            "long compare (java.lang.Object, long[], java.lang.Object[])"
+        );
+    private static final jdk.internal.org.objectweb.asm.commons.Method Objects_equals =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("boolean equals (java.lang.Object, java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Float_floatToRawIntBits =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int floatToRawIntBits (float)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Double_doubleToRawLongBits =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("long doubleToRawLongBits (double)");
+
+    private static FriendlyClassSpinner.ClassFile spinDifferClass(Layout layout, MethodHandle[] handles) {
+
+        String className = FriendlyClassSpinner.generatedClassName(Differ.class, differClassNamePrefix);
+
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            Differ_Type.getInternalName(),
+            null
+        );
+
+        // generate public no-arg constructor
+        {
+            GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PUBLIC, noArgConstructor, null, null, cw);
+            init.loadThis();
+            init.invokeConstructor(Differ_Type, noArgConstructor);
+            init.returnValue();
+            init.endMethod();
+        }
+
+        // void capture(Object object, long[] bits, Object[] refs)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(
+                Opcodes.ACC_PROTECTED | Opcodes.ACC_FINAL, Differ_capture, null, null, cw
+            );
+            for (int s = 0; s < layout.slots.size(); s++) {
+                // bits[s] = packed fields of slot s
+                gen.loadArg(1);
+                gen.push(s);
+                loadSlot(gen, layout.slots.get(s), handles);
+                gen.arrayStore(Type.LONG_TYPE);
+            }
+            for (int r = 0; r < layout.refs.size(); r++) {
+                // refs[r] = getter.invokeExact(object)
+                int i = layout.refs.get(r);
+                gen.loadArg(2);
+                gen.push(r);
+                loadField(gen, i, handles[i]);
+                gen.arrayStore(Object_Type);
+            }
+            gen.returnValue();
+            gen.endMethod();
+        }
+
+        // long compare(Object object, long[] bits, Object[] refs)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(
+                Opcodes.ACC_PROTECTED | Opcodes.ACC_FINAL, Differ_compare, null, null, cw
+            );
+            int changes = gen.newLocal(Type.LONG_TYPE);
+            int x = gen.newLocal(Type.LONG_TYPE);
+            gen.push(0L);
+            gen.storeLocal(changes);
+            for (int s = 0; s < layout.slots.size(); s++) {
+                // x = bits[s] ^ packed fields of slot s
+                gen.loadArg(1);
+                gen.push(s);
+                gen.arrayLoad(Type.LONG_TYPE);
+                loadSlot(gen, layout.slots.get(s), handles);
+                gen.math(GeneratorAdapter.XOR, Type.LONG_TYPE);
+                gen.storeLocal(x);
+                for (Placement p : layout.slots.get(s)) {
+                    // if ((x & mask) != 0) changes |= 1L << index
+                    Label unchanged = new Label();
+                    gen.loadLocal(x);
+                    gen.push(p.mask());
+                    gen.math(GeneratorAdapter.AND, Type.LONG_TYPE);
+                    gen.push(0L);
+                    gen.ifCmp(Type.LONG_TYPE, GeneratorAdapter.EQ, unchanged);
+                    setChanged(gen, changes, p.index);
+                    gen.mark(unchanged);
+                }
+            }
+            for (int r = 0; r < layout.refs.size(); r++) {
+                // if (!Objects.equals(refs[r], getter.invokeExact(object))) changes |= 1L << index
+                int i = layout.refs.get(r);
+                Label unchanged = new Label();
+                gen.loadArg(2);
+                gen.push(r);
+                gen.arrayLoad(Object_Type);
+                loadField(gen, i, handles[i]);
+                gen.invokeStatic(Objects_Type, Objects_equals);
+                gen.ifZCmp(GeneratorAdapter.NE, unchanged);
+                setChanged(gen, changes, i);
+                gen.mark(unchanged);
+            }
+            gen.loadLocal(changes);
+            gen.returnValue();
+            gen.endMethod();
+        }
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    /**
+     * Generates the {@code long} value of a slot: the OR of the shifted bits of it's fields.
+     */
+    private static void loadSlot(GeneratorAdapter gen, List<Placement> slot, MethodHandle[] handles) {
+        boolean first = true;
+        for (Placement p : slot) {
+            loadField(gen, p.index, handles[p.index]);
+            loadBits(gen, p);
+            if (p.shift > 0) {
+                gen.push(p.shift);
+                gen.math(GeneratorAdapter.SHL, Type.LONG_TYPE);
+            }
+            if (!first)
+                gen.math(GeneratorAdapter.OR, Type.LONG_TYPE);
+            first = false;
+        }
+    }
+
+    /**
+     * Converts the primitive value on the stack to a {@code long} holding it's bits in the lowest
+     * {@link Placement#width} bits and zeros in the rest.
+     */
+    private static void loadBits(GeneratorAdapter gen, Placement p) {
+        Class<?> type = p.type;
+        if (type == long.class)
+            return;
+        if (type == double.class) {
+            gen.invokeStatic(Type.getType(Double.class), Double_doubleToRawLongBits);
+            return;
+        }
+        if (type == float.class)
+            gen.invokeStatic(Type.getType(Float.class), Float_floatToRawIntBits);
+        gen.cast(Type.INT_TYPE, Type.LONG_TYPE);
+        if (type != boolean.class && type != char.class) {
+            // clear the bits of sign extension
+            gen.push(p.mask() >>> p.shift);
+            gen.math(GeneratorAdapter.AND, Type.LONG_TYPE);
+        }
+    }
+
+    /**
+     * Generates {@code changes |= 1L << index}.
+     */
+    private static void setChanged(GeneratorAdapter gen, int changes, int index) {
+        gen.loadLocal(changes);
+        gen.push(1L << index);
+        gen.math(GeneratorAdapter.OR, Type.LONG_TYPE);
+        gen.storeLocal(changes);
+    }
+
+    /**
+     * Generates getter.invokeExact(object) for the i-th field.
+     */
+    private static void loadField(GeneratorAdapter gen, int i, MethodHandle getter) {
+        loadHandle(gen, i);
+        gen.loadArg(0);
+        invokeExact(gen, getter.type());
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Label;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static si.pele.friendly.FriendlyClassSpinner.invokeExact;
+import static si.pele.friendly.FriendlyClassSpinner.loadHandle;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+import static si.pele.friendly.FriendlyProxyFactory.getTypes;
+import static si.pele.friendly.FriendlyProxyFactory.noArgConstructor;
+
+/**
+ * A package-private generator of dispatchers (see {@link Friendly#dispatcher}). For a given dispatcher interface
+ * and a list of handler methods it generates a class implementing the interface's dispatch method like javac
+ * compiles a {@code switch} on a string: a {@code lookupswitch} on the hash code of the name selects the
+ * {@link String#equals} tests of the names with that hash code and each matching name branches to a direct
+ * {@code invokeExact} of the handler's method handle (constants 0, 1, ...).
+ */
+final class FriendlyDispatcherFactory {
+
+    private FriendlyDispatcherFactory() {
+    }
+
+    /**
+     * @return the single abstract method of given dispatcher interface
+     * @throws IllegalArgumentException if the interface does not have a single abstract method taking a
+     *                                  {@link String} name and a target (assignable from given class) as the
+     *                                  first two parameters
+     */
+    static Method dispatchMethod(Class<?> clazz, Class<?> dispatcherInterface) throws IllegalArgumentException {
+        if (!dispatcherInterface.isInterface())
+            throw new IllegalArgumentException(dispatcherInterface + " is not an interface.");
+        Method[] methods = FriendlyProxyFactory.abstractInstanceMethods(dispatcherInterface);
+        if (methods.length != 1)
+            throw new IllegalArgumentException(
+                dispatcherInterface + " does not declare exactly one abstract method: " + Arrays.toString(methods)
+            );
+        Method method = methods[0];
+        Class<?>[] paramTypes = method.getParameterTypes();
+        if (paramTypes.length < 2 || paramTypes[0] != String.class || !paramTypes[1].isAssignableFrom(clazz))
+            throw new IllegalArgumentException(
+                "Invalid dispatch method: " + method + " (the first two parameters must be the name " +
+                "(String) and the target (" + clazz.getName() + "))"
+            );
+        return method;
+    }
+
+    /**
+     * @return true if given method of the target class can be a handler for given dispatch method - it is an
+     *         instance method with the same return type and parameter types (following the name and the target)
+     *         as the dispatch method, declaring no checked exceptions that the dispatch method doesn't declare
+     */
+    static boolean isHandler(Method method, Method dispatchMethod) {
+        Class<?>[] dispatchParamTypes = dispatchMethod.getParameterTypes();
+        if (Modifier.isStatic(method.getModifiers()) || method.isSynthetic() ||
+            method.getReturnType() != dispatchMethod.getReturnType() ||
+            !Arrays.equals(
+                method.getParameterTypes(), Arrays.copyOfRange(dispatchParamTypes, 2, dispatchParamTypes.length)
+            ))
+            return false;
+        next_exc_type:
+        for (Class<?> excType : method.getExceptionTypes()) {
+            if (RuntimeException.class.isAssignableFrom(excType) || Error.class.isAssignableFrom(excType))
+                continue;
+            for (Class<?> dispatchExcType : dispatchMethod.getExceptionTypes()) {
+                if (dispatchExcType.isAssignableFrom(excType))
+                    continue next_exc_type;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Generates a dispatcher implementing given dispatch method that dispatches to given handler methods by their
+     * names.
+     *
+     * @throws IllegalArgumentException if there are no handler methods
+     */
+    static Object newDispatcher(Class<?> clazz, Method dispatchMethod, Method[] handlerMethods)
+        throws IllegalArgumentException {
+        if (handlerMethods.length == 0)
+            throw new IllegalArgumentException(
+                "No handler methods declared by: " + clazz.getName() + " for dispatch method: " + dispatchMethod
+            );
+        Class<?>[] dispatchParamTypes = dispatchMethod.getParameterTypes();
+        // (T, P...)R
+        MethodType handleType = MethodType.methodType(
+            dispatchMethod.getReturnType(), Arrays.copyOfRange(dispatchParamTypes, 1, dispatchParamTypes.length)
+        );
+        MethodHandle[] handles = new MethodHandle[handlerMethods.length];
+        try {
+            for (int i = 0; i < handlerMethods.length; i++) {
+                handles[i] = Friendly.lookup.unreflect(handlerMethods[i]).asType(handleType);
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+
+        Class<?> dispatcherInterface = dispatchMethod.getDeclaringClass();
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinDispatcherClass(dispatchMethod, handlerMethods, handles);
+        long t1 = System.nanoTime();
+        Class<?> dispatcherClass = FriendlyClassSpinner.defineClass(dispatcherInterface, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "dispatcher", clazz, dispatcherClass, handles.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        return FriendlyClassSpinner.newInstance(dispatcherClass);
+    }
+
+    // dispatcher class spinning
+
+    private static final String dispatcherClassNamePrefix = "$FriendlyDispatcher";
+    private static final Type String_Type = Type.getType(String.class);
+    private static final Type IllegalArgumentException_Type = Type.getType(IllegalArgumentException.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method String_hashCode =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int hashCode ()");
+    private static final jdk.internal.org.objectweb.asm.commons.Method String_equals =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("boolean equals (java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method String_concat =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("java.lang.String concat (java.lang.String)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method IllegalArgumentException_init =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void <init> (java.lang.String)");
+
+    private static FriendlyClassSpinner.ClassFile spinDispatcherClass(
+        Method dispatchMethod,
+        Method[] handlerMethods,
+        MethodHandle[] handles
+    ) {
+        Class<?> dispatcherInterface = dispatchMethod.getDeclaringClass();
+        String className = FriendlyClassSpinner.generatedClassName(dispatcherInterface, dispatcherClassNamePrefix);
+
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            "java/lang/Object",
+            new String[]{Type.getInternalName(dispatcherInterface)}
+        );
+
+        // generate private no-arg constructor
+        {
+            GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PRIVATE, noArgConstructor, null, null, cw);
+            init.loadThis();
+            init.invokeConstructor(Type.getType(Object.class), noArgConstructor);
+            init.returnValue();
+            init.endMethod();
+        }
+
+        // the indexes of handlers grouped by the hash codes of their names (in ascending order of hash codes)
+        TreeMap<Integer, List<Integer>> buckets = new TreeMap<>();
+        for (int i = 0; i < handlerMethods.length; i++) {
+            int hash = handlerMethods[i].getName().hashCode();
+            List<Integer> bucket = buckets.get(hash);
+            if (bucket == null)
+                buckets.put(hash, bucket = new ArrayList<>(1));
+            bucket.add(i);
+        }
+        // split buckets into groups of consecutive hash codes with at most MAX_GROUP_HANDLERS handlers
+        List<TreeMap<Integer, List<Integer>>> groups = new ArrayList<>();
+        TreeMap<Integer, List<Integer>> group = new TreeMap<>();
+        int groupHandlers = 0;
+        for (Map.Entry<Integer, List<Integer>> bucket : buckets.entrySet()) {
+            if (groupHandlers > 0 && groupHandlers + bucket.getValue().size() > MAX_GROUP_HANDLERS) {
+                groups.add(group);
+                group = new TreeMap<>();
+                groupHandlers = 0;
+            }
+            group.put(bucket.getKey(), bucket.getValue());
+            groupHandlers += bucket.getValue().size();
+        }
+        groups.add(group);
+
+        Type[] dispatchParam_Types = Type.getArgumentTypes(dispatchMethod);
+        Type return_Type = Type.getReturnType(dispatchMethod);
+
+        // R dispatch(String name, T target, P... args)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(
+                Opcodes.ACC_PUBLIC,
+                jdk.internal.org.objectweb.asm.commons.Method.getMethod(dispatchMethod),
+                null,
+                getTypes(dispatchMethod.getExceptionTypes()),
+                cw
+            );
+            if (groups.size() == 1) {
+                // switch (name.hashCode())
+                gen.loadArg(0);
+                gen.invokeVirtual(String_Type, String_hashCode);
+                generateSwitch(gen, groups.get(0), handlerMethods, handles, 1, dispatchParam_Types.length);
+            }
+            else {
+                // int hash = name.hashCode(); return dispatchN(name, hash, target, args...) for the group N
+                // of the hash selected by a binary search
+                int hash = gen.newLocal(Type.INT_TYPE);
+                gen.loadArg(0);
+                gen.invokeVirtual(String_Type, String_hashCode);
+                gen.storeLocal(hash);
+                Type[] groupParam_Types = new Type[dispatchParam_Types.length + 1];
+                groupParam_Types[0] = String_Type;
+                groupParam_Types[1] = Type.INT_TYPE;
+                System.arraycopy(dispatchParam_Types, 1, groupParam_Types, 2, dispatchParam_Types.length - 1);
+                jdk.internal.org.objectweb.asm.commons.Method[] groupMethods =
+                    new jdk.internal.org.objectweb.asm.commons.Method[groups.size()];
+                for (int g = 0; g < groupMethods.length; g++) {
+                    groupMethods[g] = new jdk.internal.org.objectweb.asm.commons.Method(
+                        "dispatch" + g, return_Type, groupParam_Types
+                    );
+                }
+                generateGroupSearch(
+                    gen, Type.getObjectType(className), groups, groupMethods, dispatchParam_Types.length, hash,
+                    0, groups.size() - 1
+                );
+                gen.endMethod();
+
+                // private static R dispatchN(String name, int hash, T target, P... args)
+                for (int g = 0; g < groupMethods.length; g++) {
+                    GeneratorAdapter groupGen = new GeneratorAdapter(
+                        Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
+                        groupMethods[g],
+                        null,
+                        getTypes(dispatchMethod.getExceptionTypes()),
+                        cw
+                    );
+                    // switch (hash)
+                    groupGen.loadArg(1);
+                    generateSwitch(groupGen, groups.get(g), handlerMethods, handles, 2, groupParam_Types.length);
+                }
+            }
+        }
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    /**
+     * The maximum number of handlers dispatched by a single generated method, which keeps the size of the method's
+     * bytecode well below the limit above which HotSpot does not compile methods (8000 bytes).
+     */
+    private static final int MAX_GROUP_HANDLERS = 128;
+
+    /**
+     * Generates a binary search of the group of handlers with hash codes including the hash code in given local
+     * among the groups from {@code lo} to {@code hi} and a tail call of the group's dispatch method passing it the
+     * name, the hash code and the rest of {@code argCount} arguments of the dispatch method.
+     */
+    private static void generateGroupSearch(
+        GeneratorAdapter gen,
+        Type owner_Type,
+        List<TreeMap<Integer, List<Integer>>> groups,
+        jdk.internal.org.objectweb.asm.commons.Method[] groupMethods,
+        int argCount,
+        int hash,
+        int lo,
+        int hi
+    ) {
+        if (lo == hi) {
+            // return dispatchN(name, hash, target, args...);
+            gen.loadArg(0);
+            gen.loadLocal(hash);
+            for (int a = 1; a < argCount; a++) {
+                gen.loadArg(a);
+            }
+            gen.invokeStatic(owner_Type, groupMethods[lo]);
+            gen.returnValue();
+        }
+        else {
+            // if (hash > lastHashOfGroup(mid)) search(mid + 1, hi) else search(lo, mid)
+            int mid = (lo + hi) >>> 1;
+            Label upper = new Label();
+            gen.loadLocal(hash);
+            gen.push(groups.get(mid).lastKey());
+            gen.ifICmp(GeneratorAdapter.GT, upper);
+            generateGroupSearch(gen, owner_Type, groups, groupMethods, argCount, hash, lo, mid);
+            gen.mark(upper);
+            generateGroupSearch(gen, owner_Type, groups, groupMethods, argCount, hash, mid + 1, hi);
+        }
+    }
+
+    /**
+     * Generates a {@code lookupswitch} on the hash code of the name (already pushed on the stack) with the
+     * {@link String#equals} tests of the names with each hash code branching to the invocations of the handlers,
+     * followed by the default branch that throws {@link IllegalArgumentException}. The name is argument 0 and the
+     * target and the arguments of handlers are arguments {@code firstArg, ..., argCount - 1}.
+     */
+    private static void generateSwitch(
+        GeneratorAdapter gen,
+        TreeMap<Integer, List<Integer>> buckets,
+        Method[] handlerMethods,
+        MethodHandle[] handles,
+        int firstArg,
+        int argCount
+    ) {
+        int[] keys = new int[buckets.size()];
+        Label[] bucketLabels = new Label[buckets.size()];
+        int k = 0;
+        for (Integer hash : buckets.keySet()) {
+            keys[k] = hash;
+            bucketLabels[k++] = new Label();
+        }
+        Label dflt = new Label();
+        gen.visitLookupSwitchInsn(dflt, keys, bucketLabels);
+
+        // case hash: if (name.equals("...")) goto handler; ... goto dflt;
+        Map<Integer, Label> handlerLabels = new TreeMap<>();
+        k = 0;
+        for (List<Integer> bucket : buckets.values()) {
+            gen.mark(bucketLabels[k++]);
+            for (int i : bucket) {
+                Label handlerLabel = new Label();
+                handlerLabels.put(i, handlerLabel);
+                gen.loadArg(0);
+                gen.push(handlerMethods[i].getName());
+                gen.invokeVirtual(String_Type, String_equals);
+                gen.ifZCmp(GeneratorAdapter.NE, handlerLabel);
+            }
+            gen.goTo(dflt);
+        }
+
+        // handler: return handle.invokeExact(target, args...);
+        for (Map.Entry<Integer, Label> handler : handlerLabels.entrySet()) {
+            int i = handler.getKey();
+            gen.mark(handler.getValue());
+            loadHandle(gen, i);
+            for (int a = firstArg; a < argCount; a++) {
+                gen.loadArg(a);
+            }
+            invokeExact(gen, handles[i].type());
+            gen.returnValue();
+        }
+
+        // default: throw new IllegalArgumentException("No handler method: ".concat(name));
+        gen.mark(dflt);
+        gen.newInstance(IllegalArgumentException_Type);
+        gen.dup();
+        gen.push("No handler method: ");
+        gen.loadArg(0);
+        gen.invokeVirtual(String_Type, String_concat);
+        gen.invokeConstructor(IllegalArgumentException_Type, IllegalArgumentException_init);
+        gen.throwException();
+        gen.endMethod();
+    }
+}
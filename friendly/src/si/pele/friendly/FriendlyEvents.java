@@ -0,0 +1,90 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+/**
+ * A package-private sink for diagnostic events emitted by {@link Friendly} lookups, access denials and class
+ * generation. This base class ignores all events. When JDK Flight Recorder is available in the running JVM
+ * ({@code jdk.jfr} module or JDK 8u262+), the {@link #INSTANCE} is a {@link FriendlyJfrEvents} which emits
+ * them as JFR events. The JFR implementation is only loaded reflectively, so this class links on JVMs without
+ * JFR and each hook is a call of an empty method there. When JFR is present but not recording, each hook
+ * costs an "is enabled" check.<p>
+ * The JFR implementation can be suppressed by setting the "si.pele.friendly.FriendlyEvents.jfr" system
+ * property to "false".
+ */
+class FriendlyEvents {
+
+    static final FriendlyEvents INSTANCE = load();
+
+    private static FriendlyEvents load() {
+        if (!"false".equals(System.getProperty("si.pele.friendly.FriendlyEvents.jfr"))) {
+            try {
+                Class.forName("jdk.jfr.Event", false, FriendlyEvents.class.getClassLoader());
+                return (FriendlyEvents) Class.forName("si.pele.friendly.FriendlyJfrEvents").newInstance();
+            }
+            catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+                // no JFR - fall back to ignoring events
+            }
+        }
+        return new FriendlyEvents();
+    }
+
+    FriendlyEvents() {
+    }
+
+    /**
+     * Called at the start of a public lookup method.
+     *
+     * @return a token to pass to {@link #endLookup} or null if lookup events are not recorded (without allocating,
+     *         so that lookups on hot paths like {@link Friendly#boundProxy} stay allocation-free)
+     */
+    Object beginLookup() {
+        return null;
+    }
+
+    /**
+     * Called at the end of a public lookup method (whether it succeeded or not).
+     *
+     * @param token          the token returned from {@link #beginLookup}
+     * @param kind           the kind of the lookup (the name of the public lookup method)
+     * @param callerClass    the class calling the lookup method
+     * @param declaringClass the class declaring the member(s) or the proxy interface
+     * @param member         the name of the member, path or a description of the looked-up member(s)
+     */
+    void endLookup(Object token, String kind, Class<?> callerClass, Class<?> declaringClass, String member) {
+    }
+
+    /**
+     * Called when a {@link FriendlyAccessException} is constructed.
+     */
+    void accessDenied(FriendlyAccessException exception) {
+    }
+
+    /**
+     * Called before generating the bytecode of a class.
+     *
+     * @return a token to pass to {@link #endClassGeneration} or null if class generation events are not recorded
+     */
+    Object beginClassGeneration() {
+        return null;
+    }
+
+    /**
+     * Called after a generated class is defined.
+     *
+     * @param token          the token returned from {@link #beginClassGeneration}
+     * @param kind           the kind of generated class (proxy, bound proxy, extractor, ...)
+     * @param source         the proxy interface or the class declaring the accessed member(s)
+     * @param generatedClass the generated class
+     * @param methodCount    the number of generated methods forwarding to method handles
+     * @param asmNanos       the time spent generating the bytecode
+     * @param defineNanos    the time spent defining the class
+     * @param classFileSize  the size of the class file in bytes
+     */
+    void endClassGeneration(Object token, String kind, Class<?> source, Class<?> generatedClass,
+                            int methodCount, long asmNanos, long defineNanos, int classFileSize) {
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Label;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Iterator;
+import java.util.List;
+
+import static si.pele.friendly.FriendlyClassSpinner.invokeExact;
+import static si.pele.friendly.FriendlyClassSpinner.isWidening;
+import static si.pele.friendly.FriendlyClassSpinner.loadHandle;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+import static si.pele.friendly.FriendlyProxyFactory.noArgConstructor;
+
+/**
+ * A package-private generator of {@link FieldExtractor} subclasses. For a given primitive instance field it generates
+ * a subclass that overrides the supported range and list kernels with counted loops invoking the field's getter
+ * or setter method handle (constants 0 and 1) per element.
+ */
+final class FriendlyExtractorFactory {
+
+    private FriendlyExtractorFactory() {
+    }
+
+    /**
+     * Generates an extractor for given field.
+     *
+     * @throws IllegalArgumentException if the field is static or of non-numeric type
+     */
+    static FieldExtractor<?> newExtractor(Field field) throws IllegalArgumentException {
+        Class<?> fieldType = field.getType();
+        if (Modifier.isStatic(field.getModifiers()))
+            throw new IllegalArgumentException("Can't extract static field: " + field);
+        if (!fieldType.isPrimitive() || fieldType == boolean.class)
+            throw new IllegalArgumentException("Can't extract field of non-numeric type: " + field);
+
+        MethodHandle[] handles;
+        try {
+            MethodHandle getter = Friendly.lookup.unreflectGetter(field)
+                .asType(MethodType.methodType(fieldType, Object.class));
+            if (Modifier.isFinal(field.getModifiers())) {
+                handles = new MethodHandle[]{getter};
+            }
+            else {
+                MethodHandle setter = Friendly.lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, fieldType));
+                handles = new MethodHandle[]{getter, setter};
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinExtractorClass(fieldType, handles);
+        long t1 = System.nanoTime();
+        Class<?> extractorClass = FriendlyClassSpinner.defineClass(FieldExtractor.class, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "extractor", field.getDeclaringClass(), extractorClass, handles.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        FieldExtractor<?> extractor = (FieldExtractor<?>) FriendlyClassSpinner.newInstance(extractorClass);
+        extractor.init(field);
+        return extractor;
+    }
+
+    // extractor class spinning
+
+    private static final String extractorClassNamePrefix = "$FriendlyExtractor";
+    private static final Class<?>[] elementTypes = {int.class, long.class, double.class};
+    private static final Type FieldExtractor_Type = Type.getType(FieldExtractor.class);
+    private static final Type Object_Type = Type.getType(Object.class);
+    private static final Type List_Type = Type.getType(List.class);
+    private static final Type Iterator_Type = Type.getType(Iterator.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method FieldExtractor_checkRange =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void checkRange (int, int, int, int, int)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method List_size =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int size ()");
+    private static final jdk.internal.org.objectweb.asm.commons.Method List_iterator =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("java.util.Iterator iterator ()");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Iterator_hasNext =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("boolean hasNext ()");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Iterator_next =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("java.lang.Object next ()");
+
+    private static FriendlyClassSpinner.ClassFile spinExtractorClass(Class<?> fieldType, MethodHandle[] handles) {
+
+        String className = FriendlyClassSpinner.generatedClassName(FieldExtractor.class, extractorClassNamePrefix);
+        boolean scatter = handles.length > 1;
+        Type field_Type = Type.getType(fieldType);
+        MethodType getterType = MethodType.methodType(fieldType, Object.class);
+        MethodType setterType = MethodType.methodType(void.class, Object.class, fieldType);
+
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            FieldExtractor_Type.getInternalName(),
+            null
+        );
+
+        // generate public no-arg constructor
+        {
+            GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PUBLIC, noArgConstructor, null, null, cw);
+            init.loadThis();
+            init.invokeConstructor(FieldExtractor_Type, noArgConstructor);
+            init.returnValue();
+            init.endMethod();
+        }
+
+        for (Class<?> elementType : elementTypes) {
+            Type element_Type = Type.getType(elementType);
+            Type array_Type = Type.getType("[" + element_Type.getDescriptor());
+
+            // generate gather kernels if field type can be widened to element type
+            if (isWidening(fieldType, elementType)) {
+                // void gather(T[] src, int srcPos, E[] dst, int dstPos, int length)
+                {
+                    GeneratorAdapter gen = newMethod(
+                        cw, "gather",
+                        Type.getMethodType(
+                            Type.VOID_TYPE, Type.getType(Object[].class), Type.INT_TYPE,
+                            array_Type, Type.INT_TYPE, Type.INT_TYPE
+                        )
+                    );
+                    checkRange(gen);
+                    int i = gen.newLocal(Type.INT_TYPE);
+                    Label loop = new Label(), end = new Label();
+                    gen.push(0);
+                    gen.storeLocal(i);
+                    gen.mark(loop);
+                    gen.loadLocal(i);
+                    gen.loadArg(4);
+                    gen.ifICmp(GeneratorAdapter.GE, end);
+                    // dst[dstPos + i] = (E) getter.invokeExact(src[srcPos + i])
+                    gen.loadArg(2);
+                    loadIndex(gen, 3, i);
+                    loadHandle(gen, 0);
+                    gen.loadArg(0);
+                    loadIndex(gen, 1, i);
+                    gen.arrayLoad(Object_Type);
+                    invokeExact(gen, getterType);
+                    gen.cast(field_Type, element_Type);
+                    gen.arrayStore(element_Type);
+                    gen.iinc(i, 1);
+                    gen.goTo(loop);
+                    gen.mark(end);
+                    gen.returnValue();
+                    gen.endMethod();
+                }
+                // void gather(List<? extends T> src, E[] dst)
+                {
+                    GeneratorAdapter gen = newMethod(
+                        cw, "gather",
+                        Type.getMethodType(Type.VOID_TYPE, List_Type, array_Type)
+                    );
+                    checkListRange(gen, 0, 1);
+                    int it = gen.newLocal(Iterator_Type);
+                    int i = gen.newLocal(Type.INT_TYPE);
+                    Label loop = new Label(), end = new Label();
+                    gen.loadArg(0);
+                    gen.invokeInterface(List_Type, List_iterator);
+                    gen.storeLocal(it);
+                    gen.push(0);
+                    gen.storeLocal(i);
+                    gen.mark(loop);
+                    gen.loadLocal(it);
+                    gen.invokeInterface(Iterator_Type, Iterator_hasNext);
+                    gen.ifZCmp(GeneratorAdapter.EQ, end);
+                    // dst[i] = (E) getter.invokeExact(it.next())
+                    gen.loadArg(1);
+                    gen.loadLocal(i);
+                    loadHandle(gen, 0);
+                    gen.loadLocal(it);
+                    gen.invokeInterface(Iterator_Type, Iterator_next);
+                    invokeExact(gen, getterType);
+                    gen.cast(field_Type, element_Type);
+                    gen.arrayStore(element_Type);
+                    gen.iinc(i, 1);
+                    gen.goTo(loop);
+                    gen.mark(end);
+                    gen.returnValue();
+                    gen.endMethod();
+                }
+            }
+
+            // generate scatter kernels if field is not final and element type can be widened to field type
+            if (scatter && isWidening(elementType, fieldType)) {
+                // void scatter(E[] src, int srcPos, T[] dst, int dstPos, int length)
+                {
+                    GeneratorAdapter gen = newMethod(
+                        cw, "scatter",
+                        Type.getMethodType(
+                            Type.VOID_TYPE, array_Type, Type.INT_TYPE,
+                            Type.getType(Object[].class), Type.INT_TYPE, Type.INT_TYPE
+                        )
+                    );
+                    checkRange(gen);
+                    int i = gen.newLocal(Type.INT_TYPE);
+                    Label loop = new Label(), end = new Label();
+                    gen.push(0);
+                    gen.storeLocal(i);
+                    gen.mark(loop);
+                    gen.loadLocal(i);
+                    gen.loadArg(4);
+                    gen.ifICmp(GeneratorAdapter.GE, end);
+                    // setter.invokeExact(dst[dstPos + i], (F) src[srcPos + i])
+                    loadHandle(gen, 1);
+                    gen.loadArg(2);
+                    loadIndex(gen, 3, i);
+                    gen.arrayLoad(Object_Type);
+                    gen.loadArg(0);
+                    loadIndex(gen, 1, i);
+                    gen.arrayLoad(element_Type);
+                    gen.cast(element_Type, field_Type);
+                    invokeExact(gen, setterType);
+                    gen.iinc(i, 1);
+                    gen.goTo(loop);
+                    gen.mark(end);
+                    gen.returnValue();
+                    gen.endMethod();
+                }
+                // void scatter(E[] src, List<? extends T> dst)
+                {
+                    GeneratorAdapter gen = newMethod(
+                        cw, "scatter",
+                        Type.getMethodType(Type.VOID_TYPE, array_Type, List_Type)
+                    );
+                    checkListRange(gen, 1, 0);
+                    int it = gen.newLocal(Iterator_Type);
+                    int i = gen.newLocal(Type.INT_TYPE);
+                    Label loop = new Label(), end = new Label();
+                    gen.loadArg(1);
+                    gen.invokeInterface(List_Type, List_iterator);
+                    gen.storeLocal(it);
+                    gen.push(0);
+                    gen.storeLocal(i);
+                    gen.mark(loop);
+                    gen.loadLocal(it);
+                    gen.invokeInterface(Iterator_Type, Iterator_hasNext);
+                    gen.ifZCmp(GeneratorAdapter.EQ, end);
+                    // setter.invokeExact(it.next(), (F) src[i])
+                    loadHandle(gen, 1);
+                    gen.loadLocal(it);
+                    gen.invokeInterface(Iterator_Type, Iterator_next);
+                    gen.loadArg(0);
+                    gen.loadLocal(i);
+                    gen.arrayLoad(element_Type);
+                    gen.cast(element_Type, field_Type);
+                    invokeExact(gen, setterType);
+                    gen.iinc(i, 1);
+                    gen.goTo(loop);
+                    gen.mark(end);
+                    gen.returnValue();
+                    gen.endMethod();
+                }
+            }
+        }
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    private static GeneratorAdapter newMethod(ClassWriter cw, String name, Type methodType) {
+        return new GeneratorAdapter(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL,
+            new jdk.internal.org.objectweb.asm.commons.Method(name, methodType.getDescriptor()),
+            null,
+            null,
+            cw
+        );
+    }
+
+    /**
+     * Generates FieldExtractor.checkRange(src.length, srcPos, dst.length, dstPos, length) invocation
+     * for a range kernel with (src, srcPos, dst, dstPos, length) parameters.
+     */
+    private static void checkRange(GeneratorAdapter gen) {
+        gen.loadArg(0);
+        gen.arrayLength();
+        gen.loadArg(1);
+        gen.loadArg(2);
+        gen.arrayLength();
+        gen.loadArg(3);
+        gen.loadArg(4);
+        gen.invokeStatic(FieldExtractor_Type, FieldExtractor_checkRange);
+    }
+
+    /**
+     * Generates FieldExtractor.checkRange(...) invocation for a list kernel, checking that the array (passed as
+     * given argument) is not shorter than the list (passed as given argument), so that no element is accessed
+     * when it is.
+     */
+    private static void checkListRange(GeneratorAdapter gen, int listArg, int arrayArg) {
+        int size = gen.newLocal(Type.INT_TYPE);
+        gen.loadArg(listArg);
+        gen.invokeInterface(List_Type, List_size);
+        gen.storeLocal(size);
+        if (listArg == 0) {
+            // gather: checkRange(size, 0, dst.length, 0, size)
+            gen.loadLocal(size);
+            gen.push(0);
+            gen.loadArg(arrayArg);
+            gen.arrayLength();
+        }
+        else {
+            // scatter: checkRange(src.length, 0, size, 0, size)
+            gen.loadArg(arrayArg);
+            gen.arrayLength();
+            gen.push(0);
+            gen.loadLocal(size);
+        }
+        gen.push(0);
+        gen.loadLocal(size);
+        gen.invokeStatic(FieldExtractor_Type, FieldExtractor_checkRange);
+    }
+
+    /**
+     * Pushes the sum of the int argument {@code posArg} and the int local {@code i} on the stack.
+     */
+    private static void loadIndex(GeneratorAdapter gen, int posArg, int i) {
+        gen.loadArg(posArg);
+        gen.loadLocal(i);
+        gen.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+import sun.misc.Unsafe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import static si.pele.friendly.FriendlyClassSpinner.invokeExact;
+import static si.pele.friendly.FriendlyClassSpinner.loadHandle;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+import static si.pele.friendly.FriendlyProxyFactory.noArgConstructor;
+
+/**
+ * A package-private generator of {@link Instantiator} subclasses. For a given class and a list of it's instance
+ * fields it generates a subclass that allocates an instance with {@link Unsafe#allocateInstance} (constant 0) and
+ * populates the fields by invoking their setter method handles (constants 1, 2, ...) in straight-line code.
+ */
+final class FriendlyInstantiatorFactory {
+
+    private FriendlyInstantiatorFactory() {
+    }
+
+    /**
+     * Generates an instantiator of given class populating given fields.
+     *
+     * @throws IllegalArgumentException if the class is not a concrete class that can be allocated
+     */
+    static <T> Instantiator<T> newInstantiator(Class<T> clazz, Field[] fields) throws IllegalArgumentException {
+        int mod = clazz.getModifiers();
+        if (clazz.isPrimitive() || clazz.isArray() || clazz.isEnum() ||
+            Modifier.isAbstract(mod) || Modifier.isInterface(mod))
+            throw new IllegalArgumentException("Can't instantiate: " + clazz);
+
+        MethodHandle[] handles = new MethodHandle[fields.length + 1];
+        handles[0] = ALLOCATE_INSTANCE.bindTo(clazz);
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Class<?> fieldType = fields[i].getType();
+                handles[i + 1] = Friendly.lookup.unreflectSetter(fields[i]).asType(
+                    MethodType.methodType(void.class, Object.class, fieldType.isPrimitive() ? fieldType : Object.class)
+                );
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinInstantiatorClass(fields, handles);
+        long t1 = System.nanoTime();
+        Class<?> instantiatorClass = FriendlyClassSpinner.defineClass(Instantiator.class, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "instantiator", clazz, instantiatorClass, fields.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        @SuppressWarnings("unchecked")
+        Instantiator<T> instantiator = (Instantiator<T>) FriendlyClassSpinner.newInstance(instantiatorClass);
+        instantiator.init(clazz, fields);
+        return instantiator;
+    }
+
+    /**
+     * @return non-static fields declared by given class and it's superclasses that pass given filter - fields
+     *         declared by superclasses first
+     */
+    static Field[] instanceFields(final Class<?> clazz, FieldFilter filter) {
+        Field[][] declaredFields = AccessController.doPrivileged(new PrivilegedAction<Field[][]>() {
+            @Override
+            public Field[][] run() {
+                List<Field[]> hierarchy = new ArrayList<>();
+                for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                    hierarchy.add(0, c.getDeclaredFields());
+                }
+                return hierarchy.toArray(new Field[hierarchy.size()][]);
+            }
+        });
+        List<Field> fields = new ArrayList<>();
+        for (Field[] fs : declaredFields) {
+            for (Field f : fs) {
+                if (!Modifier.isStatic(f.getModifiers()) && filter.accept(f))
+                    fields.add(f);
+            }
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    interface FieldFilter {
+        boolean accept(Field field);
+    }
+
+    // (Class)Object handle allocating an instance of given class without running constructors
+    private static final MethodHandle ALLOCATE_INSTANCE;
+
+    static {
+        try {
+            ALLOCATE_INSTANCE = Friendly.lookup.findVirtual(
+                Unsafe.class, "allocateInstance", MethodType.methodType(Object.class, Class.class)
+            ).bindTo(FriendlyClassSpinner.UNSAFE);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+
+    // instantiator class spinning
+
+    private static final String instantiatorClassNamePrefix = "$FriendlyInstantiator";
+    private static final Type Instantiator_Type = Type.getType(Instantiator.class);
+    private static final Type Source_Type = Type.getType(Instantiator.Source.class);
+    private static final Type Object_Type = Type.getType(Object.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method newInstance_array =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod(
+            "java.lang.Object newInstance (java.lang.Object[])"
+        );
+    private static final jdk.internal.org.objectweb.asm.commons.Method newInstance_source =
+        new jdk.internal.org.objectweb.asm.commons.Method(
+            "newInstance", Type.getMethodType(Object_Type, Source_Type).getDescriptor()
+        );
+    private static final jdk.internal.org.objectweb.asm.commons.Method Instantiator_checkLength =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void checkLength (java.lang.Object[], int)");
+    private static final MethodType allocatorType = MethodType.methodType(Object.class);
+
+    private static FriendlyClassSpinner.ClassFile spinInstantiatorClass(Field[] fields, MethodHandle[] handles) {
+
+        String className = FriendlyClassSpinner.generatedClassName(Instantiator.class, instantiatorClassNamePrefix);
+
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            Instantiator_Type.getInternalName(),
+            null
+        );
+
+        // generate public no-arg constructor
+        {
+            GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PUBLIC, noArgConstructor, null, null, cw);
+            init.loadThis();
+            init.invokeConstructor(Instantiator_Type, noArgConstructor);
+            init.returnValue();
+            init.endMethod();
+        }
+
+        // Object newInstance(Object[] values)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, newInstance_array, null, null, cw
+            );
+            gen.loadArg(0);
+            gen.push(fields.length);
+            gen.invokeStatic(Instantiator_Type, Instantiator_checkLength);
+            int obj = allocate(gen);
+            for (int i = 0; i < fields.length; i++) {
+                Class<?> fieldType = fields[i].getType();
+                // setter.invokeExact(obj, (F) values[i])
+                loadHandle(gen, i + 1);
+                gen.loadLocal(obj);
+                gen.loadArg(0);
+                gen.push(i);
+                gen.arrayLoad(Object_Type);
+                if (fieldType.isPrimitive()) {
+                    // unbox strictly: the value must be an instance of the wrapper class
+                    Class<?> wrapperType = MethodType.methodType(fieldType).wrap().returnType();
+                    Type wrapper_Type = Type.getType(wrapperType);
+                    gen.checkCast(wrapper_Type);
+                    gen.invokeVirtual(
+                        wrapper_Type,
+                        new jdk.internal.org.objectweb.asm.commons.Method(
+                            fieldType.getName() + "Value", Type.getMethodDescriptor(Type.getType(fieldType))
+                        )
+                    );
+                }
+                invokeExact(gen, handles[i + 1].type());
+            }
+            gen.loadLocal(obj);
+            gen.returnValue();
+            gen.endMethod();
+        }
+
+        // Object newInstance(Instantiator.Source source)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, newInstance_source, null, null, cw
+            );
+            int obj = allocate(gen);
+            for (int i = 0; i < fields.length; i++) {
+                Class<?> fieldType = fields[i].getType();
+                // setter.invokeExact(obj, source.getX(i))
+                loadHandle(gen, i + 1);
+                gen.loadLocal(obj);
+                gen.loadArg(0);
+                gen.push(i);
+                gen.invokeInterface(Source_Type, sourceGetter(fieldType));
+                invokeExact(gen, handles[i + 1].type());
+            }
+            gen.loadLocal(obj);
+            gen.returnValue();
+            gen.endMethod();
+        }
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    /**
+     * Generates the allocation of the instance into a new local variable.
+     *
+     * @return the local variable holding the instance
+     */
+    private static int allocate(GeneratorAdapter gen) {
+        int obj = gen.newLocal(Object_Type);
+        loadHandle(gen, 0);
+        invokeExact(gen, allocatorType);
+        gen.storeLocal(obj);
+        return obj;
+    }
+
+    /**
+     * @return the {@link Instantiator.Source} method for values of given field type
+     */
+    private static jdk.internal.org.objectweb.asm.commons.Method sourceGetter(Class<?> fieldType) {
+        String typeName = fieldType.isPrimitive() ? fieldType.getName() : "object";
+        Type returnType = fieldType.isPrimitive() ? Type.getType(fieldType) : Object_Type;
+        return new jdk.internal.org.objectweb.asm.commons.Method(
+            "get" + Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1),
+            Type.getMethodDescriptor(returnType, Type.INT_TYPE)
+        );
+    }
+}
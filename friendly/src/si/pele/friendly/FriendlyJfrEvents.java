@@ -0,0 +1,169 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link FriendlyEvents} emitted as JDK Flight Recorder events. Only loaded reflectively by
+ * {@link FriendlyEvents#INSTANCE} when JFR is available. The events are:
+ * <ul>
+ * <li>si.pele.friendly.Lookup - a call of a public lookup method with it's duration, caller, member and the number
+ * of classes generated during the lookup (zero for lookups served from a cache and for lookups of method handles,
+ * which never generate classes)</li>
+ * <li>si.pele.friendly.AccessDenied - a {@link FriendlyAccessException} with the stack trace of it's construction</li>
+ * <li>si.pele.friendly.ClassGeneration - generation of a proxy or other class with bytecode generation and
+ * definition times and the class file size</li>
+ * </ul>
+ */
+final class FriendlyJfrEvents extends FriendlyEvents {
+
+    @Name("si.pele.friendly.Lookup")
+    @Label("Friendly Lookup")
+    @Category({"Friendly"})
+    @Description("Lookup of a method handle, proxy or extractor via si.pele.friendly.Friendly")
+    @StackTrace(false)
+    static final class LookupEvent extends Event {
+        @Label("Kind")
+        String kind;
+        @Label("Caller Class")
+        Class<?> callerClass;
+        @Label("Declaring Class")
+        Class<?> declaringClass;
+        @Label("Member")
+        String member;
+        @Label("Generated Classes")
+        @Description("The number of classes generated during the lookup")
+        int generatedClasses;
+        transient int generationsAtBegin;
+    }
+
+    @Name("si.pele.friendly.AccessDenied")
+    @Label("Friendly Access Denied")
+    @Category({"Friendly"})
+    @Description("A FriendlyAccessException was constructed")
+    static final class AccessDeniedEvent extends Event {
+        @Label("Message")
+        String message;
+    }
+
+    @Name("si.pele.friendly.ClassGeneration")
+    @Label("Friendly Class Generation")
+    @Category({"Friendly"})
+    @Description("Generation and definition of a proxy or other class by si.pele.friendly")
+    @StackTrace(false)
+    static final class ClassGenerationEvent extends Event {
+        @Label("Kind")
+        String kind;
+        @Label("Source")
+        @Description("The proxy interface or the class declaring accessed member(s)")
+        Class<?> source;
+        @Label("Generated Class")
+        Class<?> generatedClass;
+        @Label("Method Count")
+        int methodCount;
+        @Label("ASM Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long asmTime;
+        @Label("Define Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long defineTime;
+        @Label("Class File Size")
+        @DataAmount(DataAmount.BYTES)
+        int classFileSize;
+    }
+
+    /**
+     * Shared instances only used to check whether the events are enabled, so that a lookup, access denial or class
+     * generation does not allocate an event when they are not.
+     */
+    private static final LookupEvent LOOKUP_ENABLED_PROBE = new LookupEvent();
+    private static final AccessDeniedEvent ACCESS_DENIED_ENABLED_PROBE = new AccessDeniedEvent();
+    private static final ClassGenerationEvent CLASS_GENERATION_ENABLED_PROBE = new ClassGenerationEvent();
+
+    /**
+     * Number of classes generated by each thread - used to count classes generated during a lookup.
+     */
+    private static final ThreadLocal<int[]> generations = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    @Override
+    Object beginLookup() {
+        if (!LOOKUP_ENABLED_PROBE.isEnabled())
+            return null;
+        LookupEvent event = new LookupEvent();
+        event.generationsAtBegin = generations.get()[0];
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endLookup(Object token, String kind, Class<?> callerClass, Class<?> declaringClass, String member) {
+        if (token == null)
+            return;
+        LookupEvent event = (LookupEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.callerClass = callerClass;
+            event.declaringClass = declaringClass;
+            event.member = member;
+            event.generatedClasses = generations.get()[0] - event.generationsAtBegin;
+            event.commit();
+        }
+    }
+
+    @Override
+    void accessDenied(FriendlyAccessException exception) {
+        if (!ACCESS_DENIED_ENABLED_PROBE.isEnabled())
+            return;
+        AccessDeniedEvent event = new AccessDeniedEvent();
+        if (event.shouldCommit()) {
+            event.message = exception.getMessage();
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginClassGeneration() {
+        if (!CLASS_GENERATION_ENABLED_PROBE.isEnabled())
+            return null;
+        ClassGenerationEvent event = new ClassGenerationEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endClassGeneration(Object token, String kind, Class<?> source, Class<?> generatedClass,
+                            int methodCount, long asmNanos, long defineNanos, int classFileSize) {
+        generations.get()[0]++;
+        if (token == null)
+            return;
+        ClassGenerationEvent event = (ClassGenerationEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.source = source;
+            event.generatedClass = generatedClass;
+            event.methodCount = methodCount;
+            event.asmTime = asmNanos;
+            event.defineTime = defineNanos;
+            event.classFileSize = classFileSize;
+            event.commit();
+        }
+    }
+}
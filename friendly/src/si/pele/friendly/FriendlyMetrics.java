@@ -0,0 +1,161 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import sun.reflect.Reflection;
+import sun.security.action.GetPropertyAction;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Footprint metrics of the classes generated by {@link Friendly} (proxies, bound proxies, extractors, ...)
+ * and statistics of the {@link MemoizingCache memoizing caches} of proxy methods.
+ * Generated classes are tracked weakly, so a class counts as live until it becomes unreachable and can
+ * be unloaded.<p>
+ * When "si.pele.friendly.FriendlyMetrics.metaspace" system property is set to "true", the increase of the
+ * "Metaspace" memory pool usage is measured around the definition of each generated class. The measurement
+ * is approximate: it includes the metadata allocated by other threads at the same time and does not include
+ * metadata allocated later (when methods of the class are first linked or compiled for example). Without the
+ * property, metaspace metrics return -1.
+ *
+ * @author peter
+ */
+public final class FriendlyMetrics {
+
+    private FriendlyMetrics() {
+    }
+
+    /**
+     * @return the number of classes generated so far
+     */
+    public static long generatedClassCount() {
+        return definedCount.get();
+    }
+
+    /**
+     * @return the number of generated classes that are still reachable
+     */
+    public static long liveGeneratedClassCount() {
+        expungeUnloaded();
+        return live.size();
+    }
+
+    /**
+     * @return the sum of metaspace in bytes measured for generated classes that are still reachable
+     *         or -1 if metaspace is not measured
+     */
+    public static long liveGeneratedClassMetaspace() {
+        if (METASPACE_POOL == null)
+            return -1L;
+        expungeUnloaded();
+        return liveMetaspace.get();
+    }
+
+    /**
+     * @return the average metaspace in bytes measured per generated class or -1 if metaspace is not measured or
+     *         no class has been generated yet
+     */
+    public static long metaspacePerGeneratedClass() {
+        long n = definedCount.get();
+        return METASPACE_POOL == null || n == 0 ? -1L : definedMetaspace.get() / n;
+    }
+
+    /**
+     * Returns the cache of results of a {@link Friendly#proxy proxy} method annotated with @{@link Memoize}.
+     * Access checks are performed the same way as when requesting the proxy instance via {@link Friendly#proxy}:
+     * the caller must have access to each target method of the proxy interface.
+     *
+     * @param proxyInterface the proxy interface
+     * @param proxyMethod    the method of the proxy interface (as returned by {@link Class#getMethod})
+     * @return the cache of the proxy method or null if the method is not annotated with @{@link Memoize}
+     * @throws IllegalArgumentException if the interface is not a valid proxy interface
+     * @throws FriendlyAccessException  if access to any target method deduced from the proxy methods is not
+     *                                  granted to the caller
+     */
+    public static MemoizingCache memoizingCache(Class<?> proxyInterface, Method proxyMethod)
+        throws IllegalArgumentException, FriendlyAccessException {
+        Class<?> cc = Reflection.getCallerClass(2);
+        if (!proxyMethod.isAnnotationPresent(Memoize.class) ||
+            !proxyMethod.getDeclaringClass().isAssignableFrom(proxyInterface))
+            return null;
+        FriendlyProxyFactory<?> proxyFactory = Friendly.proxyFactory(proxyInterface);
+        for (Method m : proxyFactory.getTargetMethods()) {
+            if (!Friendly.checkAccess(m, cc))
+                throw new FriendlyAccessException("Class: " + cc.getName() + " has no access to method: " + m);
+        }
+        return proxyFactory.getMemoizingCache(proxyMethod);
+    }
+
+    /**
+     * @return the current usage of the "Metaspace" memory pool in bytes or -1 if metaspace is not measured
+     */
+    static long metaspaceUsed() {
+        return METASPACE_POOL == null ? -1L : METASPACE_POOL.getUsage().getUsed();
+    }
+
+    /**
+     * Starts tracking given newly generated class.
+     *
+     * @param metaspaceBefore the result of {@link #metaspaceUsed()} before the class was defined
+     */
+    static void classDefined(Class<?> generatedClass, long metaspaceBefore) {
+        expungeUnloaded();
+        long metaspace = metaspaceBefore < 0L ? 0L : Math.max(0L, metaspaceUsed() - metaspaceBefore);
+        live.add(new TrackedClass(generatedClass, metaspace));
+        definedCount.incrementAndGet();
+        definedMetaspace.addAndGet(metaspace);
+        liveMetaspace.addAndGet(metaspace);
+    }
+
+    private static void expungeUnloaded() {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            TrackedClass tracked = (TrackedClass) ref;
+            if (live.remove(tracked))
+                liveMetaspace.addAndGet(-tracked.metaspace);
+        }
+    }
+
+    private static final class TrackedClass extends WeakReference<Class<?>> {
+        final long metaspace;
+
+        TrackedClass(Class<?> generatedClass, long metaspace) {
+            super(generatedClass, queue);
+            this.metaspace = metaspace;
+        }
+    }
+
+    private static final ReferenceQueue<Class<?>> queue = new ReferenceQueue<>();
+    private static final Set<TrackedClass> live = Collections.newSetFromMap(new ConcurrentHashMap<TrackedClass, Boolean>());
+    private static final AtomicLong definedCount = new AtomicLong();
+    private static final AtomicLong definedMetaspace = new AtomicLong();
+    private static final AtomicLong liveMetaspace = new AtomicLong();
+
+    private static final MemoryPoolMXBean METASPACE_POOL = metaspacePool();
+
+    private static MemoryPoolMXBean metaspacePool() {
+        String metaspace = AccessController.doPrivileged(
+            new GetPropertyAction("si.pele.friendly.FriendlyMetrics.metaspace")
+        );
+        if (!"true".equals(metaspace))
+            return null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace"))
+                return pool;
+        }
+        return null;
+    }
+}
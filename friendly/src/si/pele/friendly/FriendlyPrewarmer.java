@@ -0,0 +1,229 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A package-private implementation of {@link Friendly#prewarm}. The JDK prepares a method handle lazily: the
+ * LambdaForms of the handle and of the handles it delegates to are compiled to bytecode on their first invocation,
+ * the linker of an {@code invokeExact} call site is spun when the call site is first executed and the handle's
+ * LambdaForm is customized after it has been invoked a number of times. This class does all that ahead of time by
+ * invoking JDK internal methods looked up with the all-mighty {@link Friendly#lookup}. Internal methods that are
+ * missing in the running JDK are skipped, so prewarming degrades to a no-op instead of failing.
+ */
+final class FriendlyPrewarmer {
+
+    private FriendlyPrewarmer() {
+    }
+
+    // the maximum depth of the graph of handles reachable from a prewarmed handle that is prewarmed
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * Prewarms given method handles - customizes each of them, links an {@code invokeExact} call site of it's
+     * type and compiles the LambdaForms of it and of the handles it (transitively) delegates to.
+     */
+    static void prewarm(MethodHandle... handles) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (MethodHandle handle : handles) {
+            invoke(CUSTOMIZE, handle);
+            linkInvokeExact(handle.type());
+            compile(handle, visited, 0);
+        }
+    }
+
+    private static void compile(Object object, Set<Object> visited, int depth) {
+        if (object == null || depth > MAX_DEPTH || !visited.add(object))
+            return;
+        if (object instanceof CallSite) {
+            compile(((CallSite) object).getTarget(), visited, depth + 1);
+        }
+        else if (object instanceof MethodHandle[]) {
+            for (MethodHandle handle : (MethodHandle[]) object) {
+                compile(handle, visited, depth + 1);
+            }
+        }
+        else if (object instanceof MethodHandle) {
+            invoke(COMPILE_TO_BYTECODE, invoke(FORM, object));
+            // the handles (and call sites) this handle delegates to are held in it's fields
+            for (MethodHandle getter : REFERENCE_FIELDS.get(object.getClass())) {
+                compile(invoke(getter, object), visited, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Invokes given (Object)Object handle (if present) ignoring any exception - prewarming is a best-effort
+     * optimization that must not affect the caller.
+     */
+    private static Object invoke(MethodHandle handle, Object arg) {
+        if (handle == null)
+            return null;
+        try {
+            return (Object) handle.invokeExact(arg);
+        }
+        catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /**
+     * Getters of non-static fields of each method handle class (declared by the class or it's superclasses up to
+     * {@link MethodHandle}) that can hold a method handle, an array of method handles or a call site.
+     */
+    private static final ClassValue<MethodHandle[]> REFERENCE_FIELDS = new ClassValue<MethodHandle[]>() {
+        @Override
+        protected MethodHandle[] computeValue(final Class<?> handleClass) {
+            Field[] fields = AccessController.doPrivileged(new PrivilegedAction<Field[]>() {
+                @Override
+                public Field[] run() {
+                    List<Field> fields = new ArrayList<>();
+                    for (Class<?> c = handleClass; c != MethodHandle.class && c != null; c = c.getSuperclass()) {
+                        for (Field field : c.getDeclaredFields()) {
+                            Class<?> type = field.getType();
+                            if (!Modifier.isStatic(field.getModifiers()) &&
+                                (type.isAssignableFrom(MethodHandle.class) ||
+                                 type == MethodHandle[].class ||
+                                 CallSite.class.isAssignableFrom(type)))
+                                fields.add(field);
+                        }
+                    }
+                    return fields.toArray(new Field[fields.size()]);
+                }
+            });
+            List<MethodHandle> getters = new ArrayList<>(fields.length);
+            for (Field field : fields) {
+                try {
+                    getters.add(
+                        Friendly.lookup.unreflectGetter(field)
+                                       .asType(MethodType.methodType(Object.class, Object.class))
+                    );
+                }
+                catch (IllegalAccessException | RuntimeException e) {
+                    // skip it
+                }
+            }
+            return getters.toArray(new MethodHandle[getters.size()]);
+        }
+    };
+
+    // JDK internals or null if not present
+
+    // MethodHandle.form adapted to (Object)Object, like the next two
+    private static final MethodHandle FORM;
+    // LambdaForm.compileToBytecode()
+    private static final MethodHandle COMPILE_TO_BYTECODE;
+    // MethodHandle.customize() (JDK 8u60+)
+    private static final MethodHandle CUSTOMIZE;
+    // Invokers.methodHandleInvokeLinkerMethod(String, MethodType, Object[]) adapted to return void
+    private static final MethodHandle INVOKE_LINKER;
+
+    static {
+        Class<?> lambdaFormClass = internalClass("java.lang.invoke.LambdaForm");
+        Class<?> memberNameClass = internalClass("java.lang.invoke.MemberName");
+        Class<?> invokersClass = internalClass("java.lang.invoke.Invokers");
+
+        FORM = adapt(findGetter(MethodHandle.class, "form", lambdaFormClass));
+        // returns void since JDK 9 and MemberName before
+        MethodHandle compileToBytecode = findVirtual(lambdaFormClass, "compileToBytecode", void.class);
+        COMPILE_TO_BYTECODE = adapt(
+            compileToBytecode != null
+            ? compileToBytecode
+            : findVirtual(lambdaFormClass, "compileToBytecode", memberNameClass)
+        );
+        CUSTOMIZE = adapt(findVirtual(MethodHandle.class, "customize", void.class));
+        MethodHandle linker = findStatic(
+            invokersClass, "methodHandleInvokeLinkerMethod", memberNameClass,
+            String.class, MethodType.class, Object[].class
+        );
+        INVOKE_LINKER = linker == null
+                        ? null
+                        : linker.asType(linker.type().changeReturnType(void.class));
+    }
+
+    /**
+     * Links an {@code invokeExact} call site of given type (as the JVM does when such call site is first executed).
+     */
+    private static void linkInvokeExact(MethodType type) {
+        if (INVOKE_LINKER == null)
+            return;
+        try {
+            INVOKE_LINKER.invokeExact("invokeExact", type, new Object[1]);
+        }
+        catch (Throwable t) {
+            // best-effort (see invoke)
+        }
+    }
+
+    private static Class<?> internalClass(String className) {
+        try {
+            return Class.forName(className, false, null);
+        }
+        catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findGetter(Class<?> refc, String name, Class<?> type) {
+        if (refc == null || type == null)
+            return null;
+        try {
+            return Friendly.lookup.findGetter(refc, name, type);
+        }
+        catch (NoSuchFieldException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findVirtual(Class<?> refc, String name, Class<?> returnType) {
+        if (refc == null || returnType == null)
+            return null;
+        try {
+            return Friendly.lookup.findVirtual(refc, name, MethodType.methodType(returnType));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findStatic(
+        Class<?> refc, String name, Class<?> returnType, Class<?>... parameterTypes
+    ) {
+        if (refc == null || returnType == null)
+            return null;
+        try {
+            return Friendly.lookup.findStatic(refc, name, MethodType.methodType(returnType, parameterTypes));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return given one-parameter handle adapted to type (Object)Object (returning null if it is void)
+     *         or null if given handle is null
+     */
+    private static MethodHandle adapt(MethodHandle handle) {
+        if (handle == null)
+            return null;
+        if (handle.type().returnType() == void.class)
+            handle = MethodHandles.filterReturnValue(handle, MethodHandles.constant(Object.class, null));
+        return handle.asType(MethodType.methodType(Object.class, Object.class));
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Label;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static si.pele.friendly.FriendlyClassSpinner.invokeExact;
+import static si.pele.friendly.FriendlyClassSpinner.isWidening;
+import static si.pele.friendly.FriendlyClassSpinner.loadHandle;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+import static si.pele.friendly.FriendlyProxyFactory.noArgConstructor;
+
+/**
+ * A package-private generator of {@link PropertyTable} subclasses. For a given list of instance fields it generates
+ * a subclass whose typed get/set methods switch on the ordinal with a {@code tableswitch} and invoke the getter
+ * (constants 0, 2, 4, ...) or setter (constants 1, 3, 5, ...) method handle of the property. Branches of the switch
+ * for properties that a method does not support jump to the default branch, which throws the exception created by
+ * {@link PropertyTable#unsupported}.
+ */
+final class FriendlyPropertyTableFactory {
+
+    private FriendlyPropertyTableFactory() {
+    }
+
+    /**
+     * Generates a property table of given class for given fields, of which those flagged in {@code writable} can be
+     * set.
+     */
+    static <T> PropertyTable<T> newPropertyTable(Class<T> clazz, Field[] fields, boolean[] writable) {
+        MethodHandle[] handles = new MethodHandle[fields.length * 2];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Class<?> valueType = valueType(fields[i].getType());
+                handles[2 * i] = Friendly.lookup.unreflectGetter(fields[i]).asType(
+                    MethodType.methodType(valueType, Object.class)
+                );
+                // read-only fields get no setter (the handle is never invoked, but keeps constant indexes regular)
+                handles[2 * i + 1] = !writable[i]
+                                     ? handles[2 * i]
+                                     : Friendly.lookup.unreflectSetter(fields[i]).asType(
+                                         MethodType.methodType(void.class, Object.class, valueType)
+                                     );
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinPropertyTableClass(fields, writable, handles);
+        long t1 = System.nanoTime();
+        Class<?> tableClass = FriendlyClassSpinner.defineClass(PropertyTable.class, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "properties", clazz, tableClass, fields.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        @SuppressWarnings("unchecked")
+        PropertyTable<T> table = (PropertyTable<T>) FriendlyClassSpinner.newInstance(tableClass);
+        table.init(clazz, fields, writable);
+        return table;
+    }
+
+    /**
+     * @return given fields without the fields that are hidden by a field with the same name declared by a subclass
+     *         (given fields are ordered superclass fields first)
+     */
+    static Field[] visibleFields(Field[] fields) {
+        Map<String, Field> byName = new LinkedHashMap<>();
+        for (Field field : fields) {
+            byName.remove(field.getName());
+            byName.put(field.getName(), field);
+        }
+        return byName.values().toArray(new Field[byName.size()]);
+    }
+
+    private static Class<?> valueType(Class<?> fieldType) {
+        return fieldType.isPrimitive() ? fieldType : Object.class;
+    }
+
+    // property table class spinning
+
+    private static final String propertyTableClassNamePrefix = "$FriendlyPropertyTable";
+    private static final Type PropertyTable_Type = Type.getType(PropertyTable.class);
+    private static final Type Object_Type = Type.getType(Object.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method PropertyTable_unsupported =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod(
+            "java.lang.RuntimeException unsupported (int, java.lang.String, boolean)"
+        );
+    private static final Class<?>[] accessTypes = {
+        boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class,
+        Object.class
+    };
+
+    private static FriendlyClassSpinner.ClassFile spinPropertyTableClass(
+        Field[] fields, boolean[] writable, MethodHandle[] handles
+    ) {
+
+        String className = FriendlyClassSpinner.generatedClassName(PropertyTable.class, propertyTableClassNamePrefix);
+
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            PropertyTable_Type.getInternalName(),
+            null
+        );
+
+        // generate public no-arg constructor
+        {
+            GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PUBLIC, noArgConstructor, null, null, cw);
+            init.loadThis();
+            init.invokeConstructor(PropertyTable_Type, noArgConstructor);
+            init.returnValue();
+            init.endMethod();
+        }
+
+        for (Class<?> accessType : accessTypes) {
+            Type access_Type = Type.getType(accessType);
+            String typeName = accessType == Object.class ? "Object" : accessType.getName();
+            String suffix = Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+
+            // X getX(Object object, int ordinal)
+            {
+                GeneratorAdapter gen = new GeneratorAdapter(
+                    Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL,
+                    new jdk.internal.org.objectweb.asm.commons.Method(
+                        "get" + suffix, Type.getMethodDescriptor(access_Type, Object_Type, Type.INT_TYPE)
+                    ),
+                    null, null, cw
+                );
+                Label dflt = new Label();
+                Label[] labels = switchOnOrdinal(gen, fields, writable, accessType, false, dflt);
+                for (int i = 0; i < fields.length; i++) {
+                    Class<?> fieldType = fields[i].getType();
+                    if (labels[i] == dflt)
+                        continue;
+                    // return (X) getter.invokeExact(object)
+                    gen.mark(labels[i]);
+                    loadHandle(gen, 2 * i);
+                    gen.loadArg(0);
+                    invokeExact(gen, handles[2 * i].type());
+                    if (accessType == Object.class) {
+                        if (fieldType.isPrimitive())
+                            gen.valueOf(Type.getType(fieldType));
+                    }
+                    else {
+                        gen.cast(Type.getType(fieldType), access_Type);
+                    }
+                    gen.returnValue();
+                }
+                throwUnsupported(gen, dflt, typeName, false);
+                gen.endMethod();
+            }
+
+            // void setX(Object object, int ordinal, X value)
+            {
+                GeneratorAdapter gen = new GeneratorAdapter(
+                    Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL,
+                    new jdk.internal.org.objectweb.asm.commons.Method(
+                        "set" + suffix, Type.getMethodDescriptor(Type.VOID_TYPE, Object_Type, Type.INT_TYPE, access_Type)
+                    ),
+                    null, null, cw
+                );
+                Label dflt = new Label();
+                Label[] labels = switchOnOrdinal(gen, fields, writable, accessType, true, dflt);
+                for (int i = 0; i < fields.length; i++) {
+                    Class<?> fieldType = fields[i].getType();
+                    if (labels[i] == dflt)
+                        continue;
+                    // setter.invokeExact(object, (F) value)
+                    gen.mark(labels[i]);
+                    loadHandle(gen, 2 * i + 1);
+                    gen.loadArg(0);
+                    gen.loadArg(2);
+                    if (accessType == Object.class) {
+                        if (fieldType.isPrimitive()) {
+                            // unbox strictly: the value must be an instance of the wrapper class
+                            Class<?> wrapperType = MethodType.methodType(fieldType).wrap().returnType();
+                            Type wrapper_Type = Type.getType(wrapperType);
+                            gen.checkCast(wrapper_Type);
+                            gen.invokeVirtual(
+                                wrapper_Type,
+                                new jdk.internal.org.objectweb.asm.commons.Method(
+                                    fieldType.getName() + "Value", Type.getMethodDescriptor(Type.getType(fieldType))
+                                )
+                            );
+                        }
+                    }
+                    else {
+                        gen.cast(access_Type, Type.getType(fieldType));
+                    }
+                    invokeExact(gen, handles[2 * i + 1].type());
+                    gen.returnValue();
+                }
+                throwUnsupported(gen, dflt, typeName, true);
+                gen.endMethod();
+            }
+        }
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    /**
+     * Generates a {@code tableswitch} on the ordinal (argument 1) with a case for each property.
+     *
+     * @return the labels of the cases - a new label to be marked by the caller for each property supported by the
+     *         access method with given type or the default label for an unsupported property
+     */
+    private static Label[] switchOnOrdinal(
+        GeneratorAdapter gen, Field[] fields, boolean[] writable, Class<?> accessType, boolean write, Label dflt
+    ) {
+        Label[] labels = new Label[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Class<?> fieldType = fields[i].getType();
+            boolean supported = write
+                                ? writable[i] &&
+                                  (accessType == Object.class || isWidening(accessType, fieldType))
+                                : accessType == Object.class || isWidening(fieldType, accessType);
+            labels[i] = supported ? new Label() : dflt;
+        }
+        if (fields.length == 0) {
+            gen.goTo(dflt);
+        }
+        else {
+            gen.loadArg(1);
+            gen.visitTableSwitchInsn(0, fields.length - 1, dflt, labels);
+        }
+        return labels;
+    }
+
+    /**
+     * Generates the default branch: {@code throw ((PropertyTable) this).unsupported(ordinal, typeName, write)}.
+     */
+    private static void throwUnsupported(GeneratorAdapter gen, Label dflt, String typeName, boolean write) {
+        gen.mark(dflt);
+        gen.loadThis();
+        // the stack map frame of a branch target names the generated class, which the verifier can't load by name
+        // (a VM-anonymous class) when checking that it is assignable to PropertyTable, so cast it explicitly
+        gen.checkCast(PropertyTable_Type);
+        gen.loadArg(1);
+        gen.push(typeName);
+        gen.push(write);
+        gen.invokeVirtual(PropertyTable_Type, PropertyTable_unsupported);
+        gen.throwException();
+    }
+}
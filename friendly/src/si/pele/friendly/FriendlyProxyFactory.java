@@ -6,51 +6,315 @@
 package si.pele.friendly;
 
 import jdk.internal.org.objectweb.asm.ClassWriter;
-import jdk.internal.org.objectweb.asm.FieldVisitor;
+import jdk.internal.org.objectweb.asm.Label;
 import jdk.internal.org.objectweb.asm.Opcodes;
 import jdk.internal.org.objectweb.asm.Type;
 import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
-import sun.security.action.GetPropertyAction;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.lang.reflect.Proxy;
 import java.security.AccessController;
-import java.util.concurrent.atomic.AtomicLong;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * A package-private factory for friendly proxy classes. Each proxy class is generated to implement the
- * given interface and is defined by the interface's class loader. This happens in the constructor of
- * the proxy factory. After constructor is successfully finished, factory object serves as a holder for the
- * {@code Class} object (accessed by {@link #getProxyClass()}) representing generated proxy class and an array
- * of target methods (accessed by {@link #getTargetMethods()}) that the proxy forwards requests to.
- * Both are used by public API {@link Friendly#proxy(Class)} method which also obtains the
- * singleton proxy instance by reading the private static final field of the proxy class and governs
- * access to this instance by checking access permissions of a caller class to the target methods.
+ * A package-private factory for friendly proxy classes. The constructor of the proxy factory validates the
+ * given interface (or abstract class), deduces target methods and looks up method handles for them. Each proxy
+ * class is generated to implement the given interface (or to extend the given abstract class, so that proxy
+ * methods are dispatched through the vtable instead of the itable) and is defined as a VM-anonymous class hosted
+ * by the interface (or abstract class) with the method handles patched into it's constant pool (see
+ * {@link FriendlyClassSpinner}). The factory object serves as a holder for an array of target methods (accessed by
+ * {@link #getTargetMethods()}) that the proxy forwards requests to and holds the generated proxy class (accessed
+ * by {@link #getProxyClass()}) only weakly, so that the class can be unloaded when the proxy instance is no longer
+ * reachable, even though the factory is cached for as long as the interface is. A new proxy class is generated
+ * when the previous one has been unloaded. Both are used by public API {@link Friendly#proxy(Class)} method which
+ * also obtains the proxy instance by instantiating the proxy class and governs access to this instance by checking
+ * access permissions of a caller class to the target methods.
  */
 final class FriendlyProxyFactory<I> {
 
-    private final Class<? extends I> proxyClass;
+    private final Class<I> intf;
+    private final Method[] methods;
+    private final int[] batchKinds;
     private final Method[] targetMethods;
+    private final MethodHandle[] handles;
+    private final MemoizingCache[] memoizingCaches;
+    private volatile boolean prewarmed;
+    private volatile WeakReference<Class<? extends I>> proxyClassRef = new WeakReference<>(null);
 
     /**
-     * Creates a factory object holding a generated proxy class for given interface.
+     * Creates a factory object for proxy classes implementing given interface.
      *
-     * @param intf the interface to generate proxy class for
+     * @param intf the interface or abstract class to generate proxy class for
      * @throws IllegalArgumentException if anything that would match proxy class methods with target methods is not
      *                                  consistent as defined by {@link Friendly#proxy(Class)} method.
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if any target method is static
      */
-    FriendlyProxyFactory(Class<I> intf) throws IllegalArgumentException {
+    FriendlyProxyFactory(Class<I> intf) throws IllegalArgumentException, FriendlyAccessException {
 
-        if (!intf.isInterface())
-            throw new IllegalArgumentException(intf + " is not an interface.");
+        Method[] methods;
+        if (intf.isInterface()) {
+            // take just abstract instance methods (ignore default/static JDK8 methods)
+            methods = abstractInstanceMethods(intf);
+        }
+        else if (Modifier.isAbstract(intf.getModifiers()) && !intf.isArray() && !intf.isPrimitive()) {
+            // the proxy class extends the abstract class and invokes it's no-arg constructor
+            int ctorMod = AccessController.doPrivileged(
+                new Friendly.GetDeclaredConstructorAction(intf)
+            ).getModifiers();
+            if (Modifier.isPrivate(ctorMod))
+                throw new IllegalArgumentException(intf + " has a private no-arg constructor.");
+            methods = abstractClassMethods(intf);
+        }
+        else {
+            throw new IllegalArgumentException(intf + " is not an interface or an abstract class.");
+        }
 
-        // take just abstract instance methods (ignore default/static JDK8 methods)
+        // deduce target methods from interface methods
+        Method[][] methodsTargetMethods = new Method[methods.length][];
+        Class<?>[] receiverTypes = new Class<?>[methods.length];
+        int[] batchKinds = new int[methods.length];
+        int targetMethodCount = 0;
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            Class<?>[] paramTypes = method.getParameterTypes();
+            if (paramTypes.length == 0)
+                throw new IllegalArgumentException(
+                    "Invalid proxy method: " + method + " (missing target parameter)"
+                );
+            Class<?>[] exceptionTypes = method.getExceptionTypes();
+            // a target method identified by @TargetSignature is invoked with the (erased) types of the proxy method
+            TargetSignature targetSignatureAnn = method.getAnnotation(TargetSignature.class);
+            if (targetSignatureAnn != null) {
+                Method targetMethod = findTargetMethod(
+                    method, targetSignatureAnn, intf.getClassLoader(), exceptionTypes
+                );
+                if (method.isAnnotationPresent(NonVirtual.class) && Modifier.isAbstract(targetMethod.getModifiers()))
+                    throw new IllegalArgumentException(
+                        "Invalid proxy method: " + method + " (@NonVirtual target method " +
+                        targetMethod + " is abstract)"
+                    );
+                methodsTargetMethods[i] = new Method[]{targetMethod};
+                receiverTypes[i] = paramTypes[0];
+                batchKinds[i] = BATCH_NONE;
+                targetMethodCount++;
+                continue;
+            }
+            // the receiver type is the type of the first parameter or it's component type for batch methods
+            Class<?> receiverType = paramTypes[0];
+            Class<?> returnType = method.getReturnType();
+            int batchKind = BATCH_NONE;
+            if (receiverType.isArray() && !receiverType.getComponentType().isPrimitive()) {
+                receiverType = receiverType.getComponentType();
+                if (returnType.isArray()) {
+                    batchKind = BATCH_RESULT_ARRAY;
+                    returnType = returnType.getComponentType();
+                }
+                else if (returnType != void.class) {
+                    throw new IllegalArgumentException(
+                        "Invalid proxy method: " + method + " (batch method must return an array or void)"
+                    );
+                }
+                else if (paramTypes.length > 1 && paramTypes[1].isArray() &&
+                         hasNonVoidMethod(
+                             firstTargetClass(method, receiverType), method.getName(),
+                             Arrays.copyOfRange(paramTypes, 2, paramTypes.length)
+                         )) {
+                    batchKind = BATCH_OUT_ARRAY;
+                    returnType = paramTypes[1].getComponentType();
+                }
+                else {
+                    batchKind = BATCH_VOID;
+                }
+            }
+            int firstTargetParam = batchKind == BATCH_OUT_ARRAY ? 2 : 1;
+            final Class<?>[] targetParamTypes = Arrays.copyOfRange(paramTypes, firstTargetParam, paramTypes.length);
+            // the target class is the receiver type unless receiver-polymorphic target classes are specified
+            TargetClasses targetClassesAnn = method.getAnnotation(TargetClasses.class);
+            Class<?>[] targetClasses;
+            if (targetClassesAnn == null) {
+                targetClasses = new Class<?>[]{receiverType};
+            }
+            else {
+                targetClasses = targetClassesAnn.value();
+                if (targetClasses.length == 0)
+                    throw new IllegalArgumentException(
+                        "Invalid proxy method: " + method + " (empty @TargetClasses)"
+                    );
+            }
+            Method[] methodTargetMethods = new Method[targetClasses.length];
+            for (int j = 0; j < targetClasses.length; j++) {
+                Class<?> targetClass = targetClasses[j];
+                if (!receiverType.isAssignableFrom(targetClass))
+                    throw new IllegalArgumentException(
+                        "Target class: " + targetClass.getName() + " of proxy method: " + method +
+                        " is not a subtype of the target parameter type"
+                    );
+                methodTargetMethods[j] = findTargetMethod(
+                    method, targetClass, targetParamTypes, returnType, exceptionTypes
+                );
+                if (method.isAnnotationPresent(NonVirtual.class) &&
+                    Modifier.isAbstract(methodTargetMethods[j].getModifiers()))
+                    throw new IllegalArgumentException(
+                        "Invalid proxy method: " + method + " (@NonVirtual target method " +
+                        methodTargetMethods[j] + " is abstract)"
+                    );
+            }
+            methodsTargetMethods[i] = methodTargetMethods;
+            receiverTypes[i] = receiverType;
+            batchKinds[i] = batchKind;
+            targetMethodCount += methodTargetMethods.length;
+        }
+
+        // flatten target methods
+        targetMethods = new Method[targetMethodCount];
+        for (int i = 0, k = 0; i < methodsTargetMethods.length; i++) {
+            for (Method targetMethod : methodsTargetMethods[i]) {
+                targetMethods[k++] = targetMethod;
+            }
+        }
+
+        // look up method handles for target methods - a receiver-polymorphic one for methods
+        // annotated with @TargetClasses, a non-virtual one for methods annotated with @NonVirtual,
+        // one adapted to the erased types of methods annotated with @TargetSignature
+        // and an asynchronous one for methods returning CompletableFuture
+        handles = new MethodHandle[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            Method[] methodTargetMethods = methodsTargetMethods[i];
+            Class<?> receiverType = receiverTypes[i];
+            boolean nonVirtual = methods[i].isAnnotationPresent(NonVirtual.class);
+            if (methods[i].isAnnotationPresent(TargetClasses.class)) {
+                Class<?>[] targetClasses = new Class<?>[methodTargetMethods.length];
+                MethodHandle[] targets = new MethodHandle[methodTargetMethods.length];
+                for (int j = 0; j < methodTargetMethods.length; j++) {
+                    targetClasses[j] = methodTargetMethods[j].getDeclaringClass();
+                    targets[j] = nonVirtual
+                                 ? findSpecial(methodTargetMethods[j])
+                                 : findVirtual(methodTargetMethods[j]);
+                }
+                handles[i] = new PolymorphicInlineCache(
+                    targets[0].type().changeParameterType(0, receiverType),
+                    targetClasses,
+                    targets
+                ).dynamicInvoker();
+            }
+            else {
+                handles[i] = nonVirtual
+                             ? findSpecial(methodTargetMethods[0])
+                             : findVirtual(methodTargetMethods[0]);
+            }
+            // casts of erased parameters (and the return value) are folded by JIT for the types it profiles
+            if (methods[i].isAnnotationPresent(TargetSignature.class))
+                handles[i] = handles[i].asType(erasedType(methods[i], methodTargetMethods[0]));
+            if (AsyncInvoker.isAsync(methods[i], methodTargetMethods[0]))
+                handles[i] = AsyncInvoker.async(handles[i]);
+        }
+
+        // wrap method handles of methods annotated with @Memoize with memoizing caches
+        memoizingCaches = new MemoizingCache[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            Memoize memoizeAnn = methods[i].getAnnotation(Memoize.class);
+            if (memoizeAnn != null) {
+                if (methods[i].getReturnType() == void.class)
+                    throw new IllegalArgumentException(
+                        "Invalid proxy method: " + methods[i] + " (@Memoize on void method)"
+                    );
+                if (memoizeAnn.maxSize() <= 0)
+                    throw new IllegalArgumentException(
+                        "Invalid proxy method: " + methods[i] + " (non-positive @Memoize maxSize)"
+                    );
+                MemoizingCache[] cache = new MemoizingCache[1];
+                handles[i] = MemoizingCache.memoize(handles[i], memoizeAnn.maxSize(), cache);
+                memoizingCaches[i] = cache[0];
+            }
+        }
+
+        this.intf = intf;
+        this.methods = methods;
+        this.batchKinds = batchKinds;
+    }
+
+    /**
+     * @return the first declaring class of target methods of given proxy method with given receiver type
+     */
+    private static Class<?> firstTargetClass(Method method, Class<?> receiverType) {
+        TargetClasses targetClassesAnn = method.getAnnotation(TargetClasses.class);
+        return targetClassesAnn == null || targetClassesAnn.value().length == 0
+               ? receiverType
+               : targetClassesAnn.value()[0];
+    }
+
+    /**
+     * @return true if given class declares a non-void method with given name and parameter types
+     */
+    private static boolean hasNonVoidMethod(Class<?> clazz, String methodName, Class<?>[] parameterTypes) {
+        try {
+            Method method = AccessController.doPrivileged(
+                new Friendly.GetDeclaredMethodAction(clazz, methodName, parameterTypes)
+            );
+            return method.getReturnType() != void.class;
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return a method handle for given instance method with the receiver type being the method's declaring class
+     * @throws IllegalArgumentException (wrapping {@link NoSuchMethodException}) if the method does not exist
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if the method is static
+     */
+    static MethodHandle findVirtual(Method method) throws IllegalArgumentException, FriendlyAccessException {
+        try {
+            return FriendlyAccessBackend.INSTANCE.method(
+                method,
+                Friendly.lookup.findVirtual(
+                    method.getDeclaringClass(),
+                    method.getName(),
+                    MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+                )
+            );
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+    }
+
+    /**
+     * @return a method handle invoking the implementation of given instance method in it's declaring class without
+     *         virtual dispatch (as {@code invokespecial} does) with the receiver type being the declaring class
+     * @throws IllegalArgumentException (wrapping {@link NoSuchMethodException}) if the method does not exist
+     * @throws FriendlyAccessException  (wrapping {@link IllegalAccessException}) if the method is static
+     */
+    static MethodHandle findSpecial(Method method) throws IllegalArgumentException, FriendlyAccessException {
+        try {
+            return Friendly.lookup.findSpecial(
+                method.getDeclaringClass(),
+                method.getName(),
+                MethodType.methodType(method.getReturnType(), method.getParameterTypes()),
+                method.getDeclaringClass()
+            );
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+    }
+
+    /**
+     * @return abstract instance methods of given interface (ignoring default/static JDK8 methods)
+     */
+    static Method[] abstractInstanceMethods(Class<?> intf) {
         Method[] methods = intf.getMethods();
         int abstrInstCount = 0;
         for (Method method : methods) {
@@ -68,92 +332,256 @@ final class FriendlyProxyFactory<I> {
             }
             methods = filteredMethods;
         }
+        return methods;
+    }
 
-        // collect methods' exception types into an array of arrays
-        @SuppressWarnings("unchecked")
-        Class<?>[][] methodsExceptionTypes = new Class[methods.length][];
+    /**
+     * @return abstract instance methods of given abstract class (declared or inherited from superclasses and
+     *         interfaces) that are not implemented by any of it's superclasses or by a default method
+     * @throws IllegalArgumentException if any of them is package-private and declared in a package other than
+     *                                  the abstract class's, so it can't be implemented by the proxy class
+     */
+    static Method[] abstractClassMethods(final Class<?> clazz) throws IllegalArgumentException {
+        Map<String, Method> methodsBySignature = AccessController.doPrivileged(
+            new PrivilegedAction<Map<String, Method>>() {
+                @Override
+                public Map<String, Method> run() {
+                    // the most specific method of each signature - superclasses' methods take
+                    // precedence over interfaces' methods
+                    Map<String, Method> methods = new LinkedHashMap<>();
+                    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                        for (Method method : c.getDeclaredMethods()) {
+                            addMethod(methods, method);
+                        }
+                    }
+                    for (Method method : clazz.getMethods()) {
+                        addMethod(methods, method);
+                    }
+                    return methods;
+                }
 
-        // deduce target methods from interface methods
-        targetMethods = new Method[methods.length];
-        for (int i = 0; i < methods.length; i++) {
-            Method method = methods[i];
-            final String name = method.getName();
-            Class<?>[] paramTypes = method.getParameterTypes();
-            if (paramTypes.length == 0)
-                throw new IllegalArgumentException(
-                    "Invalid proxy method: " + method + " (missing target parameter)"
-                );
-            Class<?> targetClass = paramTypes[0];
-            final Class<?>[] targetParamTypes = new Class<?>[paramTypes.length - 1];
-            System.arraycopy(paramTypes, 1, targetParamTypes, 0, targetParamTypes.length);
-            Method targetMethod = AccessController.doPrivileged(
-                new Friendly.GetDeclaredMethodAction(
-                    targetClass,
-                    name,
-                    targetParamTypes,
-                    "Can't find target method for proxy method: " + method
-                )
-            );
-            if (method.getReturnType() != targetMethod.getReturnType()) {
-                throw new IllegalArgumentException(
-                    "Return types of target method: " + targetMethod +
-                    " and proxy method: " + method + " don't match"
-                );
-            }
-            Class<?>[] exceptionTypes = method.getExceptionTypes();
-            methodsExceptionTypes[i] = exceptionTypes;
-            // validate assign-ability of declared checked exception types
-            next_target_exc_type:
-            for (Class<?> targetExceptionType : targetMethod.getExceptionTypes()) {
-                // skip unchecked exception types
-                if (RuntimeException.class.isAssignableFrom(targetExceptionType) ||
-                    Error.class.isAssignableFrom(targetExceptionType))
-                    continue next_target_exc_type;
-                // checked target method exception type should be assign-able to at least one
-                // of proxy method's exception types...
-                for (Class<?> exceptionType : exceptionTypes) {
-                    if (exceptionType.isAssignableFrom(targetExceptionType))
-                        continue next_target_exc_type;
+                private void addMethod(Map<String, Method> methods, Method method) {
+                    if (Modifier.isStatic(method.getModifiers()))
+                        return;
+                    String signature = method.getName() +
+                                       MethodType.methodType(void.class, method.getParameterTypes())
+                                                 .toMethodDescriptorString();
+                    if (!methods.containsKey(signature))
+                        methods.put(signature, method);
                 }
+            }
+        );
+        String pkgName = packageName(clazz);
+        int abstrCount = 0;
+        Method[] methods = new Method[methodsBySignature.size()];
+        for (Method method : methodsBySignature.values()) {
+            int mod = method.getModifiers();
+            if (!Modifier.isAbstract(mod))
+                continue;
+            if (!Modifier.isPublic(mod) && !Modifier.isProtected(mod) &&
+                !packageName(method.getDeclaringClass()).equals(pkgName))
                 throw new IllegalArgumentException(
-                    "Target method: " + targetMethod + " declares checked exceptions" +
-                    " that are not declared by proxy method: " + method
+                    "Package-private abstract method: " + method + " of: " + clazz +
+                    " can't be implemented in package: " + pkgName
                 );
-            }
-            // Ok, validated
-            targetMethods[i] = targetMethod;
+            methods[abstrCount++] = method;
         }
+        return Arrays.copyOf(methods, abstrCount);
+    }
 
-        ClassFile classFile = spinProxyClass(intf, methods, methodsExceptionTypes, targetMethods);
+    private static String packageName(Class<?> clazz) {
+        String className = clazz.getName();
+        int lastDot = className.lastIndexOf('.');
+        return lastDot >= 0 ? className.substring(0, lastDot) : "";
+    }
 
-        if (saveGeneratedFilesDir != null) {
-            File dir = new File(saveGeneratedFilesDir);
-            File file = new File(dir, classFile.className + ".class");
-            try {
-                File parentDir = file.getParentFile();
-                if (!parentDir.isDirectory()) parentDir.mkdirs();
-                try (FileOutputStream fos = new FileOutputStream(file)) {
-                    fos.write(classFile.classBytes);
-                }
-            }
-            catch (IOException e) {
-                throw new Error("I/O exception saving generated file: " + file, e);
-            }
+    /**
+     * Looks up the target method declared by given {@code targetClass} for given proxy {@code method}
+     * and validates it's return and exception types (unless the proxy method is an asynchronous proxy method
+     * for the target method).
+     */
+    static Method findTargetMethod(
+        Method method,
+        Class<?> targetClass,
+        Class<?>[] targetParamTypes,
+        Class<?>[] exceptionTypes
+    ) throws IllegalArgumentException {
+        return findTargetMethod(method, targetClass, targetParamTypes, method.getReturnType(), exceptionTypes);
+    }
+
+    /**
+     * Looks up the target method declared by given {@code targetClass} for given proxy {@code method}
+     * and validates it's return type against given {@code returnType} (which differs from the proxy method's
+     * return type for batch methods) and it's exception types (unless the proxy method is an asynchronous proxy
+     * method for the target method).
+     */
+    static Method findTargetMethod(
+        Method method,
+        Class<?> targetClass,
+        Class<?>[] targetParamTypes,
+        Class<?> returnType,
+        Class<?>[] exceptionTypes
+    ) throws IllegalArgumentException {
+        Method targetMethod = AccessController.doPrivileged(
+            new Friendly.GetDeclaredMethodAction(
+                targetClass,
+                method.getName(),
+                targetParamTypes,
+                "Can't find target method for proxy method: " + method
+            )
+        );
+        // asynchronous proxy methods complete the future with any exception thrown by the target method
+        if (AsyncInvoker.isAsync(method, targetMethod))
+            return targetMethod;
+        if (returnType != targetMethod.getReturnType()) {
+            throw new IllegalArgumentException(
+                "Return types of target method: " + targetMethod +
+                " and proxy method: " + method + " don't match"
+            );
         }
+        validateExceptionTypes(method, targetMethod, exceptionTypes);
+        // Ok, validated
+        return targetMethod;
+    }
 
-        @SuppressWarnings("unchecked")
-        Class<? extends I> proxyClass = (Class<? extends I>) defineClass0(
-            intf.getClassLoader(),
-            classFile.className.replace('/', '.'),
-            classFile.classBytes,
-            0,
-            classFile.classBytes.length
+    /**
+     * Looks up the target method identified by given @{@link TargetSignature} of given proxy {@code method} (with
+     * class names resolved by given class loader) and validates that the proxy method's parameter types are
+     * supertypes of the target class and of the target method's parameter types and that it's return type is
+     * a supertype of the target method's return type (unless the proxy method is an asynchronous proxy method
+     * for the target method), so that the target method handle can be adapted to the proxy method's type.
+     */
+    static Method findTargetMethod(
+        Method method,
+        TargetSignature targetSignature,
+        ClassLoader loader,
+        Class<?>[] exceptionTypes
+    ) throws IllegalArgumentException {
+        if (method.isAnnotationPresent(TargetClasses.class))
+            throw new IllegalArgumentException(
+                "Invalid proxy method: " + method + " (@TargetSignature and @TargetClasses are exclusive)"
+            );
+        Class<?> targetClass;
+        MethodType targetType;
+        try {
+            targetClass = Class.forName(targetSignature.className(), false, loader);
+            targetType = MethodType.fromMethodDescriptorString(targetSignature.descriptor(), loader);
+        }
+        catch (ClassNotFoundException | TypeNotPresentException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Can't resolve @TargetSignature of proxy method: " + method, e);
+        }
+        Method targetMethod = AccessController.doPrivileged(
+            new Friendly.GetDeclaredMethodAction(
+                targetClass,
+                method.getName(),
+                targetType.parameterArray(),
+                "Can't find target method for proxy method: " + method
+            )
         );
+        if (targetMethod.getReturnType() != targetType.returnType())
+            throw new IllegalArgumentException(
+                "Return type of target method: " + targetMethod + " doesn't match @TargetSignature of proxy method: " +
+                method
+            );
+        Class<?>[] paramTypes = method.getParameterTypes();
+        boolean compatible = paramTypes.length == targetType.parameterCount() + 1 &&
+                             isSupertype(paramTypes[0], targetClass);
+        for (int i = 1; compatible && i < paramTypes.length; i++) {
+            compatible = isSupertype(paramTypes[i], targetType.parameterType(i - 1));
+        }
+        if (!compatible)
+            throw new IllegalArgumentException(
+                "Parameter types of proxy method: " + method + " are not supertypes of the target class and" +
+                " parameter types of target method: " + targetMethod
+            );
+        // asynchronous proxy methods complete the future with any exception thrown by the target method
+        if (AsyncInvoker.isAsync(method, targetMethod))
+            return targetMethod;
+        if (!isSupertype(method.getReturnType(), targetMethod.getReturnType()))
+            throw new IllegalArgumentException(
+                "Return type of proxy method: " + method + " is not a supertype of the return type of" +
+                " target method: " + targetMethod
+            );
+        validateExceptionTypes(method, targetMethod, exceptionTypes);
+        return targetMethod;
+    }
 
-        this.proxyClass = proxyClass;
+    /**
+     * @return true if values of type {@code type} can be passed as (or returned as) values of type
+     *         {@code supertype} by {@link MethodHandle#asType} without conversion - the same primitive types or
+     *         reference types where {@code supertype} is assignable from {@code type}
+     */
+    private static boolean isSupertype(Class<?> supertype, Class<?> type) {
+        return supertype == type ||
+               !supertype.isPrimitive() && !type.isPrimitive() && supertype.isAssignableFrom(type);
     }
 
+    /**
+     * @return the type of the method handle invoked by given proxy method annotated with @{@link TargetSignature} -
+     *         the type of the proxy method, with the return type of the target method for asynchronous proxy methods
+     */
+    private static MethodType erasedType(Method method, Method targetMethod) {
+        return MethodType.methodType(
+            AsyncInvoker.isAsync(method, targetMethod) ? targetMethod.getReturnType() : method.getReturnType(),
+            method.getParameterTypes()
+        );
+    }
+
+    /**
+     * Validates that the checked exception types declared by given target method are assignable to at least one
+     * of given exception types of the proxy method.
+     */
+    private static void validateExceptionTypes(Method method, Method targetMethod, Class<?>[] exceptionTypes)
+        throws IllegalArgumentException {
+        // validate assign-ability of declared checked exception types
+        next_target_exc_type:
+        for (Class<?> targetExceptionType : targetMethod.getExceptionTypes()) {
+            // skip unchecked exception types
+            if (RuntimeException.class.isAssignableFrom(targetExceptionType) ||
+                Error.class.isAssignableFrom(targetExceptionType))
+                continue next_target_exc_type;
+            // checked target method exception type should be assign-able to at least one
+            // of proxy method's exception types...
+            for (Class<?> exceptionType : exceptionTypes) {
+                if (exceptionType.isAssignableFrom(targetExceptionType))
+                    continue next_target_exc_type;
+            }
+            throw new IllegalArgumentException(
+                "Target method: " + targetMethod + " declares checked exceptions" +
+                " that are not declared by proxy method: " + method
+            );
+        }
+    }
+
+    /**
+     * @return the generated proxy class - generating a new one if the previously generated class has been unloaded
+     */
     Class<? extends I> getProxyClass() {
+        Class<? extends I> proxyClass = proxyClassRef.get();
+        if (proxyClass == null) {
+            synchronized (this) {
+                proxyClass = proxyClassRef.get();
+                if (proxyClass == null) {
+                    proxyClass = generateProxyClass();
+                    proxyClassRef = new WeakReference<Class<? extends I>>(proxyClass);
+                }
+            }
+        }
+        return proxyClass;
+    }
+
+    private Class<? extends I> generateProxyClass() {
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinProxyClass(intf, methods, batchKinds, handles);
+        long t1 = System.nanoTime();
+
+        @SuppressWarnings("unchecked")
+        Class<? extends I> proxyClass = (Class<? extends I>) FriendlyClassSpinner.defineClass(intf, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "proxy", intf, proxyClass, methods.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
         return proxyClass;
     }
 
@@ -161,60 +589,54 @@ final class FriendlyProxyFactory<I> {
         return targetMethods;
     }
 
-    // proxy class spinning
+    /**
+     * Prewarms the method handles invoked by proxy methods (once per factory, see {@link FriendlyPrewarmer}).
+     */
+    void prewarm() {
+        if (!prewarmed) {
+            FriendlyPrewarmer.prewarm(handles);
+            prewarmed = true;
+        }
+    }
 
-    static final String PROXY_INSTANCE_FIELD_NAME = "INSTANCE";
+    /**
+     * @return the memoizing cache of given proxy method or null if the method is not annotated with @{@link Memoize}
+     *         or is not a method of the proxy interface
+     */
+    MemoizingCache getMemoizingCache(Method method) {
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i].equals(method))
+                return memoizingCaches[i];
+        }
+        return null;
+    }
 
-    private static final String saveGeneratedFilesDir =
-        java.security.AccessController.doPrivileged(
-            new GetPropertyAction("si.pele.friendly.FriendlyProxyFactory.saveGeneratedFilesDir")
-        );
+    // proxy class spinning
 
     private static final String proxyClassNamePrefix = "$FriendlyProxy";
-    private static final String mhFieldNamePrefix = "mh";
-    private static final AtomicLong nextUniqueNumber = new AtomicLong();
-    private static final int classFileVersion = 51;
-    private static final Type MethodHandle_Type = Type.getType(MethodHandle.class);
-    private static final Type Friendly_Type = Type.getType(Friendly.class);
-    private static final jdk.internal.org.objectweb.asm.commons.Method noArgConstructor =
+    // kinds of proxy methods
+    private static final int BATCH_NONE = 0; // T m(R r, P...)
+    private static final int BATCH_RESULT_ARRAY = 1; // T[] m(R[] rs, P...)
+    private static final int BATCH_OUT_ARRAY = 2; // void m(R[] rs, T[] out, P...)
+    private static final int BATCH_VOID = 3; // void m(R[] rs, P...) for void targets
+    static final int classFileVersion = 51;
+    static final Type MethodHandle_Type = Type.getType(MethodHandle.class);
+    static final jdk.internal.org.objectweb.asm.commons.Method noArgConstructor =
         jdk.internal.org.objectweb.asm.commons.Method.getMethod("void <init> ()");
-    private static final jdk.internal.org.objectweb.asm.commons.Method staticInitializer =
-        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void <clinit> ()");
-    private static final jdk.internal.org.objectweb.asm.commons.Method Friendly_findVirtual =
-        jdk.internal.org.objectweb.asm.commons.Method.getMethod(
-            AccessController.doPrivileged(
-                new Friendly.GetDeclaredMethodAction(
-                    Friendly.class, "findVirtual",
-                    Class.class, String.class, String.class
-                )
-            )
-        );
 
-    static final class ClassFile {
-        final String className;
-        final byte[] classBytes;
-
-        ClassFile(String className, byte[] classBytes) {
-            this.className = className;
-            this.classBytes = classBytes;
-        }
-    }
-
-    private static ClassFile spinProxyClass(
+    private static FriendlyClassSpinner.ClassFile spinProxyClass(
         Class<?> intf,
         Method[] methods,
-        Class<?>[][] methodsExceptionTypes,
-        Method[] targetMethods
+        int[] batchKinds,
+        MethodHandle[] handles
     ) {
 
+        // an abstract class is extended, an interface is implemented
         String intfName = intf.getName().replace('.', '/');
-        int lastSlash = intfName.lastIndexOf('/');
-        String pkgPath = lastSlash >= 0 ? intfName.substring(0, lastSlash + 1) : "";
-        if (Modifier.isPublic(intf.getModifiers())) pkgPath = "";
-        String proxyClassName = pkgPath + proxyClassNamePrefix + nextUniqueNumber.getAndIncrement();
-        Type proxyClass_Type = Type.getObjectType(proxyClassName);
+        String superName = intf.isInterface() ? "java/lang/Object" : intfName;
+        String proxyClassName = FriendlyClassSpinner.generatedClassName(intf, proxyClassNamePrefix);
 
-        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
 
         // generate proxy class
         {
@@ -223,85 +645,16 @@ final class FriendlyProxyFactory<I> {
                 Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
                 proxyClassName,
                 null,
-                "java/lang/Object",
-                new String[]{intfName}
+                superName,
+                intf.isInterface() ? new String[]{intfName} : null
             );
 
-            // generate private static final fields with names: mh0, mh1, ... and type java.lang.invoke.MethodHandle
-            for (int i = 0; i < targetMethods.length; i++) {
-                FieldVisitor fv = cw.visitField(
-                    Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
-                    mhFieldNamePrefix + i,
-                    MethodHandle_Type.getDescriptor(),
-                    null,
-                    null
-                );
-                fv.visitEnd();
-            }
-
-            // generate private static final field INSTANCE to hold the singleton instance
-            {
-                FieldVisitor fv = cw.visitField(
-                    Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
-                    PROXY_INSTANCE_FIELD_NAME,
-                    proxyClass_Type.getDescriptor(),
-                    null,
-                    null
-                );
-                fv.visitEnd();
-            }
-
-            // generate static initializer
-            {
-                GeneratorAdapter clinit = new GeneratorAdapter(
-                    Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
-                    staticInitializer,
-                    null,
-                    null,
-                    cw
-                );
-                // initialize static mh0, mh1, ... fields
-                for (int i = 0; i < targetMethods.length; i++) {
-                    Method targetMethod = targetMethods[i];
-                    // push target method's declaring class
-                    clinit.push(Type.getType(targetMethod.getDeclaringClass()));
-                    // push method name
-                    clinit.push(targetMethod.getName());
-                    // push method type descriptor
-                    clinit.push(
-                        MethodType.methodType(
-                            targetMethod.getReturnType(),
-                            targetMethod.getParameterTypes()
-                        ).toMethodDescriptorString()
-                    );
-                    // invoke the Friendly.findVirtual static method
-                    clinit.invokeStatic(Friendly_Type, Friendly_findVirtual);
-                    // store the result into mh0, mh1, ... field
-                    clinit.putStatic(proxyClass_Type, mhFieldNamePrefix + i, MethodHandle_Type);
-                }
-                // initialize static INSTANCE field
-                {
-                    // create new proxy instance
-                    clinit.newInstance(proxyClass_Type);
-                    // duplicate reference to newly created instance
-                    clinit.dup();
-                    // invoke no-arg constructor
-                    clinit.invokeConstructor(proxyClass_Type, noArgConstructor);
-                    // assign the instance to "INSTANCE" static field
-                    clinit.putStatic(proxyClass_Type, PROXY_INSTANCE_FIELD_NAME, proxyClass_Type);
-                }
-                // return
-                clinit.returnValue();
-                // end of static initializer
-                clinit.endMethod();
-            }
-
             // generate private no-arg constructor
             {
                 GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PRIVATE, noArgConstructor, null, null, cw);
-                // invoke super (Object) constructor
+                // invoke super (Object or abstract class) constructor
                 init.loadThis();
-                init.invokeConstructor(Type.getType(Object.class), noArgConstructor);
+                init.invokeConstructor(Type.getObjectType(superName), noArgConstructor);
                 // return
                 init.returnValue();
                 // end of constructor
@@ -317,28 +670,23 @@ final class FriendlyProxyFactory<I> {
                     Opcodes.ACC_PUBLIC,
                     m,
                     null,
-                    getTypes(methodsExceptionTypes[i]),
+                    getTypes(method.getExceptionTypes()),
                     cw
                 );
-                // push the value of mh0, mh1, ... field on the stack
-                gen.getStatic(proxyClass_Type, mhFieldNamePrefix + i, MethodHandle_Type);
-                // push the method parameters on the stack
-                gen.loadArgs();
-                // invoke the MethodHandle.invokeExact method with correct signature for invoking target method
-                Method targetMethod = targetMethods[i];
-                jdk.internal.org.objectweb.asm.commons.Method invokerExactM =
-                    new jdk.internal.org.objectweb.asm.commons.Method(
-                        "invokeExact",
-                        MethodType.methodType(
-                            targetMethod.getReturnType(),
-                            targetMethod.getParameterTypes()
-                        ).insertParameterTypes(0, targetMethod.getDeclaringClass())
-                            .toMethodDescriptorString()
-                    );
-                gen.invokeVirtual(
-                    MethodHandle_Type,
-                    invokerExactM
-                );
+                if (batchKinds[i] != BATCH_NONE) {
+                    generateBatchLoop(gen, method, batchKinds[i], i, handles[i].type());
+                }
+                else {
+                    // push the i-th method handle constant on the stack
+                    FriendlyClassSpinner.loadHandle(gen, i);
+                    // push the method parameters on the stack
+                    gen.loadArgs();
+                    // invoke the MethodHandle.invokeExact method with the type of the method handle
+                    // (the receiver type is the declaring class of the target method or a common
+                    // receiver type of polymorphic target methods, the return type is that of the proxy method
+                    // which differs from the target method's for asynchronous methods)
+                    FriendlyClassSpinner.invokeExact(gen, handles[i].type());
+                }
                 // return the result
                 gen.returnValue();
                 // end of method
@@ -348,32 +696,88 @@ final class FriendlyProxyFactory<I> {
             cw.visitEnd();
         }
 
-        return new ClassFile(proxyClassName, cw.toByteArray());
+        return FriendlyClassSpinner.classFile(proxyClassName, cw, handles);
     }
 
-    private static Type[] getTypes(Class<?>[] classes) {
+    /**
+     * Generates a counted loop over the receivers array (the first parameter) of a batch method that invokes
+     * the i-th method handle of given type for each receiver passing the remaining parameters unchanged and
+     * leaves the result (if any) on the stack.
+     */
+    private static void generateBatchLoop(
+        GeneratorAdapter gen,
+        Method method,
+        int batchKind,
+        int i,
+        MethodType handleType
+    ) {
+        Type receiver_Type = Type.getType(method.getParameterTypes()[0].getComponentType());
+        int firstArg = batchKind == BATCH_OUT_ARRAY ? 2 : 1;
+        int argCount = method.getParameterTypes().length - firstArg;
+        Type result_Type = Type.getType(handleType.returnType());
+        // int n = receivers.length
+        int n = gen.newLocal(Type.INT_TYPE);
+        gen.loadArg(0);
+        gen.arrayLength();
+        gen.storeLocal(n);
+        int results = -1;
+        if (batchKind == BATCH_RESULT_ARRAY) {
+            // R[] results = new R[n]
+            results = gen.newLocal(Type.getType(method.getReturnType()));
+            gen.loadLocal(n);
+            gen.newArray(result_Type);
+            gen.storeLocal(results);
+        }
+        else if (batchKind == BATCH_OUT_ARRAY) {
+            // if (out.length < n) throw new IllegalArgumentException(...)
+            Label outLengthOk = new Label();
+            gen.loadArg(1);
+            gen.arrayLength();
+            gen.loadLocal(n);
+            gen.ifICmp(GeneratorAdapter.GE, outLengthOk);
+            gen.throwException(
+                Type.getType(IllegalArgumentException.class), "Output array is shorter than receivers array"
+            );
+            gen.mark(outLengthOk);
+        }
+        // for (int j = 0; j < n; j++)
+        int j = gen.newLocal(Type.INT_TYPE);
+        Label loop = new Label(), end = new Label();
+        gen.push(0);
+        gen.storeLocal(j);
+        gen.mark(loop);
+        gen.loadLocal(j);
+        gen.loadLocal(n);
+        gen.ifICmp(GeneratorAdapter.GE, end);
+        if (batchKind != BATCH_VOID) {
+            // results[j] = / out[j] =
+            if (batchKind == BATCH_RESULT_ARRAY)
+                gen.loadLocal(results);
+            else
+                gen.loadArg(1);
+            gen.loadLocal(j);
+        }
+        // mh.invokeExact(receivers[j], params...)
+        FriendlyClassSpinner.loadHandle(gen, i);
+        gen.loadArg(0);
+        gen.loadLocal(j);
+        gen.arrayLoad(receiver_Type);
+        gen.loadArgs(firstArg, argCount);
+        FriendlyClassSpinner.invokeExact(gen, handleType);
+        if (batchKind != BATCH_VOID)
+            gen.arrayStore(result_Type);
+        gen.iinc(j, 1);
+        gen.goTo(loop);
+        gen.mark(end);
+        if (batchKind == BATCH_RESULT_ARRAY)
+            gen.loadLocal(results);
+    }
+
+    static Type[] getTypes(Class<?>[] classes) {
         Type[] types = new Type[classes.length];
         for (int i = 0; i < classes.length; i++) {
             types[i] = Type.getType(classes[i]);
         }
         return types;
     }
-
-    // access to private native method in j.l.r.Proxy
-
-    private static final MethodHandle defineClass0MH = Friendly.method(
-        Proxy.class, "defineClass0", ClassLoader.class, String.class, byte[].class, int.class, int.class
-    );
-
-    private static Class<?> defineClass0(
-        ClassLoader loader, String name,
-        byte[] b, int off, int len
-    ) {
-        try {
-            return (Class<?>) defineClass0MH.invokeExact(loader, name, b, off, len);
-        }
-        catch (Throwable t) {
-            throw MHThrows.unchecked(t);
-        }
-    }
 }
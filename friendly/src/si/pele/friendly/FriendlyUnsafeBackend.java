@@ -0,0 +1,120 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import sun.misc.Unsafe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+import static si.pele.friendly.FriendlyClassSpinner.UNSAFE;
+
+/**
+ * A package-private {@link FriendlyAccessBackend} ("unsafe") that accesses fields with {@link Unsafe} get/put
+ * methods at raw field offsets (the volatile variants for volatile fields). The offset (and the base object of
+ * a static field) is bound into the handle, so JIT compiles an invocation of a constant handle into a plain memory
+ * access. The handle of a static field of a class that is not initialized yet initializes the class on first
+ * invocation (not when the handle is looked up) and then re-links to the plain access. An instance field's handle
+ * checks the receiver for null explicitly, since {@link Unsafe} doesn't.
+ * Setters of final fields, methods and constructors are left to the default backend.
+ */
+final class FriendlyUnsafeBackend extends FriendlyAccessBackend {
+
+    private static final MethodHandle REQUIRE_NON_NULL, ENSURE_INITIALIZED;
+
+    static {
+        try {
+            REQUIRE_NON_NULL = Friendly.lookup.findStatic(
+                Objects.class, "requireNonNull", MethodType.methodType(Object.class, Object.class)
+            );
+            ENSURE_INITIALIZED = Friendly.lookup.findStatic(
+                FriendlyUnsafeBackend.class, "ensureInitialized",
+                MethodType.methodType(void.class, MutableCallSite.class, Class.class, MethodHandle.class)
+            );
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+
+    @Override
+    String name() {
+        return "unsafe";
+    }
+
+    @Override
+    MethodHandle getter(Field field, MethodHandle getter) {
+        return like(access(field, false), getter);
+    }
+
+    @Override
+    MethodHandle setter(Field field, MethodHandle setter) {
+        if (Modifier.isFinal(field.getModifiers()))
+            return setter;
+        return like(access(field, true), setter);
+    }
+
+    /**
+     * @return a (Object)T getter or (Object, T)void setter of given instance field or a ()T getter or (T)void
+     *         setter of given static field where T is the field's type if primitive or Object otherwise
+     */
+    private static MethodHandle access(Field field, boolean setter) {
+        MethodHandle mh = unsafeAccessor(field.getType(), Modifier.isVolatile(field.getModifiers()), setter)
+            .bindTo(UNSAFE);
+        if (Modifier.isStatic(field.getModifiers())) {
+            mh = MethodHandles.insertArguments(mh, 0, UNSAFE.staticFieldBase(field), UNSAFE.staticFieldOffset(field));
+            // the value of a static field is only valid once it's class is initialized
+            Class<?> declaringClass = field.getDeclaringClass();
+            return UNSAFE.shouldBeInitialized(declaringClass) ? initializing(declaringClass, mh) : mh;
+        }
+        else {
+            mh = MethodHandles.insertArguments(mh, 1, UNSAFE.objectFieldOffset(field));
+            return MethodHandles.filterArguments(mh, 0, REQUIRE_NON_NULL);
+        }
+    }
+
+    /**
+     * Wraps given static field accessor so that the first invocation initializes given class (like a direct method
+     * handle of a static field does) and then re-links the returned handle to the accessor itself.
+     */
+    private static MethodHandle initializing(Class<?> clazz, MethodHandle accessor) {
+        MutableCallSite callSite = new MutableCallSite(accessor.type());
+        MethodHandle initializer = MethodHandles.insertArguments(ENSURE_INITIALIZED, 0, callSite, clazz, accessor);
+        callSite.setTarget(MethodHandles.foldArguments(callSite.dynamicInvoker(), initializer));
+        return callSite.dynamicInvoker();
+    }
+
+    private static void ensureInitialized(MutableCallSite callSite, Class<?> clazz, MethodHandle accessor) {
+        UNSAFE.ensureClassInitialized(clazz);
+        callSite.setTarget(accessor);
+    }
+
+    /**
+     * @return a handle of {@link Unsafe}'s {@code getT[Volatile](Object, long)} or
+     *         {@code putT[Volatile](Object, long, T)} method for given field type
+     */
+    private static MethodHandle unsafeAccessor(Class<?> fieldType, boolean isVolatile, boolean setter) {
+        Class<?> type = fieldType.isPrimitive() ? fieldType : Object.class;
+        String typeName = type.isPrimitive() ? type.getName() : "object";
+        String name = (setter ? "put" : "get") +
+                      Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1) +
+                      (isVolatile ? "Volatile" : "");
+        MethodType methodType = setter
+                                ? MethodType.methodType(void.class, Object.class, long.class, type)
+                                : MethodType.methodType(type, Object.class, long.class);
+        try {
+            return Friendly.lookup.findVirtual(Unsafe.class, name, methodType);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A package-private {@link FriendlyAccessBackend} ("varhandle") that accesses fields through {@code VarHandle}s
+ * obtained from the all-mighty {@link Friendly#lookup} and converted to method handles of their {@code GET}/
+ * {@code SET} access modes ({@code GET_VOLATILE}/{@code SET_VOLATILE} for volatile fields). VarHandles are
+ * a JDK 9+ API and are only reached reflectively, so this class links on JDK 8 too, where constructing it
+ * throws {@link UnsupportedOperationException}. Setters of final fields, methods and constructors are left to
+ * the default backend.
+ */
+final class FriendlyVarHandleBackend extends FriendlyAccessBackend {
+
+    // (Field)VarHandle - Lookup.unreflectVarHandle bound to the all-mighty lookup
+    private final MethodHandle unreflectVarHandle;
+    // (VarHandle, AccessMode)MethodHandle - VarHandle.toMethodHandle
+    private final MethodHandle toMethodHandle;
+    // VarHandle.AccessMode constants
+    private final Object get, set, getVolatile, setVolatile;
+
+    FriendlyVarHandleBackend() throws UnsupportedOperationException {
+        try {
+            Class<?> varHandleClass = Class.forName("java.lang.invoke.VarHandle");
+            Class<?> accessModeClass = Class.forName("java.lang.invoke.VarHandle$AccessMode");
+            unreflectVarHandle = Friendly.lookup.findVirtual(
+                MethodHandles.Lookup.class, "unreflectVarHandle", MethodType.methodType(varHandleClass, Field.class)
+            ).bindTo(Friendly.lookup);
+            toMethodHandle = Friendly.lookup.findVirtual(
+                varHandleClass, "toMethodHandle", MethodType.methodType(MethodHandle.class, accessModeClass)
+            );
+            get = accessMode(accessModeClass, "GET");
+            set = accessMode(accessModeClass, "SET");
+            getVolatile = accessMode(accessModeClass, "GET_VOLATILE");
+            setVolatile = accessMode(accessModeClass, "SET_VOLATILE");
+        }
+        catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new UnsupportedOperationException("VarHandles are not supported", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object accessMode(Class<?> accessModeClass, String name) {
+        return Enum.valueOf((Class) accessModeClass, name);
+    }
+
+    @Override
+    String name() {
+        return "varhandle";
+    }
+
+    @Override
+    MethodHandle getter(Field field, MethodHandle getter) {
+        return like(access(field, Modifier.isVolatile(field.getModifiers()) ? getVolatile : get), getter);
+    }
+
+    @Override
+    MethodHandle setter(Field field, MethodHandle setter) {
+        if (Modifier.isFinal(field.getModifiers()))
+            return setter;
+        return like(access(field, Modifier.isVolatile(field.getModifiers()) ? setVolatile : set), setter);
+    }
+
+    /**
+     * @return a method handle of given access mode of a VarHandle for given field
+     */
+    private MethodHandle access(Field field, Object accessMode) {
+        try {
+            Object varHandle = unreflectVarHandle.invoke(field);
+            return (MethodHandle) toMethodHandle.invoke(varHandle, accessMode);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable t) {
+            // unreflectVarHandle throws IllegalAccessException which the all-mighty lookup never does
+            throw new Error(t);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Label;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import static si.pele.friendly.FriendlyClassSpinner.UNSAFE;
+import static si.pele.friendly.FriendlyClassSpinner.invokeExact;
+import static si.pele.friendly.FriendlyClassSpinner.loadHandle;
+import static si.pele.friendly.FriendlyProxyFactory.classFileVersion;
+import static si.pele.friendly.FriendlyProxyFactory.noArgConstructor;
+
+/**
+ * A package-private generator of {@link Walker.Visitor} subclasses. For a given list of instance fields it
+ * generates a visitor that reads the fields by invoking their getter method handles (constants 0, 1, ...) in
+ * straight-line code: pushing referenced objects to the traversal, combining hash codes of fields and comparing
+ * fields of two instances. It also estimates shallow sizes of objects from the field offsets of the running VM.
+ */
+final class FriendlyWalkerFactory {
+
+    private FriendlyWalkerFactory() {
+    }
+
+    /**
+     * Generates a visitor of given class visiting given fields.
+     */
+    static Walker.Visitor newVisitor(Class<?> clazz, Field[] fields) {
+        MethodHandle[] handles = new MethodHandle[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Class<?> fieldType = fields[i].getType();
+                handles[i] = Friendly.lookup.unreflectGetter(fields[i]).asType(
+                    MethodType.methodType(fieldType.isPrimitive() ? fieldType : Object.class, Object.class)
+                );
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new FriendlyAccessException(e);
+        }
+
+        Object event = FriendlyEvents.INSTANCE.beginClassGeneration();
+        long t0 = System.nanoTime();
+        FriendlyClassSpinner.ClassFile classFile = spinVisitorClass(handles);
+        long t1 = System.nanoTime();
+        Class<?> visitorClass = FriendlyClassSpinner.defineClass(Walker.Visitor.class, classFile);
+        FriendlyEvents.INSTANCE.endClassGeneration(
+            event, "walker", clazz, visitorClass, fields.length,
+            t1 - t0, System.nanoTime() - t1, classFile.classBytes.length
+        );
+        Walker.Visitor visitor = (Walker.Visitor) FriendlyClassSpinner.newInstance(visitorClass);
+        visitor.init(clazz, shallowSize(clazz));
+        return visitor;
+    }
+
+    // size estimation
+
+    private static final int OBJECT_ALIGNMENT = 8;
+
+    private static final class HeaderProbe {
+        byte b;
+    }
+
+    // the size of an object header (the offset of the first field when it fits the alignment gap)
+    private static final long HEADER_SIZE;
+    private static final int REFERENCE_SIZE = UNSAFE.arrayIndexScale(Object[].class);
+
+    static {
+        try {
+            HEADER_SIZE = UNSAFE.objectFieldOffset(HeaderProbe.class.getDeclaredField("b"));
+        }
+        catch (NoSuchFieldException e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * @return given size rounded up to the object alignment
+     */
+    static long align(long size) {
+        return (size + OBJECT_ALIGNMENT - 1) & -OBJECT_ALIGNMENT;
+    }
+
+    /**
+     * Estimates the size of an instance of given (non-array) class excluding the objects it references: the end of
+     * the last instance field (declared by the class or any superclass) rounded up to the object alignment.
+     */
+    static long shallowSize(Class<?> clazz) {
+        Field[] fields = FriendlyInstantiatorFactory.instanceFields(
+            clazz,
+            new FriendlyInstantiatorFactory.FieldFilter() {
+                @Override
+                public boolean accept(Field field) {
+                    return true;
+                }
+            }
+        );
+        long end = HEADER_SIZE, sum = HEADER_SIZE;
+        for (Field f : fields) {
+            long size = fieldSize(f.getType());
+            sum += size;
+            try {
+                end = Math.max(end, UNSAFE.objectFieldOffset(f) + size);
+            }
+            catch (UnsupportedOperationException e) {
+                // offsets are not available for fields of some classes (hidden classes, records) on newer VMs
+                end = -1L;
+            }
+        }
+        return align(end < 0L ? sum : end);
+    }
+
+    private static long fieldSize(Class<?> type) {
+        if (!type.isPrimitive()) return REFERENCE_SIZE;
+        if (type == boolean.class || type == byte.class) return 1;
+        if (type == char.class || type == short.class) return 2;
+        if (type == int.class || type == float.class) return 4;
+        return 8; // long, double
+    }
+
+    // visitor class spinning
+
+    private static final String visitorClassNamePrefix = "$FriendlyWalkerVisitor";
+    private static final Type Visitor_Type = Type.getType(Walker.Visitor.class);
+    private static final Type Traversal_Type = Type.getType(Walker.Traversal.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method Visitor_references =
+        new jdk.internal.org.objectweb.asm.commons.Method(
+            "references", Type.VOID_TYPE, new Type[]{Type.getType(Object.class), Traversal_Type}
+        );
+    private static final jdk.internal.org.objectweb.asm.commons.Method Visitor_hash =
+        new jdk.internal.org.objectweb.asm.commons.Method(
+            "hash", Type.INT_TYPE, new Type[]{Type.getType(Object.class), Traversal_Type}
+        );
+    private static final jdk.internal.org.objectweb.asm.commons.Method Visitor_equal =
+        new jdk.internal.org.objectweb.asm.commons.Method(
+            "equal", Type.BOOLEAN_TYPE,
+            new Type[]{Type.getType(Object.class), Type.getType(Object.class), Traversal_Type}
+        );
+    private static final jdk.internal.org.objectweb.asm.commons.Method Traversal_push =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void push (java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Traversal_hashRef =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int hashRef (java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Traversal_pair =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("boolean pair (java.lang.Object, java.lang.Object)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Long_hashCode =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int hashCode (long)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Float_floatToRawIntBits =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("int floatToRawIntBits (float)");
+    private static final jdk.internal.org.objectweb.asm.commons.Method Double_doubleToRawLongBits =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("long doubleToRawLongBits (double)");
+
+    private static FriendlyClassSpinner.ClassFile spinVisitorClass(MethodHandle[] handles) {
+
+        String className = FriendlyClassSpinner.generatedClassName(Walker.Visitor.class, visitorClassNamePrefix);
+
+        ClassWriter cw = FriendlyClassSpinner.newClassWriter();
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            className,
+            null,
+            Visitor_Type.getInternalName(),
+            null
+        );
+
+        // generate no-arg constructor
+        {
+            GeneratorAdapter init = new GeneratorAdapter(0, noArgConstructor, null, null, cw);
+            init.loadThis();
+            init.invokeConstructor(Visitor_Type, noArgConstructor);
+            init.returnValue();
+            init.endMethod();
+        }
+
+        // void references(Object object, Traversal t)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(Opcodes.ACC_FINAL, Visitor_references, null, null, cw);
+            for (int i = 0; i < handles.length; i++) {
+                if (handles[i].type().returnType().isPrimitive())
+                    continue;
+                // t.push(getter.invokeExact(object))
+                gen.loadArg(1);
+                loadField(gen, i, handles[i], 0);
+                gen.invokeVirtual(Traversal_Type, Traversal_push);
+            }
+            gen.returnValue();
+            gen.endMethod();
+        }
+
+        // int hash(Object object, Traversal t)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(Opcodes.ACC_FINAL, Visitor_hash, null, null, cw);
+            gen.push(0);
+            for (int i = 0; i < handles.length; i++) {
+                // h = 31 * h + hash of field
+                gen.push(31);
+                gen.math(GeneratorAdapter.MUL, Type.INT_TYPE);
+                Class<?> type = handles[i].type().returnType();
+                if (type.isPrimitive()) {
+                    loadField(gen, i, handles[i], 0);
+                    loadBits(gen, type);
+                    if (type == long.class || type == double.class)
+                        gen.invokeStatic(Type.getType(Long.class), Long_hashCode);
+                }
+                else {
+                    gen.loadArg(1);
+                    loadField(gen, i, handles[i], 0);
+                    gen.invokeVirtual(Traversal_Type, Traversal_hashRef);
+                }
+                gen.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+            }
+            gen.returnValue();
+            gen.endMethod();
+        }
+
+        // boolean equal(Object a, Object b, Traversal t)
+        {
+            GeneratorAdapter gen = new GeneratorAdapter(Opcodes.ACC_FINAL, Visitor_equal, null, null, cw);
+            Label notEqual = new Label();
+            for (int i = 0; i < handles.length; i++) {
+                Class<?> type = handles[i].type().returnType();
+                if (type.isPrimitive()) {
+                    // if (bits of a's field != bits of b's field) return false
+                    loadField(gen, i, handles[i], 0);
+                    loadBits(gen, type);
+                    loadField(gen, i, handles[i], 1);
+                    loadBits(gen, type);
+                    gen.ifCmp(
+                        type == long.class || type == double.class ? Type.LONG_TYPE : Type.INT_TYPE,
+                        GeneratorAdapter.NE, notEqual
+                    );
+                }
+                else {
+                    // if (!t.pair(a's field, b's field)) return false
+                    gen.loadArg(2);
+                    loadField(gen, i, handles[i], 0);
+                    loadField(gen, i, handles[i], 1);
+                    gen.invokeVirtual(Traversal_Type, Traversal_pair);
+                    gen.ifZCmp(GeneratorAdapter.EQ, notEqual);
+                }
+            }
+            gen.push(true);
+            gen.returnValue();
+            gen.mark(notEqual);
+            gen.push(false);
+            gen.returnValue();
+            gen.endMethod();
+        }
+
+        cw.visitEnd();
+
+        return FriendlyClassSpinner.classFile(className, cw, handles);
+    }
+
+    /**
+     * Converts a {@code float} or {@code double} value on the stack to it's raw bits (leaves other values as is).
+     */
+    private static void loadBits(GeneratorAdapter gen, Class<?> type) {
+        if (type == float.class)
+            gen.invokeStatic(Type.getType(Float.class), Float_floatToRawIntBits);
+        else if (type == double.class)
+            gen.invokeStatic(Type.getType(Double.class), Double_doubleToRawLongBits);
+    }
+
+    /**
+     * Generates getter.invokeExact(object) for the i-th field of the object passed as given argument.
+     */
+    private static void loadField(GeneratorAdapter gen, int i, MethodHandle getter, int arg) {
+        loadHandle(gen, i);
+        gen.loadArg(arg);
+        invokeExact(gen, getter.type());
+    }
+}
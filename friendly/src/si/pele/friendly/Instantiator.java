@@ -0,0 +1,107 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.reflect.Field;
+
+/**
+ * A creator of instances of a class obtained via {@link Friendly#instantiator}. It allocates instances without running
+ * any constructor and populates their instance fields (including final ones) from the given values. The methods are
+ * implemented by a generated subclass as straight-line code invoking constant method handles, so that JIT can inline
+ * the allocation and all field stores.<p>
+ * The populated fields are returned by {@link #getFields()} in the order in which the values are taken: fields
+ * declared by superclasses come before fields declared by subclasses and fields of the same class are ordered as
+ * returned by {@link Class#getDeclaredFields()}. Fields that are not populated keep their default values.
+ *
+ * @param <T> the type of instances
+ */
+public abstract class Instantiator<T> {
+
+    /**
+     * A source of field values that avoids boxing of primitive values. The generated code calls the method
+     * corresponding to the type of each populated field passing the index of the field in {@link #getFields()}.
+     */
+    public interface Source {
+        boolean getBoolean(int index);
+
+        byte getByte(int index);
+
+        char getChar(int index);
+
+        short getShort(int index);
+
+        int getInt(int index);
+
+        long getLong(int index);
+
+        float getFloat(int index);
+
+        double getDouble(int index);
+
+        Object getObject(int index);
+    }
+
+    private Class<T> type;
+    private Field[] fields;
+
+    /**
+     * Constructor for generated subclasses only.
+     */
+    protected Instantiator() {
+    }
+
+    final void init(Class<T> type, Field[] fields) {
+        this.type = type;
+        this.fields = fields;
+    }
+
+    /**
+     * @return the class of created instances
+     */
+    public final Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the populated fields in the order in which their values are taken
+     */
+    public final Field[] getFields() {
+        return fields.clone();
+    }
+
+    /**
+     * Creates a new instance populating it's fields with given values. A value for a primitive field must be
+     * an instance of the corresponding wrapper class, a value for a reference field must be null or an instance
+     * of the field's type.
+     *
+     * @param values the values in the order of {@link #getFields()}
+     * @return new instance
+     * @throws IllegalArgumentException if the number of values does not match the number of fields
+     * @throws NullPointerException     if a value for a primitive field is null
+     * @throws ClassCastException       if a value is not of the expected type
+     */
+    public abstract T newInstance(Object... values)
+        throws IllegalArgumentException, NullPointerException, ClassCastException;
+
+    /**
+     * Creates a new instance populating it's fields with values taken from given source.
+     *
+     * @param source the source of values
+     * @return new instance
+     * @throws ClassCastException if a value for a reference field is not of the field's type
+     */
+    public abstract T newInstance(Source source) throws ClassCastException;
+
+    /**
+     * Checks the number of values. Invoked by generated code before allocating the instance.
+     *
+     * @throws IllegalArgumentException if the number of values is not as expected
+     */
+    static void checkLength(Object[] values, int length) throws IllegalArgumentException {
+        if (values.length != length)
+            throw new IllegalArgumentException("Expected " + length + " values, got: " + values.length);
+    }
+}
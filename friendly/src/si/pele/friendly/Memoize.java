@@ -0,0 +1,28 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation, that when attached to a non-void method of a friendly proxy interface, makes the proxy method
+ * memoize the results of the target method. The target method should be pure - it's result should only depend on
+ * the receiver and the arguments. Results are cached in a {@link MemoizingCache} per receiver (compared by identity
+ * and referenced weakly) and argument tuple (compared by equality) holding at most {@link #maxSize()} results.
+ * Exceptions thrown by the target method are not cached and neither are futures of asynchronous proxy methods
+ * (returned immediately and cached while pending) once they complete exceptionally. See {@link Friendly#proxy(Class)} for details.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Memoize {
+    /**
+     * @return the maximum number of results cached for the proxy method
+     */
+    int maxSize() default 1024;
+}
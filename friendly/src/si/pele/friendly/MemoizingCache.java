@@ -0,0 +1,369 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A cache of results of a proxy method annotated with @{@link Memoize}. Results are keyed by the receiver
+ * (compared by identity and referenced weakly, so that cached results of a receiver are dropped when the receiver
+ * is no longer reachable) and the tuple of the remaining arguments (compared by equality). Methods with a single
+ * {@code int} (or narrower integral) or {@code long} argument besides the receiver use keys with a primitive
+ * component, so the argument is not boxed.<p>
+ * The number of cached results is bounded. When a new result is cached and the bound is exceeded, results are
+ * evicted by a second-chance (CLOCK-like) sweep over the cache: a result that has been hit since the last sweep
+ * is spared once. Concurrent misses for the same key may invoke the target method more than once, but all callers
+ * observe the result that was cached first. A {@link CompletableFuture} returned by an asynchronous proxy method
+ * (or any other method) is removed from the cache when it completes exceptionally.<p>
+ * Instances are obtained via {@link FriendlyMetrics#memoizingCache} and expose hit-rate statistics.
+ *
+ * @author peter
+ */
+public final class MemoizingCache {
+
+    private final int maxSize;
+    private final MethodHandle target;
+    private final ConcurrentHashMap<Key, Entry> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private MemoizingCache(int maxSize, MethodHandle target) {
+        this.maxSize = maxSize;
+        this.target = target;
+    }
+
+    /**
+     * Wraps given target method handle (with a leading receiver parameter) with a new cache.
+     *
+     * @param target  the target method handle of a proxy method
+     * @param maxSize the maximum number of cached results
+     * @param cache   a one-element array receiving the created cache
+     * @return a method handle of the same type as target that invokes the target through the cache
+     */
+    static MethodHandle memoize(MethodHandle target, int maxSize, MemoizingCache[] cache) {
+        MethodType type = target.type();
+        int argCount = type.parameterCount() - 1;
+        Class<?> argType = argCount == 1 ? type.parameterType(1) : null;
+        MemoizingCache c;
+        MethodHandle invoker;
+        if (argCount == 0) {
+            c = new MemoizingCache(maxSize, target.asType(MethodType.genericMethodType(1)));
+            invoker = INVOKE_0.bindTo(c);
+        }
+        else if (argType == int.class || argType == short.class || argType == char.class || argType == byte.class) {
+            // the int argument of the cache always originates from the narrower argument of the proxy method
+            c = new MemoizingCache(
+                maxSize, MethodHandles.explicitCastArguments(target, INVOKE_INT.type().dropParameterTypes(0, 1))
+            );
+            invoker = INVOKE_INT.bindTo(c);
+        }
+        else if (argType == long.class) {
+            c = new MemoizingCache(maxSize, target.asType(INVOKE_LONG.type().dropParameterTypes(0, 1)));
+            invoker = INVOKE_LONG.bindTo(c);
+        }
+        else {
+            c = new MemoizingCache(
+                maxSize,
+                target.asType(MethodType.genericMethodType(argCount + 1)).asSpreader(Object[].class, argCount)
+            );
+            invoker = INVOKE_N.bindTo(c).asCollector(Object[].class, argCount);
+        }
+        cache[0] = c;
+        return invoker.asType(type);
+    }
+
+    // statistics
+
+    /**
+     * @return the maximum number of cached results
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the current number of cached results
+     */
+    public int size() {
+        expungeStale();
+        return map.size();
+    }
+
+    /**
+     * @return the number of invocations that returned a cached result
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of invocations that invoked the target method
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of results evicted to keep the cache within it's bound (not counting results dropped
+     *         because their receivers became unreachable)
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the ratio of hits among all invocations or 0 if there were none
+     */
+    public double hitRate() {
+        long h = hits.sum(), m = misses.sum();
+        return h + m == 0L ? 0d : (double) h / (h + m);
+    }
+
+    /**
+     * Removes all cached results. Statistics are not reset.
+     */
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoizingCache[size=" + size() + ", maxSize=" + maxSize + ", hits=" + hitCount() +
+               ", misses=" + missCount() + ", evictions=" + evictionCount() + "]";
+    }
+
+    // invokers
+
+    private Object invoke0(Object receiver) throws Throwable {
+        if (receiver == null)
+            return (Object) target.invokeExact(receiver);
+        Entry e = map.get(new Key(receiver, null));
+        if (e != null)
+            return hit(e);
+        misses.increment();
+        return put(new Key(receiver, queue), (Object) target.invokeExact(receiver));
+    }
+
+    private Object invokeInt(Object receiver, int arg) throws Throwable {
+        if (receiver == null)
+            return (Object) target.invokeExact(receiver, arg);
+        Entry e = map.get(new IntKey(receiver, null, arg));
+        if (e != null)
+            return hit(e);
+        misses.increment();
+        return put(new IntKey(receiver, queue, arg), (Object) target.invokeExact(receiver, arg));
+    }
+
+    private Object invokeLong(Object receiver, long arg) throws Throwable {
+        if (receiver == null)
+            return (Object) target.invokeExact(receiver, arg);
+        Entry e = map.get(new LongKey(receiver, null, arg));
+        if (e != null)
+            return hit(e);
+        misses.increment();
+        return put(new LongKey(receiver, queue, arg), (Object) target.invokeExact(receiver, arg));
+    }
+
+    private Object invokeN(Object receiver, Object[] args) throws Throwable {
+        if (receiver == null)
+            return (Object) target.invokeExact(receiver, args);
+        Entry e = map.get(new ArgsKey(receiver, null, args));
+        if (e != null)
+            return hit(e);
+        misses.increment();
+        return put(new ArgsKey(receiver, queue, args), (Object) target.invokeExact(receiver, args));
+    }
+
+    private Object hit(Entry e) {
+        hits.increment();
+        if (!e.referenced)
+            e.referenced = true;
+        return e.value;
+    }
+
+    private Object put(final Key key, Object value) {
+        expungeStale();
+        final Entry e = new Entry(value);
+        Entry oldE = map.putIfAbsent(key, e);
+        if (oldE != null)
+            return oldE.value;
+        if (value instanceof CompletableFuture) {
+            // a future completed with an exception is not cached (like the exception of a synchronous method)
+            ((CompletableFuture<?>) value).whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override
+                public void accept(Object result, Throwable exception) {
+                    if (exception != null)
+                        map.remove(key, e);
+                }
+            });
+        }
+        if (map.size() > maxSize)
+            evict(key);
+        return value;
+    }
+
+    /**
+     * Evicts results until the cache is within it's bound, sparing the just cached result and giving the results
+     * that have been hit since the last sweep a second chance.
+     */
+    private void evict(Key newKey) {
+        for (int sweep = 0; sweep < 2 && map.size() > maxSize; sweep++) {
+            Iterator<Map.Entry<Key, Entry>> i = map.entrySet().iterator();
+            while (i.hasNext() && map.size() > maxSize) {
+                Map.Entry<Key, Entry> me = i.next();
+                Entry e = me.getValue();
+                if (me.getKey() == newKey)
+                    continue;
+                if (e.referenced && sweep == 0) {
+                    e.referenced = false;
+                }
+                else if (map.remove(me.getKey(), e)) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private void expungeStale() {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        volatile boolean referenced;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * A key of a receiver-only invocation and the base class of keys with arguments. Lookup keys are not registered
+     * with the reference queue. A key whose receiver has been cleared is only equal to itself, so it can still
+     * be removed from the map after it is dequeued.
+     */
+    private static class Key extends WeakReference<Object> {
+        private final int hash;
+
+        Key(Object receiver, ReferenceQueue<Object> queue, int argsHash) {
+            super(receiver, queue);
+            this.hash = System.identityHashCode(receiver) * 31 + argsHash;
+        }
+
+        Key(Object receiver, ReferenceQueue<Object> queue) {
+            this(receiver, queue, 0);
+        }
+
+        @Override
+        public final int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public final boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || obj.getClass() != getClass())
+                return false;
+            Key other = (Key) obj;
+            Object receiver = get();
+            return hash == other.hash && receiver != null && receiver == other.get() && argsEqual(other);
+        }
+
+        boolean argsEqual(Key other) {
+            return true;
+        }
+    }
+
+    private static final class IntKey extends Key {
+        private final int arg;
+
+        IntKey(Object receiver, ReferenceQueue<Object> queue, int arg) {
+            super(receiver, queue, arg);
+            this.arg = arg;
+        }
+
+        @Override
+        boolean argsEqual(Key other) {
+            return arg == ((IntKey) other).arg;
+        }
+    }
+
+    private static final class LongKey extends Key {
+        private final long arg;
+
+        LongKey(Object receiver, ReferenceQueue<Object> queue, long arg) {
+            super(receiver, queue, Long.hashCode(arg));
+            this.arg = arg;
+        }
+
+        @Override
+        boolean argsEqual(Key other) {
+            return arg == ((LongKey) other).arg;
+        }
+    }
+
+    private static final class ArgsKey extends Key {
+        private final Object[] args;
+
+        ArgsKey(Object receiver, ReferenceQueue<Object> queue, Object[] args) {
+            super(receiver, queue, Arrays.hashCode(args));
+            this.args = args;
+        }
+
+        @Override
+        boolean argsEqual(Key other) {
+            return Arrays.equals(args, ((ArgsKey) other).args);
+        }
+    }
+
+    private static final MethodHandle INVOKE_0;
+    private static final MethodHandle INVOKE_INT;
+    private static final MethodHandle INVOKE_LONG;
+    private static final MethodHandle INVOKE_N;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            INVOKE_0 = lookup.findVirtual(
+                MemoizingCache.class, "invoke0",
+                MethodType.methodType(Object.class, Object.class)
+            );
+            INVOKE_INT = lookup.findVirtual(
+                MemoizingCache.class, "invokeInt",
+                MethodType.methodType(Object.class, Object.class, int.class)
+            );
+            INVOKE_LONG = lookup.findVirtual(
+                MemoizingCache.class, "invokeLong",
+                MethodType.methodType(Object.class, Object.class, long.class)
+            );
+            INVOKE_N = lookup.findVirtual(
+                MemoizingCache.class, "invokeN",
+                MethodType.methodType(Object.class, Object.class, Object[].class)
+            );
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation, that when attached to a method of a friendly proxy interface, makes the proxy method invoke the
+ * implementation of the target method in it's declaring class directly (like {@code super.m(...)} does), instead of
+ * dispatching virtually to an overriding method in the receiver's runtime class. The target method must not be
+ * abstract. Since such call site is monomorphic regardless of the receivers' runtime classes, the target method
+ * can be inlined into the proxy method even when the receivers are megamorphic.
+ * See {@link Friendly#proxy(Class)} for details.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface NonVirtual {
+}
@@ -0,0 +1,171 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+/**
+ * A package-private polymorphic inline cache used to dispatch receiver-polymorphic proxy methods
+ * (see {@link TargetClasses}). The cache is a {@link MutableCallSite} whose target starts as a fallback
+ * handle. Each time the fallback is invoked with a receiver of a yet unseen runtime class, a new
+ * {@link MethodHandles#guardWithTest} entry that checks the exact receiver class is prepended to the chain.
+ * When the chain reaches {@link #MAX_DEPTH} entries, the call site is re-linked to a megamorphic handle that
+ * looks up the target in a {@link ClassValue} table on each call and is never re-linked again.<p>
+ * The {@link #dynamicInvoker()} of the cache is meant to be held in a static final field of the proxy class
+ * so that JIT can inline through it. Each re-link of the call site invalidates the code that inlined the
+ * previous chain.
+ */
+final class PolymorphicInlineCache {
+
+    /**
+     * Maximum number of receiver classes checked by the guardWithTest chain before going megamorphic.
+     */
+    static final int MAX_DEPTH = Integer.getInteger("si.pele.friendly.PolymorphicInlineCache.maxDepth", 2);
+
+    private final MethodType type;
+    private final Class<?>[] targetClasses;
+    private final MethodHandle[] targets;
+    private final MutableCallSite callSite;
+    private final MethodHandle fallback;
+    private final ClassValue<MethodHandle> megamorphicTable = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> receiverClass) {
+            return lookupTarget(receiverClass);
+        }
+    };
+
+    private MethodHandle chain;
+    private int depth;
+
+    /**
+     * @param type          the type of the call site - the type of the proxy method (receiver type included)
+     * @param targetClasses the declaring classes of target methods
+     * @param targets       the target method handles, each of type compatible with {@code type} via
+     *                      {@link MethodHandle#asType}
+     */
+    PolymorphicInlineCache(MethodType type, Class<?>[] targetClasses, MethodHandle[] targets) {
+        assert targetClasses.length == targets.length;
+        this.type = type;
+        this.targetClasses = targetClasses.clone();
+        this.targets = new MethodHandle[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            this.targets[i] = targets[i].asType(type);
+        }
+        this.fallback = MethodHandles.foldArguments(
+            MethodHandles.exactInvoker(type),
+            receiverFunction(RELINK.bindTo(this))
+        );
+        this.chain = fallback;
+        this.callSite = new MutableCallSite(fallback);
+    }
+
+    /**
+     * @return a method handle of the call site's type that dispatches through this cache
+     */
+    MethodHandle dynamicInvoker() {
+        return callSite.dynamicInvoker();
+    }
+
+    /**
+     * Called from the fallback handle with the receiver of a yet unseen runtime class.
+     * Extends the guardWithTest chain or goes megamorphic and returns the target handle to invoke.
+     */
+    private synchronized MethodHandle relink(Object receiver) {
+        Class<?> receiverClass = receiver.getClass();
+        MethodHandle target = megamorphicTable.get(receiverClass);
+        if (depth < MAX_DEPTH) {
+            chain = MethodHandles.guardWithTest(
+                receiverFunction(MethodHandles.insertArguments(IS_CLASS, 0, receiverClass)),
+                target,
+                chain
+            );
+            depth++;
+            callSite.setTarget(chain);
+        }
+        else if (chain != null) {
+            // go megamorphic
+            chain = null;
+            callSite.setTarget(
+                MethodHandles.foldArguments(
+                    MethodHandles.exactInvoker(type),
+                    receiverFunction(MEGAMORPHIC_LOOKUP.bindTo(this))
+                )
+            );
+        }
+        return target;
+    }
+
+    /**
+     * Called from the megamorphic handle on each invocation.
+     */
+    private MethodHandle megamorphicLookup(Object receiver) {
+        return megamorphicTable.get(receiver.getClass());
+    }
+
+    /**
+     * Finds the target declared by the nearest listed superclass of given receiver class or
+     * returns a handle that throws {@link IllegalArgumentException} if there's none.
+     */
+    private MethodHandle lookupTarget(Class<?> receiverClass) {
+        for (Class<?> c = receiverClass; c != null; c = c.getSuperclass()) {
+            for (int i = 0; i < targetClasses.length; i++) {
+                if (targetClasses[i] == c)
+                    return targets[i];
+            }
+        }
+        MethodHandle thrower = MethodHandles.insertArguments(
+            MethodHandles.throwException(type.returnType(), IllegalArgumentException.class),
+            0,
+            new IllegalArgumentException(
+                "No target method for receiver of " + receiverClass + " among target classes of proxy method"
+            )
+        );
+        return MethodHandles.dropArguments(thrower, 0, type.parameterList());
+    }
+
+    /**
+     * Adapts a function taking (Object receiver) to a function of the call site's type parameters
+     * (with the return type of the function) that ignores all but the leading receiver argument.
+     */
+    private MethodHandle receiverFunction(MethodHandle function) {
+        MethodHandle f = function.asType(
+            MethodType.methodType(function.type().returnType(), type.parameterType(0))
+        );
+        return MethodHandles.dropArguments(f, 1, type.parameterList().subList(1, type.parameterCount()));
+    }
+
+    private static boolean isClass(Class<?> clazz, Object receiver) {
+        return receiver.getClass() == clazz;
+    }
+
+    private static final MethodHandle IS_CLASS;
+    private static final MethodHandle RELINK;
+    private static final MethodHandle MEGAMORPHIC_LOOKUP;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            IS_CLASS = lookup.findStatic(
+                PolymorphicInlineCache.class, "isClass",
+                MethodType.methodType(boolean.class, Class.class, Object.class)
+            );
+            RELINK = lookup.findVirtual(
+                PolymorphicInlineCache.class, "relink",
+                MethodType.methodType(MethodHandle.class, Object.class)
+            );
+            MEGAMORPHIC_LOOKUP = lookup.findVirtual(
+                PolymorphicInlineCache.class, "megamorphicLookup",
+                MethodType.methodType(MethodHandle.class, Object.class)
+            );
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+}
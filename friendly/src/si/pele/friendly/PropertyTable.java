@@ -0,0 +1,219 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/**
+ * An indexed accessor of the instance fields (properties) of a class obtained via {@link Friendly#properties}.
+ * Each property has an ordinal - it's index in {@link #getFields()}. Names are resolved to ordinals with
+ * {@link #ordinal(String)} through a perfect hash table computed when the table is generated, so resolving a name
+ * costs one hash of the name and one {@link String#equals}. The typed get/set methods are implemented by a generated
+ * subclass that dispatches on the ordinal with a {@code tableswitch} to straight-line code invoking constant getter
+ * or setter method handles, so primitive values are not boxed.<p>
+ * A typed getter can be used for a property whose type can be converted to the getter's type by an identity
+ * or widening primitive conversion (for example {@link #getLong} for an {@code int} property) and a typed setter for
+ * a property whose type the setter's type can be converted to. {@link #getObject} can be used for any property and
+ * boxes primitive values, {@link #setObject} can be used for any property and requires a value of a primitive
+ * property to be an instance of the corresponding wrapper class. Only properties that are {@link #isWritable writable}
+ * by the class that obtained the table can be set - final properties never are.
+ *
+ * @param <T> the type of objects whose properties are accessed
+ */
+public abstract class PropertyTable<T> {
+
+    private Class<T> type;
+    private Field[] fields;
+    private boolean[] writable;
+    // the perfect hash table
+    private int seed, mask;
+    private String[] hashNames;
+    private int[] hashOrdinals;
+
+    /**
+     * Constructor for generated subclasses only.
+     */
+    protected PropertyTable() {
+    }
+
+    final void init(Class<T> type, Field[] fields, boolean[] writable) {
+        this.type = type;
+        this.fields = fields;
+        this.writable = writable;
+        computePerfectHash();
+    }
+
+    /**
+     * @return the class whose properties are accessed
+     */
+    public final Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the fields of the properties in the order of their ordinals
+     */
+    public final Field[] getFields() {
+        return fields.clone();
+    }
+
+    /**
+     * @return the number of properties
+     */
+    public final int size() {
+        return fields.length;
+    }
+
+    /**
+     * @return the name of the property with given ordinal
+     * @throws IndexOutOfBoundsException if there is no property with given ordinal
+     */
+    public final String name(int ordinal) throws IndexOutOfBoundsException {
+        return fields[ordinal].getName();
+    }
+
+    /**
+     * @return true if the property with given ordinal can be set (it is not final and the class that obtained the
+     *         table has write access to it)
+     * @throws IndexOutOfBoundsException if there is no property with given ordinal
+     */
+    public final boolean isWritable(int ordinal) throws IndexOutOfBoundsException {
+        return writable[ordinal];
+    }
+
+    /**
+     * @return the ordinal of the property with given name or -1 if there is no such property
+     */
+    public final int ordinal(String name) {
+        int i = index(name, seed, mask);
+        String n = hashNames[i];
+        return n != null && (n == name || n.equals(name)) ? hashOrdinals[i] : -1;
+    }
+
+    // typed getters
+
+    public abstract boolean getBoolean(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract byte getByte(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract char getChar(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract short getShort(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract int getInt(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract long getLong(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract float getFloat(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract double getDouble(T object, int ordinal) throws IllegalArgumentException;
+
+    public abstract Object getObject(T object, int ordinal) throws IllegalArgumentException;
+
+    // typed setters
+
+    public abstract void setBoolean(T object, int ordinal, boolean value) throws IllegalArgumentException;
+
+    public abstract void setByte(T object, int ordinal, byte value) throws IllegalArgumentException;
+
+    public abstract void setChar(T object, int ordinal, char value) throws IllegalArgumentException;
+
+    public abstract void setShort(T object, int ordinal, short value) throws IllegalArgumentException;
+
+    public abstract void setInt(T object, int ordinal, int value) throws IllegalArgumentException;
+
+    public abstract void setLong(T object, int ordinal, long value) throws IllegalArgumentException;
+
+    public abstract void setFloat(T object, int ordinal, float value) throws IllegalArgumentException;
+
+    public abstract void setDouble(T object, int ordinal, double value) throws IllegalArgumentException;
+
+    /**
+     * @throws ClassCastException if the value is not an instance of the property's type (or of the corresponding
+     *                            wrapper class for a primitive property)
+     */
+    public abstract void setObject(T object, int ordinal, Object value)
+        throws IllegalArgumentException, ClassCastException;
+
+    /**
+     * Creates the exception thrown when a property is accessed by a typed method that does not support it.
+     * Invoked by generated code from the default branch of a {@code tableswitch}.
+     *
+     * @param ordinal    the ordinal of the property
+     * @param accessType the name of the type of the access method
+     * @param write      true for a setter
+     * @return an {@link IndexOutOfBoundsException} if there is no property with given ordinal or
+     *         an {@link IllegalArgumentException} otherwise
+     */
+    protected final RuntimeException unsupported(int ordinal, String accessType, boolean write) {
+        if (ordinal < 0 || ordinal >= fields.length)
+            return new IndexOutOfBoundsException("No property with ordinal: " + ordinal);
+        Field field = fields[ordinal];
+        String property = "Property #" + ordinal + " (" + field.getType().getName() + " " + field.getName() + ")";
+        if (write && Modifier.isFinal(field.getModifiers()))
+            return new IllegalArgumentException(property + " is final");
+        if (write && !writable[ordinal])
+            return new IllegalArgumentException(property + " is read-only");
+        return new IllegalArgumentException(property + " can't be " + (write ? "set from " : "read as ") + accessType);
+    }
+
+    // perfect hashing
+
+    private static final int MAX_SEEDS_PER_SIZE = 1024;
+    private static final int MAX_TABLE_SIZE = 1 << 20;
+
+    /**
+     * Finds a seed of the hash function and the smallest power of two table size (starting at twice the number of
+     * names) such that the names hash to distinct slots of the table.
+     */
+    private void computePerfectHash() {
+        int size = Integer.highestOneBit(Math.max(1, fields.length * 2 - 1)) << 1;
+        for (; size <= MAX_TABLE_SIZE; size <<= 1) {
+            String[] names = new String[size];
+            for (int s = 0; s < MAX_SEEDS_PER_SIZE; s++) {
+                int sd = s * 0x9E3779B9;
+                if (fill(names, sd, size - 1)) {
+                    this.seed = sd;
+                    this.mask = size - 1;
+                    this.hashNames = names;
+                    this.hashOrdinals = new int[size];
+                    for (int i = 0; i < fields.length; i++) {
+                        hashOrdinals[index(fields[i].getName(), sd, size - 1)] = i;
+                    }
+                    return;
+                }
+            }
+        }
+        throw new IllegalStateException("Can't compute a perfect hash of the names of " + fields.length + " properties");
+    }
+
+    private boolean fill(String[] names, int seed, int mask) {
+        Arrays.fill(names, null);
+        for (Field field : fields) {
+            String name = field.getName();
+            int i = index(name, seed, mask);
+            if (names[i] != null)
+                return false;
+            names[i] = name;
+        }
+        return true;
+    }
+
+    /**
+     * A seeded FNV-1a hash of the characters of the name reduced to the table index. Unlike
+     * {@link String#hashCode()}, whose collisions (such as "Aa" and "BB") are the same for any seed, collisions
+     * of this hash depend on the seed.
+     */
+    private static int index(String name, int seed, int mask) {
+        int h = seed ^ 0x811C9DC5;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x01000193;
+        }
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
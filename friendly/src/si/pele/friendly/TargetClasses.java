@@ -0,0 +1,24 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation, that when attached to a method of a friendly proxy interface, makes the proxy method
+ * receiver-polymorphic. The type of the first parameter of such proxy method is taken as a common supertype
+ * of the receivers and each class listed in the annotation is taken as a declaring class of one of the target
+ * methods. When called, the proxy method dispatches to the target method declared by the nearest listed
+ * superclass of the receiver's runtime class. See {@link Friendly#proxy(Class)} for details.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface TargetClasses {
+    Class<?>[] value();
+}
@@ -0,0 +1,34 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation, that when attached to a method of a friendly proxy interface, identifies the target method by the
+ * binary name of it's declaring class and it's method descriptor, so that the proxy method doesn't have to name
+ * them. The first parameter of such proxy method may be of any supertype of the target class (for example
+ * {@link Object} when the target class is a private nested class or a package-private class in another package),
+ * the remaining parameters of any supertypes of the target method's parameter types and the return type of any
+ * supertype of the target method's return type. See {@link Friendly#proxy(Class)} for details.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface TargetSignature {
+    /**
+     * @return the binary name of the target method's declaring class (as accepted by {@link Class#forName}),
+     *         for example {@code "com.acme.Outer$Hidden"}
+     */
+    String className();
+
+    /**
+     * @return the method descriptor of the target method, for example {@code "(JLjava/lang/String;)I"}
+     */
+    String descriptor();
+}
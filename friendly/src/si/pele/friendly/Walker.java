@@ -0,0 +1,417 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.friendly;
+
+import java.util.Arrays;
+
+/**
+ * A walker of object graphs obtained via {@link Friendly#walker} that estimates the retained size of a graph and
+ * compares and hashes graphs deeply. The fields of instances of the walked classes (exact runtime classes, not
+ * subclasses) are read by visitors generated per class as straight-line code invoking constant getter method
+ * handles, so no values are boxed and no fields are iterated reflectively while walking. The graph is traversed
+ * with an explicit stack (so deep graphs such as long linked lists don't overflow the thread's stack) and each
+ * object is visited once, even when it is referenced many times or from a cycle.<p>
+ * Objects reached through the graph are treated as follows:
+ * <ul>
+ * <li>Instances of walked classes are traversed through the fields that the caller of {@link Friendly#walker} has
+ * access to. Primitive fields are compared by their raw bits (like {@link Differ} does).</li>
+ * <li>Arrays of reference types are traversed through their elements.</li>
+ * <li>Primitive arrays are not traversed, they are compared with {@link Arrays#equals} and hashed with
+ * {@link Arrays#hashCode}.</li>
+ * <li>Any other object is a value: it is not traversed, it is compared with {@link Object#equals} (to a value of
+ * the same class) and hashed with {@link Object#hashCode} wherever it is referenced.</li>
+ * </ul>
+ * Graphs are compared and hashed by their shape: two graphs are deeply equal only if instances of walked classes
+ * and arrays shared (or cyclic) in one are shared the same way in the other, and equal graphs have equal
+ * {@link #deepHashCode}s. Values are compared regardless of their identity, so a graph referencing one
+ * {@link String} from two fields equals a graph referencing two equal strings (a copy obtained by serialization for
+ * example). Sizes of all objects, values included, are counted once per object. Sizes are estimates
+ * computed from the field offsets and array layouts of the running VM with 8-byte object alignment.<p>
+ * A walker is thread-safe - each invocation uses it's own traversal state.
+ */
+public final class Walker {
+
+    private final Class<?>[] classes;
+    private final Visitor[] visitors;
+
+    Walker(Class<?>[] classes, Visitor[] visitors) {
+        this.classes = classes;
+        this.visitors = visitors;
+    }
+
+    /**
+     * @return the walked classes
+     */
+    public Class<?>[] getClasses() {
+        return classes.clone();
+    }
+
+    /**
+     * Estimates the size in bytes of all objects reachable from given root (each counted once).
+     *
+     * @param root the root of the graph or null
+     * @return the estimated retained size of the graph (0 if root is null)
+     */
+    public long sizeOf(Object root) {
+        Traversal t = new Traversal(this);
+        t.push(root);
+        long size = 0L;
+        Object object;
+        while ((object = t.pop()) != null) {
+            Visitor visitor = visitor(object.getClass());
+            size += visitor.size(object);
+            visitor.references(object, t);
+        }
+        return size;
+    }
+
+    /**
+     * Compares the graphs reachable from given roots deeply.
+     *
+     * @param a the root of one graph or null
+     * @param b the root of the other graph or null
+     * @return true if the graphs are of the same shape and their objects are equal as described above
+     */
+    public boolean deepEquals(Object a, Object b) {
+        if (a == b)
+            return true;
+        Traversal t = new Traversal(this);
+        if (!t.pair(a, b))
+            return false;
+        Object x;
+        while ((x = t.pop()) != null) {
+            Object y = t.pop();
+            if (!visitor(x.getClass()).equal(x, y, t))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes a hash code of the graph reachable from given root consistent with {@link #deepEquals}.
+     *
+     * @param root the root of the graph or null
+     * @return the hash code of the graph (0 if root is null)
+     */
+    public int deepHashCode(Object root) {
+        Traversal t = new Traversal(this);
+        int h = t.hashRef(root);
+        Object object;
+        while ((object = t.pop()) != null) {
+            Visitor visitor = visitor(object.getClass());
+            h = 31 * (31 * h + visitor.classHash) + visitor.hash(object, t);
+        }
+        return h;
+    }
+
+    Visitor visitor(Class<?> clazz) {
+        Class<?>[] classes = this.classes;
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i] == clazz)
+                return visitors[i];
+        }
+        return DEFAULT_VISITORS.get(clazz);
+    }
+
+    /**
+     * Visitors of arrays and leaves.
+     */
+    private static final ClassValue<Visitor> DEFAULT_VISITORS = new ClassValue<Visitor>() {
+        @Override
+        protected Visitor computeValue(Class<?> clazz) {
+            return clazz.isArray() && !clazz.getComponentType().isPrimitive()
+                   ? new ObjectArrayVisitor(clazz)
+                   : new LeafVisitor(clazz);
+        }
+    };
+
+    /**
+     * A visitor of instances of a class. Visitors of walked classes are generated by {@link FriendlyWalkerFactory}.
+     */
+    abstract static class Visitor {
+        long shallowSize;
+        int classHash;
+        // true if instances are compared and hashed by value wherever they are referenced
+        boolean value;
+
+        final void init(Class<?> clazz, long shallowSize) {
+            this.shallowSize = shallowSize;
+            // stable across VMs unlike the identity hash code of the class
+            this.classHash = clazz.getName().hashCode();
+        }
+
+        /**
+         * @return the estimated size of given object (excluding the objects it references)
+         */
+        long size(Object object) {
+            return shallowSize;
+        }
+
+        /**
+         * Pushes the objects referenced by given object to the traversal.
+         */
+        abstract void references(Object object, Traversal t);
+
+        /**
+         * @return the hash code of given object with referenced objects hashed by {@link Traversal#hashRef}
+         */
+        abstract int hash(Object object, Traversal t);
+
+        /**
+         * @return true if given objects of the same class are equal with referenced objects compared by
+         *         {@link Traversal#pair}
+         */
+        abstract boolean equal(Object a, Object b, Traversal t);
+    }
+
+    /**
+     * A visitor of arrays of reference types.
+     */
+    private static final class ObjectArrayVisitor extends Visitor {
+        private final long baseOffset, indexScale;
+
+        ObjectArrayVisitor(Class<?> arrayClass) {
+            init(arrayClass, 0L);
+            baseOffset = FriendlyClassSpinner.UNSAFE.arrayBaseOffset(arrayClass);
+            indexScale = FriendlyClassSpinner.UNSAFE.arrayIndexScale(arrayClass);
+        }
+
+        @Override
+        long size(Object object) {
+            return FriendlyWalkerFactory.align(baseOffset + indexScale * ((Object[]) object).length);
+        }
+
+        @Override
+        void references(Object object, Traversal t) {
+            for (Object element : (Object[]) object) {
+                t.push(element);
+            }
+        }
+
+        @Override
+        int hash(Object object, Traversal t) {
+            Object[] array = (Object[]) object;
+            int h = array.length;
+            for (Object element : array) {
+                h = 31 * h + t.hashRef(element);
+            }
+            return h;
+        }
+
+        @Override
+        boolean equal(Object a, Object b, Traversal t) {
+            Object[] arrayA = (Object[]) a, arrayB = (Object[]) b;
+            if (arrayA.length != arrayB.length)
+                return false;
+            for (int i = 0; i < arrayA.length; i++) {
+                if (!t.pair(arrayA[i], arrayB[i]))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A visitor of objects that are not traversed (including primitive arrays).
+     */
+    private static final class LeafVisitor extends Visitor {
+        private final long baseOffset, indexScale;
+
+        LeafVisitor(Class<?> clazz) {
+            if (clazz.isArray()) {
+                init(clazz, 0L);
+                baseOffset = FriendlyClassSpinner.UNSAFE.arrayBaseOffset(clazz);
+                indexScale = FriendlyClassSpinner.UNSAFE.arrayIndexScale(clazz);
+            }
+            else {
+                init(clazz, FriendlyWalkerFactory.shallowSize(clazz));
+                baseOffset = indexScale = -1L;
+                value = true;
+            }
+        }
+
+        @Override
+        long size(Object object) {
+            return indexScale < 0L
+                   ? shallowSize
+                   : FriendlyWalkerFactory.align(baseOffset + indexScale * java.lang.reflect.Array.getLength(object));
+        }
+
+        @Override
+        void references(Object object, Traversal t) {
+        }
+
+        @Override
+        int hash(Object object, Traversal t) {
+            if (indexScale < 0L) return object.hashCode();
+            if (object instanceof byte[]) return Arrays.hashCode((byte[]) object);
+            if (object instanceof char[]) return Arrays.hashCode((char[]) object);
+            if (object instanceof int[]) return Arrays.hashCode((int[]) object);
+            if (object instanceof long[]) return Arrays.hashCode((long[]) object);
+            if (object instanceof double[]) return Arrays.hashCode((double[]) object);
+            if (object instanceof float[]) return Arrays.hashCode((float[]) object);
+            if (object instanceof short[]) return Arrays.hashCode((short[]) object);
+            return Arrays.hashCode((boolean[]) object);
+        }
+
+        @Override
+        boolean equal(Object a, Object b, Traversal t) {
+            if (indexScale < 0L) return a.equals(b);
+            if (a instanceof byte[]) return Arrays.equals((byte[]) a, (byte[]) b);
+            if (a instanceof char[]) return Arrays.equals((char[]) a, (char[]) b);
+            if (a instanceof int[]) return Arrays.equals((int[]) a, (int[]) b);
+            if (a instanceof long[]) return Arrays.equals((long[]) a, (long[]) b);
+            if (a instanceof double[]) return Arrays.equals((double[]) a, (double[]) b);
+            if (a instanceof float[]) return Arrays.equals((float[]) a, (float[]) b);
+            if (a instanceof short[]) return Arrays.equals((short[]) a, (short[]) b);
+            return Arrays.equals((boolean[]) a, (boolean[]) b);
+        }
+    }
+
+    /**
+     * The state of a single walk: a stack of objects to visit and tables of discovered objects with their ordinals
+     * (in the order of discovery) - one table per graph when comparing two graphs.
+     */
+    static final class Traversal {
+        private final Walker walker;
+        private Object[] stack = new Object[64];
+        private int top;
+        private final IdentityTable discovered = new IdentityTable();
+        private IdentityTable discoveredB;
+
+        Traversal(Walker walker) {
+            this.walker = walker;
+        }
+
+        Object pop() {
+            return top == 0 ? null : stack[--top];
+        }
+
+        private void stack(Object object) {
+            if (top == stack.length)
+                stack = Arrays.copyOf(stack, top * 2);
+            stack[top++] = object;
+        }
+
+        /**
+         * Pushes given object if it is not null and has not been discovered yet.
+         */
+        void push(Object object) {
+            if (object != null && discovered.putIfAbsent(object, discovered.size()) < 0)
+                stack(object);
+        }
+
+        /**
+         * Pushes given object if it is not null, is not a value and has not been discovered yet.
+         *
+         * @return a hash code of the reference - 0 for null, the hash of a value, 1 for a newly discovered object
+         *         (whose own hash code is combined when it is popped) and a hash of the ordinal for an already
+         *         discovered object
+         */
+        int hashRef(Object object) {
+            if (object == null)
+                return 0;
+            Visitor visitor = walker.visitor(object.getClass());
+            if (visitor.value)
+                return 31 * visitor.classHash + object.hashCode();
+            int ordinal = discovered.putIfAbsent(object, discovered.size());
+            if (ordinal < 0) {
+                stack(object);
+                return 1;
+            }
+            return ordinal * 0x9E3779B9 + 2;
+        }
+
+        /**
+         * Pushes given pair of objects (to be compared when popped) if they are both not null, not values and
+         * discovered for the first time in their graphs.
+         *
+         * @return false if the references can't lead to equal graphs: one is null and the other isn't, the objects
+         *         are of different classes, they are unequal values or they were not discovered at the same
+         *         position in their graphs
+         */
+        boolean pair(Object a, Object b) {
+            if (a == null || b == null)
+                return a == b;
+            if (a.getClass() != b.getClass())
+                return false;
+            if (walker.visitor(a.getClass()).value)
+                return a.equals(b);
+            if (discoveredB == null)
+                discoveredB = new IdentityTable();
+            int ordinal = discovered.size();
+            int ordinalA = discovered.putIfAbsent(a, ordinal);
+            int ordinalB = discoveredB.putIfAbsent(b, ordinal);
+            if (ordinalA < 0 && ordinalB < 0) {
+                // popped as a, b
+                stack(b);
+                stack(a);
+                return true;
+            }
+            return ordinalA == ordinalB;
+        }
+    }
+
+    /**
+     * An open-addressing identity hash table of objects and their (non-negative) ordinals with linear probing.
+     */
+    static final class IdentityTable {
+        private Object[] keys = new Object[64];
+        private int[] values = new int[64];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the value associated with given key or -1 if it was absent and given value has been associated
+         */
+        int putIfAbsent(Object key, int value) {
+            Object[] keys = this.keys;
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            Object k;
+            while ((k = keys[i]) != null) {
+                if (k == key)
+                    return values[i];
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size > (keys.length >> 1))
+                resize();
+            return -1;
+        }
+
+        private static int hash(Object key) {
+            int h = System.identityHashCode(key);
+            // spread the bits, so that consecutive identity hash codes don't cluster
+            return (h ^ (h >>> 16)) * 0x85EBCA6B;
+        }
+
+        private void resize() {
+            Object[] oldKeys = keys;
+            int[] oldValues = values;
+            int capacity = oldKeys.length * 2;
+            Object[] keys = new Object[capacity];
+            int[] values = new int[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                Object key = oldKeys[j];
+                if (key != null) {
+                    int i = hash(key) & mask;
+                    while (keys[i] != null)
+                        i = (i + 1) & mask;
+                    keys[i] = key;
+                    values[i] = oldValues[j];
+                }
+            }
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.microbench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Machine-readable benchmark results stored as a tab-separated text file with one line per benchmark and
+ * thread count:
+ * <pre>
+ * # benchmark	threads	samples	mean	stdev	ci95
+ * MHPerfTest.mh_call	1	3	2.4940	0.0040	0.0099
+ * </pre>
+ * Times are in ns/op. Lines starting with '#' are comments.
+ *
+ * @author peter
+ */
+public final class Baseline {
+
+    /**
+     * A result of one benchmark run with given number of threads.
+     */
+    public static final class Entry {
+        public final String benchmark;
+        public final int threads;
+        public final Statistics statistics;
+
+        public Entry(String benchmark, int threads, Statistics statistics) {
+            this.benchmark = benchmark;
+            this.threads = threads;
+            this.statistics = statistics;
+        }
+
+        String key() {
+            return Baseline.key(benchmark, threads);
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    static String key(String benchmark, int threads) {
+        return benchmark + "@" + threads;
+    }
+
+    /**
+     * @return the entry for given benchmark and thread count or null if there is none
+     */
+    public Entry get(String benchmark, int threads) {
+        return entries.get(key(benchmark, threads));
+    }
+
+    /**
+     * Adds or replaces the entry for it's benchmark and thread count.
+     */
+    public void put(Entry entry) {
+        entries.put(entry.key(), entry);
+    }
+
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * @return the baseline read from given file or an empty baseline if the file does not exist
+     */
+    public static Baseline load(File file) throws IOException {
+        Baseline baseline = new Baseline();
+        if (!file.exists())
+            return baseline;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] cols = line.split("\t");
+                if (cols.length != 6)
+                    throw new IOException(file + ":" + lineNo + ": expected 6 tab-separated columns");
+                try {
+                    baseline.put(new Entry(
+                        cols[0],
+                        Integer.parseInt(cols[1]),
+                        new Statistics(
+                            Integer.parseInt(cols[2]),
+                            Double.parseDouble(cols[3]),
+                            Double.parseDouble(cols[4]),
+                            Double.parseDouble(cols[5])
+                        )
+                    ));
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Writes this baseline to given file, replacing it's content.
+     */
+    public void store(File file) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+            out.write("# benchmark\tthreads\tsamples\tmean\tstdev\tci95 (times in ns/op)");
+            out.newLine();
+            for (Entry e : entries.values()) {
+                out.write(String.format(
+                    Locale.ROOT, "%s\t%d\t%d\t%.4f\t%.4f\t%.4f",
+                    e.benchmark, e.threads, e.statistics.n, e.statistics.mean, e.statistics.stdev, e.statistics.ci95
+                ));
+                out.newLine();
+            }
+        }
+    }
+}
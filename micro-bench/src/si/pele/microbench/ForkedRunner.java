@@ -0,0 +1,119 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.microbench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a benchmark in a freshly forked JVM, so that profile pollution, JIT decisions and heap layout of
+ * one benchmark don't influence another. The forked JVM executes {@link #main} which reports each measured
+ * iteration as a line of the form: {@code sample <ns/op>} on it's standard output.
+ *
+ * @author peter
+ */
+public final class ForkedRunner {
+
+    private static final String SAMPLE_PREFIX = "sample ";
+
+    private final List<String> jvmArgs;
+    private final int warmupIterations, measureIterations;
+    private final long iterationMillis;
+
+    /**
+     * @param jvmArgs           additional arguments passed to the forked JVM
+     * @param warmupIterations  number of discarded iterations executed before measurement
+     * @param measureIterations number of measured iterations
+     * @param iterationMillis   duration of each iteration
+     */
+    public ForkedRunner(List<String> jvmArgs, int warmupIterations, int measureIterations, long iterationMillis) {
+        this.jvmArgs = new ArrayList<>(jvmArgs);
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+    /**
+     * Runs given benchmark with given number of threads in a new JVM with the same class path as this JVM.
+     *
+     * @return the measured average times per operation of each iteration (averaged over threads)
+     */
+    public double[] run(Class<? extends TestRunner.Test> testClass, int threads) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ForkedRunner.class.getName());
+        command.add(testClass.getName());
+        command.add(String.valueOf(threads));
+        command.add(String.valueOf(warmupIterations));
+        command.add(String.valueOf(measureIterations));
+        command.add(String.valueOf(iterationMillis));
+
+        Process process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        process.getOutputStream().close();
+
+        List<Double> samples = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(SAMPLE_PREFIX))
+                    samples.add(Double.valueOf(line.substring(SAMPLE_PREFIX.length())));
+                else
+                    System.out.println(line);
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0)
+            throw new IOException("Forked JVM running " + testClass.getName() + " exited with code: " + exitCode);
+        if (samples.size() != measureIterations)
+            throw new IOException("Forked JVM running " + testClass.getName() + " reported " + samples.size() +
+                                  " samples, expected " + measureIterations);
+        double[] result = new double[samples.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = samples.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Entry point of the forked JVM.<p>
+     * Arguments: testClass threads warmupIterations measureIterations iterationMillis
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5) {
+            System.err.println("Usage: " + ForkedRunner.class.getName() +
+                               " testClass threads warmupIterations measureIterations iterationMillis");
+            System.exit(2);
+        }
+        Class<? extends TestRunner.Test> testClass =
+            Class.forName(args[0]).asSubclass(TestRunner.Test.class);
+        int threads = Integer.parseInt(args[1]);
+        int warmupIterations = Integer.parseInt(args[2]);
+        int measureIterations = Integer.parseInt(args[3]);
+        long iterationMillis = Long.parseLong(args[4]);
+
+        // the same instances are used in all iterations, so that the heap layout of their state is stable
+        TestRunner.Test[] tests = new TestRunner.Test[threads];
+        for (int i = 0; i < threads; i++) {
+            tests[i] = TestRunner.newTest(testClass);
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            TestRunner.run(tests, iterationMillis);
+        }
+        for (int i = 0; i < measureIterations; i++) {
+            System.out.println(SAMPLE_PREFIX + TestRunner.run(tests, iterationMillis).avg());
+        }
+        System.out.flush();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.microbench;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs benchmarks in forked JVMs and compares the results against a recorded {@link Baseline}, exiting with
+ * a non-zero status when any of them regresses. Intended to be run locally before committing a change:
+ * <pre>
+ * java -cp &lt;classpath&gt; si.pele.microbench.RegressionGate [options] suiteOrTestClass...
+ * </pre>
+ * A suite class argument (a subclass of {@link TestRunner}) stands for all it's public static nested
+ * {@link TestRunner.Test} subclasses. Benchmarks are named {@code Suite.test}.<p>
+ * Options:
+ * <ul>
+ * <li>{@code --baseline <file>} the baseline file (default: perf_baseline.tsv)</li>
+ * <li>{@code --record} store the current results into the baseline file after the comparison</li>
+ * <li>{@code --forks <n>} number of forked JVMs per benchmark and thread count (default: 3)</li>
+ * <li>{@code --warmup <n>} number of warm-up iterations in each fork (default: 5)</li>
+ * <li>{@code --iterations <n>} number of measured iterations in each fork (default: 5)</li>
+ * <li>{@code --time <ms>} duration of each iteration (default: 1000)</li>
+ * <li>{@code --threads <n,n,...>} thread counts to run each benchmark with (default: 1)</li>
+ * <li>{@code --tolerance <percent>} slow-down tolerated on top of the confidence intervals (default: 5)</li>
+ * <li>{@code --relative <benchmark>=<reference>} also require that the benchmark is not slower than the
+ * reference benchmark measured in the same session (for example: MHPerfTest.mh_call=MHPerfTest.normal_call)</li>
+ * <li>{@code -J<arg>} pass an argument to forked JVMs</li>
+ * </ul>
+ * A result is a regression when the lower bound of it's 95% confidence interval is above the upper bound of
+ * the reference's 95% confidence interval increased by the tolerance. With more than one fork the confidence
+ * interval is computed from per-fork means, so it includes the fork-to-fork variance.<p>
+ * Exit status: 0 - no regressions, 1 - regressions found, 2 - invalid arguments.
+ *
+ * @author peter
+ */
+public final class RegressionGate {
+
+    public static void main(String[] args) throws Exception {
+        File baselineFile = new File("perf_baseline.tsv");
+        boolean record = false;
+        int forks = 3, warmup = 5, iterations = 5;
+        long time = 1000L;
+        int[] threadCounts = {1};
+        double tolerance = 0.05d;
+        Map<String, String> relative = new LinkedHashMap<>();
+        List<String> jvmArgs = new ArrayList<>();
+        List<Class<? extends TestRunner.Test>> tests = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--baseline")) baselineFile = new File(args[++i]);
+                else if (arg.equals("--record")) record = true;
+                else if (arg.equals("--forks")) forks = positive(arg, Integer.parseInt(args[++i]));
+                else if (arg.equals("--warmup")) warmup = Integer.parseInt(args[++i]);
+                else if (arg.equals("--iterations")) iterations = positive(arg, Integer.parseInt(args[++i]));
+                else if (arg.equals("--time")) time = positive(arg, Integer.parseInt(args[++i]));
+                else if (arg.equals("--threads")) threadCounts = parseInts(args[++i]);
+                else if (arg.equals("--tolerance")) tolerance = Double.parseDouble(args[++i]) / 100d;
+                else if (arg.equals("--relative")) {
+                    String[] pair = args[++i].split("=");
+                    if (pair.length != 2) throw new IllegalArgumentException("Invalid --relative: " + args[i]);
+                    relative.put(pair[0], pair[1]);
+                }
+                else if (arg.startsWith("-J")) jvmArgs.add(arg.substring(2));
+                else if (arg.startsWith("-")) throw new IllegalArgumentException("Unknown option: " + arg);
+                else tests.addAll(benchmarks(Class.forName(arg)));
+            }
+            if (tests.isEmpty())
+                throw new IllegalArgumentException("No benchmarks specified");
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | ClassNotFoundException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.toString());
+            System.err.println("Usage: " + RegressionGate.class.getName() +
+                               " [--baseline file] [--record] [--forks n] [--warmup n] [--iterations n]" +
+                               " [--time ms] [--threads n,n,...] [--tolerance percent]" +
+                               " [--relative benchmark=reference]... [-Jjvmarg]... suiteOrTestClass...");
+            System.exit(2);
+            return;
+        }
+
+        ForkedRunner runner = new ForkedRunner(jvmArgs, warmup, iterations, time);
+        Baseline baseline = Baseline.load(baselineFile);
+        Baseline current = new Baseline();
+
+        for (Class<? extends TestRunner.Test> test : tests) {
+            for (int threads : threadCounts) {
+                System.out.printf(Locale.ROOT, "# Running: %s with %d thread(s) in %d fork(s)\n", name(test), threads, forks);
+                double[] forkMeans = new double[forks];
+                double[] allSamples = new double[0];
+                for (int f = 0; f < forks; f++) {
+                    double[] samples = runner.run(test, threads);
+                    forkMeans[f] = Statistics.of(samples).mean;
+                    int n = allSamples.length;
+                    allSamples = Arrays.copyOf(allSamples, n + samples.length);
+                    System.arraycopy(samples, 0, allSamples, n, samples.length);
+                }
+                Statistics statistics = Statistics.of(forks > 1 ? forkMeans : allSamples);
+                current.put(new Baseline.Entry(name(test), threads, statistics));
+            }
+        }
+
+        int regressions = 0;
+        System.out.println();
+        System.out.printf(
+            Locale.ROOT, "%-40s %7s  %-28s %-28s %8s  %s\n",
+            "benchmark", "threads", "baseline [ns/op]", "current [ns/op]", "change", "status"
+        );
+        for (Baseline.Entry cur : current.entries()) {
+            Baseline.Entry base = baseline.get(cur.benchmark, cur.threads);
+            String status;
+            if (base == null) {
+                status = "NEW";
+            }
+            else {
+                status = compare(cur.statistics, base.statistics, tolerance);
+                if (status.equals("REGRESSION")) regressions++;
+            }
+            System.out.printf(
+                Locale.ROOT, "%-40s %7d  %-28s %-28s %8s  %s\n",
+                cur.benchmark, cur.threads,
+                base == null ? "-" : base.statistics.toString(),
+                cur.statistics.toString(),
+                base == null ? "-" : String.format(Locale.ROOT, "%+.1f%%", 100d * (cur.statistics.mean / base.statistics.mean - 1d)),
+                status
+            );
+        }
+
+        if (!relative.isEmpty()) {
+            System.out.println();
+            for (Map.Entry<String, String> rel : relative.entrySet()) {
+                for (int threads : threadCounts) {
+                    Baseline.Entry cur = current.get(rel.getKey(), threads);
+                    Baseline.Entry ref = current.get(rel.getValue(), threads);
+                    if (cur == null || ref == null) {
+                        System.out.printf(Locale.ROOT, "%s vs %s (%d threads): not measured\n", rel.getKey(), rel.getValue(), threads);
+                        regressions++;
+                        continue;
+                    }
+                    String status = compare(cur.statistics, ref.statistics, tolerance);
+                    if (status.equals("REGRESSION")) regressions++;
+                    System.out.printf(
+                        Locale.ROOT, "%s vs %s (%d threads): %s vs %s  %s\n",
+                        rel.getKey(), rel.getValue(), threads, cur.statistics, ref.statistics,
+                        status.equals("REGRESSION") ? "SLOWER" : "OK"
+                    );
+                }
+            }
+        }
+
+        if (record) {
+            for (Baseline.Entry e : current.entries()) {
+                baseline.put(e);
+            }
+            baseline.store(baselineFile);
+            System.out.println();
+            System.out.println("# Baseline recorded into: " + baselineFile);
+        }
+
+        System.out.println();
+        System.out.println(regressions == 0 ? "# No regressions" : "# Regressions: " + regressions);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return REGRESSION, IMPROVEMENT or OK
+     */
+    static String compare(Statistics current, Statistics reference, double tolerance) {
+        if (current.lower() > reference.upper() * (1d + tolerance))
+            return "REGRESSION";
+        if (current.upper() * (1d + tolerance) < reference.lower())
+            return "IMPROVEMENT";
+        return "OK";
+    }
+
+    /**
+     * @return the name of given benchmark: Suite.test
+     */
+    static String name(Class<? extends TestRunner.Test> test) {
+        Class<?> suite = test.getDeclaringClass();
+        return suite == null ? test.getSimpleName() : suite.getSimpleName() + "." + test.getSimpleName();
+    }
+
+    /**
+     * @return given class if it is a benchmark or all public static nested benchmarks of given suite class
+     *         sorted by name
+     */
+    static List<Class<? extends TestRunner.Test>> benchmarks(Class<?> clazz) {
+        List<Class<? extends TestRunner.Test>> benchmarks = new ArrayList<>();
+        if (TestRunner.Test.class.isAssignableFrom(clazz)) {
+            benchmarks.add(clazz.asSubclass(TestRunner.Test.class));
+        }
+        else if (TestRunner.class.isAssignableFrom(clazz)) {
+            for (Class<?> nested : clazz.getDeclaredClasses()) {
+                int mod = nested.getModifiers();
+                if (TestRunner.Test.class.isAssignableFrom(nested) &&
+                    Modifier.isPublic(mod) && Modifier.isStatic(mod) && !Modifier.isAbstract(mod))
+                    benchmarks.add(nested.asSubclass(TestRunner.Test.class));
+            }
+            Collections.sort(benchmarks, new Comparator<Class<?>>() {
+                @Override
+                public int compare(Class<?> c1, Class<?> c2) {
+                    return c1.getSimpleName().compareTo(c2.getSimpleName());
+                }
+            });
+        }
+        else {
+            throw new IllegalArgumentException("Not a benchmark or benchmark suite: " + clazz.getName());
+        }
+        return benchmarks;
+    }
+
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] ints = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ints[i] = positive("--threads", Integer.parseInt(parts[i].trim()));
+        }
+        return ints;
+    }
+
+    private static int positive(String option, int value) {
+        if (value <= 0)
+            throw new IllegalArgumentException(option + " must be positive: " + value);
+        return value;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.microbench;
+
+import java.util.Locale;
+
+/**
+ * Summary statistics of a sample of measurements with a 95% confidence interval of the mean computed
+ * using Student's t-distribution.
+ *
+ * @author peter
+ */
+public final class Statistics {
+
+    /**
+     * Two-sided 95% critical values of Student's t-distribution for 1 .. 30 degrees of freedom.
+     */
+    private static final double[] T95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    public final int n;
+    public final double mean, stdev;
+    /**
+     * Half-width of the 95% confidence interval of the mean (0 for samples of less than 2 measurements)
+     */
+    public final double ci95;
+
+    public Statistics(int n, double mean, double stdev, double ci95) {
+        this.n = n;
+        this.mean = mean;
+        this.stdev = stdev;
+        this.ci95 = ci95;
+    }
+
+    /**
+     * @return the statistics of given sample
+     */
+    public static Statistics of(double... samples) {
+        int n = samples.length;
+        double sum = 0d;
+        for (double s : samples) sum += s;
+        double mean = n == 0 ? Double.NaN : sum / n;
+        if (n < 2)
+            return new Statistics(n, mean, 0d, 0d);
+        double sq = 0d;
+        for (double s : samples) sq += (s - mean) * (s - mean);
+        double stdev = Math.sqrt(sq / (n - 1));
+        double t = n - 1 <= T95.length ? T95[n - 2] : 1.960;
+        return new Statistics(n, mean, stdev, t * stdev / Math.sqrt(n));
+    }
+
+    public double lower() {
+        return mean - ci95;
+    }
+
+    public double upper() {
+        return mean + ci95;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%.3f \u00b1(95%%) %.3f", mean, ci95);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package si.pele.microbench;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A simple multi-threaded micro-benchmark runner. Benchmarks are written as public static nested subclasses
+ * of {@link Test} inside a subclass of this class (the suite) and run with {@link #doTest}, for example:
+ * <pre>
+ * public class MyPerfTest extends TestRunner {
+ *
+ *     public static final class my_test extends Test {
+ *         &#64;Override
+ *         protected void doLoop(Loop loop, DevNull devNull1, DevNull devNull2, DevNull devNull3, DevNull devNull4, DevNull devNull5) {
+ *             while (loop.nextIteration()) {
+ *                 devNull1.yield(...);
+ *             }
+ *         }
+ *     }
+ *
+ *     public static void main(String[] args) throws Throwable {
+ *         doTest(my_test.class, 5000L, 1, 8, 1);
+ *     }
+ * }
+ * </pre>
+ * Each thread executing a benchmark gets it's own instance of the {@link Test} subclass, so per-instance state
+ * is thread-confined unless the test deliberately shares it via static fields.<p>
+ * {@link #doTest} runs in the current JVM and prints a human readable report. Use {@link RegressionGate} to run
+ * benchmarks in forked JVMs, record results into a machine-readable {@link Baseline} and check them against it.
+ *
+ * @author peter
+ */
+public abstract class TestRunner {
+
+    /**
+     * A benchmark. Subclasses must be public and have a public no-arg constructor.
+     */
+    public static abstract class Test {
+        /**
+         * Executes the benchmarked operation once per {@link Loop#nextIteration()} returning true, feeding
+         * the results into the given {@link DevNull}s so that JIT can not eliminate the operation.
+         */
+        protected abstract void doLoop(Loop loop, DevNull devNull1, DevNull devNull2, DevNull devNull3, DevNull devNull4, DevNull devNull5);
+    }
+
+    /**
+     * The loop control of a running benchmark thread.
+     */
+    public static final class Loop {
+        private volatile boolean stop;
+        private long iterations;
+
+        Loop() {
+        }
+
+        /**
+         * @return true if the benchmark should execute another iteration of the operation
+         */
+        public boolean nextIteration() {
+            if (stop) return false;
+            iterations++;
+            return true;
+        }
+
+        void stop() {
+            stop = true;
+        }
+
+        long iterations() {
+            return iterations;
+        }
+    }
+
+    /**
+     * A sink for the results of benchmarked operations. It consumes the values in a way that JIT can not prove
+     * to be unobservable, but never actually publishes them.
+     */
+    public static final class DevNull {
+        private volatile int i1, i2 = 1;
+        private volatile long l1, l2 = 1L;
+        private volatile double d1, d2 = 1d;
+        private volatile Object o1;
+        private volatile boolean b1;
+        private volatile Object sink;
+
+        DevNull() {
+        }
+
+        public void yield(int v) {
+            if (v == i1 & v == i2) sink = this;
+        }
+
+        public void yield(long v) {
+            if (v == l1 & v == l2) sink = this;
+        }
+
+        public void yield(double v) {
+            if (v == d1 & v == d2) sink = this;
+        }
+
+        public void yield(boolean v) {
+            if (v == b1 & v != b1) sink = this;
+        }
+
+        public void yield(Object v) {
+            if (v == o1) sink = this;
+        }
+    }
+
+    /**
+     * The result of a single timed run of a benchmark with a given number of threads.
+     */
+    public static final class Run {
+        /**
+         * Number of threads executing the benchmark concurrently
+         */
+        public final int threads;
+        /**
+         * Average time per operation of each thread in nanoseconds
+         */
+        public final double[] nsPerOp;
+
+        Run(int threads, double[] nsPerOp) {
+            this.threads = threads;
+            this.nsPerOp = nsPerOp;
+        }
+
+        /**
+         * @return average time per operation over all threads in nanoseconds
+         */
+        public double avg() {
+            return Statistics.of(nsPerOp).mean;
+        }
+
+        /**
+         * @return standard deviation of the threads' average times per operation in nanoseconds
+         */
+        public double stdev() {
+            return Statistics.of(nsPerOp).stdev;
+        }
+    }
+
+    /**
+     * Executes given benchmark concurrently in given number of threads for given duration.
+     *
+     * @param testClass      the benchmark
+     * @param threads        number of concurrent threads, each executing it's own instance of the benchmark
+     * @param durationMillis duration of the run
+     * @return the measured average times per operation of each thread
+     */
+    public static Run run(Class<? extends Test> testClass, int threads, long durationMillis) throws InterruptedException {
+        final Test[] tests = new Test[threads];
+        for (int i = 0; i < threads; i++) {
+            tests[i] = newTest(testClass);
+        }
+        return run(tests, durationMillis);
+    }
+
+    /**
+     * Executes given benchmark instances concurrently, each in it's own thread, for given duration.
+     */
+    static Run run(final Test[] tests, long durationMillis) throws InterruptedException {
+        int threads = tests.length;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final Loop[] loops = new Loop[threads];
+        final long[] elapsedNanos = new long[threads];
+        final Throwable[] failures = new Throwable[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            loops[i] = new Loop();
+            workers[i] = new Thread(tests[i].getClass().getSimpleName() + "-" + i) {
+                @Override
+                public void run() {
+                    DevNull devNull1 = new DevNull(), devNull2 = new DevNull(), devNull3 = new DevNull(),
+                        devNull4 = new DevNull(), devNull5 = new DevNull();
+                    try {
+                        startLatch.await();
+                        long t0 = System.nanoTime();
+                        tests[index].doLoop(loops[index], devNull1, devNull2, devNull3, devNull4, devNull5);
+                        elapsedNanos[index] = System.nanoTime() - t0;
+                    }
+                    catch (Throwable t) {
+                        failures[index] = t;
+                    }
+                }
+            };
+            workers[i].start();
+        }
+
+        startLatch.countDown();
+        Thread.sleep(durationMillis);
+        for (Loop loop : loops) {
+            loop.stop();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        double[] nsPerOp = new double[threads];
+        for (int i = 0; i < threads; i++) {
+            if (failures[i] != null)
+                throw new IllegalStateException("Benchmark thread " + workers[i].getName() + " failed", failures[i]);
+            nsPerOp[i] = loops[i].iterations() == 0
+                         ? Double.NaN
+                         : (double) elapsedNanos[i] / (double) loops[i].iterations();
+        }
+        return new Run(threads, nsPerOp);
+    }
+
+    /**
+     * Runs given benchmark in the current JVM and prints the results to {@link System#out}. The benchmark is first
+     * warmed-up with {@code minThreads} threads twice and then measured with number of threads going from
+     * {@code minThreads} to {@code maxThreads} in steps of {@code threadsStep}. Each run lasts
+     * {@code runDurationMillis}.
+     */
+    public static void doTest(
+        Class<? extends Test> testClass,
+        long runDurationMillis,
+        int minThreads,
+        int maxThreads,
+        int threadsStep
+    ) throws InterruptedException {
+        NumberFormat nf = NumberFormat.getIntegerInstance(Locale.ROOT);
+        nf.setGroupingUsed(true);
+        System.out.println("#");
+        System.out.printf(
+            Locale.ROOT,
+            "# %s: run duration: %6s ms, #of logical CPUS: %d\n",
+            testClass.getSimpleName(), nf.format(runDurationMillis), Runtime.getRuntime().availableProcessors()
+        );
+        System.out.println("#");
+        System.out.println("# Warm up:");
+        for (int i = 0; i < 2; i++) {
+            printRun(run(testClass, minThreads, runDurationMillis));
+        }
+        System.out.println("# Measure:");
+        for (int threads = minThreads; threads <= maxThreads; threads += threadsStep) {
+            printRun(run(testClass, threads, runDurationMillis));
+        }
+        System.out.println();
+    }
+
+    private static void printRun(Run run) {
+        System.out.printf(
+            Locale.ROOT,
+            "%12d threads, Tavg = %9.2f ns/op (\u03c3 = %7.2f ns/op)\n",
+            run.threads, run.avg(), run.stdev()
+        );
+    }
+
+    static Test newTest(Class<? extends Test> testClass) {
+        try {
+            return testClass.getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't instantiate benchmark: " + testClass.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import sun.reflect.ConstructorAccessor;
+import sun.reflect.FieldAccessor;
+import sun.reflect.MethodAccessor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Hooks called from the {@code newMethodAccessor}, {@code newConstructorAccessor} and {@code newFieldAccessor}
+ * methods of {@link sun.reflect.ReflectionFactory} instrumented by {@link ReflectionAgent}. Each hook receives the
+ * accessor created by the JDK and the reflective object it was created for and returns the accessor that is
+ * installed into the reflective object instead. The hooks must be public, as they are called from a class in
+ * another package, but are not meant to be called by other code.
+ *
+ * @author peter
+ */
+public final class AccessorHooks {
+
+    private AccessorHooks() {
+    }
+
+    // null until the agent is installed
+    static volatile AccessorPolicy policy;
+
+    public static MethodAccessor methodAccessor(MethodAccessor jdkAccessor, Method method) {
+        AccessorPolicy p = policy;
+        if (p == null || !p.isEligible(method.getDeclaringClass()))
+            return jdkAccessor;
+        if (p.threshold() > 0)
+            return new InflatingMethodAccessor(method, jdkAccessor, p.threshold());
+        MethodAccessor mhAccessor = newMethodAccessor(method);
+        return mhAccessor == null ? jdkAccessor : mhAccessor;
+    }
+
+    public static ConstructorAccessor constructorAccessor(ConstructorAccessor jdkAccessor, Constructor<?> constructor) {
+        AccessorPolicy p = policy;
+        Class<?> declaringClass = constructor.getDeclaringClass();
+        // the JDK's accessor of an abstract class constructor just throws InstantiationException
+        if (p == null || !p.isEligible(declaringClass) || Modifier.isAbstract(declaringClass.getModifiers()))
+            return jdkAccessor;
+        if (p.threshold() > 0)
+            return new InflatingConstructorAccessor(constructor, jdkAccessor, p.threshold());
+        ConstructorAccessor mhAccessor = newConstructorAccessor(constructor);
+        return mhAccessor == null ? jdkAccessor : mhAccessor;
+    }
+
+    public static FieldAccessor fieldAccessor(FieldAccessor jdkAccessor, Field field, boolean override) {
+        AccessorPolicy p = policy;
+        if (p == null || !p.isEligible(field.getDeclaringClass()))
+            return jdkAccessor;
+        try {
+            return MHAccessors.newFieldAccessor(field, override);
+        }
+        catch (LinkageError | RuntimeException e) {
+            return jdkAccessor;
+        }
+    }
+
+    /**
+     * @return a MH-based accessor for given method or null if one can't be created, in which case the caller keeps
+     *         using the JDK's accessor
+     */
+    static MethodAccessor newMethodAccessor(Method method) {
+        try {
+            return MHAccessors.newMethodAccessor(method);
+        }
+        catch (LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a MH-based accessor for given constructor or null if one can't be created (for example for a
+     *         constructor of an abstract class), in which case the caller keeps using the JDK's accessor
+     */
+    static ConstructorAccessor newConstructorAccessor(Constructor<?> constructor) {
+        try {
+            return MHAccessors.newConstructorAccessor(constructor);
+        }
+        catch (LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The policy of {@link ReflectionAgent} deciding which reflective objects get MH-based accessors and when.<p>
+ * A member is eligible when it's declaring class name starts with one of the included prefixes (all classes are
+ * included when there are no prefixes). Members of classes loaded by the bootstrap or extension class loader and
+ * of VM-anonymous classes are never eligible: the former may be caller-sensitive (which a method handle obtained
+ * with the trusted lookup would not honor) and the latter can't be looked up by name.<p>
+ * Eligible methods and constructors start with the JDK's accessor and switch to the MH-based one after they have
+ * been invoked {@link #threshold()} times, so that members invoked only a few times (the majority in a typical
+ * application) don't pay for spinning method handles. Threshold 0 installs MH-based accessors immediately.
+ * Eligible fields always get MH-based accessors immediately, as the JDK's field accessors are not inflated either.
+ *
+ * @author peter
+ */
+public final class AccessorPolicy {
+
+    /**
+     * The default threshold - the same as the JDK's default {@code sun.reflect.inflationThreshold}.
+     */
+    public static final int DEFAULT_THRESHOLD = 15;
+
+    private final List<String> includes;
+    private final int threshold;
+
+    public AccessorPolicy(List<String> includes, int threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("Negative threshold: " + threshold);
+        this.includes = Collections.unmodifiableList(new ArrayList<>(includes));
+        this.threshold = threshold;
+    }
+
+    /**
+     * Parses agent arguments of the form {@code include=prefix1:prefix2:...,threshold=N} where both
+     * options are optional.
+     *
+     * @param args the agent arguments or null
+     * @throws IllegalArgumentException if the arguments can't be parsed
+     */
+    public static AccessorPolicy parse(String args) throws IllegalArgumentException {
+        List<String> includes = Collections.emptyList();
+        int threshold = DEFAULT_THRESHOLD;
+        if (args != null && !args.isEmpty()) {
+            for (String option : args.split(",")) {
+                int i = option.indexOf('=');
+                String name = i < 0 ? option : option.substring(0, i);
+                String value = i < 0 ? "" : option.substring(i + 1);
+                switch (name) {
+                    case "include":
+                        includes = value.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(value.split(":"));
+                        break;
+                    case "threshold":
+                        try {
+                            threshold = Integer.parseInt(value);
+                        }
+                        catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid threshold: " + value);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+        }
+        return new AccessorPolicy(includes, threshold);
+    }
+
+    /**
+     * @return the included class name prefixes (empty if all classes are included)
+     */
+    public List<String> includes() {
+        return includes;
+    }
+
+    /**
+     * @return the number of invocations of a method or constructor through the JDK's accessor before it switches
+     *         to the MH-based accessor
+     */
+    public int threshold() {
+        return threshold;
+    }
+
+    /**
+     * @return true if members declared by given class are eligible for MH-based accessors
+     */
+    public boolean isEligible(Class<?> declaringClass) {
+        ClassLoader loader = declaringClass.getClassLoader();
+        if (loader == null || loader == EXT_LOADER)
+            return false;
+        String name = declaringClass.getName();
+        if (name.indexOf('/') >= 0)
+            return false; // VM-anonymous class
+        if (includes.isEmpty())
+            return true;
+        for (String prefix : includes) {
+            if (name.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessorPolicy[includes=" + includes + ", threshold=" + threshold + "]";
+    }
+
+    private static final ClassLoader EXT_LOADER = ClassLoader.getSystemClassLoader().getParent();
+}
@@ -0,0 +1,198 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+/**
+ * A per-parameter argument converter implementing the conversion semantics of {@link java.lang.reflect.Method#invoke}
+ * exactly: a reference parameter accepts null or an instance of the parameter type, a primitive parameter accepts
+ * a non-null wrapper object whose primitive value can be converted to the parameter type by an identity or widening
+ * primitive conversion. Converters are computed ahead of time for each parameter of the method and convert arguments
+ * into objects that are accepted by an {@link java.lang.invoke.MethodHandle#asType(java.lang.invoke.MethodType)
+ * asType} adaptation of a method handle without the possibility of a {@link ClassCastException} being thrown.
+ * A mismatch is reported by returning the {@link #MISMATCH} sentinel instead of throwing.
+ *
+ * @author peter
+ */
+abstract class ArgumentConverter {
+
+    /**
+     * The sentinel returned from {@link #convert} when the argument is not acceptable.
+     */
+    static final Object MISMATCH = new Object();
+
+    /**
+     * @param arg the argument
+     * @return the converted argument or {@link #MISMATCH} if the argument is not acceptable
+     */
+    abstract Object convert(Object arg);
+
+    /**
+     * @return a converter for the parameter of given type
+     */
+    static ArgumentConverter forType(Class<?> parameterType) {
+        if (!parameterType.isPrimitive())
+            return parameterType == Object.class ? IDENTITY : new ReferenceConverter(parameterType);
+        if (parameterType == boolean.class)
+            return new ExactConverter(Boolean.class);
+        if (parameterType == char.class)
+            return new ExactConverter(Character.class);
+        if (parameterType == byte.class)
+            return new ExactConverter(Byte.class);
+        if (parameterType == short.class)
+            return SHORT;
+        if (parameterType == int.class)
+            return INT;
+        if (parameterType == long.class)
+            return LONG;
+        if (parameterType == float.class)
+            return FLOAT;
+        if (parameterType == double.class)
+            return DOUBLE;
+        throw new IllegalArgumentException("Invalid parameter type: " + parameterType);
+    }
+
+    /**
+     * @return the converters for given parameter types
+     */
+    static ArgumentConverter[] forTypes(Class<?>[] parameterTypes) {
+        ArgumentConverter[] converters = new ArgumentConverter[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            converters[i] = forType(parameterTypes[i]);
+        }
+        return converters;
+    }
+
+    /**
+     * Converts given arguments with given converters. The returned array is the {@code args} array itself if all
+     * arguments are converted to themselves (the common case) or a copy with converted arguments otherwise.
+     *
+     * @return converted arguments or null if the number of arguments does not match or any of them is
+     *         not acceptable
+     */
+    static Object[] convert(ArgumentConverter[] converters, Object[] args) {
+        int n = args == null ? 0 : args.length;
+        if (n != converters.length)
+            return null;
+        Object[] converted = args;
+        for (int i = 0; i < n; i++) {
+            Object arg = args[i];
+            Object conv = converters[i].convert(arg);
+            if (conv != arg) {
+                if (conv == MISMATCH)
+                    return null;
+                if (converted == args)
+                    converted = args.clone();
+                converted[i] = conv;
+            }
+        }
+        return converted == null ? EMPTY : converted;
+    }
+
+    /**
+     * @return the message of an {@link IllegalArgumentException} describing why given arguments are not
+     *         acceptable by given converters
+     */
+    static String mismatchMessage(ArgumentConverter[] converters, Object[] args) {
+        int n = args == null ? 0 : args.length;
+        return n != converters.length ? "wrong number of arguments" : "argument type mismatch";
+    }
+
+    private static final Object[] EMPTY = new Object[0];
+
+    // converters
+
+    private static final ArgumentConverter IDENTITY = new ArgumentConverter() {
+        @Override
+        Object convert(Object arg) {
+            return arg;
+        }
+    };
+
+    private static final class ReferenceConverter extends ArgumentConverter {
+        private final Class<?> type;
+
+        ReferenceConverter(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        Object convert(Object arg) {
+            return arg == null || type.isInstance(arg) ? arg : MISMATCH;
+        }
+    }
+
+    private static final class ExactConverter extends ArgumentConverter {
+        private final Class<?> wrapperType;
+
+        ExactConverter(Class<?> wrapperType) {
+            this.wrapperType = wrapperType;
+        }
+
+        @Override
+        Object convert(Object arg) {
+            return arg != null && arg.getClass() == wrapperType ? arg : MISMATCH;
+        }
+    }
+
+    private static final ArgumentConverter SHORT = new ArgumentConverter() {
+        @Override
+        Object convert(Object arg) {
+            if (arg instanceof Short) return arg;
+            if (arg instanceof Byte) return (short) (Byte) arg;
+            return MISMATCH;
+        }
+    };
+
+    private static final ArgumentConverter INT = new ArgumentConverter() {
+        @Override
+        Object convert(Object arg) {
+            if (arg instanceof Integer) return arg;
+            if (arg instanceof Byte) return (int) (Byte) arg;
+            if (arg instanceof Short) return (int) (Short) arg;
+            if (arg instanceof Character) return (int) (Character) arg;
+            return MISMATCH;
+        }
+    };
+
+    private static final ArgumentConverter LONG = new ArgumentConverter() {
+        @Override
+        Object convert(Object arg) {
+            if (arg instanceof Long) return arg;
+            if (arg instanceof Integer) return (long) (Integer) arg;
+            if (arg instanceof Byte) return (long) (Byte) arg;
+            if (arg instanceof Short) return (long) (Short) arg;
+            if (arg instanceof Character) return (long) (Character) arg;
+            return MISMATCH;
+        }
+    };
+
+    private static final ArgumentConverter FLOAT = new ArgumentConverter() {
+        @Override
+        Object convert(Object arg) {
+            if (arg instanceof Float) return arg;
+            if (arg instanceof Integer) return (float) (Integer) arg;
+            if (arg instanceof Long) return (float) (Long) arg;
+            if (arg instanceof Byte) return (float) (Byte) arg;
+            if (arg instanceof Short) return (float) (Short) arg;
+            if (arg instanceof Character) return (float) (Character) arg;
+            return MISMATCH;
+        }
+    };
+
+    private static final ArgumentConverter DOUBLE = new ArgumentConverter() {
+        @Override
+        Object convert(Object arg) {
+            if (arg instanceof Double) return arg;
+            if (arg instanceof Integer) return (double) (Integer) arg;
+            if (arg instanceof Long) return (double) (Long) arg;
+            if (arg instanceof Float) return (double) (Float) arg;
+            if (arg instanceof Byte) return (double) (Byte) arg;
+            if (arg instanceof Short) return (double) (Short) arg;
+            if (arg instanceof Character) return (double) (Character) arg;
+            return MISMATCH;
+        }
+    };
+}
@@ -0,0 +1,45 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import sun.reflect.ConstructorAccessor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A constructor accessor that delegates to the JDK's accessor until the constructor has been invoked a given number
+ * of times and then switches to the MH-based accessor.
+ *
+ * @author peter
+ * @see InflatingMethodAccessor
+ */
+final class InflatingConstructorAccessor implements ConstructorAccessor {
+
+    private final Constructor<?> constructor;
+    private final int threshold;
+    private volatile ConstructorAccessor delegate;
+    private boolean inflated;
+    private int invocations;
+
+    InflatingConstructorAccessor(Constructor<?> constructor, ConstructorAccessor jdkAccessor, int threshold) {
+        this.constructor = constructor;
+        this.delegate = jdkAccessor;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Object newInstance(Object[] args)
+        throws InstantiationException, IllegalArgumentException, InvocationTargetException {
+        if (!inflated && ++invocations > threshold) {
+            inflated = true;
+            ConstructorAccessor mhAccessor = AccessorHooks.newConstructorAccessor(constructor);
+            if (mhAccessor != null)
+                delegate = mhAccessor;
+        }
+        return delegate.newInstance(args);
+    }
+}
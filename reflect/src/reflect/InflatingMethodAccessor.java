@@ -0,0 +1,44 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import sun.reflect.MethodAccessor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * A method accessor that delegates to the JDK's accessor until the method has been invoked a given number of times
+ * and then switches to the MH-based accessor. Like the JDK's own inflation, the invocation counter is not
+ * maintained atomically, since missing some invocations only delays the switch.
+ *
+ * @author peter
+ */
+final class InflatingMethodAccessor implements MethodAccessor {
+
+    private final Method method;
+    private final int threshold;
+    private volatile MethodAccessor delegate;
+    private boolean inflated;
+    private int invocations;
+
+    InflatingMethodAccessor(Method method, MethodAccessor jdkAccessor, int threshold) {
+        this.method = method;
+        this.delegate = jdkAccessor;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Object invoke(Object obj, Object[] args) throws IllegalArgumentException, InvocationTargetException {
+        if (!inflated && ++invocations > threshold) {
+            inflated = true;
+            MethodAccessor mhAccessor = AccessorHooks.newMethodAccessor(method);
+            if (mhAccessor != null)
+                delegate = mhAccessor;
+        }
+        return delegate.invoke(obj, args);
+    }
+}
@@ -5,18 +5,43 @@
  */
 package reflect;
 
+import sun.reflect.ConstructorAccessor;
+import sun.reflect.FieldAccessor;
 import sun.reflect.MethodAccessor;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 
 /**
+ * Factory of MH-based accessors. Method handles are obtained with the trusted lookup (when it is available), because
+ * {@link Method#invoke}, {@link Field#get}/{@link Field#set} and {@link Constructor#newInstance} perform language
+ * access checks themselves before delegating to their accessors. Without the trusted lookup, accessors can only be
+ * created for public members of public classes.
+ *
  * @author peter
  */
 public class MHAccessors {
-    private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    static final MethodHandles.Lookup lookup = AccessController.doPrivileged(
+        new PrivilegedAction<MethodHandles.Lookup>() {
+            @Override
+            public MethodHandles.Lookup run() {
+                try {
+                    Field implLookupField = MethodHandles.Lookup.class.getDeclaredField("IMPL_LOOKUP");
+                    implLookupField.setAccessible(true);
+                    return (MethodHandles.Lookup) implLookupField.get(null);
+                }
+                catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+                    return MethodHandles.publicLookup();
+                }
+            }
+        }
+    );
 
     public static MethodAccessor newMethodAccessor(Method m) {
         try {
@@ -30,4 +55,36 @@ public class MHAccessors {
             throw (Error) new IllegalAccessError(e.getMessage()).initCause(e);
         }
     }
+
+    /**
+     * @param f        the field
+     * @param override true if the accessor is for a field with suppressed access checks (which makes a final
+     *                 instance field writable)
+     */
+    public static FieldAccessor newFieldAccessor(Field f, boolean override) {
+        int mod = f.getModifiers();
+        boolean isStatic = Modifier.isStatic(mod);
+        boolean isReadOnly = Modifier.isFinal(mod) && (isStatic || !override);
+        try {
+            return new MHFieldAccessor(
+                f,
+                lookup.unreflectGetter(f),
+                isReadOnly ? null : lookup.unreflectSetter(f)
+            );
+        }
+        catch (IllegalAccessException e) {
+            throw (Error) new IllegalAccessError(e.getMessage()).initCause(e);
+        }
+    }
+
+    public static ConstructorAccessor newConstructorAccessor(Constructor<?> c) {
+        if (Modifier.isAbstract(c.getDeclaringClass().getModifiers()))
+            throw new IllegalArgumentException("Can't instantiate abstract class: " + c.getDeclaringClass().getName());
+        try {
+            return new MHConstructorAccessor(lookup.unreflectConstructor(c));
+        }
+        catch (IllegalAccessException e) {
+            throw (Error) new IllegalAccessError(e.getMessage()).initCause(e);
+        }
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import sun.reflect.ConstructorAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * @author peter
+ */
+final class MHConstructorAccessor implements ConstructorAccessor {
+
+    private final ArgumentConverter[] converters;
+    private final MethodHandle mh;
+
+    MHConstructorAccessor(MethodHandle targetMh) {
+        MethodHandle fixedMh = targetMh.asFixedArity();
+        MethodType type = fixedMh.type();
+        this.converters = ArgumentConverter.forTypes(type.parameterArray());
+        // (Object[])Object - never throws ClassCastException for converted arguments
+        this.mh = fixedMh.asType(type.generic())
+                         .asSpreader(Object[].class, type.parameterCount());
+    }
+
+    @Override
+    public Object newInstance(Object[] args) throws IllegalArgumentException, InvocationTargetException {
+        Object[] convertedArgs = ArgumentConverter.convert(converters, args);
+        if (convertedArgs == null)
+            throw new IllegalArgumentException(ArgumentConverter.mismatchMessage(converters, args));
+        try {
+            return mh.invokeExact(convertedArgs);
+        }
+        catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import sun.reflect.FieldAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A field accessor implementing the conversion semantics of {@link Field} get/set methods with a generic getter and
+ * setter method handle: primitive values are boxed and converted with {@link ArgumentConverter}s, which apply the same
+ * identity and widening primitive conversions as the typed get/set methods of {@link Field}.
+ *
+ * @author peter
+ */
+final class MHFieldAccessor implements FieldAccessor {
+
+    private static final ArgumentConverter BOOLEAN = ArgumentConverter.forType(boolean.class);
+    private static final ArgumentConverter BYTE = ArgumentConverter.forType(byte.class);
+    private static final ArgumentConverter CHAR = ArgumentConverter.forType(char.class);
+    private static final ArgumentConverter SHORT = ArgumentConverter.forType(short.class);
+    private static final ArgumentConverter INT = ArgumentConverter.forType(int.class);
+    private static final ArgumentConverter LONG = ArgumentConverter.forType(long.class);
+    private static final ArgumentConverter FLOAT = ArgumentConverter.forType(float.class);
+    private static final ArgumentConverter DOUBLE = ArgumentConverter.forType(double.class);
+
+    private final Field field;
+    private final Class<?> declaringClass;
+    private final Class<?> type;
+    private final boolean isStatic;
+    private final ArgumentConverter converter;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    /**
+     * @param field          the field
+     * @param targetGetter   the getter of the field
+     * @param targetSetter   the setter of the field or null if the field is read-only
+     */
+    MHFieldAccessor(Field field, MethodHandle targetGetter, MethodHandle targetSetter) {
+        this.field = field;
+        this.declaringClass = field.getDeclaringClass();
+        this.type = field.getType();
+        this.isStatic = Modifier.isStatic(field.getModifiers());
+        this.converter = ArgumentConverter.forType(type);
+        // (Object)Object and (Object, Object)void - never throw ClassCastException for pre-checked receiver
+        // and converted value
+        MethodType getterType = MethodType.methodType(Object.class, Object.class);
+        MethodType setterType = MethodType.methodType(void.class, Object.class, Object.class);
+        if (isStatic) {
+            this.getter = MethodHandles.dropArguments(targetGetter, 0, Object.class).asType(getterType);
+            this.setter = targetSetter == null
+                          ? null
+                          : MethodHandles.dropArguments(targetSetter, 0, Object.class).asType(setterType);
+        }
+        else {
+            this.getter = targetGetter.asType(getterType);
+            this.setter = targetSetter == null ? null : targetSetter.asType(setterType);
+        }
+    }
+
+    // get
+
+    @Override
+    public Object get(Object obj) throws IllegalArgumentException {
+        checkReceiver(obj);
+        try {
+            return getter.invokeExact(obj);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable t) {
+            throw new InternalError(t);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(Object obj) throws IllegalArgumentException {
+        return (Boolean) getPrimitive(obj, BOOLEAN, "boolean");
+    }
+
+    @Override
+    public byte getByte(Object obj) throws IllegalArgumentException {
+        return (Byte) getPrimitive(obj, BYTE, "byte");
+    }
+
+    @Override
+    public char getChar(Object obj) throws IllegalArgumentException {
+        return (Character) getPrimitive(obj, CHAR, "char");
+    }
+
+    @Override
+    public short getShort(Object obj) throws IllegalArgumentException {
+        return (Short) getPrimitive(obj, SHORT, "short");
+    }
+
+    @Override
+    public int getInt(Object obj) throws IllegalArgumentException {
+        return (Integer) getPrimitive(obj, INT, "int");
+    }
+
+    @Override
+    public long getLong(Object obj) throws IllegalArgumentException {
+        return (Long) getPrimitive(obj, LONG, "long");
+    }
+
+    @Override
+    public float getFloat(Object obj) throws IllegalArgumentException {
+        return (Float) getPrimitive(obj, FLOAT, "float");
+    }
+
+    @Override
+    public double getDouble(Object obj) throws IllegalArgumentException {
+        return (Double) getPrimitive(obj, DOUBLE, "double");
+    }
+
+    private Object getPrimitive(Object obj, ArgumentConverter converter, String typeName) {
+        if (!type.isPrimitive())
+            throw new IllegalArgumentException(getMismatchMessage(typeName));
+        Object value = converter.convert(get(obj));
+        if (value == ArgumentConverter.MISMATCH)
+            throw new IllegalArgumentException(getMismatchMessage(typeName));
+        return value;
+    }
+
+    // set
+
+    @Override
+    public void set(Object obj, Object value) throws IllegalArgumentException, IllegalAccessException {
+        checkReceiver(obj);
+        if (setter == null)
+            throw new IllegalAccessException(setMismatchMessage(attemptedType(value)));
+        Object convertedValue = converter.convert(value);
+        if (convertedValue == ArgumentConverter.MISMATCH)
+            throw new IllegalArgumentException(setMismatchMessage(attemptedType(value)));
+        try {
+            setter.invokeExact(obj, convertedValue);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable t) {
+            throw new InternalError(t);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object obj, boolean z) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, z);
+    }
+
+    @Override
+    public void setByte(Object obj, byte b) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, b);
+    }
+
+    @Override
+    public void setChar(Object obj, char c) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, c);
+    }
+
+    @Override
+    public void setShort(Object obj, short s) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, s);
+    }
+
+    @Override
+    public void setInt(Object obj, int i) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, i);
+    }
+
+    @Override
+    public void setLong(Object obj, long l) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, l);
+    }
+
+    @Override
+    public void setFloat(Object obj, float f) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, f);
+    }
+
+    @Override
+    public void setDouble(Object obj, double d) throws IllegalArgumentException, IllegalAccessException {
+        setPrimitive(obj, d);
+    }
+
+    private void setPrimitive(Object obj, Object boxedValue) throws IllegalArgumentException, IllegalAccessException {
+        // a primitive value can't be set into a field of a reference type, not even a wrapper type
+        if (!type.isPrimitive()) {
+            checkReceiver(obj);
+            throw new IllegalArgumentException(setMismatchMessage(
+                "(" + MethodType.methodType(boxedValue.getClass()).unwrap().returnType().getName() + ")" + boxedValue
+            ));
+        }
+        set(obj, boxedValue);
+    }
+
+    // checks
+
+    private void checkReceiver(Object obj) {
+        if (!isStatic && !declaringClass.isInstance(obj)) {
+            if (obj == null)
+                throw new NullPointerException();
+            throw new IllegalArgumentException(setMismatchMessage(obj.getClass().getName()));
+        }
+    }
+
+    private String getMismatchMessage(String typeName) {
+        return "Attempt to get " + type.getName() + " field \"" + declaringClass.getName() + "." + field.getName() +
+               "\" with illegal data type conversion to " + typeName;
+    }
+
+    private String setMismatchMessage(String attemptedType) {
+        int mod = field.getModifiers();
+        return "Can not set " + (isStatic ? "static " : "") + (Modifier.isFinal(mod) ? "final " : "") +
+               type.getName() + " field " + declaringClass.getName() + "." + field.getName() + " to " + attemptedType;
+    }
+
+    private static String attemptedType(Object value) {
+        return value == null ? "null value" : value.getClass().getName();
+    }
+}
@@ -8,7 +8,7 @@ package reflect;
 import sun.reflect.MethodAccessor;
 
 import java.lang.invoke.MethodHandle;
-import java.lang.invoke.WrongMethodTypeException;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 
 /**
@@ -16,19 +16,32 @@ import java.lang.reflect.InvocationTargetException;
  */
 final class MHInstanceMethodAccessor implements MethodAccessor {
 
+    private final Class<?> declaringClass;
+    private final ArgumentConverter[] converters;
     private final MethodHandle mh;
 
     MHInstanceMethodAccessor(MethodHandle targetMh) {
-        this.mh = targetMh.asSpreader(Object[].class, targetMh.type().parameterCount() - 1);
+        MethodHandle fixedMh = targetMh.asFixedArity();
+        MethodType type = fixedMh.type();
+        this.declaringClass = type.parameterType(0);
+        this.converters = ArgumentConverter.forTypes(type.dropParameterTypes(0, 1).parameterArray());
+        // (Object, Object[])Object - never throws ClassCastException for pre-checked receiver and converted arguments
+        this.mh = fixedMh.asType(type.generic())
+                         .asSpreader(Object[].class, type.parameterCount() - 1);
     }
 
     @Override
     public Object invoke(Object obj, Object[] args) throws IllegalArgumentException, InvocationTargetException {
-        try {
-            return mh.invoke(obj, args);
+        if (!declaringClass.isInstance(obj)) {
+            if (obj == null)
+                throw new NullPointerException();
+            throw new IllegalArgumentException("object is not an instance of declaring class");
         }
-        catch (WrongMethodTypeException wmte) {
-            throw new IllegalArgumentException(wmte.getMessage(), wmte);
+        Object[] convertedArgs = ArgumentConverter.convert(converters, args);
+        if (convertedArgs == null)
+            throw new IllegalArgumentException(ArgumentConverter.mismatchMessage(converters, args));
+        try {
+            return mh.invokeExact(obj, convertedArgs);
         }
         catch (Throwable t) {
             throw new InvocationTargetException(t);
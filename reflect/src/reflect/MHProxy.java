@@ -0,0 +1,381 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.Label;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.commons.GeneratorAdapter;
+import sun.misc.Unsafe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A dynamic proxy alternative to {@link java.lang.reflect.Proxy} that routes each interface method to it's own
+ * {@link MethodHandle} handler instead of a single {@link java.lang.reflect.InvocationHandler}. For each proxy
+ * instance a class implementing the interface is generated and defined as a VM-anonymous class with the
+ * interface as the host class (so non-public interfaces can be implemented too). The handlers are patched into
+ * the constant pool of the generated class and each proxy method just invokes it's handler with
+ * {@code invokeExact} of the method's own type, so JIT treats handlers as constants and can inline them into
+ * callers of the proxy. A proxy method with handlers of exact types doesn't allocate an argument array nor box
+ * primitive arguments or the result.<p>
+ * Handlers are obtained from a {@link HandlerResolver} when the proxy is created. A handler for a method of type
+ * {@code (P...)R} must be convertible to that type with {@link MethodHandle#asType} (it does not receive the proxy
+ * instance - handlers that need state can be {@link MethodHandle#bindTo bound} to it). Code migrating from an
+ * {@link java.lang.reflect.InvocationHandler} can {@link #bind} a shared generic handler of type
+ * {@code (Method, Object[])Object} to each method instead, which does allocate unless JIT eliminates the
+ * allocations after inlining it. Like with {@link java.lang.reflect.Proxy}, checked exceptions thrown by
+ * a handler that the interface method does not declare are wrapped into an {@link UndeclaredThrowableException}.
+ * When the interface inherits methods with the same name and descriptor from several superinterfaces, they are
+ * implemented by a single proxy method (the resolver is asked for the handler of one of them) that declares only
+ * the exceptions allowed by all of them, like with {@link java.lang.reflect.Proxy}. Methods of {@link Object}
+ * are not proxied, not even the public ones redeclared by the interface (like {@link java.util.Comparator#equals})
+ * and default methods are only proxied if the resolver returns a handler for them.<p>
+ * Since each proxy instance has it's own class, proxies should be created once and reused, not per invocation.
+ *
+ * @author peter
+ */
+public final class MHProxy {
+
+    private MHProxy() {
+    }
+
+    /**
+     * Resolves method handle handlers of interface methods when a proxy is created.
+     */
+    public interface HandlerResolver {
+        /**
+         * @param method the interface method (an abstract or default method of the interface or of one of it's
+         *               superinterfaces)
+         * @return a handler convertible to the type {@code (P...)R} of the method or null to keep the default
+         *         implementation of a default method
+         */
+        MethodHandle handler(Method method);
+    }
+
+    /**
+     * Creates a proxy instance implementing given interface with handlers resolved by given resolver.
+     *
+     * @param intf     the interface to implement
+     * @param resolver the resolver of handlers for interface methods (called once per method before this method
+     *                 returns)
+     * @param <I>      the type of the interface
+     * @return a new proxy instance
+     * @throws IllegalArgumentException if {@code intf} is not an interface or if the resolver returns null for
+     *                                  an abstract method or a handler that is not convertible to the method's
+     *                                  type
+     */
+    public static <I> I newProxyInstance(Class<I> intf, HandlerResolver resolver) throws IllegalArgumentException {
+        if (!intf.isInterface())
+            throw new IllegalArgumentException(intf.getName() + " is not an interface");
+
+        List<ProxyMethod> methods = new ArrayList<>();
+        List<MethodHandle> handlers = new ArrayList<>();
+        for (ProxyMethod proxyMethod : interfaceMethods(intf)) {
+            Method method = proxyMethod.method;
+            MethodHandle handler = resolver.handler(method);
+            if (handler == null) {
+                if (proxyMethod.isAbstract)
+                    throw new IllegalArgumentException("No handler for abstract method: " + method);
+                continue;
+            }
+            MethodType type = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+            try {
+                handlers.add(handler.asType(type));
+            }
+            catch (WrongMethodTypeException e) {
+                throw new IllegalArgumentException(
+                    "Handler of type " + handler.type() + " can't be converted to the type of method: " + method, e
+                );
+            }
+            methods.add(proxyMethod);
+        }
+
+        ClassFile classFile = spinProxyClass(
+            intf,
+            methods.toArray(new ProxyMethod[methods.size()]),
+            handlers.toArray(new MethodHandle[handlers.size()])
+        );
+        Class<?> proxyClass = UNSAFE.defineAnonymousClass(intf, classFile.classBytes, classFile.cpPatches);
+        try {
+            return intf.cast(MHAccessors.lookup.findConstructor(proxyClass, MethodType.methodType(void.class)).invoke());
+        }
+        catch (Throwable t) {
+            throw new Error("Can't instantiate generated proxy class", t);
+        }
+    }
+
+    private static final MethodType GENERIC_HANDLER_TYPE =
+        MethodType.methodType(Object.class, Method.class, Object[].class);
+
+    /**
+     * Binds a shared generic handler to given method. The generic handler is invoked with the method and
+     * an array of (boxed) arguments like {@link java.lang.reflect.InvocationHandler#invoke} (without the proxy)
+     * and it's result is unboxed (or cast) to the method's return type.
+     *
+     * @param genericHandler a method handle convertible to type {@code (Method, Object[])Object}
+     * @param method         the method to bind it to
+     * @return a handler of the method's type {@code (P...)R} invoking the generic handler
+     * @throws IllegalArgumentException if the generic handler is not convertible to type
+     *                                  {@code (Method, Object[])Object}
+     */
+    public static MethodHandle bind(MethodHandle genericHandler, Method method) throws IllegalArgumentException {
+        MethodHandle handler;
+        try {
+            handler = genericHandler.asType(GENERIC_HANDLER_TYPE);
+        }
+        catch (WrongMethodTypeException e) {
+            throw new IllegalArgumentException(
+                "Generic handler of type " + genericHandler.type() + " can't be converted to " + GENERIC_HANDLER_TYPE,
+                e
+            );
+        }
+        MethodType type = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+        return MethodHandles.insertArguments(handler, 0, method)
+                            .asCollector(Object[].class, type.parameterCount())
+                            .asType(type);
+    }
+
+    /**
+     * A method of the proxy class implementing one or more interface methods with the same name and descriptor.
+     */
+    private static final class ProxyMethod {
+        final Method method;
+        boolean isAbstract;
+        Class<?>[] exceptionTypes;
+
+        ProxyMethod(Method method) {
+            this.method = method;
+            this.isAbstract = Modifier.isAbstract(method.getModifiers());
+            this.exceptionTypes = method.getExceptionTypes();
+        }
+
+        /**
+         * Merges given interface method with the same name and descriptor into this proxy method.
+         */
+        void merge(Method other) {
+            isAbstract |= Modifier.isAbstract(other.getModifiers());
+            // keep the exception types allowed by both throws clauses
+            Class<?>[] otherExceptionTypes = other.getExceptionTypes();
+            List<Class<?>> allowed = new ArrayList<>();
+            collectCompatibleTypes(exceptionTypes, otherExceptionTypes, allowed);
+            collectCompatibleTypes(otherExceptionTypes, exceptionTypes, allowed);
+            exceptionTypes = allowed.toArray(new Class<?>[allowed.size()]);
+        }
+
+        /**
+         * Adds the types from {@code from} that are assignable to any type in {@code with} to {@code to}.
+         */
+        private static void collectCompatibleTypes(Class<?>[] from, Class<?>[] with, List<Class<?>> to) {
+            for (Class<?> fc : from) {
+                if (to.contains(fc))
+                    continue;
+                for (Class<?> wc : with) {
+                    if (wc.isAssignableFrom(fc)) {
+                        to.add(fc);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the non-static methods of given interface and it's superinterfaces that don't override public
+     *         methods of {@link Object}, merged into one proxy method for each distinct name and descriptor
+     */
+    private static ProxyMethod[] interfaceMethods(Class<?> intf) {
+        Map<String, ProxyMethod> methods = new LinkedHashMap<>();
+        for (Method method : intf.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || isObjectMethod(method))
+                continue;
+            String key = method.getName() + Type.getMethodDescriptor(method);
+            ProxyMethod proxyMethod = methods.get(key);
+            if (proxyMethod == null)
+                methods.put(key, new ProxyMethod(method));
+            else
+                proxyMethod.merge(method);
+        }
+        return methods.values().toArray(new ProxyMethod[methods.size()]);
+    }
+
+    /**
+     * @return true if given interface method overrides a public method of {@link Object}
+     */
+    private static boolean isObjectMethod(Method method) {
+        try {
+            // only finds public methods
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // proxy class spinning
+
+    private static final Unsafe UNSAFE = AccessController.doPrivileged(
+        new PrivilegedAction<Unsafe>() {
+            @Override
+            public Unsafe run() {
+                try {
+                    Field theUnsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+                    theUnsafeField.setAccessible(true);
+                    return (Unsafe) theUnsafeField.get(null);
+                }
+                catch (NoSuchFieldException | IllegalAccessException e) {
+                    throw new Error(e);
+                }
+            }
+        }
+    );
+
+    private static final AtomicLong nextUniqueNumber = new AtomicLong();
+    private static final String proxyClassNamePrefix = "$MHProxy";
+    private static final String constantPlaceholderPrefix = "CONSTANT_PLACEHOLDER_";
+    private static final int classFileVersion = 51;
+    private static final Type MethodHandle_Type = Type.getType(MethodHandle.class);
+    private static final Type UndeclaredThrowableException_Type = Type.getType(UndeclaredThrowableException.class);
+    private static final jdk.internal.org.objectweb.asm.commons.Method noArgConstructor =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void <init> ()");
+    private static final jdk.internal.org.objectweb.asm.commons.Method throwableConstructor =
+        jdk.internal.org.objectweb.asm.commons.Method.getMethod("void <init> (java.lang.Throwable)");
+
+    private static final class ClassFile {
+        final byte[] classBytes;
+        final Object[] cpPatches;
+
+        ClassFile(byte[] classBytes, Object[] cpPatches) {
+            this.classBytes = classBytes;
+            this.cpPatches = cpPatches;
+        }
+    }
+
+    private static ClassFile spinProxyClass(Class<?> intf, ProxyMethod[] methods, MethodHandle[] handlers) {
+        String intfName = intf.getName().replace('.', '/');
+        // VM-anonymous classes always live in the package of their host
+        String proxyClassName = intfName.substring(0, intfName.lastIndexOf('/') + 1) +
+                                proxyClassNamePrefix + nextUniqueNumber.getAndIncrement();
+
+        // generated code never merges different reference types
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+
+        cw.visit(
+            classFileVersion,
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_FINAL,
+            proxyClassName,
+            null,
+            "java/lang/Object",
+            new String[]{intfName}
+        );
+
+        // generate public no-arg constructor
+        {
+            GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PUBLIC, noArgConstructor, null, null, cw);
+            init.loadThis();
+            init.invokeConstructor(Type.getType(Object.class), noArgConstructor);
+            init.returnValue();
+            init.endMethod();
+        }
+
+        // generate proxy methods
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i].method;
+            Class<?>[] exceptionTypes = methods[i].exceptionTypes;
+            Type[] exception_Types = new Type[exceptionTypes.length];
+            for (int j = 0; j < exceptionTypes.length; j++) {
+                exception_Types[j] = Type.getType(exceptionTypes[j]);
+            }
+            GeneratorAdapter gen = new GeneratorAdapter(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL,
+                jdk.internal.org.objectweb.asm.commons.Method.getMethod(method),
+                null,
+                exception_Types,
+                cw
+            );
+            boolean wrapUndeclared = !declaresAll(exceptionTypes);
+            Label start = new Label(), end = new Label();
+            gen.mark(start);
+            // return handlers[i].invokeExact(args...)
+            gen.push(constantPlaceholderPrefix + i);
+            gen.checkCast(MethodHandle_Type);
+            gen.loadArgs();
+            gen.invokeVirtual(
+                MethodHandle_Type,
+                new jdk.internal.org.objectweb.asm.commons.Method(
+                    "invokeExact", handlers[i].type().toMethodDescriptorString()
+                )
+            );
+            gen.mark(end);
+            gen.returnValue();
+            if (wrapUndeclared) {
+                // rethrow unchecked and declared exceptions as they are
+                gen.catchException(start, end, Type.getType(RuntimeException.class));
+                gen.throwException();
+                gen.catchException(start, end, Type.getType(Error.class));
+                gen.throwException();
+                for (Type exception_Type : exception_Types) {
+                    gen.catchException(start, end, exception_Type);
+                    gen.throwException();
+                }
+                // wrap the rest into UndeclaredThrowableException
+                gen.catchException(start, end, Type.getType(Throwable.class));
+                int t = gen.newLocal(Type.getType(Throwable.class));
+                gen.storeLocal(t);
+                gen.newInstance(UndeclaredThrowableException_Type);
+                gen.dup();
+                gen.loadLocal(t);
+                gen.invokeConstructor(UndeclaredThrowableException_Type, throwableConstructor);
+                gen.throwException();
+            }
+            gen.endMethod();
+        }
+
+        cw.visitEnd();
+
+        byte[] classBytes = cw.toByteArray();
+        // constant_pool_count is the u2 following the magic and version numbers
+        int cpCount = ((classBytes[8] & 0xFF) << 8) | (classBytes[9] & 0xFF);
+        Object[] cpPatches = new Object[cpCount];
+        for (int i = 0; i < handlers.length; i++) {
+            cpPatches[cw.newConst(constantPlaceholderPrefix + i)] = handlers[i];
+        }
+        return new ClassFile(classBytes, cpPatches);
+    }
+
+    /**
+     * @return true if given declared exception types include {@link Exception} or {@link Throwable} so
+     *         that any exception thrown by a handler is declared
+     */
+    private static boolean declaresAll(Class<?>[] exceptionTypes) {
+        for (Class<?> exceptionType : exceptionTypes) {
+            if (exceptionType == Exception.class || exceptionType == Throwable.class)
+                return true;
+        }
+        return false;
+    }
+}
@@ -8,7 +8,7 @@ package reflect;
 import sun.reflect.MethodAccessor;
 
 import java.lang.invoke.MethodHandle;
-import java.lang.invoke.WrongMethodTypeException;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 
 /**
@@ -16,19 +16,25 @@ import java.lang.reflect.InvocationTargetException;
  */
 final class MHStaticMethodAccessor implements MethodAccessor {
 
+    private final ArgumentConverter[] converters;
     private final MethodHandle mh;
 
     MHStaticMethodAccessor(MethodHandle targetMh) {
-        this.mh = targetMh.asSpreader(Object[].class, targetMh.type().parameterCount());
+        MethodHandle fixedMh = targetMh.asFixedArity();
+        MethodType type = fixedMh.type();
+        this.converters = ArgumentConverter.forTypes(type.parameterArray());
+        // (Object[])Object - never throws ClassCastException for converted arguments
+        this.mh = fixedMh.asType(type.generic())
+                         .asSpreader(Object[].class, type.parameterCount());
     }
 
     @Override
     public Object invoke(Object _ignored, Object[] args) throws IllegalArgumentException, InvocationTargetException {
+        Object[] convertedArgs = ArgumentConverter.convert(converters, args);
+        if (convertedArgs == null)
+            throw new IllegalArgumentException(ArgumentConverter.mismatchMessage(converters, args));
         try {
-            return mh.invoke(args);
-        }
-        catch (WrongMethodTypeException wmte) {
-            throw new IllegalArgumentException(wmte.getMessage(), wmte);
+            return mh.invokeExact(convertedArgs);
         }
         catch (Throwable t) {
             throw new InvocationTargetException(t);
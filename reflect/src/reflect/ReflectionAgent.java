@@ -0,0 +1,85 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import sun.reflect.ReflectionFactory;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+
+/**
+ * A {@link java.lang.instrument} agent that installs MH-based method, field and constructor accessors (see
+ * {@link MHAccessors}) into reflective objects, so that code calling {@link java.lang.reflect.Method#invoke},
+ * {@link java.lang.reflect.Field#get}/{@link java.lang.reflect.Field#set} and
+ * {@link java.lang.reflect.Constructor#newInstance} (for example serialization frameworks or dependency
+ * injection containers) uses them without being changed.<p>
+ * The agent retransforms {@link ReflectionFactory} so that accessors created by it are passed through
+ * {@link AccessorHooks}, which replaces them according to the {@link AccessorPolicy} given by agent arguments
+ * (see {@link AccessorPolicy#parse}). Reflective objects cache their accessors, so objects that already obtained
+ * an accessor before the agent was attached keep using it. Since the instrumented ReflectionFactory calls
+ * AccessorHooks, the agent jar must be on the boot class path, which the {@code Boot-Class-Path} attribute of it's
+ * manifest takes care of. Usage:
+ * <pre>
+ * java -javaagent:reflect-agent.jar[=include=com.acme.:org.foo.,threshold=15] ...
+ * </pre>
+ *
+ * @author peter
+ */
+public final class ReflectionAgent {
+
+    private ReflectionAgent() {
+    }
+
+    public static void premain(String args, Instrumentation inst) {
+        install(args, inst);
+    }
+
+    public static void agentmain(String args, Instrumentation inst) {
+        install(args, inst);
+    }
+
+    /**
+     * @return the policy of the installed agent or null if the agent is not installed
+     */
+    public static AccessorPolicy getPolicy() {
+        return AccessorHooks.policy;
+    }
+
+    private static synchronized void install(String args, Instrumentation inst) {
+        AccessorPolicy policy = AccessorPolicy.parse(args);
+        if (AccessorHooks.policy != null) {
+            // already installed - just change the policy
+            AccessorHooks.policy = policy;
+            return;
+        }
+        if (ReflectionAgent.class.getClassLoader() != null)
+            throw new IllegalStateException("Agent classes must be loaded by the bootstrap class loader");
+        if (!inst.isRetransformClassesSupported())
+            throw new IllegalStateException("Retransformation of classes is not supported");
+
+        AccessorHooks.policy = policy;
+        ReflectionFactoryTransformer transformer = new ReflectionFactoryTransformer();
+        inst.addTransformer(transformer, true);
+        try {
+            inst.retransformClasses(ReflectionFactory.class);
+        }
+        catch (UnmodifiableClassException e) {
+            AccessorHooks.policy = null;
+            throw new IllegalStateException(e);
+        }
+        finally {
+            inst.removeTransformer(transformer);
+        }
+        if (transformer.hookedMethods() != 3) {
+            AccessorHooks.policy = null;
+            throw new IllegalStateException(
+                "Could not instrument " + ReflectionFactory.class.getName() +
+                " (instrumented methods: " + transformer.hookedMethods() + ")",
+                transformer.failure()
+            );
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package reflect;
+
+import jdk.internal.org.objectweb.asm.ClassReader;
+import jdk.internal.org.objectweb.asm.ClassVisitor;
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.MethodVisitor;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.internal.org.objectweb.asm.Type;
+import sun.reflect.ReflectionFactory;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+/**
+ * A transformer of {@link ReflectionFactory} that passes the accessor returned from each of it's
+ * {@code newMethodAccessor(Method)}, {@code newConstructorAccessor(Constructor)} and
+ * {@code newFieldAccessor(Field, boolean)} methods through the corresponding {@link AccessorHooks} method.
+ * The hook is invoked right before each {@code areturn} instruction with the returned accessor and the arguments
+ * of the method. The descriptor of the hook is derived from the descriptor of the instrumented method, so it
+ * is independent of the package of accessor interfaces.
+ *
+ * @author peter
+ */
+final class ReflectionFactoryTransformer implements ClassFileTransformer {
+
+    private static final String REFLECTION_FACTORY = Type.getInternalName(ReflectionFactory.class);
+    private static final String ACCESSOR_HOOKS = Type.getInternalName(AccessorHooks.class);
+
+    private volatile int hookedMethods;
+    private volatile Throwable failure;
+
+    /**
+     * @return the number of instrumented methods (3 when ReflectionFactory was successfully transformed)
+     */
+    int hookedMethods() {
+        return hookedMethods;
+    }
+
+    /**
+     * @return the exception thrown while transforming ReflectionFactory or null if there was none
+     */
+    Throwable failure() {
+        return failure;
+    }
+
+    @Override
+    public byte[] transform(
+        ClassLoader loader, String className, Class<?> classBeingRedefined,
+        ProtectionDomain protectionDomain, byte[] classfileBuffer
+    ) {
+        if (!REFLECTION_FACTORY.equals(className))
+            return null;
+        try {
+            ClassReader cr = new ClassReader(classfileBuffer);
+            ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_MAXS);
+            final int[] count = new int[1];
+            cr.accept(new ClassVisitor(Opcodes.ASM5, cw) {
+                @Override
+                public MethodVisitor visitMethod(
+                    int access, String name, String desc, String signature, String[] exceptions
+                ) {
+                    MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+                    String hookName = hookName(name, desc);
+                    if (hookName == null)
+                        return mv;
+                    count[0]++;
+                    return new HookingMethodVisitor(mv, hookName, desc);
+                }
+            }, 0);
+            hookedMethods = count[0];
+            return cw.toByteArray();
+        }
+        catch (Throwable t) {
+            // the JVM silently ignores exceptions thrown from transformers
+            failure = t;
+            return null;
+        }
+    }
+
+    /**
+     * @return the name of the hook for given method of ReflectionFactory or null if the method is not hooked
+     */
+    private static String hookName(String name, String desc) {
+        Type[] argumentTypes = Type.getArgumentTypes(desc);
+        switch (name) {
+            case "newMethodAccessor":
+                return argumentTypes.length == 1 && argumentTypes[0].getDescriptor().equals("Ljava/lang/reflect/Method;")
+                       ? "methodAccessor" : null;
+            case "newConstructorAccessor":
+                return argumentTypes.length == 1 && argumentTypes[0].getDescriptor().equals("Ljava/lang/reflect/Constructor;")
+                       ? "constructorAccessor" : null;
+            case "newFieldAccessor":
+                return argumentTypes.length == 2 && argumentTypes[0].getDescriptor().equals("Ljava/lang/reflect/Field;") &&
+                       argumentTypes[1] == Type.BOOLEAN_TYPE
+                       ? "fieldAccessor" : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Inserts {@code AccessorHooks.hook(accessor, arg1, ...)} before each {@code areturn}.
+     */
+    private static final class HookingMethodVisitor extends MethodVisitor {
+        private final String hookName;
+        private final String hookDesc;
+        private final Type[] argumentTypes;
+
+        HookingMethodVisitor(MethodVisitor mv, String hookName, String desc) {
+            super(Opcodes.ASM5, mv);
+            this.hookName = hookName;
+            Type returnType = Type.getReturnType(desc);
+            this.argumentTypes = Type.getArgumentTypes(desc);
+            StringBuilder sb = new StringBuilder("(").append(returnType.getDescriptor());
+            for (Type argumentType : argumentTypes) {
+                sb.append(argumentType.getDescriptor());
+            }
+            this.hookDesc = sb.append(')').append(returnType.getDescriptor()).toString();
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            if (opcode == Opcodes.ARETURN) {
+                int local = 1; // 0 is this
+                for (Type argumentType : argumentTypes) {
+                    super.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), local);
+                    local += argumentType.getSize();
+                }
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, ACCESSOR_HOOKS, hookName, hookDesc, false);
+            }
+            super.visitInsn(opcode);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.example;
+
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.MHThrows;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * An example of {@link Friendly#path} and {@link Friendly#pathSetter}: reading and writing a value at the end of
+ * a multi-hop path of private fields, the treatment of null intermediate values (with and without null-safe
+ * semantics) and the rejection of a setter for a final field at the end of the path.
+ *
+ * @author peter
+ */
+public class PathMain {
+
+    public static class Order {
+        @Friend(PathMain.class)
+        private Customer customer;
+
+        public Order(Customer customer) {
+            this.customer = customer;
+        }
+    }
+
+    public static class Customer {
+        @Friend(PathMain.class)
+        private final String name;
+        @Friend(PathMain.class)
+        private Address address;
+
+        public Customer(String name, Address address) {
+            this.name = name;
+            this.address = address;
+        }
+    }
+
+    public static class Address {
+        @Friend(PathMain.class)
+        private String zip;
+
+        public Address(String zip) {
+            this.zip = zip;
+        }
+    }
+
+    private static final MethodHandle zipGetter = Friendly.path(Order.class, "customer.address.zip");
+    private static final MethodHandle zipNullSafeGetter = Friendly.path(Order.class, "customer.address.zip", true);
+    private static final MethodHandle zipSetter = Friendly.pathSetter(Order.class, "customer.address.zip");
+    private static final MethodHandle zipNullSafeSetter =
+        Friendly.pathSetter(Order.class, "customer.address.zip", true);
+
+    public static void main(String[] args) {
+        try {
+            Order order = new Order(new Customer("joe", new Address("1000")));
+            System.out.println("zip: " + (String) zipGetter.invokeExact(order));
+            zipSetter.invokeExact(order, "2000");
+            System.out.println("zip after set: " + (String) zipGetter.invokeExact(order));
+
+            Order noAddress = new Order(new Customer("jane", null));
+            try {
+                System.out.println("zip: " + (String) zipGetter.invokeExact(noAddress));
+            }
+            catch (NullPointerException e) {
+                System.out.println("null address: " + e);
+            }
+            System.out.println("null-safe zip: " + (String) zipNullSafeGetter.invokeExact(noAddress));
+            zipNullSafeSetter.invokeExact(noAddress, "3000"); // does nothing
+            System.out.println("null-safe set: done");
+        }
+        catch (Throwable t) {
+            throw MHThrows.unchecked(t);
+        }
+
+        try {
+            Friendly.pathSetter(Order.class, "customer.name");
+            System.out.println("final field setter: not rejected");
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("final field setter: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares call sites that dispatch to 2 (bimorphic) or 8 (megamorphic) different proxy classes generated for
+ * sub-interfaces of a common proxy interface ({@code invokeinterface} through the itable) and for subclasses of
+ * a common abstract proxy class ({@code invokevirtual} through the vtable).
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class AbstractClassProxyPerfTestJMH {
+    private static final int LENGTH = 1024;
+
+    public static class Target {
+        @Friend(AbstractClassProxyPerfTestJMH.class)
+        private int encode(int x) { return x ^ 0x5A; }
+    }
+
+    public interface Encoder {
+        int encode(Target t, int x);
+    }
+
+    interface Encoder0 extends Encoder {}
+    interface Encoder1 extends Encoder {}
+    interface Encoder2 extends Encoder {}
+    interface Encoder3 extends Encoder {}
+    interface Encoder4 extends Encoder {}
+    interface Encoder5 extends Encoder {}
+    interface Encoder6 extends Encoder {}
+    interface Encoder7 extends Encoder {}
+
+    public static abstract class AbstractEncoder {
+        public abstract int encode(Target t, int x);
+    }
+
+    static abstract class AbstractEncoder0 extends AbstractEncoder {}
+    static abstract class AbstractEncoder1 extends AbstractEncoder {}
+    static abstract class AbstractEncoder2 extends AbstractEncoder {}
+    static abstract class AbstractEncoder3 extends AbstractEncoder {}
+    static abstract class AbstractEncoder4 extends AbstractEncoder {}
+    static abstract class AbstractEncoder5 extends AbstractEncoder {}
+    static abstract class AbstractEncoder6 extends AbstractEncoder {}
+    static abstract class AbstractEncoder7 extends AbstractEncoder {}
+
+    private static final Encoder[] encoders = {
+        Friendly.proxy(Encoder0.class), Friendly.proxy(Encoder1.class),
+        Friendly.proxy(Encoder2.class), Friendly.proxy(Encoder3.class),
+        Friendly.proxy(Encoder4.class), Friendly.proxy(Encoder5.class),
+        Friendly.proxy(Encoder6.class), Friendly.proxy(Encoder7.class)
+    };
+
+    private static final AbstractEncoder[] abstractEncoders = {
+        Friendly.proxy(AbstractEncoder0.class), Friendly.proxy(AbstractEncoder1.class),
+        Friendly.proxy(AbstractEncoder2.class), Friendly.proxy(AbstractEncoder3.class),
+        Friendly.proxy(AbstractEncoder4.class), Friendly.proxy(AbstractEncoder5.class),
+        Friendly.proxy(AbstractEncoder6.class), Friendly.proxy(AbstractEncoder7.class)
+    };
+
+    /**
+     * @return an array of {@code LENGTH} elements of given array's first {@code classes} elements
+     *         (round-robin distributed)
+     */
+    private static <T> T[] distribute(T[] proxies, int classes) {
+        T[] distributed = Arrays.copyOf(proxies, LENGTH);
+        for (int i = 0; i < LENGTH; i++) {
+            distributed[i] = proxies[i % classes];
+        }
+        return distributed;
+    }
+
+    private final Target target = new Target();
+    private final Encoder[] bimorphic = distribute(encoders, 2);
+    private final Encoder[] megamorphic = distribute(encoders, 8);
+    private final AbstractEncoder[] abstractBimorphic = distribute(abstractEncoders, 2);
+    private final AbstractEncoder[] abstractMegamorphic = distribute(abstractEncoders, 8);
+    private int i;
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int interface_proxy_bimorphic() {
+        int i = this.i++;
+        return bimorphic[i & (LENGTH - 1)].encode(target, i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int abstract_class_proxy_bimorphic() {
+        int i = this.i++;
+        return abstractBimorphic[i & (LENGTH - 1)].encode(target, i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int interface_proxy_megamorphic() {
+        int i = this.i++;
+        return megamorphic[i & (LENGTH - 1)].encode(target, i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int abstract_class_proxy_megamorphic() {
+        int i = this.i++;
+        return abstractMegamorphic[i & (LENGTH - 1)].encode(target, i);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import static si.pele.friendly.MHThrows.unchecked;
+import static test.perf.SecretRandom.addend;
+import static test.perf.SecretRandom.mask;
+import static test.perf.SecretRandom.multiplier;
+
+/**
+ * The {@link SecretRandom} scenarios of {@link MHPerfTestJMH} (field access via getter/setter, method call and
+ * proxy call) run against each access backend (see {@link Friendly#getAccessBackend()}). The backend is chosen
+ * once per JVM, so each nested class runs the same scenarios in a JVM forked with a different backend.
+ *
+ * @author peter
+ */
+public abstract class AccessBackendPerfTestJMH {
+    private final SecretRandom sr = new SecretRandom();
+
+    private static final MethodHandle seedGetter = Friendly.getter(SecretRandom.class, "seed");
+    private static final MethodHandle seedSetter = Friendly.setter(SecretRandom.class, "seed");
+    private static final MethodHandle nextIntMH = Friendly.method(SecretRandom.class, "nextInt");
+
+    interface SRA {
+        int nextInt(SecretRandom tc);
+    }
+
+    private static final SRA sra = Friendly.proxy(SRA.class);
+
+    /**
+     * Fails if the running backend is not the expected one (an unsupported backend falls back to "lookup").
+     */
+    static void expectBackend(String backend) {
+        if (!backend.equals(Friendly.getAccessBackend()))
+            throw new IllegalStateException(
+                "Expected access backend: " + backend + ", but running: " + Friendly.getAccessBackend()
+            );
+    }
+
+    final int fieldAccess() {
+        try {
+            long oldseed = (long) seedGetter.invokeExact(sr);
+            long nextseed = (oldseed * multiplier + addend) & mask;
+            seedSetter.invokeExact(sr, nextseed);
+            return (int) (nextseed >>> 16);
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    final int call() {
+        try {
+            return (int) nextIntMH.invokeExact(sr);
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    final int proxyCall() {
+        return sra.nextInt(sr);
+    }
+
+    @Fork(jvmArgs = "-Dsi.pele.friendly.FriendlyAccessBackend.name=lookup")
+    @Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @State(Scope.Thread)
+    public static class lookup extends AccessBackendPerfTestJMH {
+        static {
+            expectBackend("lookup");
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int field_access() {
+            return fieldAccess();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int mh_call() {
+            return call();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int proxy_call() {
+            return proxyCall();
+        }
+    }
+
+    @Fork(jvmArgs = "-Dsi.pele.friendly.FriendlyAccessBackend.name=varhandle")
+    @Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @State(Scope.Thread)
+    public static class varhandle extends AccessBackendPerfTestJMH {
+        static {
+            expectBackend("varhandle");
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int field_access() {
+            return fieldAccess();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int mh_call() {
+            return call();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int proxy_call() {
+            return proxyCall();
+        }
+    }
+
+    @Fork(jvmArgs = "-Dsi.pele.friendly.FriendlyAccessBackend.name=unsafe")
+    @Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @State(Scope.Thread)
+    public static class unsafe extends AccessBackendPerfTestJMH {
+        static {
+            expectBackend("unsafe");
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int field_access() {
+            return fieldAccess();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int mh_call() {
+            return call();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int proxy_call() {
+            return proxyCall();
+        }
+    }
+
+    @Fork(jvmArgs = "-Dsi.pele.friendly.FriendlyAccessBackend.name=bytecode")
+    @Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @State(Scope.Thread)
+    public static class bytecode extends AccessBackendPerfTestJMH {
+        static {
+            expectBackend("bytecode");
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int field_access() {
+            return fieldAccess();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int mh_call() {
+            return call();
+        }
+
+        @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+        public int proxy_call() {
+            return proxyCall();
+        }
+    }
+}
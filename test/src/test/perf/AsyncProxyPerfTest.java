@@ -0,0 +1,86 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures the latency of a request that makes a number of calls to a blocking private method, either one after
+ * another via a synchronous proxy method or overlapped via an asynchronous proxy method returning
+ * {@link CompletableFuture} (executed by {@link Friendly#getAsyncExecutor()}).<p>
+ * Usage: {@code java test.perf.AsyncProxyPerfTest [callsPerRequest] [blockMillis] [requests]}
+ */
+public class AsyncProxyPerfTest {
+
+    public static class Fetcher {
+        @Friend(AsyncProxyPerfTest.class)
+        private String fetch(String key, long blockMillis) throws InterruptedException {
+            Thread.sleep(blockMillis); // simulate blocking I/O
+            return key;
+        }
+    }
+
+    public interface FetcherAccess {
+        String fetch(Fetcher fetcher, String key, long blockMillis) throws InterruptedException;
+    }
+
+    public interface AsyncFetcherAccess {
+        CompletableFuture<String> fetch(Fetcher fetcher, String key, long blockMillis);
+    }
+
+    private static final FetcherAccess sync = Friendly.proxy(FetcherAccess.class);
+    private static final AsyncFetcherAccess async = Friendly.proxy(AsyncFetcherAccess.class);
+
+    static int syncRequest(Fetcher fetcher, int calls, long blockMillis) throws InterruptedException {
+        int len = 0;
+        for (int i = 0; i < calls; i++) {
+            len += sync.fetch(fetcher, "key" + i, blockMillis).length();
+        }
+        return len;
+    }
+
+    static int asyncRequest(Fetcher fetcher, int calls, long blockMillis) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<String>[] futures = new CompletableFuture[calls];
+        for (int i = 0; i < calls; i++) {
+            futures[i] = async.fetch(fetcher, "key" + i, blockMillis);
+        }
+        int len = 0;
+        for (CompletableFuture<String> future : futures) {
+            len += future.join().length();
+        }
+        return len;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long blockMillis = args.length > 1 ? Long.parseLong(args[1]) : 20L;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        Fetcher fetcher = new Fetcher();
+
+        System.out.println("# " + calls + " calls per request, each blocking for " + blockMillis + " ms");
+        System.out.println("# async executor: " + Friendly.getAsyncExecutor());
+        for (int round = 1; round <= 3; round++) {
+            long t0 = System.nanoTime();
+            for (int r = 0; r < requests; r++) {
+                syncRequest(fetcher, calls, blockMillis);
+            }
+            long t1 = System.nanoTime();
+            for (int r = 0; r < requests; r++) {
+                asyncRequest(fetcher, calls, blockMillis);
+            }
+            long t2 = System.nanoTime();
+            System.out.printf(
+                Locale.ROOT, "round %d: sync %8.2f ms/request, async %8.2f ms/request\n",
+                round, (t1 - t0) / 1e6 / requests, (t2 - t1) / 1e6 / requests
+            );
+        }
+    }
+}
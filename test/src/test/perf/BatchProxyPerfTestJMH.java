@@ -0,0 +1,77 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friendly;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares applying a private method to an array of receivers via a normal loop, via a loop of per-element
+ * proxy calls and via batch proxy methods that loop inside the generated proxy class (returning a new array
+ * or filling a given output array).
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class BatchProxyPerfTestJMH {
+    private static final int LENGTH = 1 << 16;
+
+    public interface SecretRandomAccess {
+        int nextInt(SecretRandom sr);
+
+        int[] nextInt(SecretRandom[] srs);
+
+        void nextInt(SecretRandom[] srs, int[] out);
+    }
+
+    private static final SecretRandomAccess access = Friendly.proxy(SecretRandomAccess.class);
+
+    private final SecretRandom[] srs = new SecretRandom[LENGTH];
+    private final int[] ints = new int[LENGTH];
+
+    {
+        for (int i = 0; i < LENGTH; i++) {
+            srs[i] = new SecretRandom();
+            srs[i].seed = i;
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int[] normal_loop() {
+        for (int i = 0; i < LENGTH; i++) {
+            ints[i] = srs[i].nextInt();
+        }
+        return ints;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int[] proxy_call_loop() {
+        for (int i = 0; i < LENGTH; i++) {
+            ints[i] = access.nextInt(srs[i]);
+        }
+        return ints;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int[] batch_proxy_call() {
+        return access.nextInt(srs);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int[] batch_proxy_call_out() {
+        access.nextInt(srs, ints);
+        return ints;
+    }
+}
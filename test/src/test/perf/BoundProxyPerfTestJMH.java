@@ -0,0 +1,79 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friendly;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares allocation and invocation of bound proxies against a hand-written wrapper with the same
+ * footprint (one object header plus one reference). Run with {@code -prof gc} to compare allocation rates.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BoundProxyPerfTestJMH {
+    private final SecretRandom sr = new SecretRandom();
+
+    interface BoundSRA {
+        int nextInt();
+    }
+
+    static final class SRWrapper implements BoundSRA {
+        private final SecretRandom sr;
+
+        SRWrapper(SecretRandom sr) {
+            this.sr = sr;
+        }
+
+        @Override
+        public int nextInt() {
+            return sr.nextInt();
+        }
+    }
+
+    private final BoundSRA wrapper = new SRWrapper(sr);
+    private final BoundSRA boundProxy = Friendly.boundProxy(BoundSRA.class, sr);
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Object wrapper_allocation() {
+        return new SRWrapper(sr);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Object bound_proxy_allocation() {
+        return Friendly.boundProxy(BoundSRA.class, sr);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int wrapper_call() {
+        return wrapper.nextInt();
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int bound_proxy_call() {
+        return boundProxy.nextInt();
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int wrapper_allocation_and_call() {
+        return new SRWrapper(sr).nextInt();
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int bound_proxy_allocation_and_call() {
+        return Friendly.boundProxy(BoundSRA.class, sr).nextInt();
+    }
+}
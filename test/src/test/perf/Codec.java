@@ -0,0 +1,102 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.friendly.Friend;
+
+/**
+ * A class hierarchy where each subclass declares it's own private {@code encode} method
+ * and overrides the public {@link #code} method with the same body.
+ */
+public abstract class Codec {
+
+    public abstract int code(int x);
+
+    public static final class C0 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x + 0x10; }
+
+        @Override
+        public int code(int x) { return x + 0x10; }
+    }
+
+    public static final class C1 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x ^ 0x11; }
+
+        @Override
+        public int code(int x) { return x ^ 0x11; }
+    }
+
+    public static final class C2 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x * 0x12; }
+
+        @Override
+        public int code(int x) { return x * 0x12; }
+    }
+
+    public static final class C3 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x - 0x13; }
+
+        @Override
+        public int code(int x) { return x - 0x13; }
+    }
+
+    public static final class C4 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x | 0x14; }
+
+        @Override
+        public int code(int x) { return x | 0x14; }
+    }
+
+    public static final class C5 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x & 0x15; }
+
+        @Override
+        public int code(int x) { return x & 0x15; }
+    }
+
+    public static final class C6 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x << 1; }
+
+        @Override
+        public int code(int x) { return x << 1; }
+    }
+
+    public static final class C7 extends Codec {
+        @Friend(PolymorphicProxyPerfTestJMH.class)
+        private int encode(int x) { return x >>> 1; }
+
+        @Override
+        public int code(int x) { return x >>> 1; }
+    }
+
+    /**
+     * @return an array of {@code length} codecs of {@code classes} different classes
+     *         (round-robin distributed)
+     */
+    public static Codec[] codecs(int length, int classes) {
+        Codec[] codecs = new Codec[length];
+        for (int i = 0; i < length; i++) {
+            switch (i % classes) {
+                case 0: codecs[i] = new C0(); break;
+                case 1: codecs[i] = new C1(); break;
+                case 2: codecs[i] = new C2(); break;
+                case 3: codecs[i] = new C3(); break;
+                case 4: codecs[i] = new C4(); break;
+                case 5: codecs[i] = new C5(); break;
+                case 6: codecs[i] = new C6(); break;
+                default: codecs[i] = new C7(); break;
+            }
+        }
+        return codecs;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static si.pele.friendly.MHThrows.unchecked;
+
+/**
+ * Compares sorting and hashing an array of objects by a field via handwritten code, via a comparator/hasher invoking
+ * a getter handle per element and via generated {@link Friendly#comparator comparator}/{@link Friendly#hasher hasher}.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ComparatorPerfTestJMH {
+    private static final int LENGTH = 1 << 20;
+
+    private static final MethodHandle seedGetter = Friendly.getter(SecretRandom.class, "seed");
+
+    private static final Comparator<SecretRandom> normalComparator = new Comparator<SecretRandom>() {
+        @Override
+        public int compare(SecretRandom a, SecretRandom b) {
+            return Long.compare(a.seed, b.seed);
+        }
+    };
+
+    private static final Comparator<SecretRandom> mhComparator = new Comparator<SecretRandom>() {
+        @Override
+        public int compare(SecretRandom a, SecretRandom b) {
+            try {
+                return Long.compare((long) seedGetter.invokeExact(a), (long) seedGetter.invokeExact(b));
+            }
+            catch (Throwable t) {
+                throw unchecked(t);
+            }
+        }
+    };
+
+    private static final Comparator<SecretRandom> generatedComparator =
+        Friendly.comparator(SecretRandom.class, "seed");
+
+    private static final ToIntFunction<SecretRandom> generatedHasher = Friendly.hasher(SecretRandom.class, "seed");
+
+    private final SecretRandom[] srs = new SecretRandom[LENGTH];
+    private final SecretRandom[] sorted = new SecretRandom[LENGTH];
+
+    {
+        Random rnd = new Random(42L);
+        for (int i = 0; i < LENGTH; i++) {
+            srs[i] = new SecretRandom();
+            srs[i].seed = rnd.nextLong();
+        }
+    }
+
+    private SecretRandom[] sort(Comparator<SecretRandom> comparator) {
+        System.arraycopy(srs, 0, sorted, 0, LENGTH);
+        Arrays.sort(sorted, comparator);
+        return sorted;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public SecretRandom[] normal_sort() {
+        return sort(normalComparator);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public SecretRandom[] mh_sort() {
+        return sort(mhComparator);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public SecretRandom[] comparator_sort() {
+        return sort(generatedComparator);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int normal_hash() {
+        int h = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            h += 31 + Long.hashCode(srs[i].seed);
+        }
+        return h;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int mh_hash() {
+        try {
+            int h = 0;
+            for (int i = 0; i < LENGTH; i++) {
+                h += 31 + Long.hashCode((long) seedGetter.invokeExact(srs[i]));
+            }
+            return h;
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int hasher_hash() {
+        int h = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            h += generatedHasher.applyAsInt(srs[i]);
+        }
+        return h;
+    }
+}
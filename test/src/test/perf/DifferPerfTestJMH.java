@@ -0,0 +1,165 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Differ;
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static si.pele.friendly.MHThrows.unchecked;
+
+/**
+ * Compares dirty-checking a session of entities (capturing snapshots and finding changed fields) via a loop over
+ * getter handles that boxes the values into an {@code Object[]} snapshot and via generated {@link Differ}.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class DifferPerfTestJMH {
+    private static final int ENTITIES = 100_000;
+
+    public static class Entity {
+        @Friend(DifferPerfTestJMH.class)
+        private long id;
+        @Friend(DifferPerfTestJMH.class)
+        private int version;
+        @Friend(DifferPerfTestJMH.class)
+        private boolean active;
+        @Friend(DifferPerfTestJMH.class)
+        private short status;
+        @Friend(DifferPerfTestJMH.class)
+        private double balance;
+        @Friend(DifferPerfTestJMH.class)
+        private float rating;
+        @Friend(DifferPerfTestJMH.class)
+        private char grade;
+        @Friend(DifferPerfTestJMH.class)
+        private String name;
+        @Friend(DifferPerfTestJMH.class)
+        private String email;
+
+        public Entity(long id) {
+            this.id = id;
+            this.version = 1;
+            this.active = true;
+            this.status = 2;
+            this.balance = id * 0.25d;
+            this.rating = 3.5f;
+            this.grade = 'B';
+            this.name = "entity" + id;
+            this.email = "entity" + id + "@example.com";
+        }
+    }
+
+    private static final Differ<Entity> differ = Friendly.differ(Entity.class);
+
+    private static final MethodHandle[] getters;
+
+    static {
+        Field[] fields = differ.getFields();
+        getters = new MethodHandle[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            getters[i] = Friendly.getter(Entity.class, fields[i].getName())
+                                 .asType(MethodType.methodType(Object.class, Entity.class));
+        }
+    }
+
+    private final Entity[] entities = new Entity[ENTITIES];
+    private final Object[][] mhSnapshots = new Object[ENTITIES][];
+    private final Differ.Snapshot[] differSnapshots = new Differ.Snapshot[ENTITIES];
+
+    {
+        for (int i = 0; i < ENTITIES; i++) {
+            entities[i] = new Entity(i);
+            mhSnapshots[i] = mhSnapshot(entities[i]);
+            differSnapshots[i] = differ.snapshot(entities[i]);
+        }
+        // every 10th entity is dirty
+        for (int i = 0; i < ENTITIES; i += 10) {
+            entities[i].version++;
+            entities[i].balance += 1d;
+        }
+    }
+
+    private static Object[] mhSnapshot(Entity entity) {
+        try {
+            Object[] snapshot = new Object[getters.length];
+            for (int i = 0; i < getters.length; i++) {
+                snapshot[i] = getters[i].invokeExact(entity);
+            }
+            return snapshot;
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    private static long mhDiff(Entity entity, Object[] snapshot) {
+        try {
+            long changes = 0L;
+            for (int i = 0; i < getters.length; i++) {
+                if (!Objects.equals(snapshot[i], (Object) getters[i].invokeExact(entity)))
+                    changes |= 1L << i;
+            }
+            return changes;
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Object[] mh_snapshot() {
+        Object[] s = null;
+        for (int i = 0; i < ENTITIES; i++) {
+            s = mhSnapshot(entities[i]);
+        }
+        return s;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Differ.Snapshot differ_snapshot() {
+        Differ.Snapshot s = null;
+        for (int i = 0; i < ENTITIES; i++) {
+            s = differ.snapshot(entities[i]);
+        }
+        return s;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int mh_flush() {
+        int dirty = 0;
+        for (int i = 0; i < ENTITIES; i++) {
+            if (mhDiff(entities[i], mhSnapshots[i]) != 0L)
+                dirty++;
+        }
+        return dirty;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int differ_flush() {
+        int dirty = 0;
+        for (int i = 0; i < ENTITIES; i++) {
+            if (differ.diff(entities[i], differSnapshots[i]) != 0L)
+                dirty++;
+        }
+        return dirty;
+    }
+}
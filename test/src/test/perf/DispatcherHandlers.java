@@ -0,0 +1,1135 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+/**
+ * Classes with 10, 100 and 1000 package-private handler methods {@code long hN(long x)} (named h0, h1, ...)
+ * used by {@link DispatcherPerfTestJMH}.
+ */
+public class DispatcherHandlers {
+
+    public static class H10 {
+        public static final int HANDLERS = 10;
+        long h0(long x) { return x + 0; }
+        long h1(long x) { return x + 1; }
+        long h2(long x) { return x + 2; }
+        long h3(long x) { return x + 3; }
+        long h4(long x) { return x + 4; }
+        long h5(long x) { return x + 5; }
+        long h6(long x) { return x + 6; }
+        long h7(long x) { return x + 7; }
+        long h8(long x) { return x + 8; }
+        long h9(long x) { return x + 9; }
+    }
+
+    public static class H100 {
+        public static final int HANDLERS = 100;
+        long h0(long x) { return x + 0; }
+        long h1(long x) { return x + 1; }
+        long h2(long x) { return x + 2; }
+        long h3(long x) { return x + 3; }
+        long h4(long x) { return x + 4; }
+        long h5(long x) { return x + 5; }
+        long h6(long x) { return x + 6; }
+        long h7(long x) { return x + 7; }
+        long h8(long x) { return x + 8; }
+        long h9(long x) { return x + 9; }
+        long h10(long x) { return x + 10; }
+        long h11(long x) { return x + 11; }
+        long h12(long x) { return x + 12; }
+        long h13(long x) { return x + 13; }
+        long h14(long x) { return x + 14; }
+        long h15(long x) { return x + 15; }
+        long h16(long x) { return x + 16; }
+        long h17(long x) { return x + 17; }
+        long h18(long x) { return x + 18; }
+        long h19(long x) { return x + 19; }
+        long h20(long x) { return x + 20; }
+        long h21(long x) { return x + 21; }
+        long h22(long x) { return x + 22; }
+        long h23(long x) { return x + 23; }
+        long h24(long x) { return x + 24; }
+        long h25(long x) { return x + 25; }
+        long h26(long x) { return x + 26; }
+        long h27(long x) { return x + 27; }
+        long h28(long x) { return x + 28; }
+        long h29(long x) { return x + 29; }
+        long h30(long x) { return x + 30; }
+        long h31(long x) { return x + 31; }
+        long h32(long x) { return x + 32; }
+        long h33(long x) { return x + 33; }
+        long h34(long x) { return x + 34; }
+        long h35(long x) { return x + 35; }
+        long h36(long x) { return x + 36; }
+        long h37(long x) { return x + 37; }
+        long h38(long x) { return x + 38; }
+        long h39(long x) { return x + 39; }
+        long h40(long x) { return x + 40; }
+        long h41(long x) { return x + 41; }
+        long h42(long x) { return x + 42; }
+        long h43(long x) { return x + 43; }
+        long h44(long x) { return x + 44; }
+        long h45(long x) { return x + 45; }
+        long h46(long x) { return x + 46; }
+        long h47(long x) { return x + 47; }
+        long h48(long x) { return x + 48; }
+        long h49(long x) { return x + 49; }
+        long h50(long x) { return x + 50; }
+        long h51(long x) { return x + 51; }
+        long h52(long x) { return x + 52; }
+        long h53(long x) { return x + 53; }
+        long h54(long x) { return x + 54; }
+        long h55(long x) { return x + 55; }
+        long h56(long x) { return x + 56; }
+        long h57(long x) { return x + 57; }
+        long h58(long x) { return x + 58; }
+        long h59(long x) { return x + 59; }
+        long h60(long x) { return x + 60; }
+        long h61(long x) { return x + 61; }
+        long h62(long x) { return x + 62; }
+        long h63(long x) { return x + 63; }
+        long h64(long x) { return x + 64; }
+        long h65(long x) { return x + 65; }
+        long h66(long x) { return x + 66; }
+        long h67(long x) { return x + 67; }
+        long h68(long x) { return x + 68; }
+        long h69(long x) { return x + 69; }
+        long h70(long x) { return x + 70; }
+        long h71(long x) { return x + 71; }
+        long h72(long x) { return x + 72; }
+        long h73(long x) { return x + 73; }
+        long h74(long x) { return x + 74; }
+        long h75(long x) { return x + 75; }
+        long h76(long x) { return x + 76; }
+        long h77(long x) { return x + 77; }
+        long h78(long x) { return x + 78; }
+        long h79(long x) { return x + 79; }
+        long h80(long x) { return x + 80; }
+        long h81(long x) { return x + 81; }
+        long h82(long x) { return x + 82; }
+        long h83(long x) { return x + 83; }
+        long h84(long x) { return x + 84; }
+        long h85(long x) { return x + 85; }
+        long h86(long x) { return x + 86; }
+        long h87(long x) { return x + 87; }
+        long h88(long x) { return x + 88; }
+        long h89(long x) { return x + 89; }
+        long h90(long x) { return x + 90; }
+        long h91(long x) { return x + 91; }
+        long h92(long x) { return x + 92; }
+        long h93(long x) { return x + 93; }
+        long h94(long x) { return x + 94; }
+        long h95(long x) { return x + 95; }
+        long h96(long x) { return x + 96; }
+        long h97(long x) { return x + 97; }
+        long h98(long x) { return x + 98; }
+        long h99(long x) { return x + 99; }
+    }
+
+    public static class H1000 {
+        public static final int HANDLERS = 1000;
+        long h0(long x) { return x + 0; }
+        long h1(long x) { return x + 1; }
+        long h2(long x) { return x + 2; }
+        long h3(long x) { return x + 3; }
+        long h4(long x) { return x + 4; }
+        long h5(long x) { return x + 5; }
+        long h6(long x) { return x + 6; }
+        long h7(long x) { return x + 7; }
+        long h8(long x) { return x + 8; }
+        long h9(long x) { return x + 9; }
+        long h10(long x) { return x + 10; }
+        long h11(long x) { return x + 11; }
+        long h12(long x) { return x + 12; }
+        long h13(long x) { return x + 13; }
+        long h14(long x) { return x + 14; }
+        long h15(long x) { return x + 15; }
+        long h16(long x) { return x + 16; }
+        long h17(long x) { return x + 17; }
+        long h18(long x) { return x + 18; }
+        long h19(long x) { return x + 19; }
+        long h20(long x) { return x + 20; }
+        long h21(long x) { return x + 21; }
+        long h22(long x) { return x + 22; }
+        long h23(long x) { return x + 23; }
+        long h24(long x) { return x + 24; }
+        long h25(long x) { return x + 25; }
+        long h26(long x) { return x + 26; }
+        long h27(long x) { return x + 27; }
+        long h28(long x) { return x + 28; }
+        long h29(long x) { return x + 29; }
+        long h30(long x) { return x + 30; }
+        long h31(long x) { return x + 31; }
+        long h32(long x) { return x + 32; }
+        long h33(long x) { return x + 33; }
+        long h34(long x) { return x + 34; }
+        long h35(long x) { return x + 35; }
+        long h36(long x) { return x + 36; }
+        long h37(long x) { return x + 37; }
+        long h38(long x) { return x + 38; }
+        long h39(long x) { return x + 39; }
+        long h40(long x) { return x + 40; }
+        long h41(long x) { return x + 41; }
+        long h42(long x) { return x + 42; }
+        long h43(long x) { return x + 43; }
+        long h44(long x) { return x + 44; }
+        long h45(long x) { return x + 45; }
+        long h46(long x) { return x + 46; }
+        long h47(long x) { return x + 47; }
+        long h48(long x) { return x + 48; }
+        long h49(long x) { return x + 49; }
+        long h50(long x) { return x + 50; }
+        long h51(long x) { return x + 51; }
+        long h52(long x) { return x + 52; }
+        long h53(long x) { return x + 53; }
+        long h54(long x) { return x + 54; }
+        long h55(long x) { return x + 55; }
+        long h56(long x) { return x + 56; }
+        long h57(long x) { return x + 57; }
+        long h58(long x) { return x + 58; }
+        long h59(long x) { return x + 59; }
+        long h60(long x) { return x + 60; }
+        long h61(long x) { return x + 61; }
+        long h62(long x) { return x + 62; }
+        long h63(long x) { return x + 63; }
+        long h64(long x) { return x + 64; }
+        long h65(long x) { return x + 65; }
+        long h66(long x) { return x + 66; }
+        long h67(long x) { return x + 67; }
+        long h68(long x) { return x + 68; }
+        long h69(long x) { return x + 69; }
+        long h70(long x) { return x + 70; }
+        long h71(long x) { return x + 71; }
+        long h72(long x) { return x + 72; }
+        long h73(long x) { return x + 73; }
+        long h74(long x) { return x + 74; }
+        long h75(long x) { return x + 75; }
+        long h76(long x) { return x + 76; }
+        long h77(long x) { return x + 77; }
+        long h78(long x) { return x + 78; }
+        long h79(long x) { return x + 79; }
+        long h80(long x) { return x + 80; }
+        long h81(long x) { return x + 81; }
+        long h82(long x) { return x + 82; }
+        long h83(long x) { return x + 83; }
+        long h84(long x) { return x + 84; }
+        long h85(long x) { return x + 85; }
+        long h86(long x) { return x + 86; }
+        long h87(long x) { return x + 87; }
+        long h88(long x) { return x + 88; }
+        long h89(long x) { return x + 89; }
+        long h90(long x) { return x + 90; }
+        long h91(long x) { return x + 91; }
+        long h92(long x) { return x + 92; }
+        long h93(long x) { return x + 93; }
+        long h94(long x) { return x + 94; }
+        long h95(long x) { return x + 95; }
+        long h96(long x) { return x + 96; }
+        long h97(long x) { return x + 97; }
+        long h98(long x) { return x + 98; }
+        long h99(long x) { return x + 99; }
+        long h100(long x) { return x + 100; }
+        long h101(long x) { return x + 101; }
+        long h102(long x) { return x + 102; }
+        long h103(long x) { return x + 103; }
+        long h104(long x) { return x + 104; }
+        long h105(long x) { return x + 105; }
+        long h106(long x) { return x + 106; }
+        long h107(long x) { return x + 107; }
+        long h108(long x) { return x + 108; }
+        long h109(long x) { return x + 109; }
+        long h110(long x) { return x + 110; }
+        long h111(long x) { return x + 111; }
+        long h112(long x) { return x + 112; }
+        long h113(long x) { return x + 113; }
+        long h114(long x) { return x + 114; }
+        long h115(long x) { return x + 115; }
+        long h116(long x) { return x + 116; }
+        long h117(long x) { return x + 117; }
+        long h118(long x) { return x + 118; }
+        long h119(long x) { return x + 119; }
+        long h120(long x) { return x + 120; }
+        long h121(long x) { return x + 121; }
+        long h122(long x) { return x + 122; }
+        long h123(long x) { return x + 123; }
+        long h124(long x) { return x + 124; }
+        long h125(long x) { return x + 125; }
+        long h126(long x) { return x + 126; }
+        long h127(long x) { return x + 127; }
+        long h128(long x) { return x + 128; }
+        long h129(long x) { return x + 129; }
+        long h130(long x) { return x + 130; }
+        long h131(long x) { return x + 131; }
+        long h132(long x) { return x + 132; }
+        long h133(long x) { return x + 133; }
+        long h134(long x) { return x + 134; }
+        long h135(long x) { return x + 135; }
+        long h136(long x) { return x + 136; }
+        long h137(long x) { return x + 137; }
+        long h138(long x) { return x + 138; }
+        long h139(long x) { return x + 139; }
+        long h140(long x) { return x + 140; }
+        long h141(long x) { return x + 141; }
+        long h142(long x) { return x + 142; }
+        long h143(long x) { return x + 143; }
+        long h144(long x) { return x + 144; }
+        long h145(long x) { return x + 145; }
+        long h146(long x) { return x + 146; }
+        long h147(long x) { return x + 147; }
+        long h148(long x) { return x + 148; }
+        long h149(long x) { return x + 149; }
+        long h150(long x) { return x + 150; }
+        long h151(long x) { return x + 151; }
+        long h152(long x) { return x + 152; }
+        long h153(long x) { return x + 153; }
+        long h154(long x) { return x + 154; }
+        long h155(long x) { return x + 155; }
+        long h156(long x) { return x + 156; }
+        long h157(long x) { return x + 157; }
+        long h158(long x) { return x + 158; }
+        long h159(long x) { return x + 159; }
+        long h160(long x) { return x + 160; }
+        long h161(long x) { return x + 161; }
+        long h162(long x) { return x + 162; }
+        long h163(long x) { return x + 163; }
+        long h164(long x) { return x + 164; }
+        long h165(long x) { return x + 165; }
+        long h166(long x) { return x + 166; }
+        long h167(long x) { return x + 167; }
+        long h168(long x) { return x + 168; }
+        long h169(long x) { return x + 169; }
+        long h170(long x) { return x + 170; }
+        long h171(long x) { return x + 171; }
+        long h172(long x) { return x + 172; }
+        long h173(long x) { return x + 173; }
+        long h174(long x) { return x + 174; }
+        long h175(long x) { return x + 175; }
+        long h176(long x) { return x + 176; }
+        long h177(long x) { return x + 177; }
+        long h178(long x) { return x + 178; }
+        long h179(long x) { return x + 179; }
+        long h180(long x) { return x + 180; }
+        long h181(long x) { return x + 181; }
+        long h182(long x) { return x + 182; }
+        long h183(long x) { return x + 183; }
+        long h184(long x) { return x + 184; }
+        long h185(long x) { return x + 185; }
+        long h186(long x) { return x + 186; }
+        long h187(long x) { return x + 187; }
+        long h188(long x) { return x + 188; }
+        long h189(long x) { return x + 189; }
+        long h190(long x) { return x + 190; }
+        long h191(long x) { return x + 191; }
+        long h192(long x) { return x + 192; }
+        long h193(long x) { return x + 193; }
+        long h194(long x) { return x + 194; }
+        long h195(long x) { return x + 195; }
+        long h196(long x) { return x + 196; }
+        long h197(long x) { return x + 197; }
+        long h198(long x) { return x + 198; }
+        long h199(long x) { return x + 199; }
+        long h200(long x) { return x + 200; }
+        long h201(long x) { return x + 201; }
+        long h202(long x) { return x + 202; }
+        long h203(long x) { return x + 203; }
+        long h204(long x) { return x + 204; }
+        long h205(long x) { return x + 205; }
+        long h206(long x) { return x + 206; }
+        long h207(long x) { return x + 207; }
+        long h208(long x) { return x + 208; }
+        long h209(long x) { return x + 209; }
+        long h210(long x) { return x + 210; }
+        long h211(long x) { return x + 211; }
+        long h212(long x) { return x + 212; }
+        long h213(long x) { return x + 213; }
+        long h214(long x) { return x + 214; }
+        long h215(long x) { return x + 215; }
+        long h216(long x) { return x + 216; }
+        long h217(long x) { return x + 217; }
+        long h218(long x) { return x + 218; }
+        long h219(long x) { return x + 219; }
+        long h220(long x) { return x + 220; }
+        long h221(long x) { return x + 221; }
+        long h222(long x) { return x + 222; }
+        long h223(long x) { return x + 223; }
+        long h224(long x) { return x + 224; }
+        long h225(long x) { return x + 225; }
+        long h226(long x) { return x + 226; }
+        long h227(long x) { return x + 227; }
+        long h228(long x) { return x + 228; }
+        long h229(long x) { return x + 229; }
+        long h230(long x) { return x + 230; }
+        long h231(long x) { return x + 231; }
+        long h232(long x) { return x + 232; }
+        long h233(long x) { return x + 233; }
+        long h234(long x) { return x + 234; }
+        long h235(long x) { return x + 235; }
+        long h236(long x) { return x + 236; }
+        long h237(long x) { return x + 237; }
+        long h238(long x) { return x + 238; }
+        long h239(long x) { return x + 239; }
+        long h240(long x) { return x + 240; }
+        long h241(long x) { return x + 241; }
+        long h242(long x) { return x + 242; }
+        long h243(long x) { return x + 243; }
+        long h244(long x) { return x + 244; }
+        long h245(long x) { return x + 245; }
+        long h246(long x) { return x + 246; }
+        long h247(long x) { return x + 247; }
+        long h248(long x) { return x + 248; }
+        long h249(long x) { return x + 249; }
+        long h250(long x) { return x + 250; }
+        long h251(long x) { return x + 251; }
+        long h252(long x) { return x + 252; }
+        long h253(long x) { return x + 253; }
+        long h254(long x) { return x + 254; }
+        long h255(long x) { return x + 255; }
+        long h256(long x) { return x + 256; }
+        long h257(long x) { return x + 257; }
+        long h258(long x) { return x + 258; }
+        long h259(long x) { return x + 259; }
+        long h260(long x) { return x + 260; }
+        long h261(long x) { return x + 261; }
+        long h262(long x) { return x + 262; }
+        long h263(long x) { return x + 263; }
+        long h264(long x) { return x + 264; }
+        long h265(long x) { return x + 265; }
+        long h266(long x) { return x + 266; }
+        long h267(long x) { return x + 267; }
+        long h268(long x) { return x + 268; }
+        long h269(long x) { return x + 269; }
+        long h270(long x) { return x + 270; }
+        long h271(long x) { return x + 271; }
+        long h272(long x) { return x + 272; }
+        long h273(long x) { return x + 273; }
+        long h274(long x) { return x + 274; }
+        long h275(long x) { return x + 275; }
+        long h276(long x) { return x + 276; }
+        long h277(long x) { return x + 277; }
+        long h278(long x) { return x + 278; }
+        long h279(long x) { return x + 279; }
+        long h280(long x) { return x + 280; }
+        long h281(long x) { return x + 281; }
+        long h282(long x) { return x + 282; }
+        long h283(long x) { return x + 283; }
+        long h284(long x) { return x + 284; }
+        long h285(long x) { return x + 285; }
+        long h286(long x) { return x + 286; }
+        long h287(long x) { return x + 287; }
+        long h288(long x) { return x + 288; }
+        long h289(long x) { return x + 289; }
+        long h290(long x) { return x + 290; }
+        long h291(long x) { return x + 291; }
+        long h292(long x) { return x + 292; }
+        long h293(long x) { return x + 293; }
+        long h294(long x) { return x + 294; }
+        long h295(long x) { return x + 295; }
+        long h296(long x) { return x + 296; }
+        long h297(long x) { return x + 297; }
+        long h298(long x) { return x + 298; }
+        long h299(long x) { return x + 299; }
+        long h300(long x) { return x + 300; }
+        long h301(long x) { return x + 301; }
+        long h302(long x) { return x + 302; }
+        long h303(long x) { return x + 303; }
+        long h304(long x) { return x + 304; }
+        long h305(long x) { return x + 305; }
+        long h306(long x) { return x + 306; }
+        long h307(long x) { return x + 307; }
+        long h308(long x) { return x + 308; }
+        long h309(long x) { return x + 309; }
+        long h310(long x) { return x + 310; }
+        long h311(long x) { return x + 311; }
+        long h312(long x) { return x + 312; }
+        long h313(long x) { return x + 313; }
+        long h314(long x) { return x + 314; }
+        long h315(long x) { return x + 315; }
+        long h316(long x) { return x + 316; }
+        long h317(long x) { return x + 317; }
+        long h318(long x) { return x + 318; }
+        long h319(long x) { return x + 319; }
+        long h320(long x) { return x + 320; }
+        long h321(long x) { return x + 321; }
+        long h322(long x) { return x + 322; }
+        long h323(long x) { return x + 323; }
+        long h324(long x) { return x + 324; }
+        long h325(long x) { return x + 325; }
+        long h326(long x) { return x + 326; }
+        long h327(long x) { return x + 327; }
+        long h328(long x) { return x + 328; }
+        long h329(long x) { return x + 329; }
+        long h330(long x) { return x + 330; }
+        long h331(long x) { return x + 331; }
+        long h332(long x) { return x + 332; }
+        long h333(long x) { return x + 333; }
+        long h334(long x) { return x + 334; }
+        long h335(long x) { return x + 335; }
+        long h336(long x) { return x + 336; }
+        long h337(long x) { return x + 337; }
+        long h338(long x) { return x + 338; }
+        long h339(long x) { return x + 339; }
+        long h340(long x) { return x + 340; }
+        long h341(long x) { return x + 341; }
+        long h342(long x) { return x + 342; }
+        long h343(long x) { return x + 343; }
+        long h344(long x) { return x + 344; }
+        long h345(long x) { return x + 345; }
+        long h346(long x) { return x + 346; }
+        long h347(long x) { return x + 347; }
+        long h348(long x) { return x + 348; }
+        long h349(long x) { return x + 349; }
+        long h350(long x) { return x + 350; }
+        long h351(long x) { return x + 351; }
+        long h352(long x) { return x + 352; }
+        long h353(long x) { return x + 353; }
+        long h354(long x) { return x + 354; }
+        long h355(long x) { return x + 355; }
+        long h356(long x) { return x + 356; }
+        long h357(long x) { return x + 357; }
+        long h358(long x) { return x + 358; }
+        long h359(long x) { return x + 359; }
+        long h360(long x) { return x + 360; }
+        long h361(long x) { return x + 361; }
+        long h362(long x) { return x + 362; }
+        long h363(long x) { return x + 363; }
+        long h364(long x) { return x + 364; }
+        long h365(long x) { return x + 365; }
+        long h366(long x) { return x + 366; }
+        long h367(long x) { return x + 367; }
+        long h368(long x) { return x + 368; }
+        long h369(long x) { return x + 369; }
+        long h370(long x) { return x + 370; }
+        long h371(long x) { return x + 371; }
+        long h372(long x) { return x + 372; }
+        long h373(long x) { return x + 373; }
+        long h374(long x) { return x + 374; }
+        long h375(long x) { return x + 375; }
+        long h376(long x) { return x + 376; }
+        long h377(long x) { return x + 377; }
+        long h378(long x) { return x + 378; }
+        long h379(long x) { return x + 379; }
+        long h380(long x) { return x + 380; }
+        long h381(long x) { return x + 381; }
+        long h382(long x) { return x + 382; }
+        long h383(long x) { return x + 383; }
+        long h384(long x) { return x + 384; }
+        long h385(long x) { return x + 385; }
+        long h386(long x) { return x + 386; }
+        long h387(long x) { return x + 387; }
+        long h388(long x) { return x + 388; }
+        long h389(long x) { return x + 389; }
+        long h390(long x) { return x + 390; }
+        long h391(long x) { return x + 391; }
+        long h392(long x) { return x + 392; }
+        long h393(long x) { return x + 393; }
+        long h394(long x) { return x + 394; }
+        long h395(long x) { return x + 395; }
+        long h396(long x) { return x + 396; }
+        long h397(long x) { return x + 397; }
+        long h398(long x) { return x + 398; }
+        long h399(long x) { return x + 399; }
+        long h400(long x) { return x + 400; }
+        long h401(long x) { return x + 401; }
+        long h402(long x) { return x + 402; }
+        long h403(long x) { return x + 403; }
+        long h404(long x) { return x + 404; }
+        long h405(long x) { return x + 405; }
+        long h406(long x) { return x + 406; }
+        long h407(long x) { return x + 407; }
+        long h408(long x) { return x + 408; }
+        long h409(long x) { return x + 409; }
+        long h410(long x) { return x + 410; }
+        long h411(long x) { return x + 411; }
+        long h412(long x) { return x + 412; }
+        long h413(long x) { return x + 413; }
+        long h414(long x) { return x + 414; }
+        long h415(long x) { return x + 415; }
+        long h416(long x) { return x + 416; }
+        long h417(long x) { return x + 417; }
+        long h418(long x) { return x + 418; }
+        long h419(long x) { return x + 419; }
+        long h420(long x) { return x + 420; }
+        long h421(long x) { return x + 421; }
+        long h422(long x) { return x + 422; }
+        long h423(long x) { return x + 423; }
+        long h424(long x) { return x + 424; }
+        long h425(long x) { return x + 425; }
+        long h426(long x) { return x + 426; }
+        long h427(long x) { return x + 427; }
+        long h428(long x) { return x + 428; }
+        long h429(long x) { return x + 429; }
+        long h430(long x) { return x + 430; }
+        long h431(long x) { return x + 431; }
+        long h432(long x) { return x + 432; }
+        long h433(long x) { return x + 433; }
+        long h434(long x) { return x + 434; }
+        long h435(long x) { return x + 435; }
+        long h436(long x) { return x + 436; }
+        long h437(long x) { return x + 437; }
+        long h438(long x) { return x + 438; }
+        long h439(long x) { return x + 439; }
+        long h440(long x) { return x + 440; }
+        long h441(long x) { return x + 441; }
+        long h442(long x) { return x + 442; }
+        long h443(long x) { return x + 443; }
+        long h444(long x) { return x + 444; }
+        long h445(long x) { return x + 445; }
+        long h446(long x) { return x + 446; }
+        long h447(long x) { return x + 447; }
+        long h448(long x) { return x + 448; }
+        long h449(long x) { return x + 449; }
+        long h450(long x) { return x + 450; }
+        long h451(long x) { return x + 451; }
+        long h452(long x) { return x + 452; }
+        long h453(long x) { return x + 453; }
+        long h454(long x) { return x + 454; }
+        long h455(long x) { return x + 455; }
+        long h456(long x) { return x + 456; }
+        long h457(long x) { return x + 457; }
+        long h458(long x) { return x + 458; }
+        long h459(long x) { return x + 459; }
+        long h460(long x) { return x + 460; }
+        long h461(long x) { return x + 461; }
+        long h462(long x) { return x + 462; }
+        long h463(long x) { return x + 463; }
+        long h464(long x) { return x + 464; }
+        long h465(long x) { return x + 465; }
+        long h466(long x) { return x + 466; }
+        long h467(long x) { return x + 467; }
+        long h468(long x) { return x + 468; }
+        long h469(long x) { return x + 469; }
+        long h470(long x) { return x + 470; }
+        long h471(long x) { return x + 471; }
+        long h472(long x) { return x + 472; }
+        long h473(long x) { return x + 473; }
+        long h474(long x) { return x + 474; }
+        long h475(long x) { return x + 475; }
+        long h476(long x) { return x + 476; }
+        long h477(long x) { return x + 477; }
+        long h478(long x) { return x + 478; }
+        long h479(long x) { return x + 479; }
+        long h480(long x) { return x + 480; }
+        long h481(long x) { return x + 481; }
+        long h482(long x) { return x + 482; }
+        long h483(long x) { return x + 483; }
+        long h484(long x) { return x + 484; }
+        long h485(long x) { return x + 485; }
+        long h486(long x) { return x + 486; }
+        long h487(long x) { return x + 487; }
+        long h488(long x) { return x + 488; }
+        long h489(long x) { return x + 489; }
+        long h490(long x) { return x + 490; }
+        long h491(long x) { return x + 491; }
+        long h492(long x) { return x + 492; }
+        long h493(long x) { return x + 493; }
+        long h494(long x) { return x + 494; }
+        long h495(long x) { return x + 495; }
+        long h496(long x) { return x + 496; }
+        long h497(long x) { return x + 497; }
+        long h498(long x) { return x + 498; }
+        long h499(long x) { return x + 499; }
+        long h500(long x) { return x + 500; }
+        long h501(long x) { return x + 501; }
+        long h502(long x) { return x + 502; }
+        long h503(long x) { return x + 503; }
+        long h504(long x) { return x + 504; }
+        long h505(long x) { return x + 505; }
+        long h506(long x) { return x + 506; }
+        long h507(long x) { return x + 507; }
+        long h508(long x) { return x + 508; }
+        long h509(long x) { return x + 509; }
+        long h510(long x) { return x + 510; }
+        long h511(long x) { return x + 511; }
+        long h512(long x) { return x + 512; }
+        long h513(long x) { return x + 513; }
+        long h514(long x) { return x + 514; }
+        long h515(long x) { return x + 515; }
+        long h516(long x) { return x + 516; }
+        long h517(long x) { return x + 517; }
+        long h518(long x) { return x + 518; }
+        long h519(long x) { return x + 519; }
+        long h520(long x) { return x + 520; }
+        long h521(long x) { return x + 521; }
+        long h522(long x) { return x + 522; }
+        long h523(long x) { return x + 523; }
+        long h524(long x) { return x + 524; }
+        long h525(long x) { return x + 525; }
+        long h526(long x) { return x + 526; }
+        long h527(long x) { return x + 527; }
+        long h528(long x) { return x + 528; }
+        long h529(long x) { return x + 529; }
+        long h530(long x) { return x + 530; }
+        long h531(long x) { return x + 531; }
+        long h532(long x) { return x + 532; }
+        long h533(long x) { return x + 533; }
+        long h534(long x) { return x + 534; }
+        long h535(long x) { return x + 535; }
+        long h536(long x) { return x + 536; }
+        long h537(long x) { return x + 537; }
+        long h538(long x) { return x + 538; }
+        long h539(long x) { return x + 539; }
+        long h540(long x) { return x + 540; }
+        long h541(long x) { return x + 541; }
+        long h542(long x) { return x + 542; }
+        long h543(long x) { return x + 543; }
+        long h544(long x) { return x + 544; }
+        long h545(long x) { return x + 545; }
+        long h546(long x) { return x + 546; }
+        long h547(long x) { return x + 547; }
+        long h548(long x) { return x + 548; }
+        long h549(long x) { return x + 549; }
+        long h550(long x) { return x + 550; }
+        long h551(long x) { return x + 551; }
+        long h552(long x) { return x + 552; }
+        long h553(long x) { return x + 553; }
+        long h554(long x) { return x + 554; }
+        long h555(long x) { return x + 555; }
+        long h556(long x) { return x + 556; }
+        long h557(long x) { return x + 557; }
+        long h558(long x) { return x + 558; }
+        long h559(long x) { return x + 559; }
+        long h560(long x) { return x + 560; }
+        long h561(long x) { return x + 561; }
+        long h562(long x) { return x + 562; }
+        long h563(long x) { return x + 563; }
+        long h564(long x) { return x + 564; }
+        long h565(long x) { return x + 565; }
+        long h566(long x) { return x + 566; }
+        long h567(long x) { return x + 567; }
+        long h568(long x) { return x + 568; }
+        long h569(long x) { return x + 569; }
+        long h570(long x) { return x + 570; }
+        long h571(long x) { return x + 571; }
+        long h572(long x) { return x + 572; }
+        long h573(long x) { return x + 573; }
+        long h574(long x) { return x + 574; }
+        long h575(long x) { return x + 575; }
+        long h576(long x) { return x + 576; }
+        long h577(long x) { return x + 577; }
+        long h578(long x) { return x + 578; }
+        long h579(long x) { return x + 579; }
+        long h580(long x) { return x + 580; }
+        long h581(long x) { return x + 581; }
+        long h582(long x) { return x + 582; }
+        long h583(long x) { return x + 583; }
+        long h584(long x) { return x + 584; }
+        long h585(long x) { return x + 585; }
+        long h586(long x) { return x + 586; }
+        long h587(long x) { return x + 587; }
+        long h588(long x) { return x + 588; }
+        long h589(long x) { return x + 589; }
+        long h590(long x) { return x + 590; }
+        long h591(long x) { return x + 591; }
+        long h592(long x) { return x + 592; }
+        long h593(long x) { return x + 593; }
+        long h594(long x) { return x + 594; }
+        long h595(long x) { return x + 595; }
+        long h596(long x) { return x + 596; }
+        long h597(long x) { return x + 597; }
+        long h598(long x) { return x + 598; }
+        long h599(long x) { return x + 599; }
+        long h600(long x) { return x + 600; }
+        long h601(long x) { return x + 601; }
+        long h602(long x) { return x + 602; }
+        long h603(long x) { return x + 603; }
+        long h604(long x) { return x + 604; }
+        long h605(long x) { return x + 605; }
+        long h606(long x) { return x + 606; }
+        long h607(long x) { return x + 607; }
+        long h608(long x) { return x + 608; }
+        long h609(long x) { return x + 609; }
+        long h610(long x) { return x + 610; }
+        long h611(long x) { return x + 611; }
+        long h612(long x) { return x + 612; }
+        long h613(long x) { return x + 613; }
+        long h614(long x) { return x + 614; }
+        long h615(long x) { return x + 615; }
+        long h616(long x) { return x + 616; }
+        long h617(long x) { return x + 617; }
+        long h618(long x) { return x + 618; }
+        long h619(long x) { return x + 619; }
+        long h620(long x) { return x + 620; }
+        long h621(long x) { return x + 621; }
+        long h622(long x) { return x + 622; }
+        long h623(long x) { return x + 623; }
+        long h624(long x) { return x + 624; }
+        long h625(long x) { return x + 625; }
+        long h626(long x) { return x + 626; }
+        long h627(long x) { return x + 627; }
+        long h628(long x) { return x + 628; }
+        long h629(long x) { return x + 629; }
+        long h630(long x) { return x + 630; }
+        long h631(long x) { return x + 631; }
+        long h632(long x) { return x + 632; }
+        long h633(long x) { return x + 633; }
+        long h634(long x) { return x + 634; }
+        long h635(long x) { return x + 635; }
+        long h636(long x) { return x + 636; }
+        long h637(long x) { return x + 637; }
+        long h638(long x) { return x + 638; }
+        long h639(long x) { return x + 639; }
+        long h640(long x) { return x + 640; }
+        long h641(long x) { return x + 641; }
+        long h642(long x) { return x + 642; }
+        long h643(long x) { return x + 643; }
+        long h644(long x) { return x + 644; }
+        long h645(long x) { return x + 645; }
+        long h646(long x) { return x + 646; }
+        long h647(long x) { return x + 647; }
+        long h648(long x) { return x + 648; }
+        long h649(long x) { return x + 649; }
+        long h650(long x) { return x + 650; }
+        long h651(long x) { return x + 651; }
+        long h652(long x) { return x + 652; }
+        long h653(long x) { return x + 653; }
+        long h654(long x) { return x + 654; }
+        long h655(long x) { return x + 655; }
+        long h656(long x) { return x + 656; }
+        long h657(long x) { return x + 657; }
+        long h658(long x) { return x + 658; }
+        long h659(long x) { return x + 659; }
+        long h660(long x) { return x + 660; }
+        long h661(long x) { return x + 661; }
+        long h662(long x) { return x + 662; }
+        long h663(long x) { return x + 663; }
+        long h664(long x) { return x + 664; }
+        long h665(long x) { return x + 665; }
+        long h666(long x) { return x + 666; }
+        long h667(long x) { return x + 667; }
+        long h668(long x) { return x + 668; }
+        long h669(long x) { return x + 669; }
+        long h670(long x) { return x + 670; }
+        long h671(long x) { return x + 671; }
+        long h672(long x) { return x + 672; }
+        long h673(long x) { return x + 673; }
+        long h674(long x) { return x + 674; }
+        long h675(long x) { return x + 675; }
+        long h676(long x) { return x + 676; }
+        long h677(long x) { return x + 677; }
+        long h678(long x) { return x + 678; }
+        long h679(long x) { return x + 679; }
+        long h680(long x) { return x + 680; }
+        long h681(long x) { return x + 681; }
+        long h682(long x) { return x + 682; }
+        long h683(long x) { return x + 683; }
+        long h684(long x) { return x + 684; }
+        long h685(long x) { return x + 685; }
+        long h686(long x) { return x + 686; }
+        long h687(long x) { return x + 687; }
+        long h688(long x) { return x + 688; }
+        long h689(long x) { return x + 689; }
+        long h690(long x) { return x + 690; }
+        long h691(long x) { return x + 691; }
+        long h692(long x) { return x + 692; }
+        long h693(long x) { return x + 693; }
+        long h694(long x) { return x + 694; }
+        long h695(long x) { return x + 695; }
+        long h696(long x) { return x + 696; }
+        long h697(long x) { return x + 697; }
+        long h698(long x) { return x + 698; }
+        long h699(long x) { return x + 699; }
+        long h700(long x) { return x + 700; }
+        long h701(long x) { return x + 701; }
+        long h702(long x) { return x + 702; }
+        long h703(long x) { return x + 703; }
+        long h704(long x) { return x + 704; }
+        long h705(long x) { return x + 705; }
+        long h706(long x) { return x + 706; }
+        long h707(long x) { return x + 707; }
+        long h708(long x) { return x + 708; }
+        long h709(long x) { return x + 709; }
+        long h710(long x) { return x + 710; }
+        long h711(long x) { return x + 711; }
+        long h712(long x) { return x + 712; }
+        long h713(long x) { return x + 713; }
+        long h714(long x) { return x + 714; }
+        long h715(long x) { return x + 715; }
+        long h716(long x) { return x + 716; }
+        long h717(long x) { return x + 717; }
+        long h718(long x) { return x + 718; }
+        long h719(long x) { return x + 719; }
+        long h720(long x) { return x + 720; }
+        long h721(long x) { return x + 721; }
+        long h722(long x) { return x + 722; }
+        long h723(long x) { return x + 723; }
+        long h724(long x) { return x + 724; }
+        long h725(long x) { return x + 725; }
+        long h726(long x) { return x + 726; }
+        long h727(long x) { return x + 727; }
+        long h728(long x) { return x + 728; }
+        long h729(long x) { return x + 729; }
+        long h730(long x) { return x + 730; }
+        long h731(long x) { return x + 731; }
+        long h732(long x) { return x + 732; }
+        long h733(long x) { return x + 733; }
+        long h734(long x) { return x + 734; }
+        long h735(long x) { return x + 735; }
+        long h736(long x) { return x + 736; }
+        long h737(long x) { return x + 737; }
+        long h738(long x) { return x + 738; }
+        long h739(long x) { return x + 739; }
+        long h740(long x) { return x + 740; }
+        long h741(long x) { return x + 741; }
+        long h742(long x) { return x + 742; }
+        long h743(long x) { return x + 743; }
+        long h744(long x) { return x + 744; }
+        long h745(long x) { return x + 745; }
+        long h746(long x) { return x + 746; }
+        long h747(long x) { return x + 747; }
+        long h748(long x) { return x + 748; }
+        long h749(long x) { return x + 749; }
+        long h750(long x) { return x + 750; }
+        long h751(long x) { return x + 751; }
+        long h752(long x) { return x + 752; }
+        long h753(long x) { return x + 753; }
+        long h754(long x) { return x + 754; }
+        long h755(long x) { return x + 755; }
+        long h756(long x) { return x + 756; }
+        long h757(long x) { return x + 757; }
+        long h758(long x) { return x + 758; }
+        long h759(long x) { return x + 759; }
+        long h760(long x) { return x + 760; }
+        long h761(long x) { return x + 761; }
+        long h762(long x) { return x + 762; }
+        long h763(long x) { return x + 763; }
+        long h764(long x) { return x + 764; }
+        long h765(long x) { return x + 765; }
+        long h766(long x) { return x + 766; }
+        long h767(long x) { return x + 767; }
+        long h768(long x) { return x + 768; }
+        long h769(long x) { return x + 769; }
+        long h770(long x) { return x + 770; }
+        long h771(long x) { return x + 771; }
+        long h772(long x) { return x + 772; }
+        long h773(long x) { return x + 773; }
+        long h774(long x) { return x + 774; }
+        long h775(long x) { return x + 775; }
+        long h776(long x) { return x + 776; }
+        long h777(long x) { return x + 777; }
+        long h778(long x) { return x + 778; }
+        long h779(long x) { return x + 779; }
+        long h780(long x) { return x + 780; }
+        long h781(long x) { return x + 781; }
+        long h782(long x) { return x + 782; }
+        long h783(long x) { return x + 783; }
+        long h784(long x) { return x + 784; }
+        long h785(long x) { return x + 785; }
+        long h786(long x) { return x + 786; }
+        long h787(long x) { return x + 787; }
+        long h788(long x) { return x + 788; }
+        long h789(long x) { return x + 789; }
+        long h790(long x) { return x + 790; }
+        long h791(long x) { return x + 791; }
+        long h792(long x) { return x + 792; }
+        long h793(long x) { return x + 793; }
+        long h794(long x) { return x + 794; }
+        long h795(long x) { return x + 795; }
+        long h796(long x) { return x + 796; }
+        long h797(long x) { return x + 797; }
+        long h798(long x) { return x + 798; }
+        long h799(long x) { return x + 799; }
+        long h800(long x) { return x + 800; }
+        long h801(long x) { return x + 801; }
+        long h802(long x) { return x + 802; }
+        long h803(long x) { return x + 803; }
+        long h804(long x) { return x + 804; }
+        long h805(long x) { return x + 805; }
+        long h806(long x) { return x + 806; }
+        long h807(long x) { return x + 807; }
+        long h808(long x) { return x + 808; }
+        long h809(long x) { return x + 809; }
+        long h810(long x) { return x + 810; }
+        long h811(long x) { return x + 811; }
+        long h812(long x) { return x + 812; }
+        long h813(long x) { return x + 813; }
+        long h814(long x) { return x + 814; }
+        long h815(long x) { return x + 815; }
+        long h816(long x) { return x + 816; }
+        long h817(long x) { return x + 817; }
+        long h818(long x) { return x + 818; }
+        long h819(long x) { return x + 819; }
+        long h820(long x) { return x + 820; }
+        long h821(long x) { return x + 821; }
+        long h822(long x) { return x + 822; }
+        long h823(long x) { return x + 823; }
+        long h824(long x) { return x + 824; }
+        long h825(long x) { return x + 825; }
+        long h826(long x) { return x + 826; }
+        long h827(long x) { return x + 827; }
+        long h828(long x) { return x + 828; }
+        long h829(long x) { return x + 829; }
+        long h830(long x) { return x + 830; }
+        long h831(long x) { return x + 831; }
+        long h832(long x) { return x + 832; }
+        long h833(long x) { return x + 833; }
+        long h834(long x) { return x + 834; }
+        long h835(long x) { return x + 835; }
+        long h836(long x) { return x + 836; }
+        long h837(long x) { return x + 837; }
+        long h838(long x) { return x + 838; }
+        long h839(long x) { return x + 839; }
+        long h840(long x) { return x + 840; }
+        long h841(long x) { return x + 841; }
+        long h842(long x) { return x + 842; }
+        long h843(long x) { return x + 843; }
+        long h844(long x) { return x + 844; }
+        long h845(long x) { return x + 845; }
+        long h846(long x) { return x + 846; }
+        long h847(long x) { return x + 847; }
+        long h848(long x) { return x + 848; }
+        long h849(long x) { return x + 849; }
+        long h850(long x) { return x + 850; }
+        long h851(long x) { return x + 851; }
+        long h852(long x) { return x + 852; }
+        long h853(long x) { return x + 853; }
+        long h854(long x) { return x + 854; }
+        long h855(long x) { return x + 855; }
+        long h856(long x) { return x + 856; }
+        long h857(long x) { return x + 857; }
+        long h858(long x) { return x + 858; }
+        long h859(long x) { return x + 859; }
+        long h860(long x) { return x + 860; }
+        long h861(long x) { return x + 861; }
+        long h862(long x) { return x + 862; }
+        long h863(long x) { return x + 863; }
+        long h864(long x) { return x + 864; }
+        long h865(long x) { return x + 865; }
+        long h866(long x) { return x + 866; }
+        long h867(long x) { return x + 867; }
+        long h868(long x) { return x + 868; }
+        long h869(long x) { return x + 869; }
+        long h870(long x) { return x + 870; }
+        long h871(long x) { return x + 871; }
+        long h872(long x) { return x + 872; }
+        long h873(long x) { return x + 873; }
+        long h874(long x) { return x + 874; }
+        long h875(long x) { return x + 875; }
+        long h876(long x) { return x + 876; }
+        long h877(long x) { return x + 877; }
+        long h878(long x) { return x + 878; }
+        long h879(long x) { return x + 879; }
+        long h880(long x) { return x + 880; }
+        long h881(long x) { return x + 881; }
+        long h882(long x) { return x + 882; }
+        long h883(long x) { return x + 883; }
+        long h884(long x) { return x + 884; }
+        long h885(long x) { return x + 885; }
+        long h886(long x) { return x + 886; }
+        long h887(long x) { return x + 887; }
+        long h888(long x) { return x + 888; }
+        long h889(long x) { return x + 889; }
+        long h890(long x) { return x + 890; }
+        long h891(long x) { return x + 891; }
+        long h892(long x) { return x + 892; }
+        long h893(long x) { return x + 893; }
+        long h894(long x) { return x + 894; }
+        long h895(long x) { return x + 895; }
+        long h896(long x) { return x + 896; }
+        long h897(long x) { return x + 897; }
+        long h898(long x) { return x + 898; }
+        long h899(long x) { return x + 899; }
+        long h900(long x) { return x + 900; }
+        long h901(long x) { return x + 901; }
+        long h902(long x) { return x + 902; }
+        long h903(long x) { return x + 903; }
+        long h904(long x) { return x + 904; }
+        long h905(long x) { return x + 905; }
+        long h906(long x) { return x + 906; }
+        long h907(long x) { return x + 907; }
+        long h908(long x) { return x + 908; }
+        long h909(long x) { return x + 909; }
+        long h910(long x) { return x + 910; }
+        long h911(long x) { return x + 911; }
+        long h912(long x) { return x + 912; }
+        long h913(long x) { return x + 913; }
+        long h914(long x) { return x + 914; }
+        long h915(long x) { return x + 915; }
+        long h916(long x) { return x + 916; }
+        long h917(long x) { return x + 917; }
+        long h918(long x) { return x + 918; }
+        long h919(long x) { return x + 919; }
+        long h920(long x) { return x + 920; }
+        long h921(long x) { return x + 921; }
+        long h922(long x) { return x + 922; }
+        long h923(long x) { return x + 923; }
+        long h924(long x) { return x + 924; }
+        long h925(long x) { return x + 925; }
+        long h926(long x) { return x + 926; }
+        long h927(long x) { return x + 927; }
+        long h928(long x) { return x + 928; }
+        long h929(long x) { return x + 929; }
+        long h930(long x) { return x + 930; }
+        long h931(long x) { return x + 931; }
+        long h932(long x) { return x + 932; }
+        long h933(long x) { return x + 933; }
+        long h934(long x) { return x + 934; }
+        long h935(long x) { return x + 935; }
+        long h936(long x) { return x + 936; }
+        long h937(long x) { return x + 937; }
+        long h938(long x) { return x + 938; }
+        long h939(long x) { return x + 939; }
+        long h940(long x) { return x + 940; }
+        long h941(long x) { return x + 941; }
+        long h942(long x) { return x + 942; }
+        long h943(long x) { return x + 943; }
+        long h944(long x) { return x + 944; }
+        long h945(long x) { return x + 945; }
+        long h946(long x) { return x + 946; }
+        long h947(long x) { return x + 947; }
+        long h948(long x) { return x + 948; }
+        long h949(long x) { return x + 949; }
+        long h950(long x) { return x + 950; }
+        long h951(long x) { return x + 951; }
+        long h952(long x) { return x + 952; }
+        long h953(long x) { return x + 953; }
+        long h954(long x) { return x + 954; }
+        long h955(long x) { return x + 955; }
+        long h956(long x) { return x + 956; }
+        long h957(long x) { return x + 957; }
+        long h958(long x) { return x + 958; }
+        long h959(long x) { return x + 959; }
+        long h960(long x) { return x + 960; }
+        long h961(long x) { return x + 961; }
+        long h962(long x) { return x + 962; }
+        long h963(long x) { return x + 963; }
+        long h964(long x) { return x + 964; }
+        long h965(long x) { return x + 965; }
+        long h966(long x) { return x + 966; }
+        long h967(long x) { return x + 967; }
+        long h968(long x) { return x + 968; }
+        long h969(long x) { return x + 969; }
+        long h970(long x) { return x + 970; }
+        long h971(long x) { return x + 971; }
+        long h972(long x) { return x + 972; }
+        long h973(long x) { return x + 973; }
+        long h974(long x) { return x + 974; }
+        long h975(long x) { return x + 975; }
+        long h976(long x) { return x + 976; }
+        long h977(long x) { return x + 977; }
+        long h978(long x) { return x + 978; }
+        long h979(long x) { return x + 979; }
+        long h980(long x) { return x + 980; }
+        long h981(long x) { return x + 981; }
+        long h982(long x) { return x + 982; }
+        long h983(long x) { return x + 983; }
+        long h984(long x) { return x + 984; }
+        long h985(long x) { return x + 985; }
+        long h986(long x) { return x + 986; }
+        long h987(long x) { return x + 987; }
+        long h988(long x) { return x + 988; }
+        long h989(long x) { return x + 989; }
+        long h990(long x) { return x + 990; }
+        long h991(long x) { return x + 991; }
+        long h992(long x) { return x + 992; }
+        long h993(long x) { return x + 993; }
+        long h994(long x) { return x + 994; }
+        long h995(long x) { return x + 995; }
+        long h996(long x) { return x + 996; }
+        long h997(long x) { return x + 997; }
+        long h998(long x) { return x + 998; }
+        long h999(long x) { return x + 999; }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static si.pele.friendly.MHThrows.unchecked;
+
+/**
+ * Compares dispatching calls by handler method name (round-robin over all handlers) via a {@code HashMap} of
+ * method handles invoked with generic {@link MethodHandle#invoke} and via generated {@link Friendly#dispatcher}
+ * for classes with 10, 100 and 1000 handler methods (see {@link DispatcherHandlers}).
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class DispatcherPerfTestJMH {
+
+    public interface Dispatcher10 {
+        long dispatch(String name, DispatcherHandlers.H10 target, long x);
+    }
+
+    public interface Dispatcher100 {
+        long dispatch(String name, DispatcherHandlers.H100 target, long x);
+    }
+
+    public interface Dispatcher1000 {
+        long dispatch(String name, DispatcherHandlers.H1000 target, long x);
+    }
+
+    private static final Dispatcher10 dispatcher10 =
+        Friendly.dispatcher(DispatcherHandlers.H10.class, Dispatcher10.class);
+    private static final Dispatcher100 dispatcher100 =
+        Friendly.dispatcher(DispatcherHandlers.H100.class, Dispatcher100.class);
+    private static final Dispatcher1000 dispatcher1000 =
+        Friendly.dispatcher(DispatcherHandlers.H1000.class, Dispatcher1000.class);
+
+    private static final Map<String, MethodHandle> handlers10 = handlers(DispatcherHandlers.H10.class, 10);
+    private static final Map<String, MethodHandle> handlers100 = handlers(DispatcherHandlers.H100.class, 100);
+    private static final Map<String, MethodHandle> handlers1000 = handlers(DispatcherHandlers.H1000.class, 1000);
+
+    private static Map<String, MethodHandle> handlers(Class<?> clazz, int n) {
+        Map<String, MethodHandle> handlers = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            handlers.put("h" + i, Friendly.method(clazz, "h" + i, long.class));
+        }
+        return handlers;
+    }
+
+    private static String[] names(int n) {
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = "h" + i;
+        }
+        return names;
+    }
+
+    private final DispatcherHandlers.H10 target10 = new DispatcherHandlers.H10();
+    private final DispatcherHandlers.H100 target100 = new DispatcherHandlers.H100();
+    private final DispatcherHandlers.H1000 target1000 = new DispatcherHandlers.H1000();
+    private final String[] names10 = names(10);
+    private final String[] names100 = names(100);
+    private final String[] names1000 = names(1000);
+    private int i10, i100, i1000;
+
+    private String next10() {
+        int i = i10;
+        i10 = i == 9 ? 0 : i + 1;
+        return names10[i];
+    }
+
+    private String next100() {
+        int i = i100;
+        i100 = i == 99 ? 0 : i + 1;
+        return names100[i];
+    }
+
+    private String next1000() {
+        int i = i1000;
+        i1000 = i == 999 ? 0 : i + 1;
+        return names1000[i];
+    }
+
+    /**
+     * A router that doesn't know handlers' types invokes them with generic {@link MethodHandle#invoke}.
+     */
+    private static Object route(Map<String, MethodHandle> handlers, String name, Object target, Object arg) {
+        try {
+            return handlers.get(name).invoke(target, arg);
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Object map_invoke_10() {
+        return route(handlers10, next10(), target10, 42L);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long dispatcher_10() {
+        return dispatcher10.dispatch(next10(), target10, 42L);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Object map_invoke_100() {
+        return route(handlers100, next100(), target100, 42L);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long dispatcher_100() {
+        return dispatcher100.dispatch(next100(), target100, 42L);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Object map_invoke_1000() {
+        return route(handlers1000, next1000(), target1000, 42L);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long dispatcher_1000() {
+        return dispatcher1000.dispatch(next1000(), target1000, 42L);
+    }
+}
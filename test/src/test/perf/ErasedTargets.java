@@ -0,0 +1,34 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.friendly.Friend;
+
+/**
+ * Holds a private nested class that other classes can't name, the target of {@link TargetSignaturePerfTestJMH}.
+ *
+ * @author peter
+ */
+public final class ErasedTargets {
+
+    private ErasedTargets() {
+    }
+
+    private static final class SecretState {
+        private long seed;
+
+        @Friend(TargetSignaturePerfTestJMH.class)
+        private int nextInt(int bound) {
+            long nextseed = (seed * SecretRandom.multiplier + SecretRandom.addend) & SecretRandom.mask;
+            seed = nextseed;
+            return (int) (nextseed >>> 16) % bound;
+        }
+    }
+
+    public static Object newSecretState() {
+        return new SecretState();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.FieldExtractor;
+import si.pele.friendly.Friendly;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static si.pele.friendly.MHThrows.unchecked;
+
+/**
+ * Compares gathering a field from an array of objects via per-element getter handle invocation
+ * against generated bulk kernels of a {@link FieldExtractor} (sequential and parallel).
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ExtractorPerfTestJMH {
+    private static final int LENGTH = 1 << 20;
+
+    private static final MethodHandle seedGetter = Friendly.getter(SecretRandom.class, "seed");
+    private static final FieldExtractor<SecretRandom> seedExtractor =
+        Friendly.extractor(SecretRandom.class, "seed");
+
+    private final SecretRandom[] srs = new SecretRandom[LENGTH];
+    private final long[] seeds = new long[LENGTH];
+
+    {
+        for (int i = 0; i < LENGTH; i++) {
+            srs[i] = new SecretRandom();
+            srs[i].seed = i;
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long[] normal_field_gather() {
+        for (int i = 0; i < LENGTH; i++) {
+            seeds[i] = srs[i].seed;
+        }
+        return seeds;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long[] mh_field_gather() {
+        try {
+            for (int i = 0; i < LENGTH; i++) {
+                seeds[i] = (long) seedGetter.invokeExact(srs[i]);
+            }
+            return seeds;
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long[] extractor_gather() {
+        seedExtractor.gather(srs, 0, seeds, 0, LENGTH);
+        return seeds;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long[] extractor_gather_parallel() {
+        seedExtractor.gather(srs, seeds, ForkJoinPool.commonPool());
+        return seeds;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public SecretRandom[] extractor_scatter() {
+        seedExtractor.scatter(seeds, 0, srs, 0, LENGTH);
+        return srs;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public SecretRandom[] extractor_scatter_parallel() {
+        seedExtractor.scatter(seeds, srs, ForkJoinPool.commonPool());
+        return srs;
+    }
+}
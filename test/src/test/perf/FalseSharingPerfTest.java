@@ -0,0 +1,130 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.MHThrows;
+import si.pele.microbench.TestRunner;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static test.perf.SecretRandom.addend;
+import static test.perf.SecretRandom.mask;
+import static test.perf.SecretRandom.multiplier;
+
+/**
+ * Multi-thread scaling of method handle calls on per-thread state that is either padded ({@link SecretRandom}
+ * surrounds it's {@code seed} with 64 bytes of padding on each side) or unpadded and allocated adjacently,
+ * so that seeds of different threads share cache lines (false sharing). Run with increasing number of threads:
+ * padded variants should scale flat while unpadded ones degrade.
+ */
+public class FalseSharingPerfTest extends TestRunner {
+
+    /**
+     * An unpadded variant of {@link SecretRandom}.
+     */
+    public static final class UnpaddedRandom {
+        long seed;
+
+        @Friend({mh_unpadded_call.class})
+        int nextInt() {
+            long nextseed = (seed * multiplier + addend) & mask;
+            seed = nextseed;
+            return (int) (nextseed >>> 16);
+        }
+    }
+
+    private static final int SLOTS = 64;
+
+    /**
+     * Instances allocated one after another so they end up adjacent in the heap.
+     */
+    private static final SecretRandom[] padded = new SecretRandom[SLOTS];
+    private static final UnpaddedRandom[] unpadded = new UnpaddedRandom[SLOTS];
+
+    static {
+        for (int i = 0; i < SLOTS; i++) {
+            padded[i] = new SecretRandom();
+        }
+        for (int i = 0; i < SLOTS; i++) {
+            unpadded[i] = new UnpaddedRandom();
+        }
+    }
+
+    /**
+     * Each new test instance (one per thread) takes the next slot.
+     */
+    private static final AtomicInteger nextSlot = new AtomicInteger();
+
+    private static int slot() {
+        return nextSlot.getAndIncrement() % SLOTS;
+    }
+
+    public static final class padded_call extends Test {
+        private final SecretRandom sr = padded[slot()];
+
+        @Override
+        protected void doLoop(Loop loop, DevNull devNull1, DevNull devNull2, DevNull devNull3, DevNull devNull4, DevNull devNull5) {
+            while (loop.nextIteration()) {
+                devNull1.yield(sr.nextInt());
+            }
+        }
+    }
+
+    public static final class unpadded_call extends Test {
+        private final UnpaddedRandom sr = unpadded[slot()];
+
+        @Override
+        protected void doLoop(Loop loop, DevNull devNull1, DevNull devNull2, DevNull devNull3, DevNull devNull4, DevNull devNull5) {
+            while (loop.nextIteration()) {
+                devNull1.yield(sr.nextInt());
+            }
+        }
+    }
+
+    public static final class mh_padded_call extends Test {
+        private static final MethodHandle nextIntMH = Friendly.method(SecretRandom.class, "nextInt");
+        private final SecretRandom sr = padded[slot()];
+
+        @Override
+        protected void doLoop(Loop loop, DevNull devNull1, DevNull devNull2, DevNull devNull3, DevNull devNull4, DevNull devNull5) {
+            try {
+                while (loop.nextIteration()) {
+                    devNull1.yield((int) nextIntMH.invokeExact(sr));
+                }
+            }
+            catch (Throwable t) {
+                throw MHThrows.unchecked(t);
+            }
+        }
+    }
+
+    public static final class mh_unpadded_call extends Test {
+        private static final MethodHandle nextIntMH = Friendly.method(UnpaddedRandom.class, "nextInt");
+        private final UnpaddedRandom sr = unpadded[slot()];
+
+        @Override
+        protected void doLoop(Loop loop, DevNull devNull1, DevNull devNull2, DevNull devNull3, DevNull devNull4, DevNull devNull5) {
+            try {
+                while (loop.nextIteration()) {
+                    devNull1.yield((int) nextIntMH.invokeExact(sr));
+                }
+            }
+            catch (Throwable t) {
+                throw MHThrows.unchecked(t);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Throwable {
+        doTest(padded_call.class, 5000L, 1, 8, 1);
+        doTest(unpadded_call.class, 5000L, 1, 8, 1);
+        doTest(mh_padded_call.class, 5000L, 1, 8, 1);
+        doTest(mh_unpadded_call.class, 5000L, 1, 8, 1);
+    }
+}
@@ -0,0 +1,581 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.microbench.ForkedRunner;
+import si.pele.microbench.TestRunner;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks whether JIT inlines method handles obtained from {@link si.pele.friendly.Friendly} and methods of
+ * generated proxies into a given call site.<p>
+ * The call site is the {@code doLoop} method of a {@link TestRunner.Test} subclass (see {@link MHPerfTest} for
+ * examples). It is executed in a forked JVM with {@code -XX:+LogCompilation} until it is compiled by C2.
+ * The compilation log is used instead of the text output of {@code -XX:+PrintInlining}, because the latter
+ * is printed when the compilation finishes and gets interleaved with output of concurrent compilations, while
+ * the log keeps the inlining decisions of each compilation task together. The inlining tree of the last
+ * compilation of the call site is then reconstructed and each method handle chain (methods of java.lang.invoke
+ * classes), {@code si.pele.friendly} method and method of a generated {@code $Friendly...} class found in them
+ * is reported as either fully inlined (together with all the methods it calls) or not, in which case the methods
+ * that were not inlined are listed together with the reason reported by JIT and a hint of VM options that
+ * influence the decision.<p>
+ * Usage:
+ * <pre>
+ * java -cp &lt;classpath&gt; test.perf.InliningDiagnostics [--time ms] [--keep-log] [-Jjvmarg]... testClass...
+ * </pre>
+ * for example:
+ * <pre>
+ * java -cp &lt;classpath&gt; test.perf.InliningDiagnostics 'test.perf.MHPerfTest$mh_call' 'test.perf.MHPerfTest$proxy_call'
+ * </pre>
+ * Before running the call sites, the log parser is checked against known fully inlined chains (as logged by
+ * JDK 8 and later JDKs).<p>
+ * Exit status: 0 - everything inlined, 1 - something was not inlined, the call site was not compiled or the parser
+ * self-check failed, 2 - invalid arguments.
+ */
+public class InliningDiagnostics {
+
+    private static final List<String> DIAGNOSTIC_JVM_ARGS = java.util.Arrays.asList(
+        "-XX:+UnlockDiagnosticVMOptions",
+        "-XX:+LogCompilation"
+    );
+
+    /**
+     * Hints for reasons of failed inlining (matched as substrings of the message printed by JIT).
+     */
+    private static final Map<String, String> HINTS = new LinkedHashMap<>();
+
+    static {
+        HINTS.put("inlining too deep",
+                  "the inlining tree is deeper than -XX:MaxInlineLevel (9 on JDK 8, 15 on later JDKs)");
+        HINTS.put("recursive inlining is too deep", "recursion deeper than -XX:MaxRecursiveInlineLevel");
+        HINTS.put("already compiled into a big method",
+                  "callee was already compiled into more than -XX:InlineSmallCode bytes of machine code");
+        HINTS.put("hot method too big", "callee bytecode is larger than -XX:FreqInlineSize");
+        HINTS.put("too big", "callee bytecode is larger than -XX:MaxInlineSize (cold call site) or -XX:FreqInlineSize");
+        HINTS.put("size > DesiredMethodLimit", "accumulated inlined bytecode exceeds DesiredMethodLimit (8000 bytes)");
+        HINTS.put("NodeCountInliningCutoff",
+                  "the compiled method already has more than -XX:NodeCountInliningCutoff IR nodes");
+        HINTS.put("callee is too large",
+                  "callee bytecode is larger than -XX:MaxInlineSize (cold call site) or -XX:FreqInlineSize");
+        HINTS.put("MH receiver not constant", "the MethodHandle is not a constant: keep it in a static final field");
+        HINTS.put("MemberName not constant", "the MethodHandle is not a constant: keep it in a static final field");
+        HINTS.put("not inlineable",
+                  "callee is native, synchronized in a way JIT can't handle, or marked not inlineable");
+        HINTS.put("no static binding", "virtual call with more than two receiver types (megamorphic call site)");
+        HINTS.put("call site not reached", "the call site was not executed in the interpreter/C1 profile; run longer");
+        HINTS.put("unloaded signature classes", "classes in the callee's signature were not loaded at compile time");
+        HINTS.put("exception method",
+                  "callee is a method of a Throwable subclass, which JIT doesn't inline at rarely taken paths");
+        HINTS.put("low call site frequency", "call site is too cold according to the profile");
+    }
+
+    /**
+     * A node of the inlining tree: a call of {@link #method} at bytecode index {@link #bci} and the inlining
+     * decision message logged by JIT for it.
+     */
+    static final class Node {
+        final int bci;
+        final String className, methodName;
+        String message = "";
+        boolean methodHandleIntrinsic;
+        boolean parsed;
+        final List<Node> children = new ArrayList<>();
+
+        Node(int bci, String className, String methodName) {
+            this.bci = bci;
+            this.className = className;
+            this.methodName = methodName;
+            // JDK 8 doesn't mark calls of method handle intrinsics in the log
+            this.methodHandleIntrinsic = className.equals("java.lang.invoke.MethodHandle") &&
+                                         (methodName.equals("invokeBasic") || methodName.startsWith("linkTo"));
+        }
+
+        String method() {
+            return className + "::" + methodName;
+        }
+
+        String reason() {
+            if (!message.isEmpty())
+                return message;
+            return methodHandleIntrinsic
+                   ? "method handle target not resolved (MH receiver not constant)"
+                   : "(no reason given)";
+        }
+
+        boolean inlined() {
+            if (methodHandleIntrinsic && message.isEmpty()) {
+                // an intrinsic without a decision of it's own is inlined when it's resolved target was parsed
+                for (Node child : children) {
+                    if (child.parsed)
+                        return true;
+                }
+                return false;
+            }
+            return message.startsWith("inline") ||
+                   message.startsWith("force inline") ||
+                   message.startsWith("accessor") ||
+                   message.contains("intrinsic");
+        }
+
+        boolean interesting() {
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            return className.startsWith("java.lang.invoke.") ||
+                   className.startsWith("si.pele.friendly.") ||
+                   simpleName.startsWith("$Friendly");
+        }
+    }
+
+    /**
+     * A compilation of the call site with it's inlining tree.
+     */
+    static final class Compilation {
+        final String method;
+        final boolean osr;
+        final int tier;
+        final List<Node> roots = new ArrayList<>();
+
+        Compilation(String method, boolean osr, int tier) {
+            this.method = method;
+            this.osr = osr;
+            this.tier = tier;
+        }
+
+        boolean osr() {
+            return osr;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long time = 5000L;
+        boolean keepLog = false;
+        List<String> jvmArgs = new ArrayList<>();
+        List<Class<? extends TestRunner.Test>> tests = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--time")) time = Long.parseLong(args[++i]);
+                else if (arg.equals("--keep-log")) keepLog = true;
+                else if (arg.startsWith("-J")) jvmArgs.add(arg.substring(2));
+                else if (arg.startsWith("-")) throw new IllegalArgumentException("Unknown option: " + arg);
+                else tests.add(
+                    Class.forName(arg, false, InliningDiagnostics.class.getClassLoader())
+                         .asSubclass(TestRunner.Test.class)
+                );
+            }
+            if (tests.isEmpty())
+                throw new IllegalArgumentException("No call sites specified");
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | ClassNotFoundException |
+               ClassCastException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.toString());
+            System.err.println("Usage: " + InliningDiagnostics.class.getName() +
+                               " [--time ms] [--keep-log] [-Jjvmarg]... testClass...");
+            System.exit(2);
+            return;
+        }
+
+        if (!selfCheck()) {
+            System.out.println("# compilation log parser self-check failed: known inlined chains are not reported" +
+                               " as inlined");
+            System.exit(1);
+            return;
+        }
+
+        boolean ok = true;
+        for (Class<? extends TestRunner.Test> test : tests) {
+            File logFile = File.createTempFile("compilation-", ".log");
+            try {
+                runForked(test, jvmArgs, time, logFile);
+                ok &= report(test, parse(logFile, test.getName()));
+            }
+            finally {
+                if (keepLog)
+                    System.out.println("# compilation log: " + logFile);
+                else
+                    logFile.delete();
+            }
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Runs given test in a forked JVM writing the compilation log into given file.
+     */
+    static void runForked(Class<? extends TestRunner.Test> test, List<String> jvmArgs, long time, File logFile)
+        throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(DIAGNOSTIC_JVM_ARGS);
+        command.add("-XX:LogFile=" + logFile.getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ForkedRunner.class.getName());
+        command.add(test.getName());
+        command.add("1");  // threads
+        command.add("0");  // warmup iterations
+        command.add("1");  // measure iterations
+        command.add(String.valueOf(time));
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        process.getOutputStream().close();
+        int exitCode = process.waitFor();
+        if (exitCode != 0)
+            throw new IOException("Forked JVM running " + test.getName() + " exited with code: " + exitCode);
+    }
+
+    /**
+     * Parses the compilation log and returns the successful compilations of methods of given class
+     * (with their inlining trees) in the order they were logged.
+     */
+    static List<Compilation> parse(File logFile, String className) throws IOException {
+        return parse(new InputSource(logFile.toURI().toString()), className);
+    }
+
+    static List<Compilation> parse(InputSource log, String className) throws IOException {
+        CompilationLogHandler handler = new CompilationLogHandler(className);
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(log, handler);
+        }
+        catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (SAXException e) {
+            // a truncated log (for example when the VM did not exit cleanly) - use what was parsed so far
+            System.out.println("# warning: compilation log is not well formed: " + e.getMessage());
+        }
+        return handler.compilations;
+    }
+
+    /**
+     * Reconstructs inlining trees from {@code <task>} elements of the compilation log. Within a task, each
+     * {@code <call>} is followed by an inlining decision ({@code <inline_success>}, {@code <inline_fail>} or
+     * {@code <intrinsic>}) and, when inlined, by a nested {@code <parse>} of the callee.
+     */
+    static final class CompilationLogHandler extends DefaultHandler {
+        final String className;
+        final List<Compilation> compilations = new ArrayList<>();
+
+        private final Map<String, String> klasses = new HashMap<>();
+        private final Map<String, String[]> methods = new HashMap<>();
+        private final Deque<Node> parseStack = new ArrayDeque<>();
+        private Compilation current;
+        private boolean failed;
+        private Node pendingCall;
+        private int bci;
+
+        CompilationLogHandler(String className) {
+            this.className = className;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            if (qName.equals("task")) {
+                String method = attrs.getValue("method");
+                int space = method == null ? -1 : method.indexOf(' ');
+                if (space < 0)
+                    return;
+                String holder = normalize(method.substring(0, space));
+                String name = method.substring(space + 1, method.indexOf(' ', space + 1));
+                if (!holder.equals(className))
+                    return;
+                String level = attrs.getValue("level");
+                current = new Compilation(
+                    holder + "::" + name,
+                    "osr".equals(attrs.getValue("compile_kind")),
+                    level == null ? 4 : Integer.parseInt(level)  // C2 tasks don't log the level
+                );
+                failed = false;
+                klasses.clear();
+                methods.clear();
+                parseStack.clear();
+                pendingCall = null;
+                bci = -1;
+                return;
+            }
+            if (current == null)
+                return;
+
+            switch (qName) {
+                case "klass":
+                    klasses.put(attrs.getValue("id"), normalize(attrs.getValue("name")));
+                    break;
+                case "method":
+                    methods.put(attrs.getValue("id"), new String[]{attrs.getValue("holder"), attrs.getValue("name")});
+                    break;
+                case "bc":
+                    bci = Integer.parseInt(attrs.getValue("bci"));
+                    break;
+                case "call": {
+                    if (parseStack.isEmpty())
+                        break;
+                    Node parent = parseStack.peek();
+                    if (pendingCall != null && pendingCall.methodHandleIntrinsic && pendingCall.message.isEmpty()) {
+                        // a call of invokeBasic/linkTo* is followed by the call of it's resolved target
+                        parent = pendingCall;
+                    }
+                    Node node = newNode(attrs.getValue("method"));
+                    node.methodHandleIntrinsic |= "1".equals(attrs.getValue("method_handle_intrinsic"));
+                    parent.children.add(node);
+                    pendingCall = node;
+                    break;
+                }
+                case "inline_success":
+                case "inline_fail":
+                    if (pendingCall != null && pendingCall.message.isEmpty())
+                        pendingCall.message = attrs.getValue("reason");
+                    break;
+                case "intrinsic":
+                    if (pendingCall != null && pendingCall.message.isEmpty())
+                        pendingCall.message = "(intrinsic)";
+                    break;
+                case "parse": {
+                    String methodId = attrs.getValue("method");
+                    Node node;
+                    if (parseStack.isEmpty()) {
+                        // the compiled method itself
+                        node = newNode(methodId);
+                    }
+                    else if (pendingCall != null && pendingCall.method().equals(newNode(methodId).method())) {
+                        node = pendingCall;
+                        if (node.message.isEmpty())
+                            node.message = "inline";  // older VMs only log failures
+                    }
+                    else {
+                        node = newNode(methodId);
+                    }
+                    node.parsed = true;
+                    parseStack.push(node);
+                    pendingCall = null;
+                    break;
+                }
+                case "failure":
+                    failed = true;
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (current == null)
+                return;
+            if (qName.equals("parse")) {
+                Node node = parseStack.pop();
+                pendingCall = null;
+                if (parseStack.isEmpty())
+                    current.roots.addAll(node.children);
+            }
+            else if (qName.equals("task")) {
+                if (!failed)
+                    compilations.add(current);
+                current = null;
+            }
+        }
+
+        private Node newNode(String methodId) {
+            String[] method = methods.get(methodId);
+            if (method == null)
+                return new Node(bci, "?", "?");
+            String holder = klasses.get(method[0]);
+            return new Node(bci, holder == null ? "?" : holder, method[1]);
+        }
+
+        /**
+         * JDK 8 logs internal class names (with slashes), later JDKs log binary names.
+         */
+        private static String normalize(String className) {
+            return className.replace('/', '.');
+        }
+    }
+
+    /**
+     * Prints the report for the last compilation with the highest tier (preferring the normal compilation over
+     * the OSR one) of the {@code doLoop} method of given test.
+     *
+     * @return true if everything was inlined
+     */
+    static boolean report(Class<? extends TestRunner.Test> test, List<Compilation> compilations) {
+        System.out.println("#");
+        System.out.println("# " + test.getName() + "::doLoop");
+        System.out.println("#");
+        Compilation best = null;
+        for (Compilation c : compilations) {
+            if (!c.method.endsWith("::doLoop"))
+                continue;
+            if (best == null || c.tier > best.tier || (c.tier == best.tier && (best.osr() || !c.osr())))
+                best = c;
+        }
+        if (best == null || best.roots.isEmpty()) {
+            System.out.println("NOT COMPILED: the call site was not compiled or no inlining tree was logged;" +
+                               " run longer (--time) or check that the JVM supports -XX:+UnlockDiagnosticVMOptions" +
+                               " -XX:+LogCompilation");
+            System.out.println();
+            return false;
+        }
+        System.out.println("# compilation: tier " + best.tier + (best.osr() ? " (OSR)" : ""));
+
+        boolean allInlined = true;
+        List<Node> chains = new ArrayList<>();
+        collectChains(best.roots, chains);
+        if (chains.isEmpty())
+            System.out.println("no method handle chains or friendly methods found in the call site");
+        for (Node chain : chains) {
+            List<Node> failed = new ArrayList<>();
+            List<Node> targets = new ArrayList<>();
+            collectFailedAndTargets(chain, failed, targets);
+            StringBuilder sb = new StringBuilder();
+            sb.append("@ ").append(chain.bci).append(' ').append(chain.method());
+            for (Node target : targets) {
+                sb.append("\n    -> ").append(target.method());
+            }
+            if (failed.isEmpty()) {
+                System.out.println("FULLY INLINED: " + sb);
+            }
+            else {
+                allInlined = false;
+                System.out.println("NOT INLINED:   " + sb);
+                for (Node f : failed) {
+                    System.out.println("    " + f.method() + ": " + f.reason());
+                    String hint = hint(f.reason());
+                    if (hint != null)
+                        System.out.println("        hint: " + hint);
+                }
+            }
+        }
+        System.out.println();
+        return allInlined;
+    }
+
+    /**
+     * Collects the outermost interesting nodes of given trees.
+     */
+    private static void collectChains(List<Node> nodes, List<Node> chains) {
+        for (Node node : nodes) {
+            if (node.interesting())
+                chains.add(node);
+            else
+                collectChains(node.children, chains);
+        }
+    }
+
+    /**
+     * Collects the nodes in given tree that were not inlined and the target methods (the first methods that
+     * don't belong to the method handle or friendly machinery) reached through it. The bodies of target methods
+     * are not inspected.
+     */
+    private static void collectFailedAndTargets(Node node, List<Node> failed, List<Node> targets) {
+        if (!node.inlined())
+            failed.add(node);
+        if (!node.interesting()) {
+            targets.add(node);
+            return;
+        }
+        for (Node child : node.children) {
+            collectFailedAndTargets(child, failed, targets);
+        }
+    }
+
+    /**
+     * Compilation log fragments of a known fully inlined chain: the proxy call of {@link MHPerfTest} as logged
+     * by JDK 8 (which doesn't mark method handle intrinsics and logs internal class names) and later JDKs (where
+     * intrinsics {@code invokeBasic} and {@code linkToSpecial} have no inlining decision of their own, only their
+     * resolved targets are parsed).
+     */
+    private static final String[] KNOWN_INLINED_LOGS = {
+        knownInlinedLog("test/perf/InliningDiagnostics", "java/lang/invoke/", ""),
+        knownInlinedLog("test.perf.InliningDiagnostics", "java.lang.invoke.", " method_handle_intrinsic='1'")
+    };
+
+    private static String knownInlinedLog(String className, String invokePackage, String intrinsicAttr) {
+        return "<hotspot_log>" +
+               "<task compile_id='1' compile_kind='osr' method='" + className + " doLoop ()V' bytes='30'>" +
+               "<klass id='1' name='" + className + "'/>" +
+               "<method id='2' holder='1' name='doLoop'/>" +
+               "<parse method='2'>" +
+               "<bc code='182' bci='15'/>" +
+               "<klass id='3' name='" + invokePackage + "LambdaForm$MH'/>" +
+               "<method id='4' holder='3' name='invokeExact_MT'/>" +
+               "<call method='4' inline='1'/>" +
+               "<inline_success reason='force inline by annotation'/>" +
+               "<parse method='4'>" +
+               "<bc code='182' bci='19'/>" +
+               "<klass id='5' name='" + invokePackage + "MethodHandle'/>" +
+               "<method id='6' holder='5' name='invokeBasic'/>" +
+               "<call method='6' inline='1'" + intrinsicAttr + "/>" +
+               "<klass id='7' name='" + invokePackage + "LambdaForm$DMH'/>" +
+               "<method id='8' holder='7' name='invokeSpecial'/>" +
+               "<call method='8' inline='1'/>" +
+               "<inline_success reason='force inline by annotation'/>" +
+               "<parse method='8'>" +
+               "<bc code='184' bci='17'/>" +
+               "<method id='9' holder='5' name='linkToSpecial'/>" +
+               "<call method='9' inline='1'" + intrinsicAttr + "/>" +
+               "<klass id='10' name='test.perf.SecretRandom'/>" +
+               "<method id='11' holder='10' name='nextInt'/>" +
+               "<call method='11' inline='1'/>" +
+               "<inline_success reason='inline (hot)'/>" +
+               "<parse method='11'></parse>" +
+               "</parse>" +
+               "</parse>" +
+               "</parse>" +
+               "</task>" +
+               "</hotspot_log>";
+    }
+
+    /**
+     * Checks that the parser reports the known inlined chains as fully inlined down to their target.
+     *
+     * @return true if it does
+     */
+    static boolean selfCheck() throws IOException {
+        for (String log : KNOWN_INLINED_LOGS) {
+            List<Compilation> compilations = parse(
+                new InputSource(new StringReader(log)), InliningDiagnostics.class.getName()
+            );
+            if (compilations.size() != 1)
+                return false;
+            List<Node> chains = new ArrayList<>();
+            collectChains(compilations.get(0).roots, chains);
+            if (chains.size() != 1)
+                return false;
+            List<Node> failed = new ArrayList<>();
+            List<Node> targets = new ArrayList<>();
+            collectFailedAndTargets(chains.get(0), failed, targets);
+            if (!failed.isEmpty() || targets.size() != 1 ||
+                !targets.get(0).method().equals("test.perf.SecretRandom::nextInt"))
+                return false;
+        }
+        return true;
+    }
+
+    private static String hint(String message) {
+        for (Map.Entry<String, String> e : HINTS.entrySet()) {
+            if (message.contains(e.getKey()))
+                return e.getValue();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.Instantiator;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares creating and populating instances of a class with final fields via constructor, via reflective
+ * {@link Constructor#newInstance} followed by reflective {@link Field#set} and via generated {@link Instantiator}
+ * (from an array of values and from a primitive-specialized {@link Instantiator.Source}).
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class InstantiatorPerfTestJMH {
+
+    @Friend(InstantiatorPerfTestJMH.class)
+    public static class Point {
+        private final int x;
+        private final long y;
+        private final String label;
+
+        public Point() {
+            this(0, 0L, "origin");
+        }
+
+        public Point(int x, long y, String label) {
+            this.x = x;
+            this.y = y;
+            this.label = label.intern();
+        }
+    }
+
+    private static final Instantiator<Point> instantiator = Friendly.instantiator(Point.class);
+
+    private static final Constructor<Point> constructor;
+    private static final Field x, y, label;
+
+    static {
+        try {
+            constructor = Point.class.getConstructor();
+            x = Point.class.getDeclaredField("x");
+            y = Point.class.getDeclaredField("y");
+            label = Point.class.getDeclaredField("label");
+            x.setAccessible(true);
+            y.setAccessible(true);
+            label.setAccessible(true);
+        }
+        catch (NoSuchMethodException | NoSuchFieldException e) {
+            throw new Error(e);
+        }
+    }
+
+    private int i;
+    private final String text = "point";
+
+    private final Instantiator.Source source = new Instantiator.Source() {
+        @Override
+        public boolean getBoolean(int index) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public byte getByte(int index) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public char getChar(int index) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public short getShort(int index) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public int getInt(int index) { return i; }
+
+        @Override
+        public long getLong(int index) { return i; }
+
+        @Override
+        public float getFloat(int index) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public double getDouble(int index) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public Object getObject(int index) { return text; }
+    };
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Point constructor() {
+        i++;
+        return new Point(i, i, text);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Point reflection_newInstance_set() throws ReflectiveOperationException {
+        i++;
+        Point p = constructor.newInstance();
+        x.setInt(p, i);
+        y.setLong(p, i);
+        label.set(p, text);
+        return p;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Point instantiator_values() {
+        i++;
+        return instantiator.newInstance(i, (long) i, text);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Point instantiator_source() {
+        i++;
+        return instantiator.newInstance(source);
+    }
+}
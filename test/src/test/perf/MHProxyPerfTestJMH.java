@@ -0,0 +1,163 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reflect.MHProxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares an interceptor delegating to a target object implemented with {@link Proxy#newProxyInstance} and
+ * an {@link InvocationHandler}, with {@link MHProxy} and exact-typed handlers bound to the target and with
+ * {@link MHProxy} and a generic handler (that does the same as the invocation handler) bound to each method.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MHProxyPerfTestJMH {
+
+    public interface Calc {
+        int add(int a, int b);
+
+        double scale(double x, long factor);
+    }
+
+    public static final class CalcImpl implements Calc {
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public double scale(double x, long factor) {
+            return x * factor;
+        }
+    }
+
+    private static final Calc target = new CalcImpl();
+
+    private static final Calc jdkProxy = (Calc) Proxy.newProxyInstance(
+        Calc.class.getClassLoader(),
+        new Class<?>[]{Calc.class},
+        new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                try {
+                    return method.invoke(target, args);
+                }
+                catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    );
+
+    private static final Calc mhProxy = MHProxy.newProxyInstance(
+        Calc.class,
+        new MHProxy.HandlerResolver() {
+            @Override
+            public MethodHandle handler(Method method) {
+                try {
+                    return MethodHandles.publicLookup().unreflect(method).bindTo(target);
+                }
+                catch (IllegalAccessException e) {
+                    throw new Error(e);
+                }
+            }
+        }
+    );
+
+    static Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final Calc mhProxyGeneric;
+
+    static {
+        try {
+            final MethodHandle genericHandler = MethodHandles.lookup().findStatic(
+                MHProxyPerfTestJMH.class, "invokeTarget",
+                MethodType.methodType(Object.class, Method.class, Object[].class)
+            );
+            mhProxyGeneric = MHProxy.newProxyInstance(
+                Calc.class,
+                new MHProxy.HandlerResolver() {
+                    @Override
+                    public MethodHandle handler(Method method) {
+                        return MHProxy.bind(genericHandler, method);
+                    }
+                }
+            );
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+
+    private int a = 1, b = 2;
+    private double x = 1.5d;
+    private long factor = 3L;
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int direct_add() {
+        return target.add(a, b);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int jdk_proxy_add() {
+        return jdkProxy.add(a, b);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int mh_proxy_add() {
+        return mhProxy.add(a, b);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int mh_proxy_generic_add() {
+        return mhProxyGeneric.add(a, b);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public double direct_scale() {
+        return target.scale(x, factor);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public double jdk_proxy_scale() {
+        return jdkProxy.scale(x, factor);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public double mh_proxy_scale() {
+        return mhProxy.scale(x, factor);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public double mh_proxy_generic_scale() {
+        return mhProxyGeneric.scale(x, factor);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.Memoize;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares invoking an expensive pure private method via a plain proxy method and via proxy methods annotated with
+ * @{@link Memoize} (with a primitive {@code int} key and with a generic key tuple) over a small working set of
+ * arguments.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MemoizePerfTestJMH {
+
+    public static class KeyDeriver {
+        private final long salt = 0x5DEECE66DL;
+
+        @Friend(MemoizePerfTestJMH.class)
+        private long deriveKey(int id) {
+            long k = salt ^ id;
+            for (int i = 0; i < 1000; i++) {
+                k = (k * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+            }
+            return k;
+        }
+
+        @Friend(MemoizePerfTestJMH.class)
+        private long deriveKey(String realm, int id) {
+            return deriveKey(realm.hashCode() ^ id);
+        }
+    }
+
+    public interface Plain {
+        long deriveKey(KeyDeriver deriver, int id);
+    }
+
+    public interface Memoized {
+        @Memoize
+        long deriveKey(KeyDeriver deriver, int id);
+
+        @Memoize
+        long deriveKey(KeyDeriver deriver, String realm, int id);
+    }
+
+    private static final Plain plain = Friendly.proxy(Plain.class);
+    private static final Memoized memoized = Friendly.proxy(Memoized.class);
+
+    private final KeyDeriver deriver = new KeyDeriver();
+    private final String realm = "realm";
+    private int i;
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long proxy_call() {
+        return plain.deriveKey(deriver, i++ & 0xFF);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long memoized_int_call() {
+        return memoized.deriveKey(deriver, i++ & 0xFF);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long memoized_tuple_call() {
+        return memoized.deriveKey(deriver, realm, i++ & 0xFF);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.NonVirtual;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares proxy calls of a friend method that is overridden in subclasses, dispatched virtually and
+ * non-virtually (@{@link NonVirtual}, always invoking the base class implementation), for monomorphic
+ * and megamorphic receiver distributions. Each combination uses it's own proxy interface.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class NonVirtualProxyPerfTestJMH {
+    private static final int LENGTH = 1024;
+
+    public static class Base {
+        @Friend(NonVirtualProxyPerfTestJMH.class)
+        int mix(int x) { return x * 0x9E3779B9; }
+    }
+
+    public static class S1 extends Base { @Override int mix(int x) { return x + 1; } }
+    public static class S2 extends Base { @Override int mix(int x) { return x + 2; } }
+    public static class S3 extends Base { @Override int mix(int x) { return x + 3; } }
+    public static class S4 extends Base { @Override int mix(int x) { return x + 4; } }
+    public static class S5 extends Base { @Override int mix(int x) { return x + 5; } }
+    public static class S6 extends Base { @Override int mix(int x) { return x + 6; } }
+    public static class S7 extends Base { @Override int mix(int x) { return x + 7; } }
+
+    private static Base[] receivers(int classes) {
+        Base[] receivers = new Base[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            switch (i % classes) {
+                case 0: receivers[i] = new Base(); break;
+                case 1: receivers[i] = new S1(); break;
+                case 2: receivers[i] = new S2(); break;
+                case 3: receivers[i] = new S3(); break;
+                case 4: receivers[i] = new S4(); break;
+                case 5: receivers[i] = new S5(); break;
+                case 6: receivers[i] = new S6(); break;
+                default: receivers[i] = new S7(); break;
+            }
+        }
+        return receivers;
+    }
+
+    private final Base[] monomorphic = receivers(1);
+    private final Base[] megamorphic = receivers(8);
+    private int i;
+
+    interface MonoVirtual {
+        int mix(Base b, int x);
+    }
+
+    interface MonoNonVirtual {
+        @NonVirtual
+        int mix(Base b, int x);
+    }
+
+    interface MegaVirtual {
+        int mix(Base b, int x);
+    }
+
+    interface MegaNonVirtual {
+        @NonVirtual
+        int mix(Base b, int x);
+    }
+
+    private static final MonoVirtual monoVirtual = Friendly.proxy(MonoVirtual.class);
+    private static final MonoNonVirtual monoNonVirtual = Friendly.proxy(MonoNonVirtual.class);
+    private static final MegaVirtual megaVirtual = Friendly.proxy(MegaVirtual.class);
+    private static final MegaNonVirtual megaNonVirtual = Friendly.proxy(MegaNonVirtual.class);
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int virtual_monomorphic() {
+        int i = this.i++;
+        return monoVirtual.mix(monomorphic[i & (LENGTH - 1)], i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int nonvirtual_monomorphic() {
+        int i = this.i++;
+        return monoNonVirtual.mix(monomorphic[i & (LENGTH - 1)], i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int virtual_megamorphic() {
+        int i = this.i++;
+        return megaVirtual.mix(megamorphic[i & (LENGTH - 1)], i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int nonvirtual_megamorphic() {
+        int i = this.i++;
+        return megaNonVirtual.mix(megamorphic[i & (LENGTH - 1)], i);
+    }
+}
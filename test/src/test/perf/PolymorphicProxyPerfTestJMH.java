@@ -0,0 +1,100 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.TargetClasses;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares receiver-polymorphic proxy calls (dispatched through a polymorphic inline cache)
+ * against normal virtual calls for monomorphic, bimorphic and megamorphic receiver distributions.
+ * Each distribution uses it's own proxy interface so that each has it's own inline cache.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PolymorphicProxyPerfTestJMH {
+    private static final int LENGTH = 1024;
+
+    private final Codec[] monomorphic = Codec.codecs(LENGTH, 1);
+    private final Codec[] bimorphic = Codec.codecs(LENGTH, 2);
+    private final Codec[] megamorphic = Codec.codecs(LENGTH, 8);
+    private int i;
+
+    interface MonoCodecs {
+        @TargetClasses({
+            Codec.C0.class, Codec.C1.class, Codec.C2.class, Codec.C3.class,
+            Codec.C4.class, Codec.C5.class, Codec.C6.class, Codec.C7.class
+        })
+        int encode(Codec c, int x);
+    }
+
+    interface BiCodecs {
+        @TargetClasses({
+            Codec.C0.class, Codec.C1.class, Codec.C2.class, Codec.C3.class,
+            Codec.C4.class, Codec.C5.class, Codec.C6.class, Codec.C7.class
+        })
+        int encode(Codec c, int x);
+    }
+
+    interface MegaCodecs {
+        @TargetClasses({
+            Codec.C0.class, Codec.C1.class, Codec.C2.class, Codec.C3.class,
+            Codec.C4.class, Codec.C5.class, Codec.C6.class, Codec.C7.class
+        })
+        int encode(Codec c, int x);
+    }
+
+    private static final MonoCodecs monoCodecs = Friendly.proxy(MonoCodecs.class);
+    private static final BiCodecs biCodecs = Friendly.proxy(BiCodecs.class);
+    private static final MegaCodecs megaCodecs = Friendly.proxy(MegaCodecs.class);
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int normal_call_monomorphic() {
+        int i = this.i++;
+        return monomorphic[i & (LENGTH - 1)].code(i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int proxy_call_monomorphic() {
+        int i = this.i++;
+        return monoCodecs.encode(monomorphic[i & (LENGTH - 1)], i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int normal_call_bimorphic() {
+        int i = this.i++;
+        return bimorphic[i & (LENGTH - 1)].code(i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int proxy_call_bimorphic() {
+        int i = this.i++;
+        return biCodecs.encode(bimorphic[i & (LENGTH - 1)], i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int normal_call_megamorphic() {
+        int i = this.i++;
+        return megamorphic[i & (LENGTH - 1)].code(i);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int proxy_call_megamorphic() {
+        int i = this.i++;
+        return megaCodecs.encode(megamorphic[i & (LENGTH - 1)], i);
+    }
+}
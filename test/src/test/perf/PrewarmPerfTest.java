@@ -0,0 +1,136 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A cold-start benchmark of the latency of the first invocations of a getter, a method handle and a proxy method,
+ * measured in fresh JVMs without prewarming, with {@link Friendly#prewarm} (and {@link Friendly#proxy(Class, boolean)})
+ * and with {@link Friendly#prewarmAsync} completed before the first invocations.
+ * Usage:
+ * <pre>
+ * java -cp &lt;classpath&gt; test.perf.PrewarmPerfTest [--forks n]
+ * </pre>
+ * Each mode is run in {@code n} (default 10) forked JVMs and the median latencies are reported.
+ */
+public class PrewarmPerfTest {
+
+    public static class Account {
+        @Friend(PrewarmPerfTest.class)
+        private long balance = 100L;
+
+        @Friend(PrewarmPerfTest.class)
+        private long deposit(long amount, String reference) {
+            return balance += amount + reference.length();
+        }
+    }
+
+    interface Accounts {
+        long deposit(Account account, long amount, String reference);
+    }
+
+    private static final String[] MODES = {"cold", "prewarm", "prewarmAsync"};
+
+    /**
+     * Measures the first invocations in this JVM and prints the latencies in nanoseconds on a single line.
+     */
+    static void runHere(String mode) throws Throwable {
+        MethodHandle getter = Friendly.getter(Account.class, "balance")
+                                      .asType(MethodType.methodType(long.class, Object.class));
+        MethodHandle deposit = Friendly.method(Account.class, "deposit", long.class, String.class);
+        Accounts accounts = Friendly.proxy(Accounts.class, mode.equals("prewarm"));
+        if (mode.equals("prewarm")) {
+            Friendly.prewarm(getter, deposit);
+        }
+        else if (mode.equals("prewarmAsync")) {
+            Friendly.prewarmAsync(getter, deposit).get();
+        }
+
+        Object account = new Account();
+        long t0 = System.nanoTime();
+        long balance = (long) getter.invokeExact(account);
+        long t1 = System.nanoTime();
+        balance += (long) deposit.invokeExact((Account) account, 1L, "ref");
+        long t2 = System.nanoTime();
+        balance += accounts.deposit((Account) account, 1L, "ref");
+        long t3 = System.nanoTime();
+        System.out.println((t1 - t0) + " " + (t2 - t1) + " " + (t3 - t2) + " " + balance);
+    }
+
+    /**
+     * @return the latencies printed by a forked JVM running given mode
+     */
+    static long[] runForked(String mode) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PrewarmPerfTest.class.getName());
+        command.add("--mode");
+        command.add(mode);
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .start();
+        process.getOutputStream().close();
+        String line, lastLine = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            while ((line = reader.readLine()) != null) {
+                lastLine = line;
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || lastLine == null)
+            throw new IllegalStateException("Forked JVM exited with code: " + exitCode + ", output: " + lastLine);
+        String[] fields = lastLine.split(" ");
+        return new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])};
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public static void main(String[] args) throws Throwable {
+        int forks = 10;
+        String mode = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--forks")) forks = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--mode")) mode = args[++i];
+            else throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+        if (mode != null) {
+            runHere(mode);
+            return;
+        }
+        for (String m : MODES) {
+            long[] getter = new long[forks], method = new long[forks], proxy = new long[forks];
+            for (int f = 0; f < forks; f++) {
+                long[] latencies = runForked(m);
+                getter[f] = latencies[0];
+                method[f] = latencies[1];
+                proxy[f] = latencies[2];
+            }
+            System.out.printf(
+                Locale.ROOT, "%-12s first call (median of %d): getter %8.1f us, method %8.1f us, proxy %8.1f us\n",
+                m, forks, median(getter) / 1000d, median(method) / 1000d, median(proxy) / 1000d
+            );
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.PropertyTable;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static si.pele.friendly.MHThrows.unchecked;
+
+/**
+ * Compares binding rows of columns (named by a header, like CSV or JSON input) to private fields of objects via
+ * a {@code HashMap} of setter handles invoked with {@link MethodHandle#invoke} on boxed values and via generated
+ * {@link PropertyTable} (resolving each column name per row or once per header).
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PropertyTablePerfTestJMH {
+    private static final int ROWS = 1000;
+
+    public static class Order {
+        @Friend(PropertyTablePerfTestJMH.class)
+        private long id;
+        @Friend(PropertyTablePerfTestJMH.class)
+        private int quantity;
+        @Friend(PropertyTablePerfTestJMH.class)
+        private double price;
+        @Friend(PropertyTablePerfTestJMH.class)
+        private String customer;
+        @Friend(PropertyTablePerfTestJMH.class)
+        private String city;
+    }
+
+    private static final String[] header = {"id", "quantity", "price", "customer", "city"};
+
+    private static final Map<String, MethodHandle> setters = new HashMap<>();
+
+    static {
+        for (String column : header) {
+            setters.put(column, Friendly.setter(Order.class, column));
+        }
+    }
+
+    private static final PropertyTable<Order> properties = Friendly.properties(Order.class);
+
+    private final long[] ids = new long[ROWS];
+    private final int[] quantities = new int[ROWS];
+    private final double[] prices = new double[ROWS];
+    private final String[] customers = new String[ROWS];
+    private final String[] cities = new String[ROWS];
+    private final Order[] orders = new Order[ROWS];
+
+    {
+        for (int i = 0; i < ROWS; i++) {
+            ids[i] = i;
+            quantities[i] = i % 7;
+            prices[i] = i * 0.5d;
+            customers[i] = "customer" + (i % 100);
+            cities[i] = "city" + (i % 10);
+            orders[i] = new Order();
+        }
+    }
+
+    /**
+     * @return the value of given column of given row (boxed as by a generic parser)
+     */
+    private Object value(int row, int column) {
+        switch (column) {
+            case 0: return ids[row];
+            case 1: return quantities[row];
+            case 2: return prices[row];
+            case 3: return customers[row];
+            default: return cities[row];
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Order[] map_bind() {
+        try {
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = 0; c < header.length; c++) {
+                    setters.get(header[c]).invoke(orders[r], value(r, c));
+                }
+            }
+            return orders;
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    private void bind(int r, int c, int ordinal) {
+        Order order = orders[r];
+        switch (c) {
+            case 0: properties.setLong(order, ordinal, ids[r]); break;
+            case 1: properties.setInt(order, ordinal, quantities[r]); break;
+            case 2: properties.setDouble(order, ordinal, prices[r]); break;
+            case 3: properties.setObject(order, ordinal, customers[r]); break;
+            default: properties.setObject(order, ordinal, cities[r]); break;
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Order[] table_bind() {
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < header.length; c++) {
+                bind(r, c, properties.ordinal(header[c]));
+            }
+        }
+        return orders;
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public Order[] table_bind_resolved() {
+        int[] ordinals = new int[header.length];
+        for (int c = 0; c < header.length; c++) {
+            ordinals[c] = properties.ordinal(header[c]);
+        }
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < header.length; c++) {
+                bind(r, c, ordinals[c]);
+            }
+        }
+        return orders;
+    }
+}
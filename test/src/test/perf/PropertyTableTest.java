@@ -0,0 +1,139 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.PropertyTable;
+
+/**
+ * Builds {@link PropertyTable}s via {@link Friendly#properties} and checks typed access, widening, boxing,
+ * rejection of unsupported, read-only and final properties and of unknown ordinals. It also binds rows with the
+ * benchmarks of {@link PropertyTablePerfTestJMH} once. Exits with status 1 if any check fails.
+ *
+ * @author peter
+ */
+public class PropertyTableTest {
+
+    public static class Empty {
+    }
+
+    public static class Point {
+        public int x = 3;
+    }
+
+    @Friend(PropertyTableTest.class) // read access to all fields
+    public static class Account {
+        @Friend(PropertyTableTest.class)
+        private long id;
+        @Friend(PropertyTableTest.class)
+        private int balance;
+        @Friend(PropertyTableTest.class)
+        private String owner;
+        @Friend(PropertyTableTest.class)
+        private final String currency;
+        private boolean locked; // readable via the class-level @Friend only
+
+        public Account(String currency) {
+            this.currency = currency;
+        }
+    }
+
+    private static boolean ok = true;
+
+    private static void check(String what, boolean condition) {
+        if (!condition) {
+            System.out.println("FAILED: " + what);
+            ok = false;
+        }
+    }
+
+    private static void checkThrows(String what, Class<? extends Exception> exceptionType, Runnable action) {
+        try {
+            action.run();
+            check(what + " throws " + exceptionType.getSimpleName(), false);
+        }
+        catch (Exception e) {
+            check(what + " throws " + exceptionType.getSimpleName() + " (got: " + e + ")", exceptionType.isInstance(e));
+        }
+    }
+
+    public static void main(String[] args) {
+        final PropertyTable<Point> points = Friendly.properties(Point.class);
+        Point p = new Point();
+        check("public field read", points.getInt(p, points.ordinal("x")) == 3);
+        points.setInt(p, 0, 7);
+        check("public field write", p.x == 7);
+        check("widening read", points.getDouble(p, 0) == 7d);
+        check("boxing read", Integer.valueOf(7).equals(points.getObject(p, 0)));
+        points.setObject(p, 0, 9);
+        check("unboxing write", p.x == 9);
+        check("unknown name", points.ordinal("y") < 0);
+
+        final PropertyTable<Empty> empties = Friendly.properties(Empty.class);
+        check("no properties", empties.getFields().length == 0);
+        checkThrows("read of empty table", IndexOutOfBoundsException.class, new Runnable() {
+            @Override
+            public void run() {
+                empties.getObject(new Empty(), 0);
+            }
+        });
+
+        final PropertyTable<Account> accounts = Friendly.properties(Account.class);
+        final Account a = new Account("EUR");
+        final int id = accounts.ordinal("id"), balance = accounts.ordinal("balance"),
+            owner = accounts.ordinal("owner"), currency = accounts.ordinal("currency"),
+            locked = accounts.ordinal("locked");
+        accounts.setLong(a, id, 42L);
+        accounts.setInt(a, balance, 100);
+        accounts.setObject(a, owner, "joe");
+        check("long property", accounts.getLong(a, id) == 42L);
+        check("int property", accounts.getInt(a, balance) == 100);
+        check("object property", "joe".equals(accounts.getObject(a, owner)));
+        check("final property read", "EUR".equals(accounts.getObject(a, currency)));
+        check("class-level friend read", !accounts.getBoolean(a, locked));
+        check("writable", accounts.isWritable(id) && !accounts.isWritable(currency) &&
+                           !accounts.isWritable(locked));
+        checkThrows("narrowing read", IllegalArgumentException.class, new Runnable() {
+            @Override
+            public void run() {
+                accounts.getInt(a, id);
+            }
+        });
+        checkThrows("wrong wrapper write", ClassCastException.class, new Runnable() {
+            @Override
+            public void run() {
+                accounts.setObject(a, balance, 1L);
+            }
+        });
+        checkThrows("final property write", IllegalArgumentException.class, new Runnable() {
+            @Override
+            public void run() {
+                accounts.setObject(a, currency, "USD");
+            }
+        });
+        checkThrows("read-only property write", IllegalArgumentException.class, new Runnable() {
+            @Override
+            public void run() {
+                accounts.setBoolean(a, locked, true);
+            }
+        });
+        checkThrows("unknown ordinal", IndexOutOfBoundsException.class, new Runnable() {
+            @Override
+            public void run() {
+                accounts.getObject(a, 5);
+            }
+        });
+
+        PropertyTablePerfTestJMH benchmark = new PropertyTablePerfTestJMH();
+        benchmark.table_bind();
+        benchmark.table_bind_resolved();
+        benchmark.map_bind();
+
+        System.out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.FriendlyMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+/**
+ * A soak test of the footprint of generated proxy classes in a long-running host that repeatedly redeploys
+ * a plugin. Each redeploy loads the {@link Plugin} class and it's {@link PluginAccess} proxy interface with
+ * a new class loader, obtains a {@link Friendly#boundProxy bound proxy} implementing the host's shared
+ * {@link Greeter} interface (so the bound proxy class is hosted by an interface of the long-lived application class
+ * loader) and a {@link Friendly#proxy proxy} implementing the plugin's interface, uses them and drops them.
+ * After every checkpoint the heap is collected and the number of live generated classes and the metaspace usage
+ * are printed. The test fails (exit status 1) if either keeps growing from the first checkpoint to the last.<p>
+ * Usage: {@code java -Dsi.pele.friendly.FriendlyMetrics.metaspace=true test.perf.ProxySoakTest [redeploys]
+ * [redeploysPerCheckpoint]}
+ */
+public class ProxySoakTest {
+
+    /**
+     * The host's interface implemented by bound proxies of plugins.
+     */
+    public interface Greeter {
+        String greet(String name);
+    }
+
+    /**
+     * The plugin - loaded by a new class loader on each redeploy.
+     */
+    public static class Plugin {
+        private final String greeting = "Hello";
+
+        @Friend(ProxySoakTest.class)
+        private String greet(String name) {
+            return greeting + ", " + name;
+        }
+    }
+
+    /**
+     * The plugin's proxy interface - loaded together with the plugin.
+     */
+    public interface PluginAccess {
+        String greet(Plugin plugin, String name);
+    }
+
+    /**
+     * Loads the plugin classes itself and delegates other classes to the parent.
+     */
+    static final class PluginLoader extends ClassLoader {
+        PluginLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(Plugin.class.getName()) && !name.equals(PluginAccess.class.getName()))
+                return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    byte[] bytes = readClassFile(name);
+                    c = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) resolveClass(c);
+                return c;
+            }
+        }
+
+        private byte[] readClassFile(String name) throws ClassNotFoundException {
+            try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                if (in == null)
+                    throw new ClassNotFoundException(name);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[4096];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+                return out.toByteArray();
+            }
+            catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    /**
+     * Deploys a new instance of the plugin, uses it via proxies and drops it.
+     */
+    static void redeploy(int n) throws Exception {
+        ClassLoader loader = new PluginLoader(ProxySoakTest.class.getClassLoader());
+        Class<?> pluginClass = Class.forName(Plugin.class.getName(), true, loader);
+        Object plugin = pluginClass.newInstance();
+
+        Greeter greeter = Friendly.boundProxy(Greeter.class, plugin);
+        check(greeter.greet("bound " + n), "Hello, bound " + n);
+
+        Class<?> accessIntf = Class.forName(PluginAccess.class.getName(), true, loader);
+        Object access = Friendly.proxy(accessIntf);
+        Method greet = accessIntf.getMethod("greet", pluginClass, String.class);
+        check((String) greet.invoke(access, plugin, "proxy " + n), "Hello, proxy " + n);
+    }
+
+    private static void check(String actual, String expected) {
+        if (!expected.equals(actual))
+            throw new AssertionError("Expected: " + expected + ", got: " + actual);
+    }
+
+    private static void collectGarbage() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50L);
+        }
+    }
+
+    private static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace"))
+                return pool.getUsage().getUsed();
+        }
+        return -1L;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int redeploys = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int perCheckpoint = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        System.out.printf(
+            Locale.ROOT, "%10s %12s %12s %16s %16s\n",
+            "redeploys", "generated", "live", "metaspace [kB]", "per class [B]"
+        );
+        long firstLive = -1L, firstMetaspace = -1L, live = 0L, metaspace = 0L;
+        for (int i = 1; i <= redeploys; i++) {
+            redeploy(i);
+            if (i % perCheckpoint == 0 || i == redeploys) {
+                collectGarbage();
+                live = FriendlyMetrics.liveGeneratedClassCount();
+                metaspace = metaspaceUsed();
+                System.out.printf(
+                    Locale.ROOT, "%10d %12d %12d %16d %16d\n",
+                    i, FriendlyMetrics.generatedClassCount(), live,
+                    metaspace / 1024L, FriendlyMetrics.metaspacePerGeneratedClass()
+                );
+                if (firstLive < 0L) {
+                    firstLive = live;
+                    firstMetaspace = metaspace;
+                }
+            }
+        }
+
+        // tolerate some growth of metaspace caused by JIT compilation and profiling of the host's own code
+        long metaspaceTolerance = Math.max(firstMetaspace / 10L, 1024L * 1024L);
+        boolean flat = live <= firstLive && metaspace - firstMetaspace <= metaspaceTolerance;
+        System.out.println();
+        System.out.println(flat ? "# Footprint is flat" : "# Footprint grows");
+        System.exit(flat ? 0 : 1);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import reflect.ReflectionAgent;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An end-to-end benchmark of a reflection-heavy workload, measured with and without {@link ReflectionAgent}:
+ * <ul>
+ * <li><b>serialize</b> - reads all fields of a bean with {@link Field#get} and writes them into a buffer and
+ * then creates a copy of the bean with {@link Constructor#newInstance} and populates it with {@link Field#set}
+ * (like a field-based serialization framework)</li>
+ * <li><b>inject</b> - creates a component with {@link Constructor#newInstance}, injects it's dependencies by
+ * invoking setter methods with {@link Method#invoke} and invokes it's initialization method (like a
+ * dependency injection container)</li>
+ * </ul>
+ * Usage:
+ * <pre>
+ * java -cp &lt;classpath&gt; test.perf.ReflectionAgentPerfTest [--time ms] [--agent reflect-agent.jar[=args]]
+ * </pre>
+ * With {@code --agent}, the benchmark is run twice in forked JVMs - without and with the given agent - otherwise
+ * it is run in this JVM (which may or may not have the agent installed).
+ */
+public class ReflectionAgentPerfTest {
+
+    public static class Bean {
+        private int id;
+        private long timestamp;
+        private double score;
+        private boolean active;
+        private String name;
+        private String email;
+        private List<String> tags;
+        private Bean parent;
+
+        public Bean() {
+        }
+    }
+
+    public static class Repository {
+    }
+
+    public static class Clock {
+    }
+
+    public static class Service {
+        private Repository repository;
+        private Clock clock;
+        private int poolSize;
+        private boolean initialized;
+
+        public Service() {
+        }
+
+        public void setRepository(Repository repository) {
+            this.repository = repository;
+        }
+
+        public void setClock(Clock clock) {
+            this.clock = clock;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public void init() {
+            initialized = repository != null && clock != null && poolSize > 0;
+        }
+
+        public boolean isInitialized() {
+            return initialized;
+        }
+    }
+
+    // serialize workload
+
+    static final Field[] beanFields;
+    static final Constructor<Bean> beanConstructor;
+
+    static Object serialize(Bean bean, Object[] buffer) throws Exception {
+        for (int i = 0; i < beanFields.length; i++) {
+            buffer[i] = beanFields[i].get(bean);
+        }
+        Bean copy = beanConstructor.newInstance();
+        for (int i = 0; i < beanFields.length; i++) {
+            beanFields[i].set(copy, buffer[i]);
+        }
+        return copy;
+    }
+
+    // inject workload
+
+    static final Constructor<Service> serviceConstructor;
+    static final Method[] serviceSetters;
+    static final Method serviceInit;
+    static final Method serviceIsInitialized;
+
+    static boolean inject(Object[][] dependencies) throws Exception {
+        Service service = serviceConstructor.newInstance();
+        for (int i = 0; i < serviceSetters.length; i++) {
+            serviceSetters[i].invoke(service, dependencies[i]);
+        }
+        serviceInit.invoke(service);
+        return (Boolean) serviceIsInitialized.invoke(service);
+    }
+
+    static {
+        try {
+            List<Field> fields = new ArrayList<>();
+            for (Field f : Bean.class.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers())) {
+                    f.setAccessible(true);
+                    fields.add(f);
+                }
+            }
+            beanFields = fields.toArray(new Field[fields.size()]);
+            beanConstructor = Bean.class.getConstructor();
+            serviceConstructor = Service.class.getConstructor();
+            serviceSetters = new Method[]{
+                Service.class.getMethod("setRepository", Repository.class),
+                Service.class.getMethod("setClock", Clock.class),
+                Service.class.getMethod("setPoolSize", int.class),
+            };
+            serviceInit = Service.class.getMethod("init");
+            serviceIsInitialized = Service.class.getMethod("isInitialized");
+        }
+        catch (NoSuchMethodException e) {
+            throw new Error(e);
+        }
+    }
+
+    static double measureSerialize(long time) throws Exception {
+        Bean bean = new Bean();
+        bean.id = 42;
+        bean.timestamp = System.currentTimeMillis();
+        bean.score = 0.5d;
+        bean.active = true;
+        bean.name = "name";
+        bean.email = "name@example.com";
+        bean.tags = new ArrayList<>();
+        bean.parent = new Bean();
+        Object[] buffer = new Object[beanFields.length];
+        long ops = 0L, t0 = System.nanoTime(), deadline = t0 + time * 1000000L, t;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                bean = (Bean) serialize(bean, buffer);
+            }
+            ops += 1000;
+        } while ((t = System.nanoTime()) < deadline);
+        return (double) (t - t0) / ops;
+    }
+
+    static double measureInject(long time) throws Exception {
+        Object[][] dependencies = {{new Repository()}, {new Clock()}, {4}};
+        long ops = 0L, t0 = System.nanoTime(), deadline = t0 + time * 1000000L, t;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                if (!inject(dependencies))
+                    throw new AssertionError("Service not initialized");
+            }
+            ops += 1000;
+        } while ((t = System.nanoTime()) < deadline);
+        return (double) (t - t0) / ops;
+    }
+
+    static void runHere(long time) throws Exception {
+        System.out.println("# agent: " + (ReflectionAgent.getPolicy() == null ? "none" : ReflectionAgent.getPolicy()));
+        for (int round = 1; round <= 5; round++) {
+            System.out.printf(
+                Locale.ROOT, "%s %d: serialize %8.2f ns/op, inject %8.2f ns/op\n",
+                round <= 2 ? "warmup" : "round ", round, measureSerialize(time), measureInject(time)
+            );
+        }
+    }
+
+    static void runForked(String agent, long time) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (agent != null)
+            command.add("-javaagent:" + agent);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ReflectionAgentPerfTest.class.getName());
+        command.add("--time");
+        command.add(String.valueOf(time));
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        process.getOutputStream().close();
+        int exitCode = process.waitFor();
+        if (exitCode != 0)
+            throw new IllegalStateException("Forked JVM exited with code: " + exitCode);
+    }
+
+    public static void main(String[] args) throws Exception {
+        long time = 2000L;
+        String agent = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--time")) time = Long.parseLong(args[++i]);
+            else if (args[i].equals("--agent")) agent = args[++i];
+            else throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+        if (agent == null) {
+            runHere(time);
+        }
+        else {
+            runForked(null, time);
+            runForked(agent, time);
+        }
+    }
+}
@@ -19,7 +19,8 @@ public final class SecretRandom {
     long seed;
     private long l8, l9, la, lb, lc, ld, le, lf;
 
-    @Friend({MHPerfTest.mh_call.class, MHPerfTest.proxy_call.class, MHPerfTestJMH.class})
+    @Friend({MHPerfTest.mh_call.class, MHPerfTest.proxy_call.class, MHPerfTestJMH.class, BoundProxyPerfTestJMH.class,
+             FalseSharingPerfTest.mh_padded_call.class, BatchProxyPerfTestJMH.class, AccessBackendPerfTestJMH.class})
     int nextInt() {
         long nextseed = (seed * multiplier + addend) & mask;
         seed = nextseed;
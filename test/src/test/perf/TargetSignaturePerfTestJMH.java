@@ -0,0 +1,88 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.TargetSignature;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static si.pele.friendly.MHThrows.unchecked;
+
+/**
+ * Compares invoking a method of a class that the caller can't name (see {@link ErasedTargets}) via reflection
+ * ({@link Method#invoke} with an {@code Object[]}), via a method handle adapted to erased types and via a proxy
+ * method with erased parameter types annotated with @{@link TargetSignature}.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TargetSignaturePerfTestJMH {
+
+    private static final String SECRET_STATE = "test.perf.ErasedTargets$SecretState";
+
+    interface SecretStates {
+        @TargetSignature(className = SECRET_STATE, descriptor = "(I)I")
+        int nextInt(Object state, int bound);
+    }
+
+    private static final SecretStates secretStates = Friendly.proxy(SecretStates.class);
+
+    private static final Method nextIntMethod;
+    private static final MethodHandle nextIntMH;
+
+    static {
+        try {
+            Class<?> secretStateClass = Class.forName(SECRET_STATE);
+            nextIntMethod = secretStateClass.getDeclaredMethod("nextInt", int.class);
+            nextIntMethod.setAccessible(true);
+            nextIntMH = Friendly.method(secretStateClass, "nextInt", int.class)
+                                .asType(MethodType.methodType(int.class, Object.class, int.class));
+        }
+        catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new Error(e);
+        }
+    }
+
+    private final Object state = ErasedTargets.newSecretState();
+    private int bound = 1000;
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int reflection_invoke() {
+        try {
+            return (Integer) nextIntMethod.invoke(state, bound);
+        }
+        catch (Exception e) {
+            throw unchecked(e);
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int erased_mh_invokeExact() {
+        try {
+            return (int) nextIntMH.invokeExact(state, bound);
+        }
+        catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int erased_proxy() {
+        return secretStates.nextInt(state, bound);
+    }
+}
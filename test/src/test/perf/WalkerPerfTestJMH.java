@@ -0,0 +1,220 @@
+/*
+ * Written by Peter Levart <peter.levart@gmail.com>
+ * and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+package test.perf;
+
+import org.openjdk.jmh.annotations.BenchmarkType;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import si.pele.friendly.Friend;
+import si.pele.friendly.Friendly;
+import si.pele.friendly.Walker;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares deep size estimation, deep equals and deep hash of a graph of 2 million nodes (a binary tree with
+ * shared and cyclic cross links and primitive array payloads) via a reflective walker reading the fields with
+ * {@link Field#get} and via {@link Walker}. Both traverse the graph non-recursively and identity-aware with the
+ * same semantics.
+ *
+ * @author peter
+ */
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class WalkerPerfTestJMH {
+    private static final int NODES = 2_000_000;
+
+    @Friend(WalkerPerfTestJMH.class)
+    public static class Node {
+        private int id;
+        private long stamp;
+        private double weight;
+        private Node left;
+        private Node link;
+        private Object payload;
+
+        public Node(int id) {
+            this.id = id;
+            this.stamp = id * 31L;
+            this.weight = id * 0.5d;
+            if (id % 4 == 0)
+                this.payload = new long[]{id, stamp};
+        }
+    }
+
+    private static Node graph() {
+        Node[] nodes = new Node[NODES];
+        for (int i = 0; i < NODES; i++) {
+            nodes[i] = new Node(i);
+        }
+        for (int i = 0; i < NODES; i++) {
+            if (2 * i + 1 < NODES)
+                nodes[i].left = nodes[2 * i + 1];
+            nodes[i].link = nodes[(int) ((i * 7919L + 13) % NODES)];
+        }
+        return nodes[0];
+    }
+
+    private static final Walker walker = Friendly.walker(Node.class);
+
+    private final Node a = graph();
+    private final Node b = graph();
+
+    // reflective walker
+
+    private static final Field[] fields;
+    private static final long nodeSize = walker.sizeOf(new Node(1));
+
+    static {
+        fields = Node.class.getDeclaredFields();
+        for (Field f : fields) {
+            f.setAccessible(true);
+        }
+    }
+
+    private static long leafSize(Object leaf) {
+        return leaf instanceof long[] ? (16L + 8L * ((long[]) leaf).length + 7L) & -8L : 16L;
+    }
+
+    private static long reflectionSizeOf(Object root) throws IllegalAccessException {
+        Map<Object, Boolean> discovered = new IdentityHashMap<>();
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        discovered.put(root, Boolean.TRUE);
+        stack.push(root);
+        long size = 0L;
+        while (!stack.isEmpty()) {
+            Object object = stack.pop();
+            if (object.getClass() != Node.class) {
+                size += leafSize(object);
+                continue;
+            }
+            size += nodeSize;
+            for (Field f : fields) {
+                if (!f.getType().isPrimitive()) {
+                    Object value = f.get(object);
+                    if (value != null && discovered.put(value, Boolean.TRUE) == null)
+                        stack.push(value);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static int reflectionDeepHashCode(Object root) throws IllegalAccessException {
+        Map<Object, Integer> discovered = new IdentityHashMap<>();
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        discovered.put(root, 0);
+        stack.push(root);
+        int h = 1;
+        while (!stack.isEmpty()) {
+            Object object = stack.pop();
+            h = 31 * (31 * h + object.getClass().getName().hashCode());
+            if (object.getClass() != Node.class) {
+                h += object instanceof long[] ? Arrays.hashCode((long[]) object) : object.hashCode();
+                continue;
+            }
+            int oh = 0;
+            for (Field f : fields) {
+                Object value = f.get(object);
+                if (f.getType().isPrimitive() || value == null) {
+                    oh = 31 * oh + Objects.hashCode(value);
+                }
+                else {
+                    Integer ordinal = discovered.get(value);
+                    if (ordinal == null) {
+                        discovered.put(value, discovered.size());
+                        stack.push(value);
+                        oh = 31 * oh + 1;
+                    }
+                    else {
+                        oh = 31 * oh + ordinal * 0x9E3779B9 + 2;
+                    }
+                }
+            }
+            h += oh;
+        }
+        return h;
+    }
+
+    private static boolean reflectionDeepEquals(Object x, Object y) throws IllegalAccessException {
+        Map<Object, Integer> discoveredX = new IdentityHashMap<>(), discoveredY = new IdentityHashMap<>();
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        if (!pair(x, y, discoveredX, discoveredY, stack))
+            return false;
+        while (!stack.isEmpty()) {
+            Object a = stack.pop(), b = stack.pop();
+            if (a.getClass() != Node.class) {
+                if (a instanceof long[] ? !Arrays.equals((long[]) a, (long[]) b) : !a.equals(b))
+                    return false;
+                continue;
+            }
+            for (Field f : fields) {
+                Object va = f.get(a), vb = f.get(b);
+                if (f.getType().isPrimitive() ? !va.equals(vb) : !pair(va, vb, discoveredX, discoveredY, stack))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean pair(Object x, Object y, Map<Object, Integer> discoveredX, Map<Object, Integer> discoveredY,
+                                ArrayDeque<Object> stack) {
+        if (x == null || y == null)
+            return x == y;
+        Integer ordinal = discoveredX.size();
+        Integer ordinalX = discoveredX.get(x), ordinalY = discoveredY.get(y);
+        if (ordinalX == null && ordinalY == null) {
+            if (x.getClass() != y.getClass())
+                return false;
+            discoveredX.put(x, ordinal);
+            discoveredY.put(y, ordinal);
+            stack.push(y);
+            stack.push(x);
+            return true;
+        }
+        return Objects.equals(ordinalX, ordinalY);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long reflection_sizeOf() throws IllegalAccessException {
+        return reflectionSizeOf(a);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public long walker_sizeOf() {
+        return walker.sizeOf(a);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int reflection_deepHashCode() throws IllegalAccessException {
+        return reflectionDeepHashCode(a);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public int walker_deepHashCode() {
+        return walker.deepHashCode(a);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public boolean reflection_deepEquals() throws IllegalAccessException {
+        return reflectionDeepEquals(a, b);
+    }
+
+    @GenerateMicroBenchmark(BenchmarkType.AverageTimePerOp)
+    public boolean walker_deepEquals() {
+        return walker.deepEquals(a, b);
+    }
+}
@@ -9,8 +9,11 @@ import reflect.MHAccessors;
 import sun.reflect.MethodAccessor;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 
 /**
+ * Compares outcomes of {@link Method#invoke} and MH-based {@link MethodAccessor} for the same arguments.
+ *
  * @author peter
  */
 public class MHAccessorTest {
@@ -19,27 +22,60 @@ public class MHAccessorTest {
         return a + b;
     }
 
+    public static double mul(double a, long b) {
+        return a * b;
+    }
+
     public static void main(String[] args) throws Exception {
         MHAccessorTest t = new MHAccessorTest();
 
         Method addM = MHAccessorTest.class.getMethod("add", int.class, int.class);
+        Method mulM = MHAccessorTest.class.getMethod("mul", double.class, long.class);
 
-        try {
-            System.out.println(addM.invoke(t, 1, 2d));
-        }
-        catch (Exception e) {
-            e.printStackTrace();
+        MethodAccessor addA = MHAccessors.newMethodAccessor(addM);
+        MethodAccessor mulA = MHAccessors.newMethodAccessor(mulM);
+
+        Object[][] addArgs = {
+            {1, 2},
+            {1, 2d},
+            {(byte) 1, (short) 2},
+            {'a', 1},
+            {1, 2L},
+            {1, null},
+            {1},
+            null,
+        };
+
+        for (Object[] a : addArgs) {
+            System.out.println("add" + Arrays.toString(a) + ":");
+            System.out.println("    Method.invoke:   " + outcome(addM, null, t, a));
+            System.out.println("    MethodAccessor:  " + outcome(null, addA, t, a));
         }
 
-        System.out.println("-------------------");
+        Object[][] mulArgs = {
+            {2d, 3L},
+            {2f, 3},
+            {'a', (byte) 3},
+            {2, 3f},
+        };
 
-        MethodAccessor addA = MHAccessors.newMethodAccessor(addM);
+        for (Object[] a : mulArgs) {
+            System.out.println("mul" + Arrays.toString(a) + ":");
+            System.out.println("    Method.invoke:   " + outcome(mulM, null, null, a));
+            System.out.println("    MethodAccessor:  " + outcome(null, mulA, null, a));
+        }
+
+        System.out.println("add on wrong receiver:");
+        System.out.println("    Method.invoke:   " + outcome(addM, null, "x", new Object[]{1, 2}));
+        System.out.println("    MethodAccessor:  " + outcome(null, addA, "x", new Object[]{1, 2}));
+    }
 
+    private static String outcome(Method m, MethodAccessor a, Object obj, Object[] args) {
         try {
-            System.out.println(addA.invoke(t, new Object[]{1, 2d}));
+            return String.valueOf(m != null ? m.invoke(obj, args) : a.invoke(obj, args));
         }
         catch (Exception e) {
-            e.printStackTrace();
+            return e.toString();
         }
     }
 }